@@ -6,7 +6,8 @@ CREATE TABLE User (
     id INTEGER UNSIGNED AUTO_INCREMENT PRIMARY KEY,
     username VARCHAR(20) NOT NULL UNIQUE,
     email VARCHAR(255) NOT NULL UNIQUE,
-    password_hash VARCHAR(255) NOT NULL
+    password_hash VARCHAR(255) NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE Playlist (
@@ -17,6 +18,7 @@ CREATE TABLE Playlist (
 	private BOOLEAN NOT NULL DEFAULT false,
 	genre VARCHAR(50) NOT NULL,
     date_created DATETIME NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (user_id)
         REFERENCES User (id)
 );
@@ -24,13 +26,15 @@ CREATE TABLE Playlist (
 CREATE TABLE Song (
     id INTEGER UNSIGNED AUTO_INCREMENT PRIMARY KEY,
     title VARCHAR(50) NOT NULL,
-    reference VARCHAR(255) BINARY NOT NULL UNIQUE
+    reference VARCHAR(255) BINARY NOT NULL UNIQUE,
+    duration_ms INTEGER UNSIGNED
 );
 
 CREATE TABLE Playlist_Song (
     id INTEGER UNSIGNED AUTO_INCREMENT PRIMARY KEY,
     playlist_id INTEGER UNSIGNED NOT NULL,
     song_id INTEGER UNSIGNED NOT NULL,
+    INDEX (song_id, playlist_id),
     FOREIGN KEY (playlist_id)
         REFERENCES Playlist (id),
     FOREIGN KEY (song_id)
@@ -52,14 +56,64 @@ CREATE TABLE Room (
     private BOOLEAN NOT NULL DEFAULT FALSE,
     user_id INTEGER UNSIGNED NOT NULL,
     playlist_id INTEGER UNSIGNED,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (user_id)
 		REFERENCES User (id),
 	FOREIGN KEY (playlist_id)
 		REFERENCES Playlist (id)
 );
 
+CREATE TABLE Chat_Message (
+    id INTEGER UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+    room_id INTEGER UNSIGNED NOT NULL,
+    user_id INTEGER UNSIGNED NOT NULL,
+    text VARCHAR(500) NOT NULL,
+    sent_at BIGINT NOT NULL,
+    sequence BIGINT NOT NULL,
+    INDEX (room_id, id),
+    FOREIGN KEY (room_id)
+        REFERENCES Room (id)
+        ON DELETE CASCADE,
+    FOREIGN KEY (user_id)
+        REFERENCES User (id)
+);
+
+CREATE TABLE Room_State (
+    room_id INTEGER UNSIGNED PRIMARY KEY,
+    song_id INTEGER UNSIGNED,
+    queue_position INTEGER NOT NULL,
+    started_at BIGINT NOT NULL,
+    position_ms BIGINT NOT NULL,
+    paused BOOLEAN NOT NULL,
+    version BIGINT NOT NULL,
+    FOREIGN KEY (room_id)
+        REFERENCES Room (id)
+        ON DELETE CASCADE
+);
+
+CREATE TABLE Cache_Invalidation (
+    id BIGINT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+    node VARCHAR(36) NOT NULL,
+    entity VARCHAR(16) NOT NULL,
+    entity_id INTEGER UNSIGNED NOT NULL,
+    published_at BIGINT NOT NULL,
+    INDEX (published_at)
+);
+
+-- Next free id of each table whose ids are handed out in blocks by app.model.PooledIdGenerator
+CREATE TABLE Id_Sequence (
+    sequence_name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
 INSERT INTO User (username, email, password_hash) VALUES ('test', 'test@test.com', 'test');
 INSERT INTO Song (title, reference) VALUES ('testTitle', 'testReference');
 INSERT INTO Playlist (name, user_id, genre, date_created) VALUES ('testPlaylist', 1, 'rap', '2019-06-29 00:00:00');
 INSERT INTO Playlist_Song (playlist_id, song_id) VALUES (1,1);
-INSERT INTO Room (name, user_id, playlist_id) VALUES ('testRoom', 1, 1);
\ No newline at end of file
+INSERT INTO Room (name, user_id, playlist_id) VALUES ('testRoom', 1, 1);
+
+INSERT INTO Id_Sequence SELECT 'User', COALESCE(MAX(id), 0) + 1 FROM User;
+INSERT INTO Id_Sequence SELECT 'Song', COALESCE(MAX(id), 0) + 1 FROM Song;
+INSERT INTO Id_Sequence SELECT 'Playlist', COALESCE(MAX(id), 0) + 1 FROM Playlist;
+INSERT INTO Id_Sequence SELECT 'Playlist_Song', COALESCE(MAX(id), 0) + 1 FROM Playlist_Song;
+INSERT INTO Id_Sequence SELECT 'Room', COALESCE(MAX(id), 0) + 1 FROM Room;
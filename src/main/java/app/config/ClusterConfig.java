@@ -0,0 +1,37 @@
+package app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class ClusterConfig {
+
+   /**
+    * Client for calls between cluster members. Error statuses are returned like any other response so
+    * forwarded requests pass them through unchanged.
+    *
+    * @param timeout connect and read timeout in milliseconds
+    * @return RestTemplate for cluster calls
+    */
+   @Bean
+   public RestTemplate clusterRestTemplate(@Value("${cluster.timeout-ms:1000}") final int timeout) {
+      final SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+      requestFactory.setConnectTimeout(timeout);
+      requestFactory.setReadTimeout(timeout);
+
+      final RestTemplate restTemplate = new RestTemplate(requestFactory);
+      restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+         @Override
+         public boolean hasError(final ClientHttpResponse response) {
+            return false;
+         }
+      });
+
+      return restTemplate;
+   }
+}
@@ -0,0 +1,31 @@
+package app.config;
+
+import app.util.BlockingCallLimiter;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@ConditionalOnProperty(name = "execution.virtual-threads.enabled", havingValue = "true")
+public class DaoCallLimiterAspect {
+
+   @Autowired
+   private BlockingCallLimiter daoCallLimiter;
+
+   /**
+    * Run every repository call in app.dao through the limiter.
+    *
+    * @param joinPoint the repository call
+    * @return the result of the repository call
+    * @throws Throwable anything thrown by the repository call
+    */
+   @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+   public Object limitDaoCall(final ProceedingJoinPoint joinPoint) throws Throwable {
+      return daoCallLimiter.call(joinPoint::proceed);
+   }
+}
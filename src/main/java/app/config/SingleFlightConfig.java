@@ -0,0 +1,56 @@
+package app.config;
+
+import app.service.PlaylistService;
+import app.service.RoomService;
+import app.service.SongService;
+import app.service.UserService;
+import app.util.SingleFlight;
+
+import java.util.Map;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.google.common.collect.ImmutableList;
+
+@Configuration
+public class SingleFlightConfig {
+
+   /**
+    * Metrics of the services' single-flight reads, tagged with the read: how many lookups ran, how many calls
+    * were collapsed into a lookup already running, and how many lookups are running now.
+    *
+    * @param playlistService service with the playlist reads
+    * @param songService service with the song reads
+    * @param roomService service with the room reads
+    * @param userService service with the user reads
+    * @return MeterBinder registering the metrics
+    */
+   @Bean
+   public MeterBinder singleFlightMetrics(final PlaylistService playlistService, final SongService songService,
+                                          final RoomService roomService, final UserService userService) {
+      return meterRegistry -> {
+         for (Map<String, SingleFlight<?, ?>> reads : ImmutableList.of(playlistService.getSingleFlights(),
+               songService.getSingleFlights(), roomService.getSingleFlights(), userService.getSingleFlights())) {
+            reads.forEach((read, singleFlight) -> register(read, singleFlight, meterRegistry));
+         }
+      };
+   }
+
+   private void register(final String read, final SingleFlight<?, ?> singleFlight,
+                         final MeterRegistry meterRegistry) {
+      FunctionCounter.builder("singleflight.executed", singleFlight, SingleFlight::getExecutedCalls)
+            .tag("read", read)
+            .register(meterRegistry);
+      FunctionCounter.builder("singleflight.collapsed", singleFlight, SingleFlight::getCollapsedCalls)
+            .tag("read", read)
+            .register(meterRegistry);
+      Gauge.builder("singleflight.in-flight", singleFlight, SingleFlight::getInFlightCalls)
+            .tag("read", read)
+            .register(meterRegistry);
+   }
+}
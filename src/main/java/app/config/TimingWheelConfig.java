@@ -0,0 +1,75 @@
+package app.config;
+
+import app.util.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class TimingWheelConfig {
+
+   /**
+    * Timer shared by everything that needs many cheap timeouts, e.g. presence expiry.
+    *
+    * @param tickMs precision of the timer in milliseconds
+    * @param wheelSize number of buckets in the wheel
+    * @param meterRegistry registry for the timer metrics
+    * @return TimingWheel running on its own thread
+    */
+   @Bean(destroyMethod = "stop")
+   @Primary
+   public TimingWheel timingWheel(@Value("${timer.tick-ms:100}") final long tickMs,
+                                  @Value("${timer.wheel-size:512}") final int wheelSize,
+                                  final MeterRegistry meterRegistry) {
+      return register(new TimingWheel(tickMs, TimeUnit.MILLISECONDS, wheelSize, "timing-wheel"), "shared",
+            meterRegistry);
+   }
+
+   /**
+    * Timer moving live rooms on to the next song when the current one ends. Kept apart from the shared timer so
+    * it can tick finer, and so slow presence tasks don't delay song changes.
+    *
+    * @param tickMs precision of song changes in milliseconds
+    * @param wheelSize number of buckets in the wheel
+    * @param meterRegistry registry for the timer metrics
+    * @return TimingWheel running on its own thread
+    */
+   @Bean(destroyMethod = "stop")
+   public TimingWheel roomTransitionWheel(@Value("${rooms.transitions.tick-ms:10}") final long tickMs,
+                                          @Value("${rooms.transitions.wheel-size:4096}") final int wheelSize,
+                                          final MeterRegistry meterRegistry) {
+      return register(new TimingWheel(tickMs, TimeUnit.MILLISECONDS, wheelSize, "room-transition-wheel"),
+            "room-transitions", meterRegistry);
+   }
+
+   private TimingWheel register(final TimingWheel timingWheel, final String name,
+                                final MeterRegistry meterRegistry) {
+      Gauge.builder("timer.pending", timingWheel, TimingWheel::getPendingTimeouts)
+            .tag("wheel", name)
+            .register(meterRegistry);
+      Gauge.builder("timer.lag.avg", timingWheel, TimingWheel::getAverageLagMillis)
+            .tag("wheel", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+      Gauge.builder("timer.lag.max", timingWheel, TimingWheel::getMaxLagMillis)
+            .tag("wheel", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+      Gauge.builder("timer.tick.avg", timingWheel, TimingWheel::getAverageTickMillis)
+            .tag("wheel", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+      Gauge.builder("timer.tick.max", timingWheel, TimingWheel::getMaxTickMillis)
+            .tag("wheel", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+
+      return timingWheel;
+   }
+}
@@ -0,0 +1,67 @@
+package app.config;
+
+import app.util.BlockingCallLimiter;
+import app.util.VirtualThreads;
+
+import java.util.concurrent.ExecutorService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs Tomcat request handling on virtual threads, which also moves the DAO calls and EmailUtils.sendEmail
+ * made by the services onto virtual threads. Requires running on JDK 21 or later.
+ */
+@Configuration
+@ConditionalOnProperty(name = "execution.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+   @Bean(destroyMethod = "shutdown")
+   public ExecutorService virtualThreadExecutor(@Value("${execution.virtual-threads.trace-pinned:short}")
+                                                final String tracePinned) {
+      // Must be set before the first virtual thread starts
+      VirtualThreads.tracePinnedThreads(tracePinned);
+
+      return VirtualThreads.newVirtualThreadPerTaskExecutor("http-virtual-");
+   }
+
+   @Bean
+   public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer(
+         final ExecutorService virtualThreadExecutor) {
+      return factory -> factory.addConnectorCustomizers(connector ->
+            ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(virtualThreadExecutor));
+   }
+
+   /**
+    * Limits concurrent DAO calls so thousands of virtual threads don't all wait inside the connection pool.
+    *
+    * @param maxConcurrentCalls number of DAO calls allowed at once, defaults to the connection pool size
+    * @param meterRegistry registry for the limiter metrics
+    * @return BlockingCallLimiter used by DaoCallLimiterAspect
+    */
+   @Bean
+   public BlockingCallLimiter daoCallLimiter(
+         @Value("${execution.virtual-threads.max-concurrent-db-calls:${spring.datasource.hikari.maximum-pool-size:10}}")
+         final int maxConcurrentCalls,
+         final MeterRegistry meterRegistry) {
+      final BlockingCallLimiter limiter = new BlockingCallLimiter(maxConcurrentCalls);
+
+      Gauge.builder("dao.calls.active", limiter, BlockingCallLimiter::getActiveCalls).register(meterRegistry);
+      Gauge.builder("dao.calls.waiting", limiter, BlockingCallLimiter::getWaitingCalls).register(meterRegistry);
+      Gauge.builder("dao.calls.wait.avg", limiter, BlockingCallLimiter::getAverageWaitMillis)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+      Gauge.builder("dao.calls.wait.max", limiter, BlockingCallLimiter::getMaxWaitMillis)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+
+      return limiter;
+   }
+}
@@ -0,0 +1,31 @@
+package app.config;
+
+import app.controller.RoomChatHandler;
+import app.controller.RoomLiveHandler;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+   @Autowired
+   private RoomLiveHandler roomLiveHandler;
+
+   @Autowired
+   private RoomChatHandler roomChatHandler;
+
+   @Value("${websocket.allowed-origins:*}")
+   private String[] allowedOrigins;
+
+   @Override
+   public void registerWebSocketHandlers(final WebSocketHandlerRegistry registry) {
+      registry.addHandler(roomLiveHandler, "/rooms/{id}/live").setAllowedOrigins(allowedOrigins);
+      registry.addHandler(roomChatHandler, "/rooms/{id}/chat").setAllowedOrigins(allowedOrigins);
+   }
+}
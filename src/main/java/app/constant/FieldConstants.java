@@ -3,6 +3,7 @@ package app.constant;
 public final class FieldConstants {
 
    public static final String ID = "id";
+   public static final String VERSION = "version";
 
    /* User */
    public static final String USER = "user";
@@ -16,6 +17,7 @@ public final class FieldConstants {
    public static final String TITLE = "title";
    public static final String REFERENCE = "reference";
    public static final String SONG_ID = "songId";
+   public static final String DURATION_MS = "durationMs";
 
    /* PasswordReset */
    public static final String TOKEN = "token";
@@ -28,10 +30,31 @@ public final class FieldConstants {
 
    /* Room */
    public static final String ROOM = "room";
+   public static final String ROOM_ID = "roomId";
+   public static final String USER_ID = "userId";
+   public static final String TYPE = "type";
+   public static final String POSITION_MS = "positionMs";
+   public static final String QUEUE_POSITION = "queuePosition";
+
+   /* Paging */
+   public static final String CURSOR = "cursor";
+   public static final String LIMIT = "limit";
+   public static final String COUNT = "count";
+
+   /* ChatMessage */
+   public static final String TEXT = "text";
+   public static final String SINCE = "since";
+
+   /* Events */
+   public static final String EVENTS = "events";
+
+   /* TimeSync */
+   public static final String CLIENT_TIME = "clientTime";
 
    /* PlaylistSong */
    public static final String PLAYLIST_SONG = "playlistSong";
    public static final String PLAYLIST_SONG_ID = "playlistSongId";
+   public static final String SONG_IDS = "songIds";
 
    /**
     * Prevent instantiating this class.
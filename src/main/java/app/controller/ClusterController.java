@@ -0,0 +1,89 @@
+package app.controller;
+
+import app.model.RoomSnapshot;
+import app.service.ClusterService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.google.common.collect.ImmutableMap;
+
+import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.ROOM_ID;
+
+@RestController
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+@RequestMapping(path = "/cluster")
+public class ClusterController {
+
+   @Autowired
+   private ClusterService clusterService;
+
+   @Autowired
+   private Validator validator;
+
+   /**
+    * Health check used by the other cluster members.
+    *
+    * @return Response with status 200 and this node's base URL and view of the cluster in the body
+    */
+   @GetMapping("/health")
+   public ResponseEntity getHealth() {
+      return ResponseEntity.status(HttpStatus.OK).body(ImmutableMap.of(
+            "self", clusterService.getSelf(),
+            "members", clusterService.getLiveMembers()));
+   }
+
+   /**
+    * Get the node that owns a Room. Clients connect their room WebSockets to the owner, as handshakes sent to
+    * another node are refused rather than redirected.
+    *
+    * @param id room id
+    * @return Response with status 200 and the owner's base URL in the body for successful call,
+    *     otherwise validation response
+    */
+   @GetMapping("/rooms/{id}/owner")
+   public ResponseEntity getRoomOwner(@PathVariable final int id) {
+      if (validator.check(id > 0, ValidationError.BAD_VALUE, ID)) {
+         return ResponseEntity.status(HttpStatus.OK).body(ImmutableMap.of(
+               "owner", clusterService.getOwner(id),
+               "local", clusterService.isLocal(id)));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Take over a Room from another cluster member.
+    *
+    * @param id room id
+    * @param secret shared cluster secret
+    * @param snapshot the room's in-memory state on the previous owner
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PostMapping("/rooms/{id}/handoff")
+   public ResponseEntity handOff(@PathVariable final int id,
+                                 @RequestHeader(value = ClusterService.SECRET_HEADER, required = false)
+                                 final String secret,
+                                 @RequestBody final RoomSnapshot snapshot) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(snapshot.getRoomId() == id, ValidationError.BAD_VALUE, ROOM_ID)) {
+         clusterService.acceptHandoff(snapshot, secret);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+}
@@ -1,6 +1,7 @@
 package app.controller;
 
 import app.model.Playlist;
+import app.request.AddPlaylistSongsData;
 import app.request.CreatePlaylistData;
 import app.request.UpdatePlaylistData;
 import app.service.PlaylistService;
@@ -8,6 +9,7 @@ import app.validation.ValidationError;
 import app.validation.Validator;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,18 +24,26 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import static app.constant.FieldConstants.COUNT;
 import static app.constant.FieldConstants.GENRE;
 import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.LIMIT;
 import static app.constant.FieldConstants.NAME;
 import static app.constant.FieldConstants.PLAYLIST_ID;
 import static app.constant.FieldConstants.PLAYLIST_SONG_ID;
 import static app.constant.FieldConstants.SONG_ID;
+import static app.constant.FieldConstants.SONG_IDS;
 
 @RestController
 @RequestMapping(path = "/playlists")
 public class PlaylistController {
 
+   private static final int MAX_SIMILAR_LIMIT = 100;
+   private static final int MAX_RADIO_COUNT = 100;
+   private static final int MAX_ADDED_SONGS = 1000;
+
    @Autowired
    private PlaylistService playlistService;
 
@@ -94,6 +104,31 @@ public class PlaylistController {
       return validator.getResponseEntity();
    }
 
+   /**
+    * Add existing songs to an existing playlist, in order.
+    *
+    * @param playlistId playlist's id
+    * @param addPlaylistSongsData ids of the songs to add
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PostMapping("/{playlistId}/songs")
+   public ResponseEntity addSongsToPlaylist(@PathVariable final int playlistId,
+                                            @RequestBody final AddPlaylistSongsData addPlaylistSongsData) {
+      final List<Integer> songIds = addPlaylistSongsData.getSongIds();
+
+      if (validator.chain(playlistId > 0, ValidationError.BAD_VALUE, PLAYLIST_ID)
+            .chain(songIds != null && !songIds.isEmpty(), ValidationError.MISSING_FIELD, SONG_IDS)
+            .check(songIds == null || songIds.size() <= MAX_ADDED_SONGS
+                  && songIds.stream().allMatch(songId -> songId != null && songId > 0),
+                  ValidationError.BAD_VALUE, SONG_IDS)) {
+         playlistService.addSongsToPlaylist(playlistId, songIds);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
    /**
     * Get a playlist by the playlist's id.
     *
@@ -124,6 +159,56 @@ public class PlaylistController {
       return validator.getResponseEntity();
    }
 
+   /**
+    * Get the public playlists that share the most songs with a playlist.
+    *
+    * @param id playlist's id
+    * @param limit maximum number of playlists to return, 10 by default
+    * @return Response with status 200 and the similar playlists in body for successful call, otherwise validation
+    *         response
+    */
+   @GetMapping("/{id}/similar")
+   public ResponseEntity getSimilarPlaylists(@PathVariable final int id,
+                                             @RequestParam(required = false, defaultValue = "10") final int limit) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, PLAYLIST_ID)
+            .check(limit > 0 && limit <= MAX_SIMILAR_LIMIT, ValidationError.BAD_VALUE, LIMIT)) {
+         return ResponseEntity.status(HttpStatus.OK).body(playlistService.getSimilarPlaylists(id, limit));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Get the next songs of a playlist's radio: its songs mixed with songs often found in playlists with them.
+    * Each call draws new songs.
+    *
+    * @param id playlist's id
+    * @param count number of songs to draw, 20 by default
+    * @return Response with status 200 and the songs in body for successful call, otherwise validation response
+    */
+   @GetMapping("/{id}/radio")
+   public ResponseEntity getRadio(@PathVariable final int id,
+                                  @RequestParam(required = false, defaultValue = "20") final int count) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, PLAYLIST_ID)
+            .check(count > 0 && count <= MAX_RADIO_COUNT, ValidationError.BAD_VALUE, COUNT)) {
+         return ResponseEntity.status(HttpStatus.OK).body(playlistService.getRadio(id, count));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Subscribe to a playlist's changes as Server-Sent Events: "playlist" when it is updated, "songAdded" and
+    * "songRemoved" with the PlaylistSong when its songs change.
+    *
+    * @param id playlist's id
+    * @return event stream for successful call, otherwise error response for a playlist that does not exist
+    */
+   @GetMapping("/{id}/events")
+   public ResponseBodyEmitter getPlaylistEvents(@PathVariable final int id) {
+      return playlistService.subscribeToPlaylist(id);
+   }
+
    /**
     * Updates an existing playlist given the information.
     *
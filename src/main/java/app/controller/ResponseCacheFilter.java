@@ -0,0 +1,305 @@
+package app.controller;
+
+import app.service.InvalidationService;
+import app.util.ResponseCache;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
+
+import static app.constant.FieldConstants.PLAYLIST;
+import static app.constant.FieldConstants.SONG;
+import static app.constant.FieldConstants.USER;
+
+/**
+ * Serves repeated GET requests for playlists, songs and users from a cache of their serialized responses, keyed
+ * by path and sorted query parameters. Each response is tagged with the entity in its path, e.g. "playlist:1", or
+ * with the entity type for lists and filters, e.g. "playlist", and with the type of the entities it lists, e.g.
+ * "song" for a playlist's songs; a change to an entity, on this node or another, drops the responses of its tag
+ * and of its type. Responses derived from other entities, like similar playlists
+ * and related songs, are only as current as http-cache.ttl-ms. Bodies of at least http-cache.gzip-min-bytes are
+ * also kept gzipped for clients accepting it. Radio, event streams and rooms change with every request or by
+ * themselves, so they are never cached. The X-Cache header tells whether a response was a HIT, a STALE hit
+ * served while another request refreshes it, or a MISS.
+ */
+@Component
+@ConditionalOnProperty(name = "http-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+   public static final String CACHE_HEADER = "X-Cache";
+
+   private static final String HIT = "HIT";
+   private static final String STALE = "STALE";
+   private static final String MISS = "MISS";
+   private static final String GZIP = "gzip";
+
+   // Entity type of each cached path, with the id of the entity if it has one
+   private static final Map<String, Pattern> CACHED_PATHS = ImmutableMap.of(
+         PLAYLIST, Pattern.compile("^/playlists(?:/(\\d+)(?:/songs|/similar)?)?$"),
+         SONG, Pattern.compile("^/songs(?:/(\\d+)(?:/related|/playlists)?)?$"),
+         USER, Pattern.compile("^/users(?:/(\\d+))?$"));
+
+   // A user's playlists also change with any playlist
+   private static final Pattern USER_PLAYLISTS_PATH = Pattern.compile("^/users/(\\d+)/playlists$");
+
+   // Lists of another type's entities also change with any entity of that type, e.g. a song renamed or deleted
+   private static final Map<Pattern, String> LISTED_TYPES = ImmutableMap.of(
+         Pattern.compile("^/playlists/\\d+/songs$"), SONG,
+         Pattern.compile("^/songs/\\d+/playlists$"), PLAYLIST);
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${http-cache.max-bytes:67108864}")
+   private long maxBytes;
+
+   @Value("${http-cache.ttl-ms:10000}")
+   private long ttl;
+
+   @Value("${http-cache.stale-ms:60000}")
+   private long stale;
+
+   @Value("${http-cache.gzip-min-bytes:1024}")
+   private int gzipMinBytes;
+
+   private ResponseCache cache;
+
+   private Counter hits;
+
+   private Counter staleHits;
+
+   private Counter misses;
+
+   /**
+    * Create the cache, drop responses as their entities change and register the metrics.
+    */
+   @PostConstruct
+   public void init() {
+      cache = new ResponseCache(maxBytes, ttl, stale, gzipMinBytes);
+
+      for (String entity : CACHED_PATHS.keySet()) {
+         invalidationService.subscribeAll(entity, id -> {
+            cache.invalidate(ResponseCache.tag(entity, id));
+            cache.invalidate(entity);
+         });
+      }
+
+      hits = meterRegistry.counter("http.cache.requests", "result", HIT);
+      staleHits = meterRegistry.counter("http.cache.requests", "result", STALE);
+      misses = meterRegistry.counter("http.cache.requests", "result", MISS);
+      Gauge.builder("http.cache.entries", cache, ResponseCache::size)
+            .register(meterRegistry);
+      Gauge.builder("http.cache.size", cache, ResponseCache::getBytes)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+      FunctionCounter.builder("http.cache.evictions", cache, ResponseCache::getEvictions)
+            .register(meterRegistry);
+   }
+
+   @Override
+   protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                   final FilterChain filterChain) throws ServletException, IOException {
+      final String path = getPath(request);
+      final Set<String> tags = getTags(path);
+
+      if (!HttpMethod.GET.matches(request.getMethod()) || tags == null) {
+         filterChain.doFilter(request, response);
+         return;
+      }
+
+      final String key = getKey(path, request.getParameterMap());
+      final long now = System.currentTimeMillis();
+      final ResponseCache.Entry entry = cache.get(key, now);
+
+      if (entry != null && entry.isFresh(now)) {
+         hits.increment();
+         write(request, response, entry, HIT, now);
+         return;
+      }
+
+      if (entry != null && !entry.claimRefresh()) {
+         staleHits.increment();
+         write(request, response, entry, STALE, now);
+         return;
+      }
+
+      misses.increment();
+      final long stamp = cache.stamp(tags);
+      final ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+      wrapper.setHeader(CACHE_HEADER, MISS);
+      wrapper.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      boolean stored = false;
+
+      try {
+         filterChain.doFilter(request, wrapper);
+
+         if (wrapper.getStatus() == HttpStatus.OK.value() && wrapper.getContentType() != null
+               && !isAsyncStarted(request)) {
+            stored = cache.put(key, tags, wrapper.getContentType(), wrapper.getContentAsByteArray(), stamp,
+                  System.currentTimeMillis()) != null;
+         }
+      } finally {
+         if (entry != null && !stored) {
+            // A stale response is still better than an error, but not than a 404
+            if (HttpStatus.Series.valueOf(wrapper.getStatus()) == HttpStatus.Series.CLIENT_ERROR) {
+               cache.remove(key);
+            }
+            else {
+               entry.releaseRefresh();
+            }
+         }
+
+         wrapper.copyBodyToResponse();
+      }
+   }
+
+   /**
+    * Get the tags of a path.
+    *
+    * @param path request path, without the context path
+    * @return tags of the path's response, or null if it isn't cached
+    */
+   static Set<String> getTags(final String path) {
+      final Matcher userPlaylists = USER_PLAYLISTS_PATH.matcher(path);
+      if (userPlaylists.matches()) {
+         final Integer userId = Ints.tryParse(userPlaylists.group(1));
+
+         return userId == null ? null : ImmutableSet.of(ResponseCache.tag(USER, userId), PLAYLIST);
+      }
+
+      for (Map.Entry<String, Pattern> cached : CACHED_PATHS.entrySet()) {
+         final Matcher matcher = cached.getValue().matcher(path);
+
+         if (matcher.matches()) {
+            if (matcher.group(1) == null) {
+               return ImmutableSet.of(cached.getKey());
+            }
+
+            final Integer id = Ints.tryParse(matcher.group(1));
+            return id == null ? null : ImmutableSet.<String>builder()
+                  .add(ResponseCache.tag(cached.getKey(), id))
+                  .addAll(getListedTypes(path))
+                  .build();
+         }
+      }
+
+      return null;
+   }
+
+   private static Set<String> getListedTypes(final String path) {
+      return LISTED_TYPES.entrySet().stream()
+            .filter(listed -> listed.getKey().matcher(path).matches())
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toSet());
+   }
+
+   /**
+    * Make the key of a request, the same for every order of its query parameters.
+    *
+    * @param path request path, without the context path
+    * @param parameters query parameters
+    * @return path followed by the parameters sorted by name, each name's values in their order
+    */
+   static String getKey(final String path, final Map<String, String[]> parameters) {
+      final StringBuilder key = new StringBuilder(path);
+      char separator = '?';
+
+      for (Map.Entry<String, String[]> parameter : new TreeMap<>(parameters).entrySet()) {
+         for (String value : parameter.getValue()) {
+            key.append(separator).append(encode(parameter.getKey())).append('=').append(encode(value));
+            separator = '&';
+         }
+      }
+
+      return key.toString();
+   }
+
+   /**
+    * Check if an Accept-Encoding header accepts gzip.
+    *
+    * @param acceptEncoding Accept-Encoding header, null if absent
+    * @return true if gzip is listed without q=0
+    */
+   static boolean acceptsGzip(final String acceptEncoding) {
+      if (acceptEncoding == null) {
+         return false;
+      }
+
+      for (String coding : acceptEncoding.split(",")) {
+         final String[] parts = coding.split(";");
+
+         if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+            return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+         }
+      }
+
+      return false;
+   }
+
+   private static String getPath(final HttpServletRequest request) {
+      final String path = request.getRequestURI().substring(request.getContextPath().length());
+
+      return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+   }
+
+   private static String encode(final String value) {
+      try {
+         return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+      } catch (UnsupportedEncodingException ex) {
+         throw new IllegalStateException(ex);
+      }
+   }
+
+   private static void write(final HttpServletRequest request, final HttpServletResponse response,
+                             final ResponseCache.Entry entry, final String result, final long now)
+         throws IOException {
+      final boolean gzipped = entry.getGzipped() != null
+            && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+      final byte[] body = gzipped ? entry.getGzipped() : entry.getBody();
+
+      response.setStatus(HttpStatus.OK.value());
+      response.setContentType(entry.getContentType());
+      response.setHeader(CACHE_HEADER, result);
+      response.setHeader(HttpHeaders.AGE, String.valueOf(entry.getAgeSeconds(now)));
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (gzipped) {
+         response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+      }
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+   }
+}
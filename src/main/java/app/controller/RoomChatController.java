@@ -0,0 +1,72 @@
+package app.controller;
+
+import app.request.ChatMessageData;
+import app.service.RoomChatService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.SINCE;
+import static app.constant.FieldConstants.TEXT;
+import static app.constant.FieldConstants.USER_ID;
+
+@RestController
+@RequestMapping(path = "/rooms")
+public class RoomChatController {
+
+   @Autowired
+   private RoomChatService roomChatService;
+
+   @Autowired
+   private Validator validator;
+
+   /**
+    * Get a Room's recent chat messages.
+    *
+    * @param id room id
+    * @param since sequence number of the last message the caller has, 0 for all recent messages
+    * @return Response with status 200 and messages in the body for successful call, otherwise validation response
+    */
+   @GetMapping("/{id}/chat")
+   public ResponseEntity getMessages(@PathVariable final int id,
+                                     @RequestParam(required = false, defaultValue = "0") final long since) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(since >= 0, ValidationError.BAD_VALUE, SINCE)) {
+         return ResponseEntity.status(HttpStatus.OK).body(roomChatService.getMessages(id, since));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Post a message to a Room's chat.
+    *
+    * @param id room id
+    * @param chatMessageData user id and text of the message
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PostMapping("/{id}/chat")
+   public ResponseEntity postMessage(@PathVariable final int id, @RequestBody final ChatMessageData chatMessageData) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .chain(chatMessageData.getUserId() > 0, ValidationError.BAD_VALUE, USER_ID)
+            .check(StringUtils.isNotBlank(chatMessageData.getText()), ValidationError.MISSING_FIELD, TEXT)) {
+         roomChatService.post(id, chatMessageData.getUserId(), chatMessageData.getText());
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+}
@@ -0,0 +1,150 @@
+package app.controller;
+
+import app.exception.ApiException;
+import app.request.ChatMessageData;
+import app.service.RoomChatService;
+import app.util.AsyncSendSession;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.ROOM_ID;
+import static app.constant.FieldConstants.SINCE;
+import static app.constant.FieldConstants.TEXT;
+import static app.constant.FieldConstants.TYPE;
+import static app.constant.FieldConstants.USER;
+import static app.constant.FieldConstants.USER_ID;
+
+/**
+ * WebSocket endpoint at /rooms/{id}/chat?userId=&amp;since=. Every connection receives the room's chat messages
+ * in batches, starting with the ones after since, and users send ChatMessageData to post.
+ */
+@Component
+public class RoomChatHandler extends TextWebSocketHandler {
+
+   private static final Pattern ROOM_PATH = Pattern.compile("/rooms/(\\d+)/chat/?$");
+   private static final String SUBSCRIBER = "subscriber";
+   private static final String ERROR = "error";
+   private static final String ERRORS = "errors";
+
+   @Autowired
+   private RoomChatService roomChatService;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${rooms.chat.send-time-limit-ms:5000}")
+   private int sendTimeLimit;
+
+   @Value("${rooms.chat.buffer-size-limit:262144}")
+   private int bufferSizeLimit;
+
+   /**
+    * Subscribe to the chat of the room from the connection's path.
+    *
+    * @param session the new connection
+    * @throws IOException if the connection could not be closed after a failed subscribe
+    */
+   @Override
+   public void afterConnectionEstablished(final WebSocketSession session) throws IOException {
+      final int roomId = getRoomId(session.getUri());
+
+      if (roomId <= 0) {
+         session.close(CloseStatus.BAD_DATA.withReason(ID));
+         return;
+      }
+
+      /* Sent asynchronously so slow listeners never hold the room's writer. A listener that falls more than the
+       * buffer behind is disconnected and catches up from the history when it reconnects. */
+      final WebSocketSession subscriber = new AsyncSendSession(session, sendTimeLimit, bufferSizeLimit);
+      final MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri()).build()
+            .getQueryParams();
+
+      session.getAttributes().put(ROOM_ID, roomId);
+      session.getAttributes().put(USER_ID, NumberUtils.toInt(params.getFirst(USER_ID)));
+      session.getAttributes().put(SUBSCRIBER, subscriber);
+
+      try {
+         roomChatService.subscribe(roomId, subscriber, NumberUtils.toLong(params.getFirst(SINCE)));
+      } catch (ApiException ex) {
+         session.close(CloseStatus.POLICY_VIOLATION.withReason(ex.getMessage()));
+      }
+   }
+
+   /**
+    * Post a chat message, replying with an error message if it was rejected.
+    *
+    * @param session connection the message was sent on
+    * @param message JSON representation of ChatMessageData, the userId is taken from the connection
+    * @throws IOException if the error reply could not be sent
+    */
+   @Override
+   protected void handleTextMessage(final WebSocketSession session, final TextMessage message) throws IOException {
+      final Map<String, Object> attributes = session.getAttributes();
+      final int userId = (Integer) attributes.get(USER_ID);
+
+      try {
+         final ChatMessageData chatMessageData;
+         try {
+            chatMessageData = objectMapper.readValue(message.getPayload(), ChatMessageData.class);
+         } catch (IOException ex) {
+            throw new ApiException("Message is not valid JSON", ValidationError.BAD_VALUE, ImmutableList.of(TEXT),
+                  ex);
+         }
+
+         if (userId <= 0) {
+            throw new ApiException("Only signed in users can chat", ValidationError.FORBIDDEN, USER);
+         }
+
+         if (StringUtils.isBlank(chatMessageData.getText())) {
+            throw new ApiException("Message is empty", ValidationError.MISSING_FIELD, TEXT);
+         }
+
+         roomChatService.post((Integer) attributes.get(ROOM_ID), userId, chatMessageData.getText());
+      } catch (ApiException ex) {
+         sendError((WebSocketSession) attributes.get(SUBSCRIBER), ex);
+      }
+   }
+
+   @Override
+   public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+      final Object roomId = session.getAttributes().get(ROOM_ID);
+      final Object subscriber = session.getAttributes().get(SUBSCRIBER);
+
+      if (roomId != null && subscriber != null) {
+         roomChatService.unsubscribe((Integer) roomId, (WebSocketSession) subscriber);
+      }
+   }
+
+   private void sendError(final WebSocketSession subscriber, final ApiException ex) throws IOException {
+      subscriber.sendMessage(new TextMessage(objectMapper.writeValueAsString(
+            ImmutableMap.of(TYPE, ERROR, ERRORS, ImmutableMap.of(ex.getError().getTag(), ex.getFields())))));
+   }
+
+   private int getRoomId(final URI uri) {
+      final Matcher matcher = ROOM_PATH.matcher(uri == null ? "" : uri.getPath());
+
+      return matcher.find() ? NumberUtils.toInt(matcher.group(1)) : 0;
+   }
+}
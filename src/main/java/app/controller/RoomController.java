@@ -1,6 +1,7 @@
 package app.controller;
 
 import app.model.Room;
+import app.model.RoomPage;
 import app.request.CreateRoomData;
 import app.request.UpdateRoomData;
 import app.service.RoomService;
@@ -12,6 +13,7 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,15 +24,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.LIMIT;
 import static app.constant.FieldConstants.NAME;
 import static app.constant.FieldConstants.PLAYLIST_ID;
+import static app.constant.FieldConstants.USER_ID;
 
 @RestController
 @RequestMapping(path = "/rooms")
 public class RoomController {
 
+   private static final int MAX_DISCOVER_LIMIT = 100;
+
    @Autowired
    private RoomService roomService;
 
@@ -73,7 +80,37 @@ public class RoomController {
    }
 
    /**
-    * Get a list of rooms based on the name, otherwise every room when name is blank.
+    * Get a Room's live snapshot: the room, its songs and its playback state, tagged with the room's version.
+    * Listeners can then connect to /rooms/{id}/live?since={version} to only receive what changed since.
+    *
+    * @param id room id
+    * @return Response with status 200 and the snapshot in the body for successful call, otherwise validation response
+    */
+   @GetMapping("/{id}/snapshot")
+   public ResponseEntity getRoomSnapshot(@PathVariable final int id) {
+      if (validator.check(id > 0, ValidationError.BAD_VALUE, ID)) {
+         final String snapshot = roomService.getRoomSnapshot(id);
+
+         return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(snapshot);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Subscribe to a Room's changes as Server-Sent Events. Each update to the room is sent as a "room" event with
+    * the updated Room as its data.
+    *
+    * @param id room id
+    * @return event stream for successful call, otherwise error response for a room that does not exist
+    */
+   @GetMapping("/{id}/events")
+   public ResponseBodyEmitter getRoomEvents(@PathVariable final int id) {
+      return roomService.subscribeToRoom(id);
+   }
+
+   /**
+    * Get a list of rooms based on the name, otherwise every room when name is blank. Busiest rooms come first.
     *
     * @param name name or name prefix to search for
     * @return Response with status 200 and rooms in the body for successful call, otherwise validation response
@@ -92,7 +129,30 @@ public class RoomController {
    }
 
    /**
-    * Update a Room by a room id.
+    * Get a page of public rooms, most active first, ranked by their listeners, recent chat messages and freshness.
+    * Served from memory without querying the rooms table.
+    *
+    * @param cursor nextCursor of the previous page, empty for the first page
+    * @param limit maximum number of rooms on the page, at most 100
+    * @return Response with status 200 and the page of rooms in the body for successful call,
+    *     otherwise validation response
+    */
+   @GetMapping("/discover")
+   public ResponseEntity discoverRooms(@RequestParam(required = false) final String cursor,
+                                       @RequestParam(required = false, defaultValue = "20") final int limit) {
+      if (validator.check(limit > 0 && limit <= MAX_DISCOVER_LIMIT, ValidationError.BAD_VALUE, LIMIT)) {
+         final RoomPage page = roomService.discoverRooms(StringUtils.trimToNull(cursor), limit);
+
+         return ResponseEntity.status(HttpStatus.OK).body(page);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Update a Room by a room id. An update giving a version gets a 409 if the room changed since; as rooms are
+    * written behind, that only covers updates made on the same node, and an update conflicting with a write from
+    * another node is answered with 200 and then not written.
     *
     * @param id room id
     * @param updateRoomData contains information to update a room
@@ -128,6 +188,60 @@ public class RoomController {
       return validator.getResponseEntity();
    }
 
+   /**
+    * Get the users currently in a Room.
+    *
+    * @param id room id
+    * @return Response with status 200 and list of user ids in the body for successful call,
+    *     otherwise validation response
+    */
+   @GetMapping("/{id}/members")
+   public ResponseEntity getRoomMembers(@PathVariable final int id) {
+      if (validator.check(id > 0, ValidationError.BAD_VALUE, ID)) {
+         return ResponseEntity.status(HttpStatus.OK).body(roomService.getRoomMembers(id));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Join a Room or stay in it. Members that don't call this again within the presence ttl are dropped.
+    *
+    * @param id room id
+    * @param userId user id
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PutMapping("/{id}/members/{userId}")
+   public ResponseEntity heartbeat(@PathVariable final int id, @PathVariable final int userId) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(userId > 0, ValidationError.BAD_VALUE, USER_ID)) {
+         roomService.heartbeat(id, userId);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Leave a Room.
+    *
+    * @param id room id
+    * @param userId user id
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @DeleteMapping("/{id}/members/{userId}")
+   public ResponseEntity leaveRoom(@PathVariable final int id, @PathVariable final int userId) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(userId > 0, ValidationError.BAD_VALUE, USER_ID)) {
+         roomService.leaveRoom(id, userId);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
    private Room buildFromCreateRoomData(final CreateRoomData createRoomData) {
       return Room.builder()
             .name(createRoomData.getName())
@@ -0,0 +1,225 @@
+package app.controller;
+
+import app.exception.ApiException;
+import app.model.TimeSync;
+import app.request.RoomCommandData;
+import app.service.RoomPresenceService;
+import app.service.RoomSessionService;
+import app.service.TimeSyncService;
+import app.util.AsyncSendSession;
+import app.util.RoomSyncCodec;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static app.constant.FieldConstants.CLIENT_TIME;
+import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.ROOM_ID;
+import static app.constant.FieldConstants.SINCE;
+import static app.constant.FieldConstants.TYPE;
+import static app.constant.FieldConstants.USER_ID;
+
+/**
+ * WebSocket endpoint at /rooms/{id}/live. Every connection receives the room's snapshot, or only the changes since
+ * the version given by the since query parameter, then every change to the room. RoomCommandData controlling
+ * playback is only taken from connections whose userId query parameter is the room's userId. Nothing authenticates
+ * that parameter, so this is not an ownership check: it only keeps listeners' clients from sending commands by
+ * mistake, and anyone can claim the room's userId.
+ * Room sync messages are JSON text frames unless the client negotiates the RoomSyncCodec.BINARY_PROTOCOL
+ * subprotocol, in which case they are binary frames. Commands, errors and queue updates are always JSON.
+ * Any listener can send a TIME message with its clientTime to take a clock sample, answered with a TimeSync.
+ */
+@Component
+public class RoomLiveHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+   private static final List<String> SUB_PROTOCOLS = ImmutableList.of(RoomSyncCodec.BINARY_PROTOCOL,
+         RoomSyncCodec.JSON_PROTOCOL);
+
+   private static final Pattern ROOM_PATH = Pattern.compile("/rooms/(\\d+)/live/?$");
+   private static final String SUBSCRIBER = "subscriber";
+   private static final String MEMBER_ID = "memberId";
+   private static final String ERROR = "error";
+   private static final String ERRORS = "errors";
+   private static final String TIME = "time";
+
+   @Autowired
+   private RoomSessionService roomSessionService;
+
+   @Autowired
+   private RoomPresenceService roomPresenceService;
+
+   @Autowired
+   private TimeSyncService timeSyncService;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${rooms.live.send-time-limit-ms:5000}")
+   private int sendTimeLimit;
+
+   @Value("${rooms.live.buffer-size-limit:65536}")
+   private int bufferSizeLimit;
+
+   /**
+    * Join the room from the connection's path, counting the connection as a member of the room.
+    *
+    * @param session the new connection
+    * @throws IOException if the connection could not be closed after a failed join
+    */
+   @Override
+   public void afterConnectionEstablished(final WebSocketSession session) throws IOException {
+      final int roomId = getRoomId(session.getUri());
+
+      if (roomId <= 0) {
+         session.close(CloseStatus.BAD_DATA.withReason(ID));
+         return;
+      }
+
+      /* Sent asynchronously so slow listeners never hold the broadcaster's threads. A listener that falls more than
+       * the buffer behind is disconnected and resyncs with since when it reconnects. */
+      final WebSocketSession subscriber = new AsyncSendSession(session, sendTimeLimit, bufferSizeLimit);
+
+      final int userId = getUserId(session.getUri());
+
+      session.getAttributes().put(ROOM_ID, roomId);
+      session.getAttributes().put(USER_ID, userId);
+      session.getAttributes().put(SUBSCRIBER, subscriber);
+
+      try {
+         roomSessionService.join(roomId, subscriber, getSince(session.getUri()));
+      } catch (ApiException ex) {
+         session.close(CloseStatus.POLICY_VIOLATION.withReason(ex.getMessage()));
+         return;
+      }
+
+      final int memberId = userId > 0 ? userId : roomPresenceService.nextAnonymousId();
+      session.getAttributes().put(MEMBER_ID, memberId);
+      roomPresenceService.join(roomId, memberId);
+   }
+
+   /**
+    * Apply a playback command, heartbeat or clock sample, replying with an error message if it was rejected.
+    *
+    * @param session connection the command was sent on
+    * @param message JSON representation of RoomCommandData
+    * @throws IOException if the reply could not be sent
+    */
+   @Override
+   protected void handleTextMessage(final WebSocketSession session, final TextMessage message) throws IOException {
+      final long receiveTime = System.currentTimeMillis();
+      final Map<String, Object> attributes = session.getAttributes();
+      final WebSocketSession subscriber = (WebSocketSession) attributes.get(SUBSCRIBER);
+
+      try {
+         final RoomCommandData command;
+         try {
+            command = objectMapper.readValue(message.getPayload(), RoomCommandData.class);
+         } catch (IOException ex) {
+            throw new ApiException("Command is not valid JSON", ValidationError.BAD_VALUE, ImmutableList.of(TYPE),
+                  ex);
+         }
+
+         if (command.getType() == RoomCommandData.Type.HEARTBEAT) {
+            heartbeat((Integer) attributes.get(ROOM_ID), (Integer) attributes.get(MEMBER_ID));
+         }
+         else if (command.getType() == RoomCommandData.Type.TIME) {
+            sendTime(subscriber, command, receiveTime);
+         }
+         else {
+            // USER_ID is whatever the client put in ?userId=, unauthenticated
+            roomSessionService.applyCommand((Integer) attributes.get(ROOM_ID), (Integer) attributes.get(USER_ID),
+                  command);
+         }
+      } catch (ApiException ex) {
+         sendError(subscriber, ex);
+      }
+   }
+
+   /**
+    * Get the subprotocols a client can ask for. The first one the client lists that is supported is picked, and
+    * clients that ask for none get JSON.
+    *
+    * @return supported subprotocols
+    */
+   @Override
+   public List<String> getSubProtocols() {
+      return SUB_PROTOCOLS;
+   }
+
+   @Override
+   public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+      final Object roomId = session.getAttributes().get(ROOM_ID);
+      final Object subscriber = session.getAttributes().get(SUBSCRIBER);
+      final Object memberId = session.getAttributes().get(MEMBER_ID);
+
+      if (roomId != null && subscriber != null) {
+         roomSessionService.leave((Integer) roomId, (WebSocketSession) subscriber);
+      }
+
+      if (roomId != null && memberId != null) {
+         roomPresenceService.leave((Integer) roomId, (Integer) memberId);
+      }
+   }
+
+   /**
+    * Keep the connection's member in the room. A member whose heartbeat came late was dropped when their ttl ran
+    * out although the connection is still open, so they join again, as the HTTP heartbeat does.
+    */
+   private void heartbeat(final int roomId, final int memberId) {
+      if (!roomPresenceService.heartbeat(roomId, memberId)) {
+         roomPresenceService.join(roomId, memberId);
+      }
+   }
+
+   private void sendTime(final WebSocketSession subscriber, final RoomCommandData command, final long receiveTime)
+         throws IOException {
+      if (command.getClientTime() == null || command.getClientTime() < 0) {
+         throw new ApiException("Client time is invalid", ValidationError.BAD_VALUE, CLIENT_TIME);
+      }
+
+      final TimeSync reply = timeSyncService.sample(command.getClientTime(), receiveTime);
+      reply.setType(TIME);
+      subscriber.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+   }
+
+   private void sendError(final WebSocketSession subscriber, final ApiException ex) throws IOException {
+      subscriber.sendMessage(new TextMessage(objectMapper.writeValueAsString(
+            ImmutableMap.of(TYPE, ERROR, ERRORS, ImmutableMap.of(ex.getError().getTag(), ex.getFields())))));
+   }
+
+   private int getRoomId(final URI uri) {
+      final Matcher matcher = ROOM_PATH.matcher(uri == null ? "" : uri.getPath());
+
+      return matcher.find() ? NumberUtils.toInt(matcher.group(1)) : 0;
+   }
+
+   private int getUserId(final URI uri) {
+      return NumberUtils.toInt(UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst(USER_ID));
+   }
+
+   private Long getSince(final URI uri) {
+      final String since = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst(SINCE);
+
+      return NumberUtils.isDigits(since) ? NumberUtils.toLong(since) : null;
+   }
+}
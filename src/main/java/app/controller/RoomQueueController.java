@@ -0,0 +1,134 @@
+package app.controller;
+
+import app.request.QueueSongData;
+import app.service.RoomQueueService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.SONG_ID;
+import static app.constant.FieldConstants.USER_ID;
+
+@RestController
+@RequestMapping(path = "/rooms")
+public class RoomQueueController {
+
+   @Autowired
+   private RoomQueueService roomQueueService;
+
+   @Autowired
+   private Validator validator;
+
+   /**
+    * Get a Room's shared queue.
+    *
+    * @param id room id
+    * @return Response with status 200 and queued songs, next to play first, in the body for successful call,
+    *     otherwise validation response
+    */
+   @GetMapping("/{id}/queue")
+   public ResponseEntity getQueue(@PathVariable final int id) {
+      if (validator.check(id > 0, ValidationError.BAD_VALUE, ID)) {
+         return ResponseEntity.status(HttpStatus.OK).body(roomQueueService.getSongs(id));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Add a song to a Room's shared queue.
+    *
+    * @param id room id
+    * @param queueSongData user adding the song and the song id
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PostMapping("/{id}/queue")
+   public ResponseEntity addSong(@PathVariable final int id, @RequestBody final QueueSongData queueSongData) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .chain(queueSongData.getUserId() > 0, ValidationError.BAD_VALUE, USER_ID)
+            .check(queueSongData.getSongId() > 0, ValidationError.BAD_VALUE, SONG_ID)) {
+         roomQueueService.addSong(id, queueSongData.getUserId(), queueSongData.getSongId());
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Upvote a song in a Room's shared queue.
+    *
+    * @param id room id
+    * @param songId id of the queued song
+    * @param userId id of the user voting
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PutMapping("/{id}/queue/{songId}/votes/{userId}")
+   public ResponseEntity upvote(@PathVariable final int id, @PathVariable final int songId,
+                                @PathVariable final int userId) {
+      if (validateVote(id, songId, userId)) {
+         roomQueueService.upvote(id, songId, userId);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Take back an upvote for a song in a Room's shared queue.
+    *
+    * @param id room id
+    * @param songId id of the queued song
+    * @param userId id of the user who voted
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @DeleteMapping("/{id}/queue/{songId}/votes/{userId}")
+   public ResponseEntity removeUpvote(@PathVariable final int id, @PathVariable final int songId,
+                                      @PathVariable final int userId) {
+      if (validateVote(id, songId, userId)) {
+         roomQueueService.removeUpvote(id, songId, userId);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Vote to skip the song playing in a Room.
+    *
+    * @param id room id
+    * @param userId id of the user voting
+    * @return Response with status 200 and empty body for successful call, otherwise validation response
+    */
+   @PutMapping("/{id}/skip-votes/{userId}")
+   public ResponseEntity voteToSkip(@PathVariable final int id, @PathVariable final int userId) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(userId > 0, ValidationError.BAD_VALUE, USER_ID)) {
+         roomQueueService.voteToSkip(id, userId);
+
+         return ResponseEntity.status(HttpStatus.OK).body(null);
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   private boolean validateVote(final int id, final int songId, final int userId) {
+      return validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .chain(songId > 0, ValidationError.BAD_VALUE, SONG_ID)
+            .check(userId > 0, ValidationError.BAD_VALUE, USER_ID);
+   }
+}
@@ -0,0 +1,154 @@
+package app.controller;
+
+import app.service.ClusterService;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import static app.constant.FieldConstants.ROOM;
+
+/**
+ * Sends requests for /rooms/{id}/** to the node that owns the room. By default the request is forwarded and the
+ * owner's response relayed; with cluster.mode=redirect the client is sent a 307 to the owner instead.
+ * Event streams can't be relayed so they are always redirected. WebSocket handshakes can't be relayed either, and
+ * clients don't follow redirects of them, so they are refused with 421 and the owner's base URL in the X-Room-Owner
+ * header and the body; clients look the owner up with GET /cluster/rooms/{id}/owner and connect there.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class RoomRoutingFilter extends OncePerRequestFilter {
+
+   // Set on forwarded requests so a node with a different view of the ring serves them instead of bouncing them.
+   // Only honoured together with the cluster secret, so clients can't make a node serve a room it doesn't own
+   public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+   public static final String OWNER_HEADER = "X-Room-Owner";
+
+   private static final int MISDIRECTED_REQUEST = 421;
+   private static final Pattern ROOM_PATH = Pattern.compile("^/rooms/(\\d+)(/.*)?$");
+   private static final String REDIRECT = "redirect";
+   private static final Set<String> HOP_HEADERS = ImmutableSet.of("connection", "content-length", "host",
+         "keep-alive", "transfer-encoding", "upgrade");
+
+   @Autowired
+   private ClusterService clusterService;
+
+   @Autowired
+   private RestTemplate clusterRestTemplate;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${cluster.mode:forward}")
+   private String mode;
+
+   @Override
+   protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                   final FilterChain filterChain) throws ServletException, IOException {
+      final String path = request.getRequestURI().substring(request.getContextPath().length());
+      final int roomId = getRoomId(path);
+
+      if (roomId <= 0 || isForwarded(request) || clusterService.isLocal(roomId)) {
+         filterChain.doFilter(request, response);
+         return;
+      }
+
+      final String owner = clusterService.getOwner(roomId);
+      if (request.getHeader(HttpHeaders.UPGRADE) != null) {
+         refuseHandshake(response, owner);
+         return;
+      }
+
+      final String target = owner + path + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+
+      if (REDIRECT.equals(mode) || isEventStream(request)) {
+         response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+         response.setHeader(HttpHeaders.LOCATION, target);
+         return;
+      }
+
+      forward(request, response, target);
+   }
+
+   private boolean isForwarded(final HttpServletRequest request) {
+      return request.getHeader(FORWARDED_HEADER) != null
+            && clusterService.isTrusted(request.getHeader(ClusterService.SECRET_HEADER));
+   }
+
+   private boolean isEventStream(final HttpServletRequest request) {
+      final String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+      return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+   }
+
+   private void refuseHandshake(final HttpServletResponse response, final String owner) throws IOException {
+      response.setStatus(MISDIRECTED_REQUEST);
+      response.setHeader(OWNER_HEADER, owner);
+      response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+      objectMapper.writeValue(response.getOutputStream(), ImmutableMap.of("owner", owner));
+   }
+
+   private void forward(final HttpServletRequest request, final HttpServletResponse response, final String target)
+         throws IOException {
+      try {
+         clusterRestTemplate.execute(target, HttpMethod.resolve(request.getMethod()), forwardedRequest -> {
+            for (String name : Collections.list(request.getHeaderNames())) {
+               if (!HOP_HEADERS.contains(name.toLowerCase())) {
+                  forwardedRequest.getHeaders().put(name, Collections.list(request.getHeaders(name)));
+               }
+            }
+            forwardedRequest.getHeaders().set(FORWARDED_HEADER, clusterService.getSelf());
+            forwardedRequest.getHeaders().set(ClusterService.SECRET_HEADER, clusterService.getSecret());
+            StreamUtils.copy(request.getInputStream(), forwardedRequest.getBody());
+         }, ownerResponse -> {
+            response.setStatus(ownerResponse.getRawStatusCode());
+            ownerResponse.getHeaders().forEach((name, values) -> {
+               if (!HOP_HEADERS.contains(name.toLowerCase())) {
+                  values.forEach(value -> response.addHeader(name, value));
+               }
+            });
+            StreamUtils.copy(ownerResponse.getBody(), response.getOutputStream());
+            return null;
+         });
+      } catch (RestClientException ex) {
+         response.setStatus(ValidationError.SERVICE_UNAVAILABLE.getStatus().value());
+         response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+         objectMapper.writeValue(response.getOutputStream(), ImmutableMap.of("errors",
+               ImmutableMap.of(ValidationError.SERVICE_UNAVAILABLE.getTag(), ImmutableList.of(ROOM))));
+      }
+   }
+
+   private int getRoomId(final String path) {
+      final Matcher matcher = ROOM_PATH.matcher(path);
+
+      return matcher.find() ? NumberUtils.toInt(matcher.group(1)) : 0;
+   }
+}
@@ -21,7 +21,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import static app.constant.FieldConstants.DURATION_MS;
 import static app.constant.FieldConstants.ID;
+import static app.constant.FieldConstants.LIMIT;
 import static app.constant.FieldConstants.REFERENCE;
 import static app.constant.FieldConstants.TITLE;
 
@@ -29,6 +31,10 @@ import static app.constant.FieldConstants.TITLE;
 @RequestMapping(path = "/songs")
 public class SongController {
 
+   private static final int MAX_RELATED_LIMIT = 100;
+
+   private static final int MAX_PLAYLISTS_LIMIT = 100;
+
    @Autowired
    private SongService songService;
 
@@ -50,6 +56,46 @@ public class SongController {
       return validator.getResponseEntity();
    }
 
+   /**
+    * Get the songs that share the most playlists with a song.
+    *
+    * @param id song id
+    * @param limit maximum number of songs to return, 10 by default
+    * @return Response with status 200 and the related songs in the body for successful call, otherwise validation
+    *         response
+    */
+   @GetMapping("/{id}/related")
+   public ResponseEntity getRelatedSongs(@PathVariable final int id,
+                                         @RequestParam(required = false, defaultValue = "10") final int limit) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(limit > 0 && limit <= MAX_RELATED_LIMIT, ValidationError.BAD_VALUE, LIMIT)) {
+         return ResponseEntity.status(HttpStatus.OK).body(songService.getRelatedSongs(id, limit));
+      }
+
+      return validator.getResponseEntity();
+   }
+
+   /**
+    * Get a page of the public playlists a song is in, by playlist id.
+    *
+    * @param id song id
+    * @param cursor nextCursor of the previous page, omitted for the first page
+    * @param limit maximum number of playlists on the page, 20 by default
+    * @return Response with status 200 and the page in the body for successful call, otherwise validation response
+    */
+   @GetMapping("/{id}/playlists")
+   public ResponseEntity getPlaylistsWithSong(@PathVariable final int id,
+                                              @RequestParam(required = false) final String cursor,
+                                              @RequestParam(required = false, defaultValue = "20") final int limit) {
+      if (validator.chain(id > 0, ValidationError.BAD_VALUE, ID)
+            .check(limit > 0 && limit <= MAX_PLAYLISTS_LIMIT, ValidationError.BAD_VALUE, LIMIT)) {
+         return ResponseEntity.status(HttpStatus.OK)
+               .body(songService.getPlaylistsWithSong(id, StringUtils.trimToNull(cursor), limit));
+      }
+
+      return validator.getResponseEntity();
+   }
+
    /**
     * Get a list of songs by the title, if title is empty return all songs.
     *
@@ -78,7 +124,9 @@ public class SongController {
    @PostMapping()
    public ResponseEntity createNewSong(@RequestBody final CreateSongData createSongData) {
       if (validator.chain(StringUtils.isNotBlank(createSongData.getTitle()), ValidationError.MISSING_FIELD, TITLE)
-            .check(StringUtils.isNotBlank(createSongData.getReference()), ValidationError.MISSING_FIELD, REFERENCE)) {
+            .chain(StringUtils.isNotBlank(createSongData.getReference()), ValidationError.MISSING_FIELD, REFERENCE)
+            .check(createSongData.getDurationMs() == null || createSongData.getDurationMs() > 0,
+                  ValidationError.BAD_VALUE, DURATION_MS)) {
          songService.createNewSong(buildSongFromCreateSongData(createSongData));
 
          return ResponseEntity.status(HttpStatus.OK).body(null);
@@ -107,6 +155,7 @@ public class SongController {
       return Song.builder()
             .title(createSongData.getTitle())
             .reference(createSongData.getReference())
+            .durationMs(createSongData.getDurationMs())
             .build();
    }
 }
@@ -0,0 +1,46 @@
+package app.controller;
+
+import app.service.TimeSyncService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static app.constant.FieldConstants.CLIENT_TIME;
+
+@RestController
+@RequestMapping(path = "/time")
+public class TimeController {
+
+   @Autowired
+   private TimeSyncService timeSyncService;
+
+   @Autowired
+   private Validator validator;
+
+   /**
+    * Take one clock sample. Clients listening to a room can send a TIME message over the live connection instead.
+    *
+    * @param clientTime client time the request was sent, in epoch milliseconds
+    * @return Response with status 200 and TimeSync in the body for successful call, otherwise validation response
+    */
+   @GetMapping()
+   public ResponseEntity getTime(@RequestParam(required = false) final Long clientTime) {
+      final long receiveTime = System.currentTimeMillis();
+
+      if (validator.check(clientTime != null && clientTime >= 0, ValidationError.BAD_VALUE, CLIENT_TIME)) {
+         return ResponseEntity.status(HttpStatus.OK)
+               .cacheControl(CacheControl.noStore())
+               .body(timeSyncService.sample(clientTime, receiveTime));
+      }
+
+      return validator.getResponseEntity();
+   }
+}
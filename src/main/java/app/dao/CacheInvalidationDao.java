@@ -0,0 +1,27 @@
+package app.dao;
+
+import app.model.CacheInvalidation;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface CacheInvalidationDao extends JpaRepository<CacheInvalidation, Long> {
+   List<CacheInvalidation> findByIdGreaterThanOrderById(final long id, final Pageable page);
+
+   List<CacheInvalidation> findByIdIn(final Collection<Long> ids);
+
+   @Query("SELECT COALESCE(MAX(c.id), 0) FROM CacheInvalidation c")
+   long findMaxId();
+
+   @Modifying
+   @Transactional
+   @Query("DELETE FROM CacheInvalidation c WHERE c.publishedAt < :before")
+   int deletePublishedBefore(@Param("before") final long before);
+}
@@ -0,0 +1,12 @@
+package app.dao;
+
+import app.model.ChatMessage;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ChatMessageDao extends JpaRepository<ChatMessage, Integer> {
+   List<ChatMessage> findByRoomIdOrderByIdDesc(int roomId, Pageable pageable);
+}
@@ -0,0 +1,101 @@
+package app.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * UPDATE of one row by id that only sets the columns given a value and increments the row's version column, so a
+ * change needs no prior read and doesn't rewrite the columns it leaves alone. Given the version the change is based
+ * on, or the values other columns must still have, the row is only updated if it still matches. With no column to
+ * set nothing is written and the version stays; the row is only checked to exist and match.
+ */
+final class PartialUpdate {
+
+   private final String table;
+
+   private final List<String> columns = new ArrayList<>();
+
+   private final List<Object> values = new ArrayList<>();
+
+   private final List<String> conditions = new ArrayList<>();
+
+   private final List<Object> conditionValues = new ArrayList<>();
+
+   PartialUpdate(final String table) {
+      this.table = table;
+   }
+
+   /**
+    * Set a column, unless the value is null.
+    *
+    * @param column column name
+    * @param value new value, null to keep the current one
+    * @return this update
+    */
+   PartialUpdate set(final String column, final Object value) {
+      if (value != null) {
+         columns.add(column);
+         values.add(value);
+      }
+
+      return this;
+   }
+
+   /**
+    * Only update the row if a column has a value, unless the value is null.
+    *
+    * @param column column name
+    * @param value value the column must have, null for no condition
+    * @return this update
+    */
+   PartialUpdate where(final String column, final Object value) {
+      if (value != null) {
+         conditions.add(column);
+         conditionValues.add(value);
+      }
+
+      return this;
+   }
+
+   /**
+    * Run the update.
+    *
+    * @param jdbcTemplate template to run it with
+    * @param id id of the row
+    * @param version version the change is based on, null to update the row whatever its version
+    * @return 1 if the row was updated, or matches when there is nothing to set, 0 if it doesn't exist, has another
+    *     version or fails a condition
+    */
+   int execute(final JdbcTemplate jdbcTemplate, final int id, final Long version) {
+      final StringBuilder sql = new StringBuilder();
+      final List<Object> args = new ArrayList<>(values);
+      if (columns.isEmpty()) {
+         sql.append("SELECT COUNT(*) FROM ").append(table).append(" WHERE id = ?");
+      }
+      else {
+         sql.append("UPDATE ").append(table).append(" SET ");
+         for (String column : columns) {
+            sql.append(column).append(" = ?, ");
+         }
+
+         sql.append("version = version + 1 WHERE id = ?");
+      }
+      args.add(id);
+
+      if (version != null) {
+         sql.append(" AND version = ?");
+         args.add(version);
+      }
+
+      for (int i = 0; i < conditions.size(); i++) {
+         sql.append(" AND ").append(conditions.get(i)).append(" = ?");
+         args.add(conditionValues.get(i));
+      }
+
+      return columns.isEmpty()
+            ? jdbcTemplate.queryForObject(sql.toString(), Integer.class, args.toArray())
+            : jdbcTemplate.update(sql.toString(), args.toArray());
+   }
+}
@@ -4,10 +4,22 @@ import app.model.Playlist;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface PlaylistDao extends JpaRepository<Playlist, Integer> {
+public interface PlaylistDao extends JpaRepository<Playlist, Integer>, PlaylistDaoCustom {
    List<Playlist> findByNameLikeAndGenreLike(final String name, final String genre);
    
    List<Playlist> findByUserId(final int id);
+
+   @Query("SELECT DISTINCT p FROM PlaylistSong ps, Playlist p WHERE p.id = ps.playlistId AND ps.songId = :songId "
+         + "AND p.id > :afterId AND p.isPrivate = false ORDER BY p.id")
+   List<Playlist> findPublicBySongId(@Param("songId") final int songId, @Param("afterId") final int afterId,
+                                     final Pageable page);
+
+   @Query("SELECT COUNT(DISTINCT ps.playlistId) FROM PlaylistSong ps, Playlist p WHERE p.id = ps.playlistId "
+         + "AND ps.songId = :songId AND p.isPrivate = false")
+   long countPublicBySongId(@Param("songId") final int songId);
 }
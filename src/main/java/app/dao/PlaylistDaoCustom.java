@@ -0,0 +1,28 @@
+package app.dao;
+
+/**
+ * Playlist queries that Spring Data can't derive, implemented in PlaylistDaoImpl.
+ */
+public interface PlaylistDaoCustom {
+
+   /**
+    * Update the given fields of a playlist with one statement, without loading it first.
+    *
+    * @param id playlist id
+    * @param version version the change is based on, null to update the playlist whatever its version
+    * @param name new name, null to keep it
+    * @param genre new genre, null to keep it
+    * @param isPrivate new privacy, null to keep it
+    * @return 1 if the playlist was updated, 0 if it doesn't exist or has another version
+    */
+   int updatePartially(int id, Long version, String name, String genre, Boolean isPrivate);
+
+   /**
+    * Delete a playlist and the rows of its songs, with two statements in one transaction and without loading it
+    * first.
+    *
+    * @param id playlist id
+    * @return 1 if the playlist was deleted, 0 if it doesn't exist
+    */
+   int deleteRowById(int id);
+}
@@ -0,0 +1,32 @@
+package app.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+public class PlaylistDaoImpl implements PlaylistDaoCustom {
+
+   private static final String DELETE_PLAYLIST_SONGS = "DELETE FROM Playlist_Song WHERE playlist_id = ?";
+   private static final String DELETE_PLAYLIST = "DELETE FROM Playlist WHERE id = ?";
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Override
+   public int updatePartially(final int id, final Long version, final String name, final String genre,
+                              final Boolean isPrivate) {
+      return new PartialUpdate("Playlist")
+            .set("name", name)
+            .set("genre", genre)
+            .set("private", isPrivate)
+            .execute(jdbcTemplate, id, version);
+   }
+
+   @Override
+   @Transactional
+   public int deleteRowById(final int id) {
+      jdbcTemplate.update(DELETE_PLAYLIST_SONGS, id);
+
+      return jdbcTemplate.update(DELETE_PLAYLIST, id);
+   }
+}
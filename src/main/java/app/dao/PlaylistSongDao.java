@@ -2,10 +2,28 @@ package app.dao;
 
 import app.model.PlaylistSong;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface PlaylistSongDao extends JpaRepository<PlaylistSong, Integer> {
+public interface PlaylistSongDao extends JpaRepository<PlaylistSong, Integer>, PlaylistSongDaoCustom {
    Optional<PlaylistSong> findByPlaylistIdAndSongId(final int songId, final int playlistId);
+
+   @Query("SELECT ps.songId FROM PlaylistSong ps WHERE ps.playlistId = :playlistId ORDER BY ps.id")
+   List<Integer> findSongIdsByPlaylistId(@Param("playlistId") int playlistId);
+
+   @Query("SELECT ps.songId, SUM(p.totalListens) FROM PlaylistSong ps, Playlist p "
+         + "WHERE p.id = ps.playlistId AND ps.songId IN :songIds GROUP BY ps.songId")
+   List<Object[]> sumListensBySongIds(@Param("songIds") Collection<Integer> songIds);
+
+   @Modifying
+   @Transactional
+   @Query("DELETE FROM PlaylistSong ps WHERE ps.id = :id")
+   int deleteRowById(@Param("id") final int id);
 }
@@ -0,0 +1,17 @@
+package app.dao;
+
+import app.util.IntIntHashMap;
+
+/**
+ * PlaylistSong queries that Spring Data can't derive, implemented in PlaylistSongDaoImpl.
+ */
+public interface PlaylistSongDaoCustom {
+
+   /**
+    * Stream the playlist and song id of every row, without building entities.
+    *
+    * @param consumer receives each row's playlist id and song id, grouped by playlist, each playlist's rows in the
+    *                 order they were added
+    */
+   void forEachPlaylistSong(IntIntHashMap.IntIntConsumer consumer);
+}
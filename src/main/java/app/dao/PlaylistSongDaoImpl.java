@@ -0,0 +1,31 @@
+package app.dao;
+
+import app.util.IntIntHashMap;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public class PlaylistSongDaoImpl implements PlaylistSongDaoCustom {
+
+   private static final String SELECT_PLAYLIST_SONGS =
+         "SELECT playlist_id, song_id FROM Playlist_Song ORDER BY playlist_id, id";
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Override
+   public void forEachPlaylistSong(final IntIntHashMap.IntIntConsumer consumer) {
+      jdbcTemplate.query(connection -> {
+         final PreparedStatement statement = connection.prepareStatement(SELECT_PLAYLIST_SONGS,
+               ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+         // Makes MySQL Connector/J stream the rows instead of holding the whole result in memory
+         statement.setFetchSize(Integer.MIN_VALUE);
+
+         return statement;
+      }, (RowCallbackHandler) row -> consumer.accept(row.getInt(1), row.getInt(2)));
+   }
+}
@@ -5,7 +5,16 @@ import app.model.Room;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface RoomDao extends JpaRepository<Room, Integer> {
+public interface RoomDao extends JpaRepository<Room, Integer>, RoomDaoCustom {
    List<Room> findByNameStartingWith(String room);
+
+   @Modifying
+   @Transactional
+   @Query("DELETE FROM Room r WHERE r.id = :id")
+   int deleteRowById(@Param("id") final int id);
 }
@@ -0,0 +1,22 @@
+package app.dao;
+
+import app.model.Room;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Room queries that Spring Data can't derive, implemented in RoomDaoImpl.
+ */
+public interface RoomDaoCustom {
+
+   /**
+    * Write the name, privacy, playlist and version of existing rooms as one JDBC batch, without loading them
+    * first. A room is only written if it is still stored at the version its changes were based on.
+    *
+    * @param rooms rooms to write, by id
+    * @param baseVersions stored version each room's changes were based on, by room id
+    * @return rows updated for each room, 0 for rooms deleted or written at another version since
+    */
+   int[] updateAll(List<Room> rooms, Map<Integer, Long> baseVersions);
+}
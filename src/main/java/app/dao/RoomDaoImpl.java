@@ -0,0 +1,49 @@
+package app.dao;
+
+import app.model.Room;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class RoomDaoImpl implements RoomDaoCustom {
+
+   // Skips rooms written since the change was based on them, e.g. by another node
+   private static final String UPDATE_ROOM =
+         "UPDATE Room SET name = ?, private = ?, playlist_id = ?, version = ? WHERE id = ? AND version = ?";
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Override
+   public int[] updateAll(final List<Room> rooms, final Map<Integer, Long> baseVersions) {
+      return jdbcTemplate.batchUpdate(UPDATE_ROOM, new BatchPreparedStatementSetter() {
+         @Override
+         public void setValues(final PreparedStatement statement, final int i) throws SQLException {
+            final Room room = rooms.get(i);
+            statement.setString(1, room.getName());
+            statement.setBoolean(2, room.isPrivate());
+            if (room.getPlaylistId() == null) {
+               statement.setNull(3, Types.INTEGER);
+            }
+            else {
+               statement.setInt(3, room.getPlaylistId());
+            }
+            statement.setLong(4, room.getVersion());
+            statement.setInt(5, room.getId());
+            statement.setLong(6, baseVersions.get(room.getId()));
+         }
+
+         @Override
+         public int getBatchSize() {
+            return rooms.size();
+         }
+      });
+   }
+}
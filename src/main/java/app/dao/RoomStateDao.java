@@ -0,0 +1,8 @@
+package app.dao;
+
+import app.model.RoomState;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RoomStateDao extends JpaRepository<RoomState, Integer> {
+}
@@ -2,13 +2,25 @@ package app.dao;
 
 import app.model.Song;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface SongDao extends JpaRepository<Song, Integer> {
    Optional<Song> findByReference(String reference);
 
    List<Song> findByTitleContaining(String title);
+
+   long countByIdIn(Collection<Integer> ids);
+
+   @Modifying
+   @Transactional
+   @Query("DELETE FROM Song s WHERE s.id = :id")
+   int deleteRowById(@Param("id") final int id);
 }
@@ -6,10 +6,12 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface UserDao extends JpaRepository<User, Integer> {
+public interface UserDao extends JpaRepository<User, Integer>, UserDaoCustom {
    Optional<User> findByUsername(String username);
 
    Optional<User> findByEmail(String email);
@@ -21,4 +23,8 @@ public interface UserDao extends JpaRepository<User, Integer> {
 
    List<User> findByUsernameStartingWith(String username);
 
-}
\ No newline at end of file
+   @Modifying
+   @Transactional
+   @Query("DELETE FROM User u WHERE u.id = :id")
+   int deleteRowById(@Param("id") final int id);
+}
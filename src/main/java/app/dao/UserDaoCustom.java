@@ -0,0 +1,20 @@
+package app.dao;
+
+/**
+ * User queries that Spring Data can't derive, implemented in UserDaoImpl.
+ */
+public interface UserDaoCustom {
+
+   /**
+    * Update the given fields of a user with one statement, without loading it first.
+    *
+    * @param id user id
+    * @param version version the change is based on, null to update the user whatever its version
+    * @param email new email, null to keep it
+    * @param passwordHash new password hash, null to keep it
+    * @param oldPasswordHash password hash the user must still have for the update to apply, null for no check
+    * @return 1 if the user was updated, 0 if it doesn't exist, has another version or another password hash
+    * @throws org.springframework.dao.DuplicateKeyException if another user has the email
+    */
+   int updatePartially(int id, Long version, String email, String passwordHash, String oldPasswordHash);
+}
@@ -0,0 +1,20 @@
+package app.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class UserDaoImpl implements UserDaoCustom {
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Override
+   public int updatePartially(final int id, final Long version, final String email, final String passwordHash,
+                              final String oldPasswordHash) {
+      return new PartialUpdate("User")
+            .set("email", email)
+            .set("password_hash", passwordHash)
+            .where("password_hash", oldPasswordHash)
+            .execute(jdbcTemplate, id, version);
+   }
+}
@@ -5,10 +5,13 @@ import app.validation.Validator;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import static app.constant.FieldConstants.VERSION;
+
 @ControllerAdvice
 public class ApiExceptionHandler extends ResponseEntityExceptionHandler {
 
@@ -38,6 +41,17 @@ public class ApiExceptionHandler extends ResponseEntityExceptionHandler {
       return validator.getResponseEntity();
    }
 
+   /**
+    * Handles an entity saved through Hibernate after another update changed it, which its version shows.
+    *
+    * @param ex exception naming the entity
+    * @return Response representing a conflict on the version
+    */
+   @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+   public final ResponseEntity handleOptimisticLockingFailure(final ObjectOptimisticLockingFailureException ex) {
+      return validator.chain(false, ValidationError.CONFLICT, VERSION).getResponseEntity();
+   }
+
    /**
     * Handles all other exceptions.
     *
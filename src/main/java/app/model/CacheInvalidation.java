@@ -0,0 +1,41 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "Cache_Invalidation")
+public class CacheInvalidation {
+
+   @Id
+   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   private Long id;
+
+   // Node that made the change, so it can skip its own invalidations
+   @Column
+   private String node;
+
+   // Type of the changed entity, e.g. song or playlist
+   @Column
+   private String entity;
+
+   @Column(name = "entity_id")
+   private Integer entityId;
+
+   // Epoch millis on the publishing node, for measuring how long the invalidation took to arrive
+   @Column(name = "published_at")
+   private long publishedAt;
+}
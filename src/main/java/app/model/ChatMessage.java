@@ -0,0 +1,46 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "Chat_Message")
+public class ChatMessage {
+
+   @JsonIgnore
+   @Id
+   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   private Integer id;
+
+   @Column(name = "room_id")
+   private Integer roomId;
+
+   @Column(name = "user_id")
+   private Integer userId;
+
+   @Column
+   private String text;
+
+   // Epoch millis
+   @Column(name = "sent_at")
+   private long sentAt;
+
+   // Position in the room's chat, clients pass the last one they saw to catch up. Saved so it survives a restart
+   @Column
+   private long sequence;
+}
@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
@@ -18,6 +19,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Builder
@@ -42,7 +46,10 @@ public class PasswordReset {
 
    @Setter(AccessLevel.NONE)
    @JsonIgnore
+   @ToString.Exclude
+   @EqualsAndHashCode.Exclude
    @OneToOne(fetch = FetchType.LAZY)
+   @LazyToOne(LazyToOneOption.NO_PROXY)
    @JoinColumn(name = "user_id", referencedColumnName = "id", updatable = false, insertable = false)
    private User user;
 }
@@ -4,8 +4,10 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import lombok.ToString;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -15,13 +17,19 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -34,7 +42,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class Playlist {
 
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "Playlist")
+   @GenericGenerator(name = "Playlist", strategy = PooledIdGenerator.NAME,
+         parameters = @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "Playlist"))
    private Integer id;
 
    private String name;
@@ -53,13 +63,22 @@ public class Playlist {
    @Column(name = "date_created")
    private ZonedDateTime dateCreated;
 
+   // Incremented by every update, so an update based on an older read can be refused
+   @Version
+   private Long version;
+
    @Setter(AccessLevel.NONE)
    @JsonIgnore
+   @ToString.Exclude
+   @EqualsAndHashCode.Exclude
    @ManyToOne(fetch = FetchType.LAZY)
+   @LazyToOne(LazyToOneOption.NO_PROXY)
    @JoinColumn(name = "user_id", referencedColumnName = "id", updatable = false, insertable = false)
    private User user;
 
    @JsonIgnore
+   @ToString.Exclude
+   @EqualsAndHashCode.Exclude
    @ManyToMany(cascade = {CascadeType.ALL})
    @JoinTable(name = "playlist_song", joinColumns = {@JoinColumn(name = "playlist_id")},
          inverseJoinColumns = {@JoinColumn(name = "song_id")})
@@ -0,0 +1,26 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of playlists, with the total number of playlists across all pages and the cursor to ask for the page
+ * after it.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PlaylistPage {
+
+   private List<Playlist> playlists;
+
+   private long total;
+
+   // Null on the last page
+   private String nextCursor;
+}
@@ -8,10 +8,13 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
 @Builder
 @Data
 @AllArgsConstructor
@@ -21,7 +24,9 @@ import javax.persistence.Table;
 public class PlaylistSong {
 
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "Playlist_Song")
+   @GenericGenerator(name = "Playlist_Song", strategy = PooledIdGenerator.NAME,
+         parameters = @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "Playlist_Song"))
    private Integer id;
 
    @Column(name = "playlist_id")
@@ -0,0 +1,57 @@
+package app.model;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Hands out entity ids from blocks reserved in the Id_Sequence table, which has one row per table holding the
+ * first id of the next free block. Reserving a block is one short transaction of its own; ids in it are then
+ * handed out in memory, so Hibernate knows an entity's id before inserting it and can batch inserts, which it can't
+ * with IDENTITY columns. Blocks are ids.block-size ids, or ids.block-size.{table} for one table, both set under
+ * spring.jpa.properties. Every node reserves its own blocks, so ids are unique but only in insertion order per node,
+ * and the rest of a node's block is skipped when it restarts.
+ */
+public class PooledIdGenerator extends TableGenerator {
+
+   public static final String NAME = "app.model.PooledIdGenerator";
+
+   static final String TABLE = "Id_Sequence";
+   static final String BLOCK_SIZE = "ids.block-size";
+   static final int DEFAULT_BLOCK_SIZE = 50;
+
+   @Override
+   public void configure(final Type type, final Properties params, final ServiceRegistry serviceRegistry)
+         throws MappingException {
+      final Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+
+      params.setProperty(TABLE_PARAM, TABLE);
+      // The row holds the low end of the next block, so its value is always above every id handed out
+      params.setProperty(OPT_PARAM, "pooled-lo");
+      params.setProperty(INCREMENT_PARAM,
+            String.valueOf(getBlockSize(settings, params.getProperty(SEGMENT_VALUE_PARAM))));
+
+      super.configure(type, params, serviceRegistry);
+   }
+
+   /**
+    * Get the block size of a table.
+    *
+    * @param settings Hibernate settings
+    * @param table table the ids are for, the generator's segment value
+    * @return ids.block-size.{table}, else ids.block-size, else the default
+    */
+   static int getBlockSize(final Map<?, ?> settings, final String table) {
+      Object size = settings.get(BLOCK_SIZE + "." + table);
+      if (size == null) {
+         size = settings.get(BLOCK_SIZE);
+      }
+
+      return size == null ? DEFAULT_BLOCK_SIZE : Integer.parseInt(size.toString().trim());
+   }
+}
@@ -0,0 +1,26 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A song waiting in a Room's shared queue.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueuedSong {
+
+   private int songId;
+
+   // Id of the user who added the song
+   private int addedBy;
+
+   // Epoch millis
+   private long addedAt;
+
+   private int votes;
+}
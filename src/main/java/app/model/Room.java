@@ -8,9 +8,14 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
 
 @Builder
 @Data
@@ -21,7 +26,9 @@ import javax.persistence.Table;
 public class Room {
 
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "Room")
+   @GenericGenerator(name = "Room", strategy = PooledIdGenerator.NAME,
+         parameters = @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "Room"))
    private Integer id;
 
    private String name;
@@ -34,4 +41,12 @@ public class Room {
 
    @Column(name = "playlist_id")
    private Integer playlistId;
+
+   // Incremented by every update, so an update based on an older read can be refused
+   @Version
+   private Long version;
+
+   // Number of members currently in the room, filled in from RoomPresenceService
+   @Transient
+   private long listenerCount;
 }
@@ -0,0 +1,23 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of rooms, with the cursor to ask for the page after it.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoomPage {
+
+   private List<Room> rooms;
+
+   // Null on the last page
+   private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Everything a node holds in memory for a room, sent to the room's new owner when the cluster changes.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoomSnapshot {
+   private int roomId;
+   private RoomState state;
+   private List<ChatMessage> messages;
+   private List<QueuedSong> queue;
+}
@@ -0,0 +1,48 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Live playback state of a Room. Kept in memory while the room is active and saved once it goes idle, so it
+ * picks up where it left off when it next goes live. Times are epoch milliseconds on the server clock.
+ */
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "Room_State")
+public class RoomState {
+
+   @Id
+   @Column(name = "room_id")
+   private Integer roomId;
+
+   @Column(name = "song_id")
+   private Integer songId;
+
+   // Index of the current song in the room's playlist
+   @Column(name = "queue_position")
+   private int queuePosition;
+
+   // Time at which the current song was at position 0, only meaningful while playing
+   @Column(name = "started_at")
+   private long startedAt;
+
+   // Position in the current song when it was paused
+   @Column(name = "position_ms")
+   private long positionMs;
+
+   private boolean paused;
+
+   // Incremented on every change to the room so clients can ignore stale updates and catch up from a version
+   private long version;
+}
@@ -0,0 +1,49 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Message sent to a room's live listeners, as JSON or as a RoomSyncCodec frame depending on the connection's
+ * subprotocol. A snapshot carries the whole room; the other types are changes and only carry what changed along
+ * with the new playback state.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RoomSyncMessage {
+
+   public enum Type {
+      SNAPSHOT,
+      STATE,
+      ROOM,
+      SONGS;
+
+      @JsonValue
+      public String getName() {
+         return name().toLowerCase(Locale.ROOT);
+      }
+   }
+
+   private Type type;
+
+   // Version of the room after this message
+   private long version;
+
+   // Server time the message was built, in epoch milliseconds
+   private long time;
+
+   private Room room;
+   private List<Song> songs;
+   private RoomState state;
+}
@@ -3,18 +3,23 @@ package app.model;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Builder
@@ -26,7 +31,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class Song {
 
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "Song")
+   @GenericGenerator(name = "Song", strategy = PooledIdGenerator.NAME,
+         parameters = @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "Song"))
    private Integer id;
 
    private String title;
@@ -34,7 +41,13 @@ public class Song {
    @Column(unique = true)
    private String reference;
 
+   // Length of the song, used to move rooms on to the next song; null if unknown
+   @Column(name = "duration_ms")
+   private Integer durationMs;
+
    @JsonIgnore
+   @ToString.Exclude
+   @EqualsAndHashCode.Exclude
    @ManyToMany(mappedBy = "songs")
    private List<Playlist> playlists;
 }
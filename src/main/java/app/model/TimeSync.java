@@ -0,0 +1,30 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Server side of one NTP-style clock sample. The client records when it sent the request and when the reply
+ * arrived, and feeds all four times to a ClockOffsetEstimator. All times are epoch milliseconds, clientTime on the
+ * client's clock and the others on the server's.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TimeSync {
+
+   // Set to "time" on replies over the live connection, so they can be told apart from room messages
+   private String type;
+
+   // Client time the request was sent, echoed back so the client doesn't have to track requests
+   private long clientTime;
+
+   private long receiveTime;
+   private long transmitTime;
+}
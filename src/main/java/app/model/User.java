@@ -9,9 +9,13 @@ import lombok.ToString;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -24,7 +28,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class User {
 
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "User")
+   @GenericGenerator(name = "User", strategy = PooledIdGenerator.NAME,
+         parameters = @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "User"))
    private Integer id;
 
    @Column(unique = true)
@@ -37,4 +43,8 @@ public class User {
    @ToString.Exclude
    @Column(name = "password_hash")
    private String passwordHash;
+
+   // Incremented by every update, so an update based on an older read can be refused
+   @Version
+   private Long version;
 }
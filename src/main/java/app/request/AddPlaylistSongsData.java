@@ -0,0 +1,10 @@
+package app.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AddPlaylistSongsData {
+   private List<Integer> songIds;
+}
@@ -0,0 +1,9 @@
+package app.request;
+
+import lombok.Data;
+
+@Data
+public class ChatMessageData {
+   private int userId;
+   private String text;
+}
@@ -6,4 +6,5 @@ import lombok.Data;
 public class CreateSongData {
    private String title;
    private String reference;
+   private Integer durationMs;
 }
@@ -0,0 +1,9 @@
+package app.request;
+
+import lombok.Data;
+
+@Data
+public class QueueSongData {
+   private int userId;
+   private int songId;
+}
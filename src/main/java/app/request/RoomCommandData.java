@@ -0,0 +1,22 @@
+package app.request;
+
+import lombok.Data;
+
+@Data
+public class RoomCommandData {
+
+   /**
+    * Messages a listener can send over the live connection. Everything except HEARTBEAT and TIME is a playback
+    * command only the room owner can send.
+    */
+   public enum Type {
+      PLAY, PAUSE, SEEK, NEXT, PREVIOUS, SELECT, HEARTBEAT, TIME
+   }
+
+   private Type type;
+   private Long positionMs;
+   private Integer queuePosition;
+
+   // Client time a TIME message was sent, in epoch milliseconds
+   private Long clientTime;
+}
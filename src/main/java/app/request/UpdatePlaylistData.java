@@ -12,4 +12,6 @@ public class UpdatePlaylistData {
        to null with a wrapper. */
    private Boolean isPrivate;
    private String genre;
+   // Version of the entity the change is based on; if given, the update fails when it has changed since
+   private Long version;
 }
@@ -10,4 +10,6 @@ public class UpdateRoomData {
    private Integer playlistId;
    @JsonProperty
    private Boolean isPrivate;
+   // Version of the entity the change is based on; if given, the update fails when it has changed since
+   private Long version;
 }
@@ -8,4 +8,6 @@ public class UpdateUserData {
    private String oldPassword;
    private String password;
    private String role;
+   // Version of the entity the change is based on; if given, the update fails when it has changed since
+   private Long version;
 }
@@ -0,0 +1,41 @@
+package app.service;
+
+import app.model.ChatMessage;
+import app.util.ChatRingBuffer;
+import lombok.Getter;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * A room's chat. Posted messages wait in the inbox until the room's writer drains them into the history and
+ * sends them out, so the history is only ever written by one thread at a time.
+ */
+@Getter
+class ChatRoom {
+
+   private final int roomId;
+   private final ChatRingBuffer history;
+   private final Set<WebSocketSession> subscribers = ConcurrentHashMap.newKeySet();
+   private final Queue<ChatMessage> inbox = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger inboxSize = new AtomicInteger();
+
+   // Set while a drain is queued or running on the writer, so posts only schedule one at a time
+   private final AtomicBoolean draining = new AtomicBoolean();
+
+   // Runs this room's drains one at a time and in order, on a pool shared by every room
+   private final Executor writer;
+
+   ChatRoom(final int roomId, final int capacity, final Executor writer) {
+      this.roomId = roomId;
+      this.history = new ChatRingBuffer(capacity);
+      this.writer = writer;
+   }
+}
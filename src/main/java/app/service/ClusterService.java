@@ -0,0 +1,276 @@
+package app.service;
+
+import app.exception.ApiException;
+import app.model.RoomSnapshot;
+import app.util.ConsistentHashRing;
+import app.validation.ValidationError;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Decides which node owns each room. Members are the configured base URLs that answer health checks, placed
+ * on a consistent-hash ring so a member joining or leaving only moves the rooms next to it. When the ring
+ * changes, rooms this node no longer owns are snapshotted (playback state, chat and queue), sent to their new
+ * owner and closed here; their listeners reconnect and are routed to the new owner.
+ */
+@Service
+public class ClusterService {
+
+   public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(ClusterService.class);
+
+   private static final String ROOM_MOVED = "Room moved";
+
+   @Autowired
+   private RoomSessionService roomSessionService;
+
+   @Autowired
+   private RoomChatService roomChatService;
+
+   @Autowired
+   private RoomQueueService roomQueueService;
+
+   @Autowired
+   private RestTemplate clusterRestTemplate;
+
+   @Value("${cluster.enabled:false}")
+   private boolean enabled;
+
+   @Value("${cluster.self:}")
+   private String self;
+
+   @Value("${cluster.members:}")
+   private String[] members;
+
+   @Value("${cluster.virtual-nodes:160}")
+   private int virtualNodes;
+
+   @Value("${cluster.health-check-ms:2000}")
+   private long healthCheckInterval;
+
+   @Value("${cluster.secret:}")
+   private String secret;
+
+   private volatile ConsistentHashRing<String> ring;
+
+   private ScheduledExecutorService healthChecker;
+
+   /**
+    * Start checking the configured members when clustering is enabled.
+    */
+   @PostConstruct
+   public void init() {
+      if (!enabled) {
+         return;
+      }
+
+      if (StringUtils.isBlank(self)) {
+         throw new IllegalStateException("cluster.self must be set when cluster.enabled is true");
+      }
+
+      if (StringUtils.isEmpty(secret)) {
+         throw new IllegalStateException("cluster.secret must be set when cluster.enabled is true");
+      }
+
+      ring = new ConsistentHashRing<>(ImmutableList.of(self), virtualNodes);
+      healthChecker = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("cluster-health").setDaemon(true).build());
+      healthChecker.scheduleWithFixedDelay(this::checkMembers, 0, healthCheckInterval, TimeUnit.MILLISECONDS);
+   }
+
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   public String getSelf() {
+      return self;
+   }
+
+   public String getSecret() {
+      return secret;
+   }
+
+   /**
+    * Check if this node owns the room.
+    *
+    * @param roomId room id
+    * @return true if the room's state lives on this node, always true when clustering is disabled
+    */
+   public boolean isLocal(final int roomId) {
+      return !enabled || self.equals(getOwner(roomId));
+   }
+
+   /**
+    * Get the base URL of the node that owns the room.
+    *
+    * @param roomId room id
+    * @return base URL of the owner
+    */
+   public String getOwner(final int roomId) {
+      return enabled ? ring.getOwner(roomId) : self;
+   }
+
+   /**
+    * Get the members currently on the ring.
+    *
+    * @return base URLs of the live members
+    */
+   public List<String> getLiveMembers() {
+      return enabled ? ring.getMembers() : ImmutableList.of(self);
+   }
+
+   /**
+    * Check if a request comes from another cluster member.
+    *
+    * @param sharedSecret secret sent with the request
+    * @return true if clustering is enabled and the secret matches the configured one
+    */
+   public boolean isTrusted(final String sharedSecret) {
+      return enabled && StringUtils.isNotEmpty(secret) && sharedSecret != null
+            && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+            sharedSecret.getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Take over a room handed off by another node.
+    *
+    * @param snapshot the room's in-memory state on the previous owner
+    * @param sharedSecret secret sent by the previous owner
+    * @throws ApiException if the secret doesn't match the configured one
+    */
+   public void acceptHandoff(final RoomSnapshot snapshot, final String sharedSecret) {
+      if (!isTrusted(sharedSecret)) {
+         throw new ApiException("Cluster secret does not match", ValidationError.FORBIDDEN, SECRET_HEADER);
+      }
+
+      if (snapshot.getState() != null) {
+         roomSessionService.restore(snapshot.getState());
+      }
+
+      if (snapshot.getMessages() != null) {
+         roomChatService.restore(snapshot.getRoomId(), snapshot.getMessages());
+      }
+
+      if (snapshot.getQueue() != null) {
+         roomQueueService.restore(snapshot.getRoomId(), snapshot.getQueue());
+      }
+   }
+
+   /**
+    * Hand every room off to the remaining members before this node stops.
+    */
+   @PreDestroy
+   public void shutdown() {
+      if (healthChecker == null) {
+         return;
+      }
+
+      healthChecker.shutdownNow();
+      final List<String> remaining = ring.getMembers().stream()
+            .filter(member -> !member.equals(self))
+            .collect(Collectors.toList());
+      if (!remaining.isEmpty()) {
+         updateRing(remaining);
+      }
+   }
+
+   /**
+    * Runs on the health checker. Rebuilds the ring if any member came up or went down since the last check.
+    */
+   void checkMembers() {
+      final List<String> live = Arrays.stream(members)
+            .filter(member -> member.equals(self) || isHealthy(member))
+            .collect(Collectors.toList());
+
+      if (!live.contains(self)) {
+         live.add(self);
+      }
+
+      if (!new LinkedHashSet<>(live).equals(new LinkedHashSet<>(ring.getMembers()))) {
+         updateRing(live);
+      }
+   }
+
+   private boolean isHealthy(final String member) {
+      try {
+         return clusterRestTemplate.getForEntity(member + "/cluster/health", String.class)
+               .getStatusCode().is2xxSuccessful();
+      } catch (RestClientException ex) {
+         return false;
+      }
+   }
+
+   private void updateRing(final List<String> live) {
+      final ConsistentHashRing<String> updated = new ConsistentHashRing<>(live, virtualNodes);
+      ring = updated;
+      LOGGER.info("Cluster members changed to {}", updated.getMembers());
+
+      final Set<Integer> roomIds = new LinkedHashSet<>(roomSessionService.getLiveRoomIds());
+      roomIds.addAll(roomChatService.getRoomIds());
+      roomIds.addAll(roomQueueService.getRoomIds());
+
+      for (Integer roomId : roomIds) {
+         final String owner = updated.getOwner(roomId);
+         if (!self.equals(owner)) {
+            handOff(roomId, owner);
+         }
+      }
+   }
+
+   private void handOff(final int roomId, final String owner) {
+      final RoomSnapshot snapshot = RoomSnapshot.builder()
+            .roomId(roomId)
+            .state(roomSessionService.getState(roomId).orElse(null))
+            .messages(roomChatService.getLocalMessages(roomId).orElse(null))
+            .queue(roomQueueService.getLocalSongs(roomId).orElse(null))
+            .build();
+
+      final HttpHeaders headers = new HttpHeaders();
+      headers.set(SECRET_HEADER, secret);
+
+      try {
+         final ResponseEntity<String> response = clusterRestTemplate.exchange(
+               owner + "/cluster/rooms/" + roomId + "/handoff", HttpMethod.POST, new HttpEntity<>(snapshot, headers),
+               String.class);
+         if (!response.getStatusCode().is2xxSuccessful()) {
+            LOGGER.warn("Handoff of room {} to {} failed: {}", roomId, owner, response.getStatusCode());
+         }
+      } catch (RestClientException ex) {
+         // The new owner starts the room from scratch, which is no worse than this node going down
+         LOGGER.warn("Handoff of room {} to {} failed: {}", roomId, owner, ex.getMessage());
+      }
+
+      roomSessionService.close(roomId, ROOM_MOVED);
+      roomChatService.close(roomId, ROOM_MOVED);
+      roomQueueService.close(roomId);
+   }
+}
@@ -0,0 +1,155 @@
+package app.service;
+
+import app.dao.CacheInvalidationDao;
+import app.model.CacheInvalidation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Invalidations through the database every node already shares. Publishing inserts a row per invalidation into
+ * Cache_Invalidation; every node polls for rows after the last one it read, every invalidation.db.poll-ms, so
+ * invalidations arrive within about one poll interval. An auto-increment id can commit after a higher one, so ids
+ * skipped over are looked up again on each poll for up to invalidation.db.gap-timeout-ms before being given up on.
+ * Each node deletes rows older than invalidation.db.retention-ms once per retention period.
+ */
+@Service
+@ConditionalOnProperty(name = "invalidation.transport", havingValue = "db")
+public class DbInvalidationTransport implements InvalidationTransport {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(DbInvalidationTransport.class);
+
+   // Most skipped ids waited on at once; the oldest are given up on first
+   private static final int MAX_GAPS = 1000;
+
+   @Autowired
+   private CacheInvalidationDao cacheInvalidationDao;
+
+   @Value("${invalidation.db.poll-ms:200}")
+   private long pollInterval;
+
+   @Value("${invalidation.db.batch-size:500}")
+   private int batchSize;
+
+   @Value("${invalidation.db.gap-timeout-ms:10000}")
+   private long gapTimeout;
+
+   @Value("${invalidation.db.retention-ms:600000}")
+   private long retention;
+
+   private Consumer<CacheInvalidation> listener;
+
+   // Highest id delivered, only touched by the poller
+   private long cursor;
+
+   // Skipped ids below the cursor, each with when it was first missed, in that order
+   private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+   private long lastPruned;
+
+   private ScheduledExecutorService poller;
+
+   @Override
+   public void publish(final List<CacheInvalidation> invalidations) {
+      cacheInvalidationDao.saveAll(invalidations);
+   }
+
+   /**
+    * Start polling for the rows inserted from now on.
+    *
+    * @param listener called once per invalidation received
+    */
+   @Override
+   public void start(final Consumer<CacheInvalidation> listener) {
+      this.listener = listener;
+      cursor = cacheInvalidationDao.findMaxId();
+      lastPruned = System.currentTimeMillis();
+
+      poller = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("invalidation-poller").setDaemon(true).build());
+      poller.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   @PreDestroy
+   public void stop() {
+      if (poller != null) {
+         poller.shutdownNow();
+      }
+   }
+
+   @Override
+   public String getName() {
+      return "db";
+   }
+
+   /**
+    * Runs on the poller. Delivers skipped rows that have since committed, then every row after the cursor, then
+    * prunes old rows if it is time to.
+    */
+   void poll() {
+      try {
+         final long now = System.currentTimeMillis();
+         pollGaps(now);
+
+         List<CacheInvalidation> rows;
+         do {
+            rows = cacheInvalidationDao.findByIdGreaterThanOrderById(cursor, PageRequest.of(0, batchSize));
+            for (CacheInvalidation row : rows) {
+               for (long skipped = Math.max(cursor + 1, row.getId() - MAX_GAPS); skipped < row.getId(); skipped++) {
+                  gaps.put(skipped, now);
+               }
+               cursor = row.getId();
+               listener.accept(row);
+            }
+         } while (rows.size() == batchSize);
+
+         final Iterator<Long> oldest = gaps.keySet().iterator();
+         while (gaps.size() > MAX_GAPS) {
+            oldest.next();
+            oldest.remove();
+         }
+
+         if (now - lastPruned >= retention) {
+            cacheInvalidationDao.deletePublishedBefore(now - retention);
+            lastPruned = now;
+         }
+      } catch (RuntimeException ex) {
+         // Keeps the poller scheduled; the rows are read again on the next poll
+         LOGGER.warn("Polling cache invalidations failed", ex);
+      }
+   }
+
+   private void pollGaps(final long now) {
+      if (gaps.isEmpty()) {
+         return;
+      }
+
+      for (CacheInvalidation late : cacheInvalidationDao.findByIdIn(new ArrayList<>(gaps.keySet()))) {
+         if (gaps.remove(late.getId()) != null) {
+            listener.accept(late);
+         }
+      }
+
+      gaps.values().removeIf(missedAt -> now - missedAt > gapTimeout);
+   }
+}
@@ -0,0 +1,62 @@
+package app.service;
+
+import app.model.Room;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A public room in the discovery index and the activity its score is computed from. Everything is only changed
+ * under the DiscoverableRoom's monitor, except that readers may see the rank of a score being replaced.
+ */
+@Getter
+@Setter
+class DiscoverableRoom {
+
+   private final int roomId;
+
+   private Room room;
+
+   private long listenerCount;
+
+   // Chat messages, each counting for half as much every message half-life, as of activityUpdatedAt
+   private double messageActivity;
+   private long activityUpdatedAt;
+
+   // Last time someone joined, chatted or the room changed, 0 if not since this node started
+   private long lastActiveAt;
+
+   // Position in the ranking, replaced whenever the score changes
+   private volatile Rank rank;
+
+   // Set once the room left the index, so a late update doesn't rank it again
+   private boolean removed;
+
+   DiscoverableRoom(final Room room) {
+      this.roomId = room.getId();
+      this.room = room;
+   }
+
+   /**
+    * Immutable ranking key: highest score first, ties broken by room id so every room has its own position.
+    */
+   @Getter
+   @EqualsAndHashCode
+   static final class Rank implements Comparable<Rank> {
+
+      private final double score;
+      private final int roomId;
+
+      Rank(final double score, final int roomId) {
+         this.score = score;
+         this.roomId = roomId;
+      }
+
+      @Override
+      public int compareTo(final Rank other) {
+         final int byScore = Double.compare(other.score, score);
+
+         return byScore != 0 ? byScore : Integer.compare(roomId, other.roomId);
+      }
+   }
+}
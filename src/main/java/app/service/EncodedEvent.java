@@ -0,0 +1,23 @@
+package app.service;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * An event that has already been encoded, so it can be sent to any number of subscribers without building or
+ * serializing it again for each one.
+ */
+@Getter
+class EncodedEvent {
+
+   // The event's text and data, in the order they are written
+   private final Set<ResponseBodyEmitter.DataWithMediaType> parts;
+
+   EncodedEvent(final SseEmitter.SseEventBuilder builder) {
+      this.parts = builder.build();
+   }
+}
@@ -0,0 +1,37 @@
+package app.service;
+
+import app.util.RoomSyncCodec;
+import lombok.Getter;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * A message for a room's listeners, encoded once in each format so fan-out only picks the frame matching each
+ * connection's subprotocol.
+ */
+@Getter
+class EncodedRoomMessage {
+
+   private final TextMessage text;
+
+   // Null for messages only sent as JSON, e.g. queue and chat updates
+   private final byte[] binary;
+
+   EncodedRoomMessage(final TextMessage text, final byte[] binary) {
+      this.text = text;
+      this.binary = binary;
+   }
+
+   /**
+    * Get the frame to send to the subscriber. Binary frames are wrapped for every send since sending consumes
+    * the buffer.
+    */
+   WebSocketMessage<?> forSubscriber(final WebSocketSession subscriber) {
+      return binary != null && RoomSyncCodec.BINARY_PROTOCOL.equals(subscriber.getAcceptedProtocol())
+            ? new BinaryMessage(binary)
+            : text;
+   }
+}
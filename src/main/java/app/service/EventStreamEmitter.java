@@ -0,0 +1,77 @@
+package app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Emitter of one event stream subscription. SseEmitter's send(Object, MediaType) wraps what it is given in a new
+ * data event, so the parts of an EncodedEvent are sent through ResponseBodyEmitter, which writes them as they
+ * are; the response gets the same content type SseEmitter gives it.
+ * Writes to the response block until the client takes them, so each subscription writes on its own writer, one
+ * at a time: a client that stops reading holds one pool thread, for at most the container's write timeout, and the
+ * other subscribers of its topic aren't kept waiting behind it.
+ */
+class EventStreamEmitter extends ResponseBodyEmitter {
+
+   private static final MediaType TEXT_EVENT_STREAM = new MediaType(MediaType.TEXT_EVENT_STREAM,
+         StandardCharsets.UTF_8);
+
+   // Sends this subscription's events one at a time and in order, on a pool shared by every subscription
+   private final Executor writer;
+
+   private final int queueLimit;
+
+   private final AtomicInteger queued = new AtomicInteger();
+
+   EventStreamEmitter(final Long timeout, final Executor writer, final int queueLimit) {
+      super(timeout);
+      this.writer = writer;
+      this.queueLimit = queueLimit;
+   }
+
+   /**
+    * Queue a write to this subscription, unless queueLimit writes are already waiting, i.e. the client stopped
+    * reading.
+    *
+    * @param write sends one event
+    * @return false if the write was refused
+    */
+   boolean offer(final Runnable write) {
+      if (queued.incrementAndGet() > queueLimit) {
+         queued.decrementAndGet();
+         return false;
+      }
+
+      writer.execute(() -> {
+         try {
+            write.run();
+         } finally {
+            queued.decrementAndGet();
+         }
+      });
+      return true;
+   }
+
+   /**
+    * End the subscription once the writes already queued are done, without waiting for them.
+    */
+   void completeAfterWrites() {
+      writer.execute(this::complete);
+   }
+
+   @Override
+   protected void extendResponse(final ServerHttpResponse outputMessage) {
+      super.extendResponse(outputMessage);
+
+      final HttpHeaders headers = outputMessage.getHeaders();
+      if (headers.getContentType() == null) {
+         headers.setContentType(TEXT_EVENT_STREAM);
+      }
+   }
+}
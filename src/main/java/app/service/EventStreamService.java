@@ -0,0 +1,253 @@
+package app.service;
+
+import app.exception.ApiException;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.EVENTS;
+
+/**
+ * Server-Sent Events feeds for rooms and playlists, so clients can be pushed changes instead of polling for them.
+ * Each event is serialized once no matter how many subscribers it goes to, and is handed to each subscriber's
+ * writer on a shared pool, so a mutation only pays for queueing it. A subscriber with events.queue-size events
+ * still waiting to be written has stopped reading and is dropped. Subscriptions are async requests that hold no
+ * thread; while nothing changes they only receive a periodic heartbeat.
+ */
+@Service
+public class EventStreamService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamService.class);
+
+   private static final EncodedEvent HEARTBEAT = new EncodedEvent(SseEmitter.event().comment("heartbeat"));
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${events.timeout-ms:1800000}")
+   private long timeout;
+
+   @Value("${events.heartbeat-ms:15000}")
+   private long heartbeatInterval;
+
+   @Value("${events.max-subscribers:10000}")
+   private int maxSubscribers;
+
+   @Value("${events.queue-size:64}")
+   private int queueSize;
+
+   // Topics are dropped with their last subscriber, so publishing to an unwatched room or playlist is free
+   private final ConcurrentMap<String, EventTopic> topics = new ConcurrentHashMap<>();
+
+   private final AtomicInteger subscriberCount = new AtomicInteger();
+
+   private final ExecutorService writerPool = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(),
+         new ThreadFactoryBuilder().setNameFormat("event-stream-%d").setDaemon(true).build());
+
+   private ScheduledExecutorService heartbeats;
+
+   /**
+    * Start sending heartbeats to idle subscribers.
+    */
+   @PostConstruct
+   public void init() {
+      heartbeats = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("event-stream-heartbeat").setDaemon(true).build());
+      heartbeats.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatInterval, heartbeatInterval,
+            TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Get the topic of a room's events.
+    *
+    * @param roomId room id
+    * @return topic name
+    */
+   public static String roomTopic(final int roomId) {
+      return "rooms/" + roomId;
+   }
+
+   /**
+    * Get the topic of a playlist's events.
+    *
+    * @param playlistId playlist id
+    * @return topic name
+    */
+   public static String playlistTopic(final int playlistId) {
+      return "playlists/" + playlistId;
+   }
+
+   /**
+    * Subscribe to a topic's events. The subscription ends when the client disconnects, after events.timeout-ms
+    * (clients reconnect on their own) or when the topic is closed.
+    *
+    * @param topic topic name
+    * @return emitter to return from the controller
+    * @throws ApiException if this node already has events.max-subscribers subscriptions
+    */
+   public ResponseBodyEmitter subscribe(final String topic) {
+      if (subscriberCount.incrementAndGet() > maxSubscribers) {
+         subscriberCount.decrementAndGet();
+         throw new ApiException("Too many event subscribers, try again later", ValidationError.TOO_MANY_REQUESTS,
+               EVENTS);
+      }
+
+      final EventStreamEmitter emitter = new EventStreamEmitter(timeout,
+            MoreExecutors.newSequentialExecutor(writerPool), queueSize);
+      emitter.onCompletion(() -> unsubscribe(topic, emitter));
+      emitter.onTimeout(() -> unsubscribe(topic, emitter));
+      emitter.onError(ex -> unsubscribe(topic, emitter));
+
+      topics.compute(topic, (name, existing) -> {
+         final EventTopic eventTopic = existing != null ? existing : newTopic();
+         eventTopic.getSubscribers().add(emitter);
+         return eventTopic;
+      });
+
+      return emitter;
+   }
+
+   /**
+    * Send an event to every subscriber of a topic. Returns once the event is queued; does nothing if the topic
+    * has no subscribers.
+    *
+    * @param topic topic name
+    * @param type event name
+    * @param data event data, sent as JSON
+    */
+   public void publish(final String topic, final String type, final Object data) {
+      final EventTopic eventTopic = topics.get(topic);
+
+      if (eventTopic == null) {
+         return;
+      }
+
+      final String json;
+      try {
+         json = objectMapper.writeValueAsString(data);
+      } catch (JsonProcessingException ex) {
+         LOGGER.error("Encoding {} event for {} failed", type, topic, ex);
+         return;
+      }
+
+      // Numbered on the writer so ids go out in order
+      eventTopic.getWriter().execute(() -> send(topic, eventTopic, new EncodedEvent(SseEmitter.event()
+            .id(String.valueOf(eventTopic.getLastEventId().incrementAndGet()))
+            .name(type)
+            .data(json))));
+   }
+
+   /**
+    * Check if a topic has subscribers on this node, e.g. to skip building an event nobody would receive.
+    *
+    * @param topic topic name
+    * @return true if the topic has at least one subscriber
+    */
+   public boolean hasSubscribers(final String topic) {
+      return topics.containsKey(topic);
+   }
+
+   /**
+    * End every subscription to a topic, e.g. after the room or playlist was deleted.
+    *
+    * @param topic topic name
+    */
+   public void close(final String topic) {
+      final EventTopic eventTopic = topics.remove(topic);
+
+      if (eventTopic != null) {
+         subscriberCount.addAndGet(-eventTopic.getSubscribers().size());
+         eventTopic.getWriter().execute(() -> eventTopic.getSubscribers()
+               .forEach(EventStreamEmitter::completeAfterWrites));
+      }
+   }
+
+   public int getSubscriberCount() {
+      return subscriberCount.get();
+   }
+
+   @PreDestroy
+   public void shutdown() {
+      if (heartbeats != null) {
+         heartbeats.shutdownNow();
+      }
+      writerPool.shutdownNow();
+   }
+
+   private EventTopic newTopic() {
+      return new EventTopic(MoreExecutors.newSequentialExecutor(writerPool));
+   }
+
+   private void unsubscribe(final String topic, final EventStreamEmitter emitter) {
+      final AtomicBoolean removed = new AtomicBoolean();
+
+      // Removed inside compute so it can't race with close counting the topic's subscribers
+      topics.computeIfPresent(topic, (name, eventTopic) -> {
+         removed.set(eventTopic.getSubscribers().remove(emitter));
+         return eventTopic.getSubscribers().isEmpty() ? null : eventTopic;
+      });
+
+      if (removed.get()) {
+         subscriberCount.decrementAndGet();
+      }
+   }
+
+   private void sendHeartbeats() {
+      topics.forEach((topic, eventTopic) -> eventTopic.getWriter().execute(() -> send(topic, eventTopic,
+            HEARTBEAT)));
+   }
+
+   /**
+    * Runs on the topic's writer, only queueing the event for each subscriber. A subscriber too far behind is
+    * dropped, its subscription ending after the events it was already given.
+    */
+   private void send(final String topic, final EventTopic eventTopic, final EncodedEvent event) {
+      for (EventStreamEmitter emitter : eventTopic.getSubscribers()) {
+         if (!emitter.offer(() -> write(topic, emitter, event))) {
+            unsubscribe(topic, emitter);
+            emitter.completeAfterWrites();
+         }
+      }
+   }
+
+   /**
+    * Runs on the subscriber's writer. A subscriber that can't be written to has disconnected, so it is dropped.
+    */
+   private void write(final String topic, final EventStreamEmitter emitter, final EncodedEvent event) {
+      try {
+         // Held across the parts, as SseEmitter.send(SseEventBuilder) does, so they go out together
+         synchronized (emitter) {
+            for (ResponseBodyEmitter.DataWithMediaType part : event.getParts()) {
+               emitter.send(part.getData(), part.getMediaType());
+            }
+         }
+      } catch (IOException | IllegalStateException ex) {
+         unsubscribe(topic, emitter);
+      }
+   }
+}
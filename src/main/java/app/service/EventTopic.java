@@ -0,0 +1,27 @@
+package app.service;
+
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The event stream subscribers of one room or playlist.
+ */
+@Getter
+class EventTopic {
+
+   private final Set<EventStreamEmitter> subscribers = ConcurrentHashMap.newKeySet();
+
+   // Id of the last event sent, only incremented by the writer. Lets clients tell if they missed any
+   private final AtomicLong lastEventId = new AtomicLong();
+
+   // Hands this topic's events to its subscribers one at a time and in order, on a pool shared by every topic
+   private final Executor writer;
+
+   EventTopic(final Executor writer) {
+      this.writer = writer;
+   }
+}
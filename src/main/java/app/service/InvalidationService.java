@@ -0,0 +1,213 @@
+package app.service;
+
+import app.model.CacheInvalidation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Keeps the per-node caches of songs, playlists, rooms and users consistent across the nodes of a deployment.
+ * Services publish the ids of the entities they change, after the change is written, and subscribe their caches
+ * to the entity types they hold; every other node then evicts the matching entries. The node making a change
+ * evicts its own entries directly and ignores its invalidations coming back; caches no service evicts directly
+ * subscribe to every change instead, this node's included.
+ * The transport is picked with invalidation.transport: db polls a shared table, multicast sends UDP datagrams,
+ * and none, the default, turns invalidations off. Lag is measured from the publishing node's clock to the
+ * receiving node's, so it includes any skew between them.
+ */
+@Service
+public class InvalidationService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(InvalidationService.class);
+
+   @Autowired(required = false)
+   private InvalidationTransport transport;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   private final String node = UUID.randomUUID().toString();
+
+   private final Map<String, List<IntConsumer>> listeners = new ConcurrentHashMap<>();
+
+   private final Map<String, List<IntConsumer>> allListeners = new ConcurrentHashMap<>();
+
+   private final AtomicLong published = new AtomicLong();
+
+   private final AtomicLong received = new AtomicLong();
+
+   private final AtomicLong totalLagMillis = new AtomicLong();
+
+   private final AtomicLong maxLagMillis = new AtomicLong();
+
+   /**
+    * Register the metrics and start receiving invalidations.
+    */
+   @PostConstruct
+   public void init() {
+      if (transport == null) {
+         return;
+      }
+
+      final String name = transport.getName();
+      FunctionCounter.builder("invalidation.published", published, AtomicLong::get)
+            .tag("transport", name)
+            .register(meterRegistry);
+      FunctionCounter.builder("invalidation.received", received, AtomicLong::get)
+            .tag("transport", name)
+            .register(meterRegistry);
+      Gauge.builder("invalidation.lag.avg", this, InvalidationService::getAverageLagMillis)
+            .tag("transport", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+      Gauge.builder("invalidation.lag.max", this, InvalidationService::getMaxLagMillis)
+            .tag("transport", name)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+
+      transport.start(this::receive);
+   }
+
+   /**
+    * Whether a transport is configured, i.e. whether this node hears about changes made on other nodes.
+    *
+    * @return true if invalidation.transport is db or multicast
+    */
+   public boolean isEnabled() {
+      return transport != null;
+   }
+
+   /**
+    * Evict an entity from the caches of the other nodes, and from this node's caches subscribed to every change.
+    *
+    * @param entity entity type, e.g. FieldConstants.SONG
+    * @param id entity id
+    */
+   public void publish(final String entity, final int id) {
+      publish(entity, ImmutableList.of(id));
+   }
+
+   /**
+    * Evict entities of one type from the caches of the other nodes, and from this node's caches subscribed to every
+    * change. A failure to publish is logged and swallowed, as the change itself is already written; the other
+    * nodes' entries expire with their TTL.
+    *
+    * @param entity entity type, e.g. FieldConstants.SONG
+    * @param ids entity ids
+    */
+   public void publish(final String entity, final Collection<Integer> ids) {
+      for (int id : ids) {
+         notify(allListeners, entity, id);
+      }
+
+      if (transport == null || ids.isEmpty()) {
+         return;
+      }
+
+      final long now = System.currentTimeMillis();
+      final List<CacheInvalidation> invalidations = ids.stream()
+            .map(id -> CacheInvalidation.builder()
+                  .node(node)
+                  .entity(entity)
+                  .entityId(id)
+                  .publishedAt(now)
+                  .build())
+            .collect(Collectors.toList());
+
+      try {
+         transport.publish(invalidations);
+         published.addAndGet(invalidations.size());
+      } catch (RuntimeException ex) {
+         LOGGER.warn("Publishing {} invalidations failed: {}", entity, ex.getMessage());
+      }
+   }
+
+   /**
+    * Call a listener with the id of every entity of a type changed on another node.
+    *
+    * @param entity entity type, e.g. FieldConstants.SONG
+    * @param listener evicts the entity from a cache; runs on the transport's thread, so it must be quick
+    */
+   public void subscribe(final String entity, final IntConsumer listener) {
+      listeners.computeIfAbsent(entity, type -> new CopyOnWriteArrayList<>()).add(listener);
+   }
+
+   /**
+    * Call a listener with the id of every entity of a type changed on any node, this one included.
+    *
+    * @param entity entity type, e.g. FieldConstants.SONG
+    * @param listener evicts the entity from a cache; runs on the publishing or the transport's thread
+    */
+   public void subscribeAll(final String entity, final IntConsumer listener) {
+      allListeners.computeIfAbsent(entity, type -> new CopyOnWriteArrayList<>()).add(listener);
+   }
+
+   /**
+    * Get the average time from publishing an invalidation to receiving it on this node.
+    *
+    * @return average lag in milliseconds, 0 before any invalidation was received
+    */
+   public double getAverageLagMillis() {
+      final long count = received.get();
+
+      return count == 0 ? 0 : (double) totalLagMillis.get() / count;
+   }
+
+   public double getMaxLagMillis() {
+      return maxLagMillis.get();
+   }
+
+   public long getPublished() {
+      return published.get();
+   }
+
+   public long getReceived() {
+      return received.get();
+   }
+
+   /**
+    * Runs on the transport's thread for every invalidation received, including this node's own.
+    */
+   void receive(final CacheInvalidation invalidation) {
+      if (node.equals(invalidation.getNode())) {
+         return;
+      }
+
+      final long lag = Math.max(0, System.currentTimeMillis() - invalidation.getPublishedAt());
+      totalLagMillis.addAndGet(lag);
+      maxLagMillis.accumulateAndGet(lag, Math::max);
+      received.incrementAndGet();
+
+      notify(listeners, invalidation.getEntity(), invalidation.getEntityId());
+      notify(allListeners, invalidation.getEntity(), invalidation.getEntityId());
+   }
+
+   private static void notify(final Map<String, List<IntConsumer>> subscribers, final String entity, final int id) {
+      for (IntConsumer listener : subscribers.getOrDefault(entity, ImmutableList.of())) {
+         try {
+            listener.accept(id);
+         } catch (RuntimeException ex) {
+            LOGGER.error("Invalidating {} {} failed", entity, id, ex);
+         }
+      }
+   }
+}
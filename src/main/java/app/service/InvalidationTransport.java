@@ -0,0 +1,39 @@
+package app.service;
+
+import app.model.CacheInvalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between the nodes of a deployment. Delivery is at most once per node and may
+ * reorder invalidations; a node may also receive its own.
+ */
+public interface InvalidationTransport {
+
+   /**
+    * Send invalidations to every node.
+    *
+    * @param invalidations invalidations to send
+    */
+   void publish(List<CacheInvalidation> invalidations);
+
+   /**
+    * Start delivering the invalidations sent by any node, on a thread of the transport's own.
+    *
+    * @param listener called once per invalidation received
+    */
+   void start(Consumer<CacheInvalidation> listener);
+
+   /**
+    * Stop delivering invalidations.
+    */
+   void stop();
+
+   /**
+    * Get the name the transport's metrics are tagged with.
+    *
+    * @return transport name
+    */
+   String getName();
+}
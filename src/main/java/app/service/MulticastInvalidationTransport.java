@@ -0,0 +1,218 @@
+package app.service;
+
+import app.model.CacheInvalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Invalidations over UDP multicast, for running several instances on one machine or one LAN without a shared
+ * database table. Loopback is on, so instances on the same host receive each other's datagrams, and
+ * invalidation.multicast.ttl defaults to 1 so they never leave the local network. Invalidations arrive in well
+ * under a millisecond but are lost if a datagram is dropped, so this is for local testing, not production.
+ */
+@Service
+@ConditionalOnProperty(name = "invalidation.transport", havingValue = "multicast")
+public class MulticastInvalidationTransport implements InvalidationTransport {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(MulticastInvalidationTransport.class);
+
+   // Keeps datagrams under a typical MTU so they aren't fragmented
+   static final int MAX_DATAGRAM = 1400;
+
+   private static final byte VERSION = 1;
+
+   @Value("${invalidation.multicast.group:239.255.27.1}")
+   private String group;
+
+   @Value("${invalidation.multicast.port:4446}")
+   private int port;
+
+   @Value("${invalidation.multicast.ttl:1}")
+   private int ttl;
+
+   private InetAddress groupAddress;
+
+   private MulticastSocket socket;
+
+   private Thread receiver;
+
+   private volatile boolean running;
+
+   /**
+    * Join the multicast group.
+    */
+   @PostConstruct
+   public void init() {
+      try {
+         groupAddress = InetAddress.getByName(group);
+         socket = new MulticastSocket(port);
+         socket.setTimeToLive(ttl);
+         // false enables loopback
+         socket.setLoopbackMode(false);
+         socket.joinGroup(groupAddress);
+      } catch (IOException ex) {
+         throw new IllegalStateException("Could not join multicast group " + group + ":" + port, ex);
+      }
+   }
+
+   @Override
+   public void publish(final List<CacheInvalidation> invalidations) {
+      for (byte[] datagram : encode(invalidations)) {
+         try {
+            socket.send(new DatagramPacket(datagram, datagram.length, groupAddress, port));
+         } catch (IOException ex) {
+            // Same as the datagram being dropped on the way
+            LOGGER.warn("Sending an invalidation datagram failed", ex);
+         }
+      }
+   }
+
+   @Override
+   public void start(final Consumer<CacheInvalidation> listener) {
+      running = true;
+      receiver = new Thread(() -> receive(listener), "invalidation-multicast");
+      receiver.setDaemon(true);
+      receiver.start();
+   }
+
+   @Override
+   @PreDestroy
+   public void stop() {
+      running = false;
+      if (socket != null) {
+         // Unblocks the receiver
+         socket.close();
+      }
+   }
+
+   @Override
+   public String getName() {
+      return "multicast";
+   }
+
+   /**
+    * Encode invalidations from one node into as few datagrams as fit them: a version byte, the node, the number
+    * of invalidations, then each invalidation's entity, entity id and publish time.
+    *
+    * @param invalidations invalidations published by the same node
+    * @return datagrams of at most MAX_DATAGRAM bytes, unless a single invalidation is larger
+    */
+   static List<byte[]> encode(final List<CacheInvalidation> invalidations) {
+      if (invalidations.isEmpty()) {
+         return Collections.emptyList();
+      }
+
+      final String node = invalidations.get(0).getNode();
+      final int headerSize = 1 + utfSize(node) + 2;
+      final List<byte[]> datagrams = new ArrayList<>();
+
+      int start = 0;
+      while (start < invalidations.size()) {
+         int end = start;
+         int size = headerSize;
+         while (end < invalidations.size()
+               && (end == start || size + entrySize(invalidations.get(end)) <= MAX_DATAGRAM)) {
+            size += entrySize(invalidations.get(end));
+            end++;
+         }
+
+         final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+         try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(node);
+            out.writeShort(end - start);
+            for (CacheInvalidation invalidation : invalidations.subList(start, end)) {
+               out.writeUTF(invalidation.getEntity());
+               out.writeInt(invalidation.getEntityId());
+               out.writeLong(invalidation.getPublishedAt());
+            }
+         } catch (IOException ex) {
+            // Writing to memory doesn't fail
+            throw new UncheckedIOException(ex);
+         }
+
+         datagrams.add(bytes.toByteArray());
+         start = end;
+      }
+
+      return datagrams;
+   }
+
+   /**
+    * Decode a datagram written by encode.
+    *
+    * @param data buffer holding the datagram
+    * @param offset start of the datagram in the buffer
+    * @param length length of the datagram
+    * @return invalidations in the datagram, empty if it was written by another version
+    * @throws IOException if the datagram is truncated
+    */
+   static List<CacheInvalidation> decode(final byte[] data, final int offset, final int length) throws IOException {
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+
+      if (in.readByte() != VERSION) {
+         return Collections.emptyList();
+      }
+
+      final String node = in.readUTF();
+      final int count = in.readUnsignedShort();
+      final List<CacheInvalidation> invalidations = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         invalidations.add(CacheInvalidation.builder()
+               .node(node)
+               .entity(in.readUTF())
+               .entityId(in.readInt())
+               .publishedAt(in.readLong())
+               .build());
+      }
+
+      return invalidations;
+   }
+
+   private void receive(final Consumer<CacheInvalidation> listener) {
+      final byte[] buffer = new byte[65535];
+
+      while (running) {
+         final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+         try {
+            socket.receive(packet);
+            decode(packet.getData(), packet.getOffset(), packet.getLength()).forEach(listener);
+         } catch (IOException ex) {
+            if (running) {
+               LOGGER.warn("Receiving an invalidation datagram failed", ex);
+            }
+         }
+      }
+   }
+
+   private static int entrySize(final CacheInvalidation invalidation) {
+      return utfSize(invalidation.getEntity()) + Integer.BYTES + Long.BYTES;
+   }
+
+   private static int utfSize(final String value) {
+      // Modified UTF-8 differs from UTF-8 only for NUL and supplementary characters, never in node or entity names
+      return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+   }
+}
@@ -0,0 +1,175 @@
+package app.service;
+
+import app.dao.PlaylistSongDao;
+import app.util.OffHeapIntListMap;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.primitives.Ints;
+
+import static app.constant.FieldConstants.PLAYLIST;
+
+/**
+ * Keeps the ids of every playlist's songs, in the order they were added, off the Java heap, so resolving a
+ * playlist's songs doesn't need its Playlist entity and its managed list of Song entities, and the heap doesn't
+ * grow with the number of playlists. Loaded from every PlaylistSong row at startup and kept current as songs are
+ * added to and removed from playlists on this node; playlists changed on other nodes are reloaded from the
+ * database. Without an invalidation transport this node never hears about those changes, so the copy isn't kept and
+ * every read goes to the database instead. The memory held is reported as the playlists.membership.size metric.
+ */
+@Service
+public class PlaylistMembershipService {
+
+   @Autowired
+   private PlaylistSongDao playlistSongDao;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   private OffHeapIntListMap playlists = new OffHeapIntListMap();
+
+   // Whether the songs are read from the copy, false when changes on other nodes can't be heard about
+   private volatile boolean kept;
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   /**
+    * Load the songs of every playlist, reload the playlists changed on other nodes and register the metric.
+    * Nothing is loaded if no invalidation transport is configured.
+    */
+   @PostConstruct
+   public void init() {
+      kept = invalidationService.isEnabled();
+      if (kept) {
+         final OffHeapIntListMap loaded = new OffHeapIntListMap();
+         playlistSongDao.forEachPlaylistSong(loaded::add);
+
+         lock.writeLock().lock();
+         try {
+            playlists = loaded;
+         } finally {
+            lock.writeLock().unlock();
+         }
+
+         invalidationService.subscribe(PLAYLIST, this::reload);
+      }
+
+      Gauge.builder("playlists.membership.size", this, PlaylistMembershipService::getAllocatedBytes)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+   }
+
+   /**
+    * Get the songs of a playlist.
+    *
+    * @param playlistId playlist id
+    * @return ids of the playlist's songs in the order they were added, empty if it has none or doesn't exist
+    */
+   public int[] getSongIds(final int playlistId) {
+      if (!kept) {
+         return Ints.toArray(playlistSongDao.findSongIdsByPlaylistId(playlistId));
+      }
+
+      lock.readLock().lock();
+      try {
+         return playlists.get(playlistId);
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song added to a playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void addSong(final int playlistId, final int songId) {
+      if (!kept) {
+         return;
+      }
+
+      lock.writeLock().lock();
+      try {
+         playlists.add(playlistId, songId);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song removed from a playlist. Ignored if the song isn't in the playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void removeSong(final int playlistId, final int songId) {
+      if (!kept) {
+         return;
+      }
+
+      lock.writeLock().lock();
+      try {
+         playlists.remove(playlistId, songId);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a deleted playlist.
+    *
+    * @param playlistId playlist id
+    */
+   public void removePlaylist(final int playlistId) {
+      if (!kept) {
+         return;
+      }
+
+      lock.writeLock().lock();
+      try {
+         playlists.remove(playlistId);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Get the off-heap memory held.
+    *
+    * @return bytes allocated
+    */
+   public long getAllocatedBytes() {
+      lock.readLock().lock();
+      try {
+         return playlists.getAllocatedBytes();
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Replace a playlist's songs with those in the database, after it changed on another node.
+    */
+   private void reload(final int playlistId) {
+      final int[] songIds = Ints.toArray(playlistSongDao.findSongIdsByPlaylistId(playlistId));
+
+      lock.writeLock().lock();
+      try {
+         playlists.put(playlistId, songIds);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+}
@@ -8,23 +8,40 @@ import app.model.Playlist;
 import app.model.PlaylistSong;
 import app.model.Song;
 import app.request.UpdatePlaylistData;
+import app.util.SingleFlight;
 import app.validation.ValidationError;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
 
 import static app.constant.FieldConstants.PLAYLIST;
 import static app.constant.FieldConstants.PLAYLIST_ID;
 import static app.constant.FieldConstants.PLAYLIST_SONG;
 import static app.constant.FieldConstants.SONG_ID;
+import static app.constant.FieldConstants.VERSION;
 
 @Service
 public class PlaylistService {
 
+   private static final String SONG_ADDED = "songAdded";
+   private static final String SONG_REMOVED = "songRemoved";
+
    @Autowired
    private PlaylistDao playlistDao;
 
@@ -34,6 +51,35 @@ public class PlaylistService {
    @Autowired
    private PlaylistSongDao playlistSongDao;
 
+   @Autowired
+   private EventStreamService eventStreamService;
+
+   @Autowired
+   private RoomSessionService roomSessionService;
+
+   @Autowired
+   private SongRecommendationService songRecommendationService;
+
+   @Autowired
+   private PlaylistSimilarityService playlistSimilarityService;
+
+   @Autowired
+   private PlaylistMembershipService playlistMembershipService;
+
+   @Autowired
+   private RadioService radioService;
+
+   @Autowired
+   private SongService songService;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   // Concurrent reads of one playlist, or of its songs, share a single lookup
+   private final SingleFlight<Integer, Playlist> playlistReads = new SingleFlight<>();
+
+   private final SingleFlight<Integer, List<Song>> playlistSongReads = new SingleFlight<>();
+
    /**
     * Service call for creating a new playlist.
     *
@@ -41,6 +87,7 @@ public class PlaylistService {
     */
    public void createNewPlaylist(final Playlist playlist) {
       playlistDao.save(playlist);
+      invalidationService.publish(PLAYLIST, playlist.getId());
    }
 
    /**
@@ -52,82 +99,176 @@ public class PlaylistService {
     * @throws ApiException if no song exists for the song's id
     */
    public void addSongToPlaylist(final int songId, final int playlistId) {
-      final Optional<Song> song = songDao.findById(songId);
-      final Optional<Playlist> playlist = playlistDao.findById(playlistId);
+      if (!playlistDao.existsById(playlistId)) {
+         throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST_ID);
+      }
 
-      if (!playlist.isPresent()) {
+      if (!songDao.existsById(songId)) {
+         throw new ApiException("Song not found", ValidationError.NOT_FOUND, SONG_ID);
+      }
+
+      final PlaylistSong playlistSong = playlistSongDao.save(PlaylistSong.builder().songId(songId)
+            .playlistId(playlistId).build());
+      playlistMembershipService.addSong(playlistId, songId);
+      playlistSongReads.forget(playlistId);
+      songRecommendationService.addSong(playlistId, songId);
+      playlistSimilarityService.addSong(playlistId, songId);
+      radioService.evict(playlistId);
+      songService.evictPlaylistCounts(ImmutableList.of(songId));
+      invalidationService.publish(PLAYLIST, playlistId);
+      eventStreamService.publish(EventStreamService.playlistTopic(playlistId), SONG_ADDED, playlistSong);
+      roomSessionService.refreshPlaylist(playlistId);
+   }
+
+   /**
+    * Service call to add songs to a playlist. The PlaylistSong rows are inserted in JDBC batches, since their ids are
+    * allocated up front by PooledIdGenerator.
+    *
+    * @param playlistId playlist's id
+    * @param songIds ids of the songs to add, in order; a song listed twice is added twice
+    * @throws ApiException if no playlist exists for the playlist's id
+    * @throws ApiException if no song exists for one of the song ids
+    */
+   public void addSongsToPlaylist(final int playlistId, final List<Integer> songIds) {
+      if (!playlistDao.existsById(playlistId)) {
          throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST_ID);
       }
 
-      if (!song.isPresent()) {
+      final List<Integer> distinctIds = songIds.stream().distinct().collect(Collectors.toList());
+      if (songDao.countByIdIn(distinctIds) != distinctIds.size()) {
          throw new ApiException("Song not found", ValidationError.NOT_FOUND, SONG_ID);
       }
 
-      playlistSongDao.save(PlaylistSong.builder().songId(songId).playlistId(playlistId).build());
+      final List<PlaylistSong> playlistSongs = playlistSongDao.saveAll(songIds.stream()
+            .map(songId -> PlaylistSong.builder().songId(songId).playlistId(playlistId).build())
+            .collect(Collectors.toList()));
+      for (final PlaylistSong playlistSong : playlistSongs) {
+         playlistMembershipService.addSong(playlistId, playlistSong.getSongId());
+         songRecommendationService.addSong(playlistId, playlistSong.getSongId());
+         playlistSimilarityService.addSong(playlistId, playlistSong.getSongId());
+         eventStreamService.publish(EventStreamService.playlistTopic(playlistId), SONG_ADDED, playlistSong);
+      }
+      playlistSongReads.forget(playlistId);
+      radioService.evict(playlistId);
+      songService.evictPlaylistCounts(distinctIds);
+      invalidationService.publish(PLAYLIST, playlistId);
+      roomSessionService.refreshPlaylist(playlistId);
    }
 
    /**
-    * Service call to get a playlist by id.
+    * Service call to get a playlist by id. Concurrent calls for the same playlist share one lookup and the
+    * Playlist it returns.
     *
     * @param id playlist id to check for
     * @return Playlist found by the playlist's id
     * @throws ApiException if no playlist exists for the playlist's id
     */
    public Playlist getPlaylistById(final int id) {
-      final Optional<Playlist> playlist = playlistDao.findById(id);
-
-      if (playlist.isPresent()) {
-         return playlist.get();
-      }
-
-      throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST);
+      return playlistReads.execute(id, () -> loadPlaylist(id));
    }
 
    /**
-    * Get songs in a playlist.
+    * Get songs in a playlist. Concurrent calls for the same playlist share one lookup and the list it returns.
     *
     * @param id Playlist's id
     * @return List of songs for a specific playlist
     * @throws ApiException if no playlist exists for the playlist's id
     */
    public List<Song> getSongsInPlaylist(final int id) {
-      final Optional<Playlist> playlist = playlistDao.findById(id);
+      return playlistSongReads.execute(id, () -> loadSongsInPlaylist(id));
+   }
 
-      if (!playlist.isPresent()) {
-         throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, "playlist");
+   /**
+    * Service call to get the public playlists sharing the most songs with a playlist.
+    *
+    * @param id playlist id
+    * @param limit maximum number of playlists to return
+    * @return List of similar playlists, most similar first
+    * @throws ApiException if no playlist exists for the playlist's id
+    */
+   public List<Playlist> getSimilarPlaylists(final int id, final int limit) {
+      final int[] similarIds = playlistSimilarityService.getSimilar(id, limit);
+
+      if (similarIds.length == 0) {
+         if (!playlistDao.existsById(id)) {
+            throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST);
+         }
+
+         return Collections.emptyList();
       }
 
-      return playlist.get().getSongs();
+      final Map<Integer, Playlist> playlists = playlistDao.findAllById(Ints.asList(similarIds)).stream()
+            .filter(playlist -> !playlist.isPrivate())
+            .collect(Collectors.toMap(Playlist::getId, Function.identity()));
+
+      return Arrays.stream(similarIds)
+            .mapToObj(playlists::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
    }
 
    /**
-    * Service call to update a playlist by id.
+    * Service call to draw the next songs of a playlist's radio.
+    *
+    * @param id playlist id
+    * @param count number of songs to draw
+    * @return List of songs in the order to play them
+    * @throws ApiException if no playlist exists for the playlist's id
+    */
+   public List<Song> getRadio(final int id, final int count) {
+      return radioService.getRadio(id, count);
+   }
+
+   /**
+    * Service call to update a playlist by id. Only the given fields are written, with one statement and without
+    * reading the playlist first.
     *
     * @param id playlist id to check for
     * @param updatePlaylistData contains information to update a playlist
+    * @throws ApiException if no playlist exists for the playlist's id
+    * @throws ApiException if the playlist no longer has the version the update is based on
     */
    public void updatePlaylistById(final int id, final UpdatePlaylistData updatePlaylistData) {
-      final Optional<Playlist> existingPlaylist = playlistDao.findById(id);
+      final String name = StringUtils.isNotBlank(updatePlaylistData.getName()) ? updatePlaylistData.getName() : null;
+      final String genre = StringUtils.isNotBlank(updatePlaylistData.getGenre())
+            ? updatePlaylistData.getGenre() : null;
+
+      if (playlistDao.updatePartially(id, updatePlaylistData.getVersion(), name, genre,
+            updatePlaylistData.getIsPrivate()) == 0) {
+         if (updatePlaylistData.getVersion() != null && playlistDao.existsById(id)) {
+            throw new ApiException("Playlist was changed by another update", ValidationError.CONFLICT, VERSION);
+         }
 
-      if (!existingPlaylist.isPresent()) {
          throw new ApiException("Playlist does not exist", ValidationError.NOT_FOUND, PLAYLIST);
       }
 
-      final Playlist playlist = existingPlaylist.get();
-
-      if (StringUtils.isNotBlank(updatePlaylistData.getName())) {
-         playlist.setName(updatePlaylistData.getName());
+      playlistReads.forget(id);
+      // Whether the privacy changed isn't known without reading the playlist, so the counts go whenever it's set
+      if (updatePlaylistData.getIsPrivate() != null) {
+         songService.evictPlaylistCounts(Ints.asList(playlistMembershipService.getSongIds(id)));
       }
+      invalidationService.publish(PLAYLIST, id);
 
-      if (StringUtils.isNotBlank(updatePlaylistData.getGenre())) {
-         playlist.setGenre(updatePlaylistData.getGenre());
+      // Subscribers get the whole playlist, which is only read if there are any
+      final String topic = EventStreamService.playlistTopic(id);
+      if (eventStreamService.hasSubscribers(topic)) {
+         playlistDao.findById(id).ifPresent(playlist -> eventStreamService.publish(topic, PLAYLIST, playlist));
       }
+   }
 
-      if (updatePlaylistData.getIsPrivate() != null) {
-         playlist.setPrivate(updatePlaylistData.getIsPrivate());
+   /**
+    * Service call to subscribe to a playlist's changes.
+    *
+    * @param id playlist id
+    * @return event stream that receives the playlist when it is updated, and each song added to or removed from it
+    * @throws ApiException if no playlist exists for the playlist's id
+    */
+   public ResponseBodyEmitter subscribeToPlaylist(final int id) {
+      if (!playlistDao.existsById(id)) {
+         throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST);
       }
 
-      playlistDao.save(playlist);
+      return eventStreamService.subscribe(EventStreamService.playlistTopic(id));
    }
 
    /**
@@ -137,13 +278,21 @@ public class PlaylistService {
     * @throws ApiException if no playlist exists for the playlist's id
     */
    public void deletePlaylist(final int id) {
-      final Optional<Playlist> playlist = playlistDao.findById(id);
+      final int[] songIds = playlistMembershipService.getSongIds(id);
 
-      if (!playlist.isPresent()) {
+      if (playlistDao.deleteRowById(id) == 0) {
          throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST_ID);
       }
 
-      playlistDao.delete(playlist.get());
+      playlistReads.forget(id);
+      playlistMembershipService.removePlaylist(id);
+      playlistSongReads.forget(id);
+      songService.evictPlaylistCounts(Ints.asList(songIds));
+      songRecommendationService.removePlaylist(id);
+      playlistSimilarityService.removePlaylist(id);
+      radioService.evict(id);
+      invalidationService.publish(PLAYLIST, id);
+      eventStreamService.close(EventStreamService.playlistTopic(id));
    }
 
    /**
@@ -152,14 +301,24 @@ public class PlaylistService {
     * @param playlistSongId playlist_song id to check for
     */
    public void deleteSongInPlaylist(final int playlistSongId) {
-
+      // The playlist and song are needed afterwards, and MySQL can't return them from the DELETE
       final Optional<PlaylistSong> existingPlaylistSong = playlistSongDao.findById(playlistSongId);
 
-      if (!existingPlaylistSong.isPresent()) {
+      if (!existingPlaylistSong.isPresent() || playlistSongDao.deleteRowById(playlistSongId) == 0) {
          throw new ApiException("Song does not exist in this playlist", ValidationError.NOT_FOUND, PLAYLIST_SONG);
       }
 
-      playlistSongDao.delete(existingPlaylistSong.get());
+      final PlaylistSong playlistSong = existingPlaylistSong.get();
+      playlistMembershipService.removeSong(playlistSong.getPlaylistId(), playlistSong.getSongId());
+      playlistSongReads.forget(playlistSong.getPlaylistId());
+      songRecommendationService.removeSong(playlistSong.getPlaylistId(), playlistSong.getSongId());
+      playlistSimilarityService.removeSong(playlistSong.getPlaylistId(), playlistSong.getSongId());
+      radioService.evict(playlistSong.getPlaylistId());
+      songService.evictPlaylistCounts(ImmutableList.of(playlistSong.getSongId()));
+      invalidationService.publish(PLAYLIST, playlistSong.getPlaylistId());
+      eventStreamService.publish(EventStreamService.playlistTopic(playlistSong.getPlaylistId()), SONG_REMOVED,
+            playlistSong);
+      roomSessionService.refreshPlaylist(playlistSong.getPlaylistId());
    }
 
    /** Service call to get playlists by name or genre.
@@ -171,4 +330,45 @@ public class PlaylistService {
    public List<Playlist> getPlaylistsByFilter(final String name, final String genre) {
       return playlistDao.findByNameLikeAndGenreLike(name, genre);
    }
+
+   /**
+    * Get the single-flight groups of this service's hot reads by name, for their metrics.
+    *
+    * @return single-flight groups
+    */
+   public Map<String, SingleFlight<?, ?>> getSingleFlights() {
+      return ImmutableMap.of("playlist", playlistReads, "playlistSongs", playlistSongReads);
+   }
+
+   private Playlist loadPlaylist(final int id) {
+      final Optional<Playlist> playlist = playlistDao.findById(id);
+
+      if (playlist.isPresent()) {
+         return playlist.get();
+      }
+
+      throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST);
+   }
+
+   private List<Song> loadSongsInPlaylist(final int id) {
+      final int[] songIds = playlistMembershipService.getSongIds(id);
+
+      if (songIds.length == 0) {
+         if (!playlistDao.existsById(id)) {
+            throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, "playlist");
+         }
+
+         return new ArrayList<>();
+      }
+
+      // One query for the distinct songs, then put back in playlist order, repeats included
+      final Map<Integer, Song> songs = songDao.findAllById(Ints.asList(Arrays.stream(songIds).distinct().toArray()))
+            .stream()
+            .collect(Collectors.toMap(Song::getId, Function.identity()));
+
+      return Arrays.stream(songIds)
+            .mapToObj(songs::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+   }
 }
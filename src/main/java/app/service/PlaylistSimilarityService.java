@@ -0,0 +1,199 @@
+package app.service;
+
+import app.dao.PlaylistSongDao;
+import app.util.IntIntHashMap;
+import app.util.IntObjectHashMap;
+import app.util.LshIndex;
+import app.util.MinHash;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds the playlists whose songs overlap most with a playlist's, without comparing it to every other playlist.
+ * Each playlist has a MinHash signature of its song set, kept in an LSH index of playlists.similar.bands bands of
+ * playlists.similar.rows slots; a lookup ranks only the playlists sharing a band with it, by how many signature
+ * slots they agree on. Signatures are built from every PlaylistSong row at startup. Adding a song to a playlist
+ * updates its signature in O(signature length); removing one recomputes it from the playlist's remaining songs.
+ */
+@Service
+public class PlaylistSimilarityService {
+
+   @Autowired
+   private PlaylistSongDao playlistSongDao;
+
+   @Value("${playlists.similar.bands:32}")
+   private int bands;
+
+   @Value("${playlists.similar.rows:3}")
+   private int rows;
+
+   private MinHash minHash;
+
+   private LshIndex index;
+
+   // Playlist id to the ids of its songs, each with the number of times it is in the playlist
+   private IntObjectHashMap<IntIntHashMap> playlists = new IntObjectHashMap<>();
+
+   // Playlist id to the signature it is indexed with; empty playlists have none
+   private IntObjectHashMap<int[]> signatures = new IntObjectHashMap<>();
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   /**
+    * Sign and index every playlist.
+    */
+   @PostConstruct
+   public void init() {
+      lock.writeLock().lock();
+      try {
+         minHash = new MinHash(bands * rows);
+         index = new LshIndex(bands, rows);
+         playlists = new IntObjectHashMap<>();
+         signatures = new IntObjectHashMap<>();
+
+         playlistSongDao.forEachPlaylistSong((playlistId, songId) ->
+               playlists.computeIfAbsent(playlistId, id -> new IntIntHashMap()).addTo(songId, 1));
+
+         playlists.forEach((playlistId, songs) -> {
+            final int[] signature = minHash.signature(songs.keys());
+            signatures.put(playlistId, signature);
+            index.add(playlistId, signature);
+         });
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Get the playlists most similar to a playlist, approximately: a playlist sharing few songs with it may be
+    * missed, while one sharing most of them almost never is.
+    *
+    * @param playlistId playlist id
+    * @param limit maximum number of playlists to return
+    * @return ids of the similar playlists, most similar first, then by id; empty if the playlist has no songs
+    */
+   public int[] getSimilar(final int playlistId, final int limit) {
+      lock.readLock().lock();
+      try {
+         final int[] signature = signatures.get(playlistId);
+
+         if (signature == null) {
+            return new int[0];
+         }
+
+         final IntIntHashMap candidates = index.candidates(signature);
+         candidates.remove(playlistId);
+
+         // Matching slots in the high half and the inverted id in the low half, so one sort ranks both
+         final long[] ranked = new long[candidates.size()];
+         int count = 0;
+         for (int candidate : candidates.keys()) {
+            final int matches = MinHash.matches(signature, signatures.get(candidate));
+            // Sharing a band means agreeing on at least a band's slots; fewer is a bucket hash collision
+            if (matches >= rows) {
+               ranked[count++] = ((long) matches << Integer.SIZE) | (Integer.MAX_VALUE - candidate);
+            }
+         }
+         Arrays.sort(ranked, 0, count);
+
+         final int[] result = new int[Math.min(limit, count)];
+         for (int i = 0; i < result.length; i++) {
+            result[i] = Integer.MAX_VALUE - (int) ranked[count - 1 - i];
+         }
+
+         return result;
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song added to a playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void addSong(final int playlistId, final int songId) {
+      lock.writeLock().lock();
+      try {
+         final IntIntHashMap songs = playlists.computeIfAbsent(playlistId, id -> new IntIntHashMap());
+
+         if (songs.addTo(songId, 1) > 1) {
+            return;
+         }
+
+         final int[] signature = signatures.get(playlistId);
+         final int[] updated = signature == null ? minHash.empty() : signature.clone();
+         if (minHash.add(updated, songId)) {
+            reindex(playlistId, signature, updated);
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song removed from a playlist. Ignored if the song isn't in the playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void removeSong(final int playlistId, final int songId) {
+      lock.writeLock().lock();
+      try {
+         final IntIntHashMap songs = playlists.get(playlistId);
+
+         if (songs == null || !songs.containsKey(songId) || songs.addTo(songId, -1) > 0) {
+            return;
+         }
+
+         if (songs.isEmpty()) {
+            playlists.remove(playlistId);
+            reindex(playlistId, signatures.get(playlistId), null);
+         }
+         else {
+            reindex(playlistId, signatures.get(playlistId), minHash.signature(songs.keys()));
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a deleted playlist.
+    *
+    * @param playlistId playlist id
+    */
+   public void removePlaylist(final int playlistId) {
+      lock.writeLock().lock();
+      try {
+         playlists.remove(playlistId);
+         reindex(playlistId, signatures.get(playlistId), null);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Move a playlist from the buckets of its old signature to those of its new one. Must hold the write lock.
+    */
+   private void reindex(final int playlistId, final int[] signature, final int[] updated) {
+      if (signature != null) {
+         index.remove(playlistId, signature);
+         signatures.remove(playlistId);
+      }
+
+      if (updated != null) {
+         index.add(playlistId, updated);
+         signatures.put(playlistId, updated);
+      }
+   }
+}
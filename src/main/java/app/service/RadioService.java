@@ -0,0 +1,162 @@
+package app.service;
+
+import app.dao.PlaylistDao;
+import app.dao.PlaylistSongDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.Song;
+import app.util.AliasTable;
+import app.util.IntIntHashMap;
+import app.validation.ValidationError;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Ints;
+
+import static app.constant.FieldConstants.PLAYLIST;
+
+/**
+ * Playlist radio: an endless mix of a playlist's songs and the songs most often found in playlists with them.
+ * A song's weight is how many seed songs it shares playlists with, counting each shared playlist, times the log of
+ * how often the playlists holding it are listened to. The weights of a playlist's radio are computed once, from the
+ * co-occurrence matrix and a single listens query, into an alias table that draws each song in O(1); tables are
+ * cached for radio.cache-ttl-ms, up to radio.cache-size playlists, and dropped when the playlist's songs change.
+ */
+@Service
+public class RadioService {
+
+   @Autowired
+   private PlaylistDao playlistDao;
+
+   @Autowired
+   private PlaylistSongDao playlistSongDao;
+
+   @Autowired
+   private SongDao songDao;
+
+   @Autowired
+   private SongRecommendationService songRecommendationService;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Value("${radio.neighbours-per-song:50}")
+   private int neighboursPerSong;
+
+   @Value("${radio.repeat-window:20}")
+   private int repeatWindow;
+
+   @Value("${radio.cache-size:1000}")
+   private long cacheSize;
+
+   @Value("${radio.cache-ttl-ms:600000}")
+   private long cacheTtl;
+
+   private Cache<Integer, RadioStation> stations;
+
+   /**
+    * Create the station cache, dropping the stations of playlists changed on other nodes.
+    */
+   @PostConstruct
+   public void init() {
+      stations = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(cacheTtl, TimeUnit.MILLISECONDS)
+            .build();
+      invalidationService.subscribe(PLAYLIST, stations::invalidate);
+   }
+
+   /**
+    * Draw the next songs of a playlist's radio. No song repeats within radio.repeat-window songs unless the radio
+    * has too few songs to avoid it.
+    *
+    * @param playlistId playlist id
+    * @param count number of songs to draw
+    * @return songs in the order to play them, empty if the playlist has no songs
+    * @throws ApiException if no playlist exists for the playlist's id
+    */
+   public List<Song> getRadio(final int playlistId, final int count) {
+      RadioStation station = stations.getIfPresent(playlistId);
+      if (station == null) {
+         station = build(playlistId);
+         stations.put(playlistId, station);
+      }
+
+      if (station.isEmpty()) {
+         return Collections.emptyList();
+      }
+
+      final int[] picks = station.draw(count, repeatWindow, ThreadLocalRandom.current());
+      final Map<Integer, Song> songs = songDao.findAllById(Ints.asList(Arrays.stream(picks).distinct().toArray()))
+            .stream()
+            .collect(Collectors.toMap(Song::getId, Function.identity()));
+
+      return Arrays.stream(picks)
+            .mapToObj(songs::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Drop a playlist's station, e.g. after its songs changed, so the next draw builds it again.
+    *
+    * @param playlistId playlist id
+    */
+   public void evict(final int playlistId) {
+      stations.invalidate(playlistId);
+   }
+
+   private RadioStation build(final int playlistId) {
+      final List<Integer> seed = playlistSongDao.findSongIdsByPlaylistId(playlistId);
+
+      if (seed.isEmpty()) {
+         if (!playlistDao.existsById(playlistId)) {
+            throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST);
+         }
+
+         return RadioStation.EMPTY;
+      }
+
+      final IntIntHashMap affinity = new IntIntHashMap();
+      for (int songId : seed) {
+         affinity.addTo(songId, 1);
+         songRecommendationService.getRelatedCounts(songId, neighboursPerSong).forEach(affinity::addTo);
+      }
+
+      final int[] songIds = affinity.keys();
+      final IntIntHashMap index = new IntIntHashMap(songIds.length);
+      for (int i = 0; i < songIds.length; i++) {
+         index.addTo(songIds[i], i + 1);
+      }
+
+      final long[] listens = new long[songIds.length];
+      for (Object[] row : playlistSongDao.sumListensBySongIds(Ints.asList(songIds))) {
+         if (row[1] != null) {
+            listens[index.get((Integer) row[0]) - 1] = ((Number) row[1]).longValue();
+         }
+      }
+
+      final double[] weights = new double[songIds.length];
+      for (int i = 0; i < songIds.length; i++) {
+         weights[i] = affinity.get(songIds[i]) * (1 + Math.log1p(Math.max(0, listens[i])));
+      }
+
+      return new RadioStation(songIds, new AliasTable(weights));
+   }
+}
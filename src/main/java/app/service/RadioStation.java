@@ -0,0 +1,64 @@
+package app.service;
+
+import app.util.AliasTable;
+import app.util.IntIntHashMap;
+
+import java.util.Random;
+
+/**
+ * The songs a playlist's radio plays and how likely each is, as an alias table so each draw is O(1).
+ * Immutable once built, so one station serves any number of listeners at once.
+ */
+class RadioStation {
+
+   static final RadioStation EMPTY = new RadioStation(new int[0], null);
+
+   // Redraws of a song played within the repeat window before giving up and playing it again
+   private static final int REDRAWS = 8;
+
+   private final int[] songIds;
+
+   private final AliasTable table;
+
+   RadioStation(final int[] songIds, final AliasTable table) {
+      this.songIds = songIds;
+      this.table = table;
+   }
+
+   boolean isEmpty() {
+      return songIds.length == 0;
+   }
+
+   /**
+    * Draw songs, redrawing one that was played within the last repeatWindow draws. A redraw is rare unless a few
+    * songs carry most of the weight, and bounded, so a draw stays O(1).
+    *
+    * @param count number of songs to draw
+    * @param repeatWindow number of draws a song shouldn't repeat within; capped at half the songs, so that most
+    *                     draws land outside the window
+    * @param random source of randomness
+    * @return song ids in the order to play them
+    */
+   int[] draw(final int count, final int repeatWindow, final Random random) {
+      final int window = Math.min(repeatWindow, songIds.length / 2);
+      final IntIntHashMap recent = new IntIntHashMap(window);
+      final int[] picks = new int[count];
+
+      for (int i = 0; i < count; i++) {
+         int song = songIds[table.sample(random)];
+         for (int redraw = 0; redraw < REDRAWS && recent.containsKey(song); redraw++) {
+            song = songIds[table.sample(random)];
+         }
+
+         picks[i] = song;
+         if (window > 0) {
+            recent.addTo(song, 1);
+            if (i >= window) {
+               recent.addTo(picks[i - window], -1);
+            }
+         }
+      }
+
+      return picks;
+   }
+}
@@ -0,0 +1,419 @@
+package app.service;
+
+import app.dao.ChatMessageDao;
+import app.dao.RoomDao;
+import app.exception.ApiException;
+import app.model.ChatMessage;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.ROOM;
+import static app.constant.FieldConstants.TEXT;
+import static app.constant.FieldConstants.TYPE;
+
+/**
+ * Room chat. Recent history lives in a ring buffer per room, written only by that room's writer, which drains
+ * posted messages in batches and sends each batch to every subscriber as one encoded message. Subscribers
+ * that can't keep up are disconnected rather than buffered without limit. Messages are optionally written
+ * to the database behind the chat, in batches, so posting never waits on MySQL.
+ */
+@Service
+public class RoomChatService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(RoomChatService.class);
+
+   private static final String CHAT = "chat";
+   private static final String MESSAGES = "messages";
+
+   @Autowired
+   private RoomDao roomDao;
+
+   @Autowired
+   private ChatMessageDao chatMessageDao;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Autowired
+   private RoomDiscoveryService roomDiscoveryService;
+
+   @Value("${rooms.chat.history-size:100}")
+   private int historySize;
+
+   @Value("${rooms.chat.inbox-size:1000}")
+   private int inboxLimit;
+
+   @Value("${rooms.chat.batch-size:64}")
+   private int batchSize;
+
+   @Value("${rooms.chat.max-length:500}")
+   private int maxLength;
+
+   @Value("${rooms.chat.persist.enabled:false}")
+   private boolean persist;
+
+   @Value("${rooms.chat.persist.queue-size:10000}")
+   private int persistQueueSize;
+
+   @Value("${rooms.chat.persist.flush-ms:1000}")
+   private long flushInterval;
+
+   @Value("${rooms.chat.persist.batch-size:500}")
+   private int flushBatchSize;
+
+   private final ConcurrentMap<Integer, ChatRoom> rooms = new ConcurrentHashMap<>();
+
+   private final ExecutorService writerPool = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(),
+         new ThreadFactoryBuilder().setNameFormat("room-chat-%d").setDaemon(true).build());
+
+   private final AtomicLong droppedWrites = new AtomicLong();
+
+   private BlockingQueue<ChatMessage> writeBehind;
+
+   private ScheduledExecutorService flusher;
+
+   /**
+    * Start the write-behind flusher when persistence is enabled.
+    */
+   @PostConstruct
+   public void init() {
+      if (!persist) {
+         return;
+      }
+
+      writeBehind = new LinkedBlockingQueue<>(persistQueueSize);
+      flusher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("room-chat-flush").setDaemon(true).build());
+      flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Post a message to a room's chat. Returns as soon as the message is queued; it is added to the history
+    * and sent to subscribers shortly after, in order with the room's other messages.
+    *
+    * @param roomId room id
+    * @param userId id of the user posting
+    * @param text message text
+    * @throws ApiException if no Room exists for given id, the text is too long or the room's chat is backed up
+    */
+   public void post(final int roomId, final int userId, final String text) {
+      if (text.length() > maxLength) {
+         throw new ApiException("Message is too long", ValidationError.BAD_VALUE, TEXT);
+      }
+
+      final ChatRoom room = getRoom(roomId);
+
+      if (room.getInboxSize().incrementAndGet() > inboxLimit) {
+         room.getInboxSize().decrementAndGet();
+         throw new ApiException("Chat is busy, try again", ValidationError.TOO_MANY_REQUESTS, ROOM);
+      }
+
+      room.getInbox().add(ChatMessage.builder()
+            .roomId(roomId)
+            .userId(userId)
+            .text(text)
+            .sentAt(System.currentTimeMillis())
+            .build());
+      scheduleDrain(room);
+      roomDiscoveryService.recordMessage(roomId);
+   }
+
+   /**
+    * Get a room's recent messages.
+    *
+    * @param roomId room id
+    * @param since sequence number of the last message the caller has, 0 for all recent messages
+    * @return messages after since, oldest first
+    * @throws ApiException if no Room exists for given id
+    */
+   public List<ChatMessage> getMessages(final int roomId, final long since) {
+      return getRoom(roomId).getHistory().since(since);
+   }
+
+   /**
+    * Subscribe to a room's chat. Messages after since are sent first, then every new batch as it is posted.
+    *
+    * @param roomId room id
+    * @param subscriber connection to send messages to, should be safe to send to from several threads
+    * @param since sequence number of the last message the subscriber has
+    * @throws ApiException if no Room exists for given id
+    */
+   public void subscribe(final int roomId, final WebSocketSession subscriber, final long since) {
+      final ChatRoom room = getRoom(roomId);
+
+      // On the writer so no batch can slip in between the catch up and the subscription
+      room.getWriter().execute(() -> {
+         final List<ChatMessage> missed = room.getHistory().since(since);
+         if (missed.isEmpty() || send(room, subscriber, encode(missed))) {
+            room.getSubscribers().add(subscriber);
+         }
+      });
+   }
+
+   /**
+    * Unsubscribe from a room's chat.
+    *
+    * @param roomId room id
+    * @param subscriber connection that was passed to subscribe
+    */
+   public void unsubscribe(final int roomId, final WebSocketSession subscriber) {
+      final ChatRoom room = rooms.get(roomId);
+
+      if (room != null) {
+         room.getSubscribers().remove(subscriber);
+      }
+   }
+
+   /**
+    * Disconnect a room's chat subscribers and drop its history, e.g. after the room was deleted.
+    *
+    * @param roomId room id
+    */
+   public void close(final int roomId) {
+      close(roomId, "Room closed");
+   }
+
+   /**
+    * Disconnect a room's chat subscribers with the given reason and drop its history.
+    *
+    * @param roomId room id
+    * @param reason close reason sent to subscribers
+    */
+   public void close(final int roomId, final String reason) {
+      final ChatRoom room = rooms.remove(roomId);
+
+      if (room == null) {
+         return;
+      }
+
+      for (WebSocketSession subscriber : room.getSubscribers()) {
+         disconnect(subscriber, CloseStatus.GOING_AWAY.withReason(reason));
+      }
+   }
+
+   /**
+    * Get the ids of the rooms whose chat is held on this node.
+    *
+    * @return room ids
+    */
+   public List<Integer> getRoomIds() {
+      return new ArrayList<>(rooms.keySet());
+   }
+
+   /**
+    * Get a room's recent messages if its chat is held on this node, without loading it otherwise.
+    *
+    * @param roomId room id
+    * @return messages oldest first, empty if the room's chat is not held here
+    */
+   public Optional<List<ChatMessage>> getLocalMessages(final int roomId) {
+      final ChatRoom room = rooms.get(roomId);
+
+      return room == null ? Optional.empty() : Optional.of(room.getHistory().since(0));
+   }
+
+   /**
+    * Take over a room's history from another node, keeping the messages' sequence numbers. Ignored if the room's
+    * chat is already held on this node.
+    *
+    * @param roomId room id
+    * @param messages the room's recent messages, oldest first
+    */
+   public void restore(final int roomId, final List<ChatMessage> messages) {
+      final ChatRoom room = newRoom(roomId);
+      messages.forEach(room.getHistory()::restore);
+
+      // The history is only appended to before the room is published, so this thread counts as its writer
+      rooms.putIfAbsent(roomId, room);
+   }
+
+   /**
+    * Get the number of persisted messages that were dropped because the write-behind queue was full.
+    *
+    * @return number of dropped messages
+    */
+   public long getDroppedWrites() {
+      return droppedWrites.get();
+   }
+
+   /**
+    * Stop the chat writers, saving whatever is left in the write-behind queue.
+    */
+   @PreDestroy
+   public void shutdown() {
+      writerPool.shutdownNow();
+
+      if (flusher != null) {
+         flusher.shutdownNow();
+         flush();
+      }
+   }
+
+   private ChatRoom getRoom(final int roomId) {
+      final ChatRoom room = rooms.get(roomId);
+
+      return room != null ? room : rooms.computeIfAbsent(roomId, this::open);
+   }
+
+   private ChatRoom open(final int roomId) {
+      if (!roomDao.existsById(roomId)) {
+         throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      final ChatRoom room = newRoom(roomId);
+
+      if (persist) {
+         final List<ChatMessage> saved = new ArrayList<>(
+               chatMessageDao.findByRoomIdOrderByIdDesc(roomId, PageRequest.of(0, historySize)));
+         Collections.reverse(saved);
+         saved.forEach(room.getHistory()::restore);
+      }
+
+      return room;
+   }
+
+   private ChatRoom newRoom(final int roomId) {
+      return new ChatRoom(roomId, historySize, MoreExecutors.newSequentialExecutor(writerPool));
+   }
+
+   private void scheduleDrain(final ChatRoom room) {
+      if (room.getDraining().compareAndSet(false, true)) {
+         room.getWriter().execute(() -> drain(room));
+      }
+   }
+
+   /**
+    * Runs on the room's writer. Moves what is in the inbox into the history, sending it out in batches of
+    * at most batchSize messages. Stops after one inbox worth of messages so a busy room can't hold on to a
+    * pool thread forever.
+    */
+   private void drain(final ChatRoom room) {
+      final List<ChatMessage> batch = new ArrayList<>(batchSize);
+      ChatMessage message;
+      int drained = 0;
+
+      while (drained++ < inboxLimit && (message = room.getInbox().poll()) != null) {
+         room.getInboxSize().decrementAndGet();
+         room.getHistory().append(message);
+         batch.add(message);
+
+         if (batch.size() == batchSize) {
+            publish(room, batch);
+            batch.clear();
+         }
+      }
+
+      if (!batch.isEmpty()) {
+         publish(room, batch);
+      }
+
+      room.getDraining().set(false);
+
+      // Either stopped early, or a post landed after the last poll but before draining was cleared
+      if (!room.getInbox().isEmpty()) {
+         scheduleDrain(room);
+      }
+   }
+
+   private void publish(final ChatRoom room, final List<ChatMessage> batch) {
+      final TextMessage encoded = encode(batch);
+
+      for (WebSocketSession subscriber : room.getSubscribers()) {
+         send(room, subscriber, encoded);
+      }
+
+      if (writeBehind != null) {
+         for (ChatMessage message : batch) {
+            if (!writeBehind.offer(message)) {
+               droppedWrites.incrementAndGet();
+            }
+         }
+      }
+   }
+
+   /**
+    * Send to one subscriber, disconnecting it if it is gone or has fallen too far behind.
+    */
+   private boolean send(final ChatRoom room, final WebSocketSession subscriber, final TextMessage message) {
+      if (!subscriber.isOpen()) {
+         room.getSubscribers().remove(subscriber);
+         return false;
+      }
+
+      try {
+         subscriber.sendMessage(message);
+         return true;
+      } catch (IOException | RuntimeException ex) {
+         room.getSubscribers().remove(subscriber);
+         disconnect(subscriber, CloseStatus.SESSION_NOT_RELIABLE);
+         return false;
+      }
+   }
+
+   private void disconnect(final WebSocketSession subscriber, final CloseStatus status) {
+      try {
+         subscriber.close(status);
+      } catch (IOException ex) {
+         // Already gone
+      }
+   }
+
+   private TextMessage encode(final List<ChatMessage> messages) {
+      try {
+         return new TextMessage(objectMapper.writeValueAsString(ImmutableMap.of(TYPE, CHAT, MESSAGES, messages)));
+      } catch (JsonProcessingException ex) {
+         throw new ApiException("Unable to encode chat messages", ValidationError.INTERNAL_SERVER_ERROR, ex);
+      }
+   }
+
+   /**
+    * Save everything queued for write-behind, one transaction per batch.
+    */
+   private void flush() {
+      final List<ChatMessage> batch = new ArrayList<>(flushBatchSize);
+
+      while (writeBehind.drainTo(batch, flushBatchSize) > 0) {
+         try {
+            chatMessageDao.saveAll(batch);
+         } catch (RuntimeException ex) {
+            droppedWrites.addAndGet(batch.size());
+            LOGGER.error("Saving {} chat messages failed, they are dropped", batch.size(), ex);
+         }
+         batch.clear();
+      }
+   }
+}
@@ -0,0 +1,338 @@
+package app.service;
+
+import app.dao.RoomDao;
+import app.exception.ApiException;
+import app.model.Room;
+import app.model.RoomPage;
+import app.validation.ValidationError;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.CURSOR;
+import static app.constant.FieldConstants.ROOM;
+
+/**
+ * In-memory index of the public rooms, ranked by how active they are right now. A room's score adds up its
+ * listeners, its recent chat messages (each counting half as much every rooms.discovery.message-half-life-ms) and
+ * a bonus for having just been active (halving every rooms.discovery.freshness-half-life-ms). Joins, leaves, chat
+ * messages and room changes each move one room in the ranking in O(log n); the decaying parts are rescored every
+ * rooms.discovery.rescore-ms. Rooms are only read from the database once, at startup.
+ * Listener and chat activity is what this node sees, i.e. that of the rooms it owns.
+ */
+@Service
+public class RoomDiscoveryService {
+
+   // A listener counts as much as this many recent chat messages
+   private static final double LISTENER_WEIGHT = 10;
+
+   // Score of a room that was active just now, before it starts halving
+   private static final double FRESHNESS_WEIGHT = 5;
+
+   private static final String CURSOR_SEPARATOR = ":";
+
+   @Autowired
+   private RoomDao roomDao;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Value("${rooms.discovery.message-half-life-ms:600000}")
+   private long messageHalfLife;
+
+   @Value("${rooms.discovery.freshness-half-life-ms:3600000}")
+   private long freshnessHalfLife;
+
+   @Value("${rooms.discovery.rescore-ms:30000}")
+   private long rescoreInterval;
+
+   private final ConcurrentMap<Integer, DiscoverableRoom> rooms = new ConcurrentHashMap<>();
+
+   private final ConcurrentSkipListSet<DiscoverableRoom.Rank> ranking = new ConcurrentSkipListSet<>();
+
+   private ScheduledExecutorService rescorer;
+
+   /**
+    * Index every public room, start rescoring and follow the rooms changed on other nodes.
+    */
+   @PostConstruct
+   public void init() {
+      for (Room room : roomDao.findAll()) {
+         if (!room.isPrivate()) {
+            index(room, 0);
+         }
+      }
+
+      rescorer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("room-discovery-rescore").setDaemon(true).build());
+      rescorer.scheduleWithFixedDelay(this::rescoreAll, rescoreInterval, rescoreInterval, TimeUnit.MILLISECONDS);
+      invalidationService.subscribe(ROOM, this::reload);
+   }
+
+   /**
+    * Get a page of public rooms, most active first. Rooms that move while a client pages through may show up
+    * twice or be skipped, as the ranking is live.
+    *
+    * @param cursor nextCursor of the previous page, null for the first page
+    * @param limit maximum number of rooms on the page
+    * @return rooms with their listener count, and the cursor of the next page if there is one
+    * @throws ApiException if the cursor is malformed
+    */
+   public RoomPage getRooms(final String cursor, final int limit) {
+      final NavigableSet<DiscoverableRoom.Rank> ranks = cursor == null
+            ? ranking
+            : ranking.tailSet(decodeCursor(cursor), false);
+
+      final List<Room> page = new ArrayList<>(limit);
+      DiscoverableRoom.Rank last = null;
+      boolean more = false;
+      for (DiscoverableRoom.Rank rank : ranks) {
+         final DiscoverableRoom entry = rooms.get(rank.getRoomId());
+         if (entry == null) {
+            continue;
+         }
+
+         if (page.size() == limit) {
+            more = true;
+            break;
+         }
+
+         page.add(toRoom(entry));
+         last = rank;
+      }
+
+      return RoomPage.builder()
+            .rooms(page)
+            .nextCursor(more ? encodeCursor(last) : null)
+            .build();
+   }
+
+   /**
+    * Add a newly created room, if it is public.
+    *
+    * @param room the saved room
+    */
+   public void addRoom(final Room room) {
+      if (!room.isPrivate()) {
+         index(room, System.currentTimeMillis());
+      }
+   }
+
+   /**
+    * Apply an update to a room's details, adding it if it was made public or removing it if it was made private.
+    *
+    * @param room the updated room
+    */
+   public void updateRoom(final Room room) {
+      if (room.isPrivate()) {
+         removeRoom(room.getId());
+         return;
+      }
+
+      final DiscoverableRoom entry = rooms.get(room.getId());
+      if (entry == null) {
+         index(room, System.currentTimeMillis());
+         return;
+      }
+
+      synchronized (entry) {
+         final long now = System.currentTimeMillis();
+         entry.setRoom(room);
+         entry.setLastActiveAt(now);
+         rescore(entry, now);
+      }
+   }
+
+   /**
+    * Remove a room, e.g. after it was deleted.
+    *
+    * @param roomId room id
+    */
+   public void removeRoom(final int roomId) {
+      final DiscoverableRoom entry = rooms.remove(roomId);
+
+      if (entry == null) {
+         return;
+      }
+
+      synchronized (entry) {
+         entry.setRemoved(true);
+         if (entry.getRank() != null) {
+            ranking.remove(entry.getRank());
+         }
+      }
+   }
+
+   /**
+    * Record a room's new listener count. Ignored for rooms that aren't indexed or whose count didn't change.
+    *
+    * @param roomId room id
+    * @param listenerCount number of members in the room
+    */
+   public void setListenerCount(final int roomId, final long listenerCount) {
+      final DiscoverableRoom entry = rooms.get(roomId);
+
+      if (entry == null) {
+         return;
+      }
+
+      synchronized (entry) {
+         if (entry.getListenerCount() == listenerCount) {
+            return;
+         }
+
+         final long now = System.currentTimeMillis();
+         if (listenerCount > entry.getListenerCount()) {
+            entry.setLastActiveAt(now);
+         }
+         entry.setListenerCount(listenerCount);
+         rescore(entry, now);
+      }
+   }
+
+   /**
+    * Record a chat message posted in a room. Ignored for rooms that aren't indexed.
+    *
+    * @param roomId room id
+    */
+   public void recordMessage(final int roomId) {
+      final DiscoverableRoom entry = rooms.get(roomId);
+
+      if (entry == null) {
+         return;
+      }
+
+      synchronized (entry) {
+         final long now = System.currentTimeMillis();
+         entry.setMessageActivity(entry.getMessageActivity()
+               * decay(now - entry.getActivityUpdatedAt(), messageHalfLife) + 1);
+         entry.setActivityUpdatedAt(now);
+         entry.setLastActiveAt(now);
+         rescore(entry, now);
+      }
+   }
+
+   /**
+    * Stop rescoring.
+    */
+   @PreDestroy
+   public void shutdown() {
+      if (rescorer != null) {
+         rescorer.shutdownNow();
+      }
+   }
+
+   /**
+    * Runs on the invalidation transport's thread when another node changed or deleted a room.
+    */
+   void reload(final int roomId) {
+      final Optional<Room> room = roomDao.findById(roomId);
+
+      if (room.isPresent()) {
+         updateRoom(room.get());
+      }
+      else {
+         removeRoom(roomId);
+      }
+   }
+
+   private void index(final Room room, final long lastActiveAt) {
+      final DiscoverableRoom entry = new DiscoverableRoom(room);
+      entry.setLastActiveAt(lastActiveAt);
+
+      synchronized (entry) {
+         if (rooms.putIfAbsent(room.getId(), entry) == null) {
+            rescore(entry, System.currentTimeMillis());
+         }
+      }
+   }
+
+   /**
+    * Runs on the rescorer every rescore interval, so rooms whose activity has died down drop in the ranking.
+    */
+   private void rescoreAll() {
+      final long now = System.currentTimeMillis();
+
+      for (DiscoverableRoom entry : rooms.values()) {
+         synchronized (entry) {
+            rescore(entry, now);
+         }
+      }
+   }
+
+   /**
+    * Move the room to the position of its current score. Must hold the entry's monitor.
+    */
+   private void rescore(final DiscoverableRoom entry, final long now) {
+      if (entry.isRemoved()) {
+         return;
+      }
+
+      final double score = entry.getListenerCount() * LISTENER_WEIGHT
+            + entry.getMessageActivity() * decay(now - entry.getActivityUpdatedAt(), messageHalfLife)
+            + FRESHNESS_WEIGHT * decay(now - entry.getLastActiveAt(), freshnessHalfLife);
+
+      final DiscoverableRoom.Rank rank = new DiscoverableRoom.Rank(score, entry.getRoomId());
+      if (entry.getRank() != null) {
+         ranking.remove(entry.getRank());
+      }
+      ranking.add(rank);
+      entry.setRank(rank);
+   }
+
+   private Room toRoom(final DiscoverableRoom entry) {
+      synchronized (entry) {
+         final Room room = entry.getRoom();
+
+         return Room.builder()
+               .id(room.getId())
+               .name(room.getName())
+               .isPrivate(false)
+               .userId(room.getUserId())
+               .playlistId(room.getPlaylistId())
+               .listenerCount(entry.getListenerCount())
+               .build();
+      }
+   }
+
+   private static double decay(final long elapsed, final long halfLife) {
+      return Math.pow(0.5, (double) Math.max(0, elapsed) / halfLife);
+   }
+
+   private static String encodeCursor(final DiscoverableRoom.Rank rank) {
+      final String position = rank.getScore() + CURSOR_SEPARATOR + rank.getRoomId();
+
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static DiscoverableRoom.Rank decodeCursor(final String cursor) {
+      try {
+         final String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+         final int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+
+         return new DiscoverableRoom.Rank(Double.parseDouble(position.substring(0, separator)),
+               Integer.parseInt(position.substring(separator + 1)));
+      } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+         throw new ApiException("Cursor is invalid", ValidationError.BAD_VALUE, CURSOR);
+      }
+   }
+}
@@ -0,0 +1,37 @@
+package app.service;
+
+import app.util.TimingWheel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Who is in a room right now. Members are keyed by user id, anonymous listeners by negative ids.
+ */
+@Getter
+class RoomPresence {
+
+   private final ConcurrentMap<Integer, Member> members = new ConcurrentHashMap<>();
+   private final LongAdder listenerCount = new LongAdder();
+
+   /**
+    * A member of the room. Connections and expiry are only changed inside a compute on the members map.
+    */
+   @Getter
+   @Setter
+   static class Member {
+
+      private final long joinedAt;
+      private volatile long lastSeen;
+      private int connections;
+      private TimingWheel.Timeout expiry;
+
+      Member(final long now) {
+         this.joinedAt = now;
+         this.lastSeen = now;
+      }
+   }
+}
@@ -0,0 +1,190 @@
+package app.service;
+
+import app.util.TimingWheel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks the members of each room. Members are dropped once they miss heartbeats for the configured ttl.
+ * Joins and leaves only touch the room's own member map, and each member's expiry is a single timeout on
+ * the shared TimingWheel, so busy rooms never block each other and there is no thread per room.
+ */
+@Service
+public class RoomPresenceService {
+
+   @Autowired
+   private TimingWheel timingWheel;
+
+   @Autowired
+   private RoomDiscoveryService roomDiscoveryService;
+
+   @Value("${rooms.presence.ttl-ms:60000}")
+   private long ttl;
+
+   // Never shrinks below one entry per room that has had members, so joins never race with removal
+   private final ConcurrentMap<Integer, RoomPresence> presences = new ConcurrentHashMap<>();
+
+   private final AtomicInteger anonymousIds = new AtomicInteger();
+
+   /**
+    * Add a connection for the member, joining the room if this is their first connection.
+    *
+    * @param roomId room id
+    * @param memberId user id, or an id from nextAnonymousId
+    */
+   public void join(final int roomId, final int memberId) {
+      final RoomPresence presence = presences.computeIfAbsent(roomId, id -> new RoomPresence());
+      final long now = System.currentTimeMillis();
+
+      presence.getMembers().compute(memberId, (id, member) -> {
+         final RoomPresence.Member joined = member != null ? member : newMember(presence, roomId, memberId, now);
+         joined.setConnections(joined.getConnections() + 1);
+         joined.setLastSeen(now);
+         return joined;
+      });
+      roomDiscoveryService.setListenerCount(roomId, presence.getListenerCount().sum());
+   }
+
+   /**
+    * Remove a connection for the member, leaving the room once they have no connections left.
+    *
+    * @param roomId room id
+    * @param memberId id that was passed to join
+    */
+   public void leave(final int roomId, final int memberId) {
+      final RoomPresence presence = presences.get(roomId);
+
+      if (presence == null) {
+         return;
+      }
+
+      presence.getMembers().computeIfPresent(memberId, (id, member) -> {
+         member.setConnections(member.getConnections() - 1);
+         if (member.getConnections() > 0) {
+            return member;
+         }
+
+         member.getExpiry().cancel();
+         presence.getListenerCount().decrement();
+         return null;
+      });
+      roomDiscoveryService.setListenerCount(roomId, presence.getListenerCount().sum());
+   }
+
+   /**
+    * Keep the member in the room for another ttl.
+    *
+    * @param roomId room id
+    * @param memberId id that was passed to join
+    * @return true if the member was in the room, false if they need to join first
+    */
+   public boolean heartbeat(final int roomId, final int memberId) {
+      final RoomPresence presence = presences.get(roomId);
+      final RoomPresence.Member member = presence == null ? null : presence.getMembers().get(memberId);
+
+      if (member == null) {
+         return false;
+      }
+
+      member.setLastSeen(System.currentTimeMillis());
+      return true;
+   }
+
+   /**
+    * Get the number of members currently in the room.
+    *
+    * @param roomId room id
+    * @return number of members, including anonymous listeners
+    */
+   public long getListenerCount(final int roomId) {
+      final RoomPresence presence = presences.get(roomId);
+
+      return presence == null ? 0 : presence.getListenerCount().sum();
+   }
+
+   /**
+    * Get the ids of the users currently in the room.
+    *
+    * @param roomId room id
+    * @return sorted list of user ids, not including anonymous listeners
+    */
+   public List<Integer> getMembers(final int roomId) {
+      final RoomPresence presence = presences.get(roomId);
+
+      if (presence == null) {
+         return Collections.emptyList();
+      }
+
+      return presence.getMembers().keySet().stream()
+            .filter(memberId -> memberId > 0)
+            .sorted()
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Get a member id for a listener that didn't identify themselves.
+    *
+    * @return negative id that is unique for the lifetime of this instance
+    */
+   public int nextAnonymousId() {
+      return -anonymousIds.incrementAndGet();
+   }
+
+   /**
+    * Forget every member of the room, e.g. after the room was deleted.
+    *
+    * @param roomId room id
+    */
+   public void removeRoom(final int roomId) {
+      final RoomPresence presence = presences.remove(roomId);
+
+      if (presence != null) {
+         presence.getMembers().values().forEach(member -> member.getExpiry().cancel());
+      }
+   }
+
+   private RoomPresence.Member newMember(final RoomPresence presence, final int roomId, final int memberId,
+                                        final long now) {
+      final RoomPresence.Member member = new RoomPresence.Member(now);
+      member.setExpiry(timingWheel.schedule(() -> expire(roomId, memberId), ttl, TimeUnit.MILLISECONDS));
+      presence.getListenerCount().increment();
+
+      return member;
+   }
+
+   /**
+    * Runs on the wheel thread once a member's ttl has passed since they joined or were last checked.
+    * Drops them if they haven't sent a heartbeat since, otherwise checks again when the ttl would next run out.
+    */
+   private void expire(final int roomId, final int memberId) {
+      final RoomPresence presence = presences.get(roomId);
+
+      if (presence == null) {
+         return;
+      }
+
+      final long now = System.currentTimeMillis();
+      presence.getMembers().computeIfPresent(memberId, (id, member) -> {
+         final long idle = now - member.getLastSeen();
+         if (idle < ttl) {
+            member.setExpiry(timingWheel.schedule(() -> expire(roomId, memberId), ttl - idle,
+                  TimeUnit.MILLISECONDS));
+            return member;
+         }
+
+         presence.getListenerCount().decrement();
+         return null;
+      });
+      roomDiscoveryService.setListenerCount(roomId, presence.getListenerCount().sum());
+   }
+}
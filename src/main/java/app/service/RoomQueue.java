@@ -0,0 +1,73 @@
+package app.service;
+
+import app.model.QueuedSong;
+import app.util.IndexedPriorityQueue;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A room's shared song queue. Votes are tallied atomically by the threads casting them; the play order and
+ * everything else is only changed by the room's writer, which publishes an immutable snapshot for readers.
+ */
+@Getter
+class RoomQueue {
+
+   private final int roomId;
+
+   // Runs this room's mutations one at a time and in order, on a pool shared by every room
+   private final Executor writer;
+
+   // Queued songs by song id. Added by the thread queueing the song, removed by the writer when it plays
+   private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+   // Play order, only touched by the writer
+   private final IndexedPriorityQueue<Integer> order = new IndexedPriorityQueue<>();
+
+   // Users voting to skip the current song, replaced by the writer when the song changes
+   @Setter
+   private volatile Set<Integer> skipVoters = ConcurrentHashMap.newKeySet();
+
+   // Queue in play order as of the last publish
+   @Setter
+   private volatile List<QueuedSong> snapshot = Collections.emptyList();
+
+   // Set while a publish is queued on the writer, only touched by the writer
+   @Setter
+   private boolean publishPending;
+
+   // Set once the queue was dropped with its room, guarded by the queue's monitor
+   @Setter
+   private boolean closed;
+
+   RoomQueue(final int roomId, final Executor writer) {
+      this.roomId = roomId;
+      this.writer = writer;
+   }
+
+   /**
+    * A queued song and who voted for it.
+    */
+   @Getter
+   static class Entry {
+
+      private final int songId;
+      private final int addedBy;
+      private final long addedAt;
+      private final Set<Integer> voters = ConcurrentHashMap.newKeySet();
+      private final AtomicInteger votes = new AtomicInteger();
+
+      Entry(final int songId, final int addedBy, final long addedAt) {
+         this.songId = songId;
+         this.addedBy = addedBy;
+         this.addedAt = addedAt;
+      }
+   }
+}
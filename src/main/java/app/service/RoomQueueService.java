@@ -0,0 +1,387 @@
+package app.service;
+
+import app.dao.RoomDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.QueuedSong;
+import app.validation.ValidationError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.ROOM;
+import static app.constant.FieldConstants.SONG;
+import static app.constant.FieldConstants.SONG_ID;
+import static app.constant.FieldConstants.TYPE;
+
+/**
+ * Shared song queue of each room. Listeners add songs, upvote them and vote to skip the current song.
+ * Vote tallies are updated atomically on the caller's thread; the play order is an indexed heap owned by the
+ * room's writer, so a vote only costs an O(log n) reprioritization there and readers never take a lock.
+ * After a run of mutations the writer publishes the queue once to the room's live listeners.
+ */
+@Service
+public class RoomQueueService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(RoomQueueService.class);
+
+   private static final String QUEUE = "queue";
+   private static final String SKIP_VOTES = "skipVotes";
+
+   @Autowired
+   private RoomDao roomDao;
+
+   @Autowired
+   private SongDao songDao;
+
+   @Autowired
+   private RoomSessionService roomSessionService;
+
+   @Autowired
+   private RoomPresenceService roomPresenceService;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${rooms.queue.max-size:500}")
+   private int maxSize;
+
+   @Value("${rooms.queue.skip-ratio:0.5}")
+   private double skipRatio;
+
+   private final ConcurrentMap<Integer, RoomQueue> queues = new ConcurrentHashMap<>();
+
+   private final ExecutorService writerPool = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(),
+         new ThreadFactoryBuilder().setNameFormat("room-queue-%d").setDaemon(true).build());
+
+   /**
+    * Add a song to a room's queue, counting as an upvote from the user adding it.
+    *
+    * @param roomId room id
+    * @param userId id of the user adding the song
+    * @param songId id of the song to add
+    * @throws ApiException if the room or song doesn't exist, the song is already queued or the queue is full
+    */
+   public void addSong(final int roomId, final int userId, final int songId) {
+      final RoomQueue queue = getQueue(roomId);
+
+      if (!songDao.existsById(songId)) {
+         throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
+      }
+
+      if (queue.getEntries().size() >= maxSize) {
+         throw new ApiException("Queue is full", ValidationError.BAD_VALUE, ROOM);
+      }
+
+      final RoomQueue.Entry entry = new RoomQueue.Entry(songId, userId, System.currentTimeMillis());
+      entry.getVoters().add(userId);
+      entry.getVotes().incrementAndGet();
+
+      final boolean closed;
+      synchronized (queue) {
+         closed = queue.isClosed();
+         if (!closed && queue.getEntries().putIfAbsent(songId, entry) != null) {
+            throw new ApiException("Song is already queued", ValidationError.DUPLICATE_VALUE, SONG_ID);
+         }
+      }
+
+      if (closed) {
+         // Dropped as the room was evicted, the song goes to a new queue
+         addSong(roomId, userId, songId);
+         return;
+      }
+
+      mutate(queue, () -> queue.getOrder().offer(songId, entry.getVotes().get()));
+   }
+
+   /**
+    * Upvote a queued song. Voting twice for the same song counts once.
+    *
+    * @param roomId room id
+    * @param songId id of the queued song
+    * @param userId id of the user voting
+    * @throws ApiException if the room doesn't exist or the song isn't queued
+    */
+   public void upvote(final int roomId, final int songId, final int userId) {
+      final RoomQueue queue = getQueue(roomId);
+      final RoomQueue.Entry entry = getEntry(queue, songId);
+
+      if (entry.getVoters().add(userId)) {
+         entry.getVotes().incrementAndGet();
+         reprioritize(queue, songId);
+      }
+   }
+
+   /**
+    * Take back an upvote for a queued song.
+    *
+    * @param roomId room id
+    * @param songId id of the queued song
+    * @param userId id of the user who voted
+    * @throws ApiException if the room doesn't exist or the song isn't queued
+    */
+   public void removeUpvote(final int roomId, final int songId, final int userId) {
+      final RoomQueue queue = getQueue(roomId);
+      final RoomQueue.Entry entry = getEntry(queue, songId);
+
+      if (entry.getVoters().remove(userId)) {
+         entry.getVotes().decrementAndGet();
+         reprioritize(queue, songId);
+      }
+   }
+
+   /**
+    * Vote to skip the song that is playing. Once the share of the room's listeners set by rooms.queue.skip-ratio
+    * has voted, the most upvoted queued song plays next, or the room's playlist moves on if the queue is empty.
+    *
+    * @param roomId room id
+    * @param userId id of the user voting
+    * @throws ApiException if the room doesn't exist
+    */
+   public void voteToSkip(final int roomId, final int userId) {
+      final RoomQueue queue = getQueue(roomId);
+
+      if (queue.getSkipVoters().add(userId)) {
+         mutate(queue, () -> {
+            final long required = Math.max(1, (long) Math.ceil(roomPresenceService.getListenerCount(roomId)
+                  * skipRatio));
+            if (queue.getSkipVoters().size() >= required) {
+               playNext(queue);
+            }
+         });
+      }
+   }
+
+   /**
+    * Move a room on after its song ended: the most upvoted queued song plays next, or the room's playlist moves on
+    * if the queue is empty. Called from the room transition timer, so the move itself happens on the room's writer.
+    *
+    * @param roomId room id
+    * @param songEndsAt end time of the song that ended, the move is dropped if playback changed since
+    */
+   public void advance(final int roomId, final long songEndsAt) {
+      final RoomQueue queue = queues.get(roomId);
+
+      if (queue == null) {
+         writerPool.execute(() -> roomSessionService.playNextAfterEnd(roomId, null, songEndsAt));
+         return;
+      }
+
+      mutate(queue, () -> {
+         final Integer songId = queue.getOrder().peek();
+         if (roomSessionService.playNextAfterEnd(roomId, songId, songEndsAt)) {
+            if (songId != null) {
+               queue.getOrder().poll();
+               queue.getEntries().remove(songId);
+            }
+            queue.setSkipVoters(ConcurrentHashMap.newKeySet());
+         }
+      });
+   }
+
+   /**
+    * Drop a room's queue if no songs are queued, once the room stopped being live here. Songs still queued are
+    * kept so they play when the room is next live.
+    *
+    * @param roomId room id
+    */
+   public void evict(final int roomId) {
+      final RoomQueue queue = queues.get(roomId);
+
+      if (queue == null) {
+         return;
+      }
+
+      synchronized (queue) {
+         if (queue.getEntries().isEmpty()) {
+            queue.setClosed(true);
+            queues.remove(roomId, queue);
+         }
+      }
+   }
+
+   /**
+    * Get a room's queue in play order. Reflects every mutation that was applied before the last publish, which
+    * trails the latest vote by no more than the writer's backlog.
+    *
+    * @param roomId room id
+    * @return queued songs, next to play first
+    * @throws ApiException if the room doesn't exist
+    */
+   public List<QueuedSong> getSongs(final int roomId) {
+      return getQueue(roomId).getSnapshot();
+   }
+
+   /**
+    * Get a room's queue if it is held on this node, without loading it otherwise.
+    *
+    * @param roomId room id
+    * @return queued songs in play order, empty if the room's queue is not held here
+    */
+   public Optional<List<QueuedSong>> getLocalSongs(final int roomId) {
+      final RoomQueue queue = queues.get(roomId);
+
+      return queue == null ? Optional.empty() : Optional.of(queue.getSnapshot());
+   }
+
+   /**
+    * Take over a room's queue from another node. Votes carry over as tallies, so listeners who voted before the
+    * move can vote once more. Ignored if the room's queue is already held on this node.
+    *
+    * @param roomId room id
+    * @param songs queued songs in play order
+    */
+   public void restore(final int roomId, final List<QueuedSong> songs) {
+      final RoomQueue queue = newQueue(roomId);
+
+      for (QueuedSong song : songs) {
+         final RoomQueue.Entry entry = new RoomQueue.Entry(song.getSongId(), song.getAddedBy(), song.getAddedAt());
+         entry.getVotes().set(song.getVotes());
+         queue.getEntries().put(song.getSongId(), entry);
+      }
+
+      if (queues.putIfAbsent(roomId, queue) == null) {
+         mutate(queue, () -> songs.forEach(song -> queue.getOrder().offer(song.getSongId(), song.getVotes())));
+      }
+   }
+
+   /**
+    * Drop a room's queue, e.g. after the room was deleted.
+    *
+    * @param roomId room id
+    */
+   public void close(final int roomId) {
+      queues.remove(roomId);
+   }
+
+   /**
+    * Get the ids of the rooms whose queue is held on this node.
+    *
+    * @return room ids
+    */
+   public List<Integer> getRoomIds() {
+      return new ArrayList<>(queues.keySet());
+   }
+
+   @PreDestroy
+   public void shutdown() {
+      writerPool.shutdownNow();
+   }
+
+   private RoomQueue getQueue(final int roomId) {
+      final RoomQueue queue = queues.get(roomId);
+
+      return queue != null ? queue : queues.computeIfAbsent(roomId, this::open);
+   }
+
+   private RoomQueue open(final int roomId) {
+      if (!roomDao.existsById(roomId)) {
+         throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      return newQueue(roomId);
+   }
+
+   private RoomQueue newQueue(final int roomId) {
+      return new RoomQueue(roomId, MoreExecutors.newSequentialExecutor(writerPool));
+   }
+
+   private RoomQueue.Entry getEntry(final RoomQueue queue, final int songId) {
+      final RoomQueue.Entry entry = queue.getEntries().get(songId);
+
+      if (entry == null) {
+         throw new ApiException("Song is not queued", ValidationError.NOT_FOUND, SONG_ID);
+      }
+
+      return entry;
+   }
+
+   /**
+    * Move the song to match its current tally. Reads the tally when the writer gets to it, so a burst of votes
+    * for one song settles in a single step.
+    */
+   private void reprioritize(final RoomQueue queue, final int songId) {
+      mutate(queue, () -> {
+         final RoomQueue.Entry entry = queue.getEntries().get(songId);
+         if (entry != null) {
+            queue.getOrder().update(songId, entry.getVotes().get());
+         }
+      });
+   }
+
+   /**
+    * Apply the mutation on the room's writer, then publish unless a publish is already queued behind it.
+    */
+   private void mutate(final RoomQueue queue, final Runnable mutation) {
+      queue.getWriter().execute(() -> {
+         mutation.run();
+         if (!queue.isPublishPending()) {
+            queue.setPublishPending(true);
+            queue.getWriter().execute(() -> publish(queue));
+         }
+      });
+   }
+
+   /**
+    * Runs on the room's writer.
+    */
+   private void playNext(final RoomQueue queue) {
+      final Integer songId = queue.getOrder().peek();
+
+      // Kept queued if the room isn't live, as nothing played
+      if (roomSessionService.playNext(queue.getRoomId(), songId)) {
+         if (songId != null) {
+            queue.getOrder().poll();
+            queue.getEntries().remove(songId);
+         }
+         queue.setSkipVoters(ConcurrentHashMap.newKeySet());
+      }
+   }
+
+   /**
+    * Runs on the room's writer.
+    */
+   private void publish(final RoomQueue queue) {
+      queue.setPublishPending(false);
+
+      final List<QueuedSong> songs = queue.getOrder().toSortedList().stream()
+            .map(queue.getEntries()::get)
+            .map(entry -> QueuedSong.builder()
+                  .songId(entry.getSongId())
+                  .addedBy(entry.getAddedBy())
+                  .addedAt(entry.getAddedAt())
+                  .votes(entry.getVotes().get())
+                  .build())
+            .collect(Collectors.toList());
+      queue.setSnapshot(songs);
+
+      try {
+         roomSessionService.publish(queue.getRoomId(), new TextMessage(objectMapper.writeValueAsString(ImmutableMap.of(
+               TYPE, QUEUE, QUEUE, songs, SKIP_VOTES, queue.getSkipVoters().size()))));
+      } catch (JsonProcessingException ex) {
+         LOGGER.error("Encoding the queue of room {} failed", queue.getRoomId(), ex);
+      }
+   }
+}
@@ -5,18 +5,27 @@ import app.dao.RoomDao;
 import app.exception.ApiException;
 import app.model.Playlist;
 import app.model.Room;
+import app.model.RoomPage;
 import app.request.UpdateRoomData;
+import app.util.SingleFlight;
 import app.validation.ValidationError;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.google.common.collect.ImmutableMap;
 
 import static app.constant.FieldConstants.PLAYLIST_ID;
 import static app.constant.FieldConstants.ROOM;
+import static app.constant.FieldConstants.VERSION;
 
 @Service
 public class RoomService {
@@ -27,6 +36,33 @@ public class RoomService {
    @Autowired
    private PlaylistDao playlistDao;
 
+   @Autowired
+   private RoomSessionService roomSessionService;
+
+   @Autowired
+   private RoomPresenceService roomPresenceService;
+
+   @Autowired
+   private RoomChatService roomChatService;
+
+   @Autowired
+   private RoomQueueService roomQueueService;
+
+   @Autowired
+   private EventStreamService eventStreamService;
+
+   @Autowired
+   private RoomDiscoveryService roomDiscoveryService;
+
+   @Autowired
+   private RoomUpdateService roomUpdateService;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   // Concurrent reads of one room share a single lookup
+   private final SingleFlight<Integer, Room> roomReads = new SingleFlight<>();
+
    /**
     * Service call for creating a new room.
     *
@@ -34,47 +70,148 @@ public class RoomService {
     */
    public void createNewRoom(final Room room) {
       roomDao.save(room);
+      roomDiscoveryService.addRoom(room);
    }
 
+   /**
+    * Service call to get every room, busiest first.
+    *
+    * @return List of all rooms sorted by listener count
+    */
    public List<Room> getAllRooms() {
-      return roomDao.findAll();
+      return sortByListenerCount(withPendingUpdates(roomDao.findAll()));
+   }
+
+   /**
+    * Service call to get a page of public rooms, most active first.
+    *
+    * @param cursor cursor from the previous page, null for the first page
+    * @param limit maximum number of rooms to return
+    * @return rooms ranked by activity and the cursor of the next page
+    * @throws ApiException if the cursor is malformed
+    */
+   public RoomPage discoverRooms(final String cursor, final int limit) {
+      return roomDiscoveryService.getRooms(cursor, limit);
    }
 
    /**
     * Service call to get a room by the name.
     *
     * @param name name of the room to filter for
-    * @return List of rooms that match the name
+    * @return List of rooms that match the name, busiest first
     */
    public List<Room> getRoomsWithFilter(final String name) {
-      return roomDao.findByNameStartingWith(name);
+      return sortByListenerCount(withPendingUpdates(roomDao.findByNameStartingWith(name)));
    }
 
    /**
-    * Service call for getting a room by id.
+    * Service call for getting a room by id. Concurrent calls for the same room share one lookup and the Room it
+    * returns.
     *
     * @param id room id to check for
     * @return Room found for given id
     */
    public Room getRoomById(final int id) {
-      final Optional<Room> room = roomDao.findById(id);
+      return roomReads.execute(id, () -> loadRoom(id));
+   }
+
+   /**
+    * Get the single-flight groups of this service's hot reads by name, for their metrics.
+    *
+    * @return single-flight groups
+    */
+   public Map<String, SingleFlight<?, ?>> getSingleFlights() {
+      return ImmutableMap.of("room", roomReads);
+   }
+
+   private Room loadRoom(final int id) {
+      final Optional<Room> room = findRoom(id);
 
       if (!room.isPresent()) {
          throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
       }
 
+      room.get().setListenerCount(roomPresenceService.getListenerCount(id));
       return room.get();
    }
 
    /**
-    * Service call to update a room by id.
+    * Service call to get the users currently in a room.
+    *
+    * @param id room id
+    * @return List of user ids in the room
+    */
+   public List<Integer> getRoomMembers(final int id) {
+      return roomPresenceService.getMembers(id);
+   }
+
+   /**
+    * Service call to keep a user in a room, joining it if they aren't already a member.
+    *
+    * @param id room id
+    * @param userId user id
+    * @throws ApiException if no Room exists for given id
+    */
+   public void heartbeat(final int id, final int userId) {
+      if (roomPresenceService.heartbeat(id, userId)) {
+         return;
+      }
+
+      if (!roomDao.existsById(id)) {
+         throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      roomPresenceService.join(id, userId);
+   }
+
+   /**
+    * Service call for a user leaving a room.
+    *
+    * @param id room id
+    * @param userId user id
+    */
+   public void leaveRoom(final int id, final int userId) {
+      roomPresenceService.leave(id, userId);
+   }
+
+   /**
+    * Service call to get a room's live snapshot.
+    *
+    * @param id room id
+    * @return JSON snapshot of the room, its songs and its playback state, tagged with the room's version
+    * @throws ApiException if no Room exists for given id
+    */
+   public String getRoomSnapshot(final int id) {
+      return roomSessionService.getSnapshot(id);
+   }
+
+   /**
+    * Service call to subscribe to a room's changes.
+    *
+    * @param id room id
+    * @return event stream that receives the room each time it is updated
+    * @throws ApiException if no Room exists for given id
+    */
+   public ResponseBodyEmitter subscribeToRoom(final int id) {
+      if (!roomDao.existsById(id)) {
+         throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      return eventStreamService.subscribe(EventStreamService.roomTopic(id));
+   }
+
+   /**
+    * Service call to update a room by id. The change is written behind, merged with other changes to the room
+    * until the next flush; reads through this service see it right away. An update giving a version only applies
+    * to the room at that version.
     *
     * @param id room id
     * @param updateRoomData contains information to update a room
     * @throws ApiException if no Room exists for given id, if Playlist id is not found
+    * @throws ApiException if the room no longer has the version the update is based on
     */
    public void updateRoomById(final int id, final UpdateRoomData updateRoomData) {
-      final Optional<Room> room = roomDao.findById(id);
+      final Optional<Room> room = findRoom(id);
 
       if (!room.isPresent()) {
          throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
@@ -85,19 +222,18 @@ public class RoomService {
          if (!playlist.isPresent()) {
             throw new ApiException("Playlist not found", ValidationError.NOT_FOUND, PLAYLIST_ID);
          }
-
-         room.get().setPlaylistId(updateRoomData.getPlaylistId());
       }
 
-      if (StringUtils.isNotBlank(updateRoomData.getName())) {
-         room.get().setName(updateRoomData.getName());
+      // Applied to the latest staged state, so updates to other fields made in the meantime are kept
+      final Optional<Room> updated = roomUpdateService.stage(room.get(), updateRoomData);
+      if (!updated.isPresent()) {
+         throw new ApiException("Room was changed by another update", ValidationError.CONFLICT, VERSION);
       }
 
-      if (updateRoomData.getIsPrivate() != null) {
-         room.get().setPrivate(updateRoomData.getIsPrivate());
-      }
-
-      roomDao.save(room.get());
+      roomReads.forget(id);
+      eventStreamService.publish(EventStreamService.roomTopic(id), ROOM, updated.get());
+      roomSessionService.updateRoom(updated.get());
+      roomDiscoveryService.updateRoom(updated.get());
    }
 
    /**
@@ -106,12 +242,43 @@ public class RoomService {
     * @param id room id to check for
     */
    public void deleteRoomById(final int id) {
-      final Optional<Room> room = roomDao.findById(id);
-
-      if (!room.isPresent()) {
+      if (roomDao.deleteRowById(id) == 0) {
          throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
       }
 
-      roomDao.deleteById(id);
+      roomReads.forget(id);
+      roomUpdateService.discard(id);
+      roomSessionService.close(id);
+      roomPresenceService.removeRoom(id);
+      roomChatService.close(id);
+      roomQueueService.close(id);
+      roomDiscoveryService.removeRoom(id);
+      invalidationService.publish(ROOM, id);
+      eventStreamService.close(EventStreamService.roomTopic(id));
+   }
+
+   /**
+    * Get the room's latest state, with updates that may not be written yet.
+    */
+   private Optional<Room> findRoom(final int id) {
+      final Optional<Room> pending = roomUpdateService.getRoom(id);
+
+      return pending.isPresent() ? pending : roomDao.findById(id);
+   }
+
+   private List<Room> withPendingUpdates(final List<Room> rooms) {
+      return rooms.stream()
+            .map(room -> roomUpdateService.getRoom(room.getId()).orElse(room))
+            .collect(Collectors.toList());
+   }
+
+   private List<Room> sortByListenerCount(final List<Room> rooms) {
+      final List<Room> sortedRooms = new ArrayList<>(rooms);
+      for (final Room room : sortedRooms) {
+         room.setListenerCount(roomPresenceService.getListenerCount(room.getId()));
+      }
+
+      sortedRooms.sort(Comparator.comparingLong(Room::getListenerCount).reversed());
+      return sortedRooms;
    }
 }
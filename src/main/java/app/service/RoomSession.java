@@ -0,0 +1,81 @@
+package app.service;
+
+import app.model.Room;
+import app.model.RoomState;
+import app.model.Song;
+import app.util.DeltaLog;
+import app.util.TimingWheel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * An active room: its details, the songs it plays from, its playback state and its subscribers, plus the encoded
+ * snapshot and recent deltas handed to joining listeners. Everything but the subscribers is guarded by the
+ * RoomSession's monitor, so rooms never contend with each other.
+ */
+@Getter
+class RoomSession {
+
+   private final int roomId;
+   private final int ownerId;
+   private final Set<WebSocketSession> subscribers = ConcurrentHashMap.newKeySet();
+
+   // Runs this room's broadcasts one at a time and in order, on a pool shared by every room
+   private final Executor broadcaster;
+
+   // Encoded changes by the state version they produced
+   private final DeltaLog<EncodedRoomMessage> deltas;
+
+   @Setter
+   private Room room;
+
+   @Setter
+   private List<Song> songs;
+
+   @Setter
+   private RoomState state;
+
+   // Length of the song playing, null if unknown
+   @Setter
+   private Integer durationMs;
+
+   // Time the song playing ends and the room moves on, 0 if paused or the length is unknown
+   @Setter
+   private volatile long songEndsAt;
+
+   @Setter
+   private volatile TimingWheel.Timeout songEndTimeout;
+
+   // Encoded room, songs and state as of snapshotVersion, re-encoded on the first join after a change
+   @Setter
+   private EncodedRoomMessage snapshot;
+
+   @Setter
+   private long snapshotVersion;
+
+   // Time the last subscriber left, the room is evicted once it has been idle for long enough
+   @Setter
+   private volatile long idleSince;
+
+   @Setter
+   private volatile TimingWheel.Timeout idleTimeout;
+
+   RoomSession(final Room room, final List<Song> songs, final RoomState state, final int deltaLogSize,
+               final Executor broadcaster) {
+      this.roomId = room.getId();
+      this.ownerId = room.getUserId();
+      this.room = room;
+      this.songs = songs;
+      this.state = state;
+      this.deltas = new DeltaLog<>(deltaLogSize);
+      this.deltas.reset(state.getVersion());
+      this.broadcaster = broadcaster;
+   }
+}
@@ -0,0 +1,821 @@
+package app.service;
+
+import app.dao.PlaylistSongDao;
+import app.dao.RoomDao;
+import app.dao.RoomStateDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.Room;
+import app.model.RoomState;
+import app.model.RoomSyncMessage;
+import app.model.Song;
+import app.request.RoomCommandData;
+import app.util.RoomSyncCodec;
+import app.util.TimingWheel;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.POSITION_MS;
+import static app.constant.FieldConstants.QUEUE_POSITION;
+import static app.constant.FieldConstants.ROOM;
+import static app.constant.FieldConstants.TYPE;
+import static app.constant.FieldConstants.USER;
+
+/**
+ * Live rooms. A joining listener gets one message with everything needed to follow the room (its details, songs
+ * and playback state) and then a delta for every change, each tagged with the room's version. The snapshot is
+ * only re-encoded after a change, and recent deltas are kept so a listener that reconnects with the version it has
+ * only gets what it missed. Clients apply messages in version order and ignore any they already have.
+ * Messages are encoded once as JSON and once as RoomSyncCodec frames, and each listener is sent the one matching
+ * the subprotocol it negotiated.
+ * Rooms stay in memory while they have listeners; once idle for rooms.snapshot.idle-ms their state is saved and
+ * they are evicted, to be loaded again on the next join.
+ * When the song playing has a known length, the room moves on by itself once it ends. Each change of playback
+ * reschedules that on the room transition timing wheel.
+ */
+@Service
+public class RoomSessionService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(RoomSessionService.class);
+
+   @Autowired
+   private RoomDao roomDao;
+
+   @Autowired
+   private PlaylistSongDao playlistSongDao;
+
+   @Autowired
+   private SongDao songDao;
+
+   @Autowired
+   private RoomStateDao roomStateDao;
+
+   @Autowired
+   private TimingWheel timingWheel;
+
+   @Autowired
+   @Qualifier("roomTransitionWheel")
+   private TimingWheel roomTransitionWheel;
+
+   // Picks the song that follows one that ended; it depends on this service too, which field injection allows
+   @Autowired
+   private RoomQueueService roomQueueService;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Value("${rooms.snapshot.idle-ms:300000}")
+   private long idleTime;
+
+   @Value("${rooms.snapshot.delta-log-size:256}")
+   private int deltaLogSize;
+
+   private final ConcurrentMap<Integer, RoomSession> sessions = new ConcurrentHashMap<>();
+
+   // States handed over from another node, picked up when the room next goes live here
+   private final ConcurrentMap<Integer, RoomState> restoredStates = new ConcurrentHashMap<>();
+
+   // States of evicted rooms until they are saved, so a room that is joined again right away doesn't go back
+   private final ConcurrentMap<Integer, RoomState> evictedStates = new ConcurrentHashMap<>();
+
+   private final ExecutorService broadcastPool = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(),
+         new ThreadFactoryBuilder().setNameFormat("room-broadcast-%d").setDaemon(true).build());
+
+   /**
+    * Subscribe to a room, bringing the room live if it isn't already. The subscriber is sent the deltas since the
+    * given version if they are still kept, otherwise the room's snapshot.
+    *
+    * @param roomId room id
+    * @param subscriber connection to send room updates to, should be safe to send to from several threads
+    * @param since version the subscriber already has, null if it has nothing
+    * @throws ApiException if no Room exists for given id
+    */
+   public void join(final int roomId, final WebSocketSession subscriber, final Long since) {
+      final RoomSession session = activate(roomId, subscriber);
+
+      final List<EncodedRoomMessage> messages;
+      synchronized (session) {
+         final Optional<List<EncodedRoomMessage>> deltas = since == null
+               ? Optional.empty()
+               : session.getDeltas().since(since);
+         messages = deltas.isPresent() ? deltas.get() : Collections.singletonList(getSnapshot(session));
+      }
+
+      session.getBroadcaster().execute(() -> messages.forEach(message -> send(session, subscriber, message)));
+   }
+
+   /**
+    * Unsubscribe from a room. The room is evicted once it has had no subscribers for rooms.snapshot.idle-ms.
+    *
+    * @param roomId room id
+    * @param subscriber connection that was passed to join
+    */
+   public void leave(final int roomId, final WebSocketSession subscriber) {
+      final RoomSession session = sessions.get(roomId);
+
+      if (session != null && session.getSubscribers().remove(subscriber) && session.getSubscribers().isEmpty()) {
+         session.setIdleSince(System.currentTimeMillis());
+         scheduleEviction(session);
+      }
+   }
+
+   /**
+    * Get a room's snapshot: its details, songs and playback state at the version it carries. Listeners can join
+    * with that version afterwards to only receive what changed since.
+    *
+    * @param roomId room id
+    * @return snapshot encoded as JSON
+    * @throws ApiException if no Room exists for given id
+    */
+   public String getSnapshot(final int roomId) {
+      final RoomSession session = activate(roomId, null);
+
+      synchronized (session) {
+         return getSnapshot(session).getText().getPayload();
+      }
+   }
+
+   /**
+    * Apply a playback command sent for the room's user and broadcast the new state to every subscriber.
+    *
+    * @param roomId room id
+    * @param userId user id the sender claims, not authenticated
+    * @param command playback command to apply
+    * @return copy of the room state after the command
+    * @throws ApiException if the room is not live, the user id is not the room's or the command is invalid
+    */
+   public RoomState applyCommand(final int roomId, final int userId, final RoomCommandData command) {
+      final RoomSession session = getSession(roomId);
+
+      // Only compares the claimed id, so it keeps listeners from controlling playback by mistake, not on purpose
+      if (session.getOwnerId() != userId) {
+         throw new ApiException("Only the room owner can control playback", ValidationError.FORBIDDEN, USER);
+      }
+
+      if (command.getType() == null) {
+         throw new ApiException("Command type is missing", ValidationError.MISSING_FIELD, TYPE);
+      }
+
+      final RoomState state;
+      final EncodedRoomMessage message;
+      synchronized (session) {
+         apply(session, command, System.currentTimeMillis());
+         message = commit(session, RoomSyncMessage.builder().type(RoomSyncMessage.Type.STATE));
+         state = session.getState().toBuilder().build();
+      }
+
+      broadcast(session, message);
+      return state;
+   }
+
+   /**
+    * Apply an update to a live room's details. If its playlist changed, the room switches to the new playlist,
+    * starting paused at its first song. Does nothing if the room is not live.
+    *
+    * @param room the updated room
+    */
+   public void updateRoom(final Room room) {
+      final RoomSession session = sessions.get(room.getId());
+
+      if (session == null) {
+         return;
+      }
+
+      final boolean playlistChanged = !Objects.equals(room.getPlaylistId(), session.getRoom().getPlaylistId());
+      final List<Song> songs = playlistChanged ? loadSongs(room.getPlaylistId()) : null;
+
+      final EncodedRoomMessage message;
+      synchronized (session) {
+         session.setRoom(room);
+
+         if (songs != null) {
+            session.setSongs(songs);
+            session.getState().setPaused(true);
+            select(session, 0, System.currentTimeMillis());
+         }
+
+         message = commit(session, RoomSyncMessage.builder().type(RoomSyncMessage.Type.ROOM).room(room).songs(songs));
+      }
+
+      broadcast(session, message);
+   }
+
+   /**
+    * Reload the songs of every live room playing from the playlist, after songs were added to or removed from it.
+    * The current song keeps playing.
+    *
+    * @param playlistId playlist id
+    */
+   public void refreshPlaylist(final int playlistId) {
+      final List<RoomSession> affected = sessions.values().stream()
+            .filter(session -> Objects.equals(playlistId, session.getRoom().getPlaylistId()))
+            .collect(Collectors.toList());
+
+      if (affected.isEmpty()) {
+         return;
+      }
+
+      final List<Song> songs = loadSongs(playlistId);
+      for (RoomSession session : affected) {
+         final EncodedRoomMessage message;
+         synchronized (session) {
+            session.setSongs(songs);
+
+            final RoomState state = session.getState();
+            for (int i = 0; i < songs.size(); i++) {
+               if (songs.get(i).getId().equals(state.getSongId())) {
+                  state.setQueuePosition(i);
+                  session.setDurationMs(songs.get(i).getDurationMs());
+                  break;
+               }
+            }
+
+            message = commit(session, RoomSyncMessage.builder().type(RoomSyncMessage.Type.SONGS).songs(songs));
+         }
+
+         broadcast(session, message);
+      }
+   }
+
+   /**
+    * Move a live room on to the next song: the given queued song if there is one, otherwise the next song of the
+    * room's playlist. Playback pauses at the end of the playlist. Does nothing if the room is not live.
+    *
+    * @param roomId room id
+    * @param queuedSongId id of the song to play from the room's shared queue, null if the queue is empty
+    * @return true if the room moved on, false if it is not live
+    */
+   public boolean playNext(final int roomId, final Integer queuedSongId) {
+      return playNext(roomId, queuedSongId, null);
+   }
+
+   /**
+    * Move a live room on to the next song after its song ended, like playNext. Ignored if playback changed since
+    * the end was scheduled, e.g. the song was skipped, sought or paused, so an end handled late can't skip a song.
+    *
+    * @param roomId room id
+    * @param queuedSongId id of the song to play from the room's shared queue, null if the queue is empty
+    * @param songEndsAt end time of the song that ended, as passed to RoomQueueService.advance
+    * @return true if the room moved on
+    */
+   public boolean playNextAfterEnd(final int roomId, final Integer queuedSongId, final long songEndsAt) {
+      return playNext(roomId, queuedSongId, Long.valueOf(songEndsAt));
+   }
+
+   private boolean playNext(final int roomId, final Integer queuedSongId, final Long songEndsAt) {
+      final RoomSession session = sessions.get(roomId);
+
+      if (session == null) {
+         return false;
+      }
+
+      final Integer queuedDurationMs = queuedSongId == null ? null : findDurationMs(session.getSongs(), queuedSongId);
+
+      final EncodedRoomMessage message;
+      synchronized (session) {
+         if (songEndsAt != null && session.getSongEndsAt() != songEndsAt) {
+            return false;
+         }
+
+         final RoomState state = session.getState();
+         final long now = System.currentTimeMillis();
+
+         if (queuedSongId != null) {
+            session.setDurationMs(queuedDurationMs);
+            state.setSongId(queuedSongId);
+            state.setPositionMs(0);
+            state.setStartedAt(now);
+         }
+         else if (state.getQueuePosition() + 1 < session.getSongs().size()) {
+            select(session, state.getQueuePosition() + 1, now);
+         }
+         else {
+            state.setPositionMs(state.isPaused() ? state.getPositionMs() : now - state.getStartedAt());
+            state.setPaused(true);
+         }
+
+         message = commit(session, RoomSyncMessage.builder().type(RoomSyncMessage.Type.STATE));
+      }
+
+      broadcast(session, message);
+      return true;
+   }
+
+   /**
+    * Send an already encoded message to every subscriber of a live room. Does nothing if the room is not live.
+    *
+    * @param roomId room id
+    * @param message message to send
+    */
+   public void publish(final int roomId, final TextMessage message) {
+      final RoomSession session = sessions.get(roomId);
+
+      if (session != null) {
+         broadcast(session, new EncodedRoomMessage(message, null));
+      }
+   }
+
+   /**
+    * Disconnect every subscriber of a room and drop its live state, e.g. after the room was deleted.
+    *
+    * @param roomId room id
+    */
+   public void close(final int roomId) {
+      close(roomId, "Room closed");
+   }
+
+   /**
+    * Disconnect every subscriber of a room with the given reason and drop its live state.
+    *
+    * @param roomId room id
+    * @param reason close reason sent to subscribers
+    */
+   public void close(final int roomId, final String reason) {
+      final RoomSession session = sessions.remove(roomId);
+      restoredStates.remove(roomId);
+      evictedStates.remove(roomId);
+
+      if (session == null) {
+         return;
+      }
+
+      if (session.getIdleTimeout() != null) {
+         session.getIdleTimeout().cancel();
+      }
+      cancelSongEnd(session);
+
+      for (WebSocketSession subscriber : session.getSubscribers()) {
+         try {
+            subscriber.close(CloseStatus.GOING_AWAY.withReason(reason));
+         } catch (IOException ex) {
+            // Already gone
+         }
+      }
+   }
+
+   /**
+    * Get a copy of a live room's playback state.
+    *
+    * @param roomId room id
+    * @return copy of the state, empty if the room is not live
+    */
+   public Optional<RoomState> getState(final int roomId) {
+      final RoomSession session = sessions.get(roomId);
+
+      if (session == null) {
+         return Optional.empty();
+      }
+
+      synchronized (session) {
+         return Optional.of(session.getState().toBuilder().build());
+      }
+   }
+
+   /**
+    * Keep a state handed over from another node, so the room resumes from it when it next goes live here.
+    * Ignored if the room is already live on this node.
+    *
+    * @param state playback state of the room
+    */
+   public void restore(final RoomState state) {
+      if (!sessions.containsKey(state.getRoomId())) {
+         restoredStates.put(state.getRoomId(), state);
+      }
+   }
+
+   /**
+    * Get the ids of the rooms held in memory, i.e. with subscribers or not idle for long enough to be evicted.
+    *
+    * @return live room ids
+    */
+   public List<Integer> getLiveRoomIds() {
+      return new ArrayList<>(sessions.keySet());
+   }
+
+   /**
+    * Get the number of rooms held in memory.
+    *
+    * @return number of live rooms
+    */
+   public int getLiveRoomCount() {
+      return sessions.size();
+   }
+
+   /**
+    * Save the state of every room still in memory, so they resume where they left off after a restart.
+    */
+   @PreDestroy
+   public void shutdown() {
+      broadcastPool.shutdownNow();
+
+      final List<RoomState> states = new ArrayList<>();
+      for (RoomSession session : sessions.values()) {
+         synchronized (session) {
+            states.add(session.getState().toBuilder().build());
+         }
+      }
+
+      try {
+         roomStateDao.saveAll(states);
+      } catch (RuntimeException ex) {
+         LOGGER.error("Saving the state of {} live rooms on shutdown failed", states.size(), ex);
+      }
+   }
+
+   /**
+    * Get the room's session, loading it if it isn't in memory, and add the subscriber if there is one.
+    */
+   private RoomSession activate(final int roomId, final WebSocketSession subscriber) {
+      final RoomSession opened = sessions.containsKey(roomId) ? null : open(roomId);
+
+      final RoomSession session = sessions.compute(roomId, (id, existing) -> {
+         final RoomSession live = existing != null ? existing : opened != null ? opened : open(id);
+         if (subscriber != null) {
+            live.getSubscribers().add(subscriber);
+         }
+         return live;
+      });
+
+      if (session.getSubscribers().isEmpty()) {
+         scheduleEviction(session);
+      }
+
+      return session;
+   }
+
+   private RoomSession open(final int roomId) {
+      final Optional<Room> room = roomDao.findById(roomId);
+
+      if (!room.isPresent()) {
+         throw new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      final List<Song> songs = loadSongs(room.get().getPlaylistId());
+      final long now = System.currentTimeMillis();
+
+      RoomState state = restoredStates.remove(roomId);
+      if (state == null) {
+         state = evictedStates.get(roomId);
+      }
+      if (state == null) {
+         state = roomStateDao.findById(roomId).orElse(null);
+      }
+
+      final RoomState fresh = RoomState.builder()
+            .roomId(roomId)
+            .songId(songs.isEmpty() ? null : songs.get(0).getId())
+            .startedAt(now)
+            .paused(true)
+            .build();
+
+      if (state == null) {
+         state = fresh;
+      }
+      else if (!isPlaying(state, songs)) {
+         // The playlist changed while the room was away, start it over without going back a version
+         state = fresh.toBuilder().version(state.getVersion() + 1).build();
+      }
+      else {
+         state = state.toBuilder().build();
+      }
+
+      final RoomSession session = new RoomSession(room.get(), songs, state, deltaLogSize,
+            MoreExecutors.newSequentialExecutor(broadcastPool));
+      session.setIdleSince(now);
+      session.setDurationMs(state.getSongId() == null ? null : findDurationMs(songs, state.getSongId()));
+      scheduleSongEnd(session);
+
+      return session;
+   }
+
+   /**
+    * Check that the saved state's song is still at its position in the room's songs. A song played from the shared
+    * queue keeps the position of the playlist song before it and may not be in the room's songs, so a song that
+    * isn't in them only needs its position to still exist; one found at another position means the playlist was
+    * edited.
+    */
+   private boolean isPlaying(final RoomState state, final List<Song> songs) {
+      if (songs.isEmpty()) {
+         return state.getQueuePosition() == 0;
+      }
+
+      if (state.getSongId() == null || state.getQueuePosition() >= songs.size()) {
+         return false;
+      }
+
+      return state.getSongId().equals(songs.get(state.getQueuePosition()).getId())
+            || songs.stream().noneMatch(song -> state.getSongId().equals(song.getId()));
+   }
+
+   private List<Song> loadSongs(final Integer playlistId) {
+      if (playlistId == null) {
+         return Collections.emptyList();
+      }
+
+      final List<Integer> songIds = playlistSongDao.findSongIdsByPlaylistId(playlistId);
+      final Map<Integer, Song> songsById = songDao.findAllById(songIds).stream()
+            .collect(Collectors.toMap(Song::getId, Function.identity(), (first, second) -> first));
+
+      return songIds.stream()
+            .map(songsById::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Get a song's length, looking it up if it isn't one of the room's songs, e.g. a song from the shared queue.
+    */
+   private Integer findDurationMs(final List<Song> songs, final int songId) {
+      for (Song song : songs) {
+         if (song.getId() == songId) {
+            return song.getDurationMs();
+         }
+      }
+
+      return songDao.findById(songId).map(Song::getDurationMs).orElse(null);
+   }
+
+   private void scheduleEviction(final RoomSession session) {
+      final TimingWheel.Timeout timeout = session.getIdleTimeout();
+
+      if (timeout == null || timeout.isExpired() || timeout.isCancelled()) {
+         session.setIdleTimeout(timingWheel.schedule(() -> evict(session), idleTime, TimeUnit.MILLISECONDS));
+      }
+   }
+
+   /**
+    * Runs on the wheel thread once the room may have been idle for long enough. Drops the room and saves its state
+    * if nobody joined since, otherwise checks again when it would next be idle for long enough.
+    */
+   private void evict(final RoomSession session) {
+      if (!session.getSubscribers().isEmpty()) {
+         return;
+      }
+
+      final long idle = System.currentTimeMillis() - session.getIdleSince();
+      if (idle < idleTime) {
+         session.setIdleTimeout(timingWheel.schedule(() -> evict(session), idleTime - idle,
+               TimeUnit.MILLISECONDS));
+         return;
+      }
+
+      final AtomicReference<RoomState> evicted = new AtomicReference<>();
+
+      // Kept in evictedStates before the room is dropped, so a join right after can't load an older saved state
+      sessions.computeIfPresent(session.getRoomId(), (id, live) -> {
+         if (live != session || !live.getSubscribers().isEmpty()) {
+            return live;
+         }
+
+         synchronized (session) {
+            evicted.set(session.getState().toBuilder().build());
+         }
+         evictedStates.put(id, evicted.get());
+         return null;
+      });
+
+      if (evicted.get() != null) {
+         cancelSongEnd(session);
+         roomQueueService.evict(session.getRoomId());
+         session.getBroadcaster().execute(() -> save(evicted.get()));
+      }
+   }
+
+   private void save(final RoomState state) {
+      try {
+         roomStateDao.save(state);
+      } catch (RuntimeException ex) {
+         // The room may have been deleted in the meantime
+         LOGGER.warn("Saving the state of evicted room {} failed", state.getRoomId(), ex);
+      } finally {
+         evictedStates.remove(state.getRoomId(), state);
+      }
+   }
+
+   private RoomSession getSession(final int roomId) {
+      final RoomSession session = sessions.get(roomId);
+
+      if (session == null) {
+         throw new ApiException("Room is not live", ValidationError.NOT_FOUND, ROOM);
+      }
+
+      return session;
+   }
+
+   /**
+    * Apply the command to the session's state. Must hold the session's monitor.
+    */
+   private void apply(final RoomSession session, final RoomCommandData command, final long now) {
+      final RoomState state = session.getState();
+
+      switch (command.getType()) {
+         case PLAY:
+            if (state.isPaused()) {
+               state.setStartedAt(now - state.getPositionMs());
+               state.setPaused(false);
+            }
+            break;
+         case PAUSE:
+            if (!state.isPaused()) {
+               state.setPositionMs(now - state.getStartedAt());
+               state.setPaused(true);
+            }
+            break;
+         case SEEK:
+            if (command.getPositionMs() == null || command.getPositionMs() < 0) {
+               throw new ApiException("Seek position is invalid", ValidationError.BAD_VALUE, POSITION_MS);
+            }
+            state.setPositionMs(command.getPositionMs());
+            state.setStartedAt(now - command.getPositionMs());
+            break;
+         case NEXT:
+            select(session, state.getQueuePosition() + 1, now);
+            break;
+         case PREVIOUS:
+            select(session, Math.max(0, state.getQueuePosition() - 1), now);
+            break;
+         case SELECT:
+            select(session, command.getQueuePosition() == null ? -1 : command.getQueuePosition(), now);
+            break;
+         default:
+            throw new ApiException("Command type is invalid", ValidationError.BAD_VALUE, TYPE);
+      }
+   }
+
+   private void select(final RoomSession session, final int queuePosition, final long now) {
+      final List<Song> songs = session.getSongs();
+      final RoomState state = session.getState();
+
+      if (songs.isEmpty() && queuePosition == 0) {
+         state.setSongId(null);
+      }
+      else if (queuePosition < 0 || queuePosition >= songs.size()) {
+         throw new ApiException("Queue position is out of range", ValidationError.BAD_VALUE, QUEUE_POSITION);
+      }
+      else {
+         state.setSongId(songs.get(queuePosition).getId());
+      }
+
+      session.setDurationMs(songs.isEmpty() ? null : songs.get(queuePosition).getDurationMs());
+      state.setQueuePosition(queuePosition);
+      state.setPositionMs(0);
+      state.setStartedAt(now);
+   }
+
+   /**
+    * Schedule the room's move to the next song for when the song playing ends, replacing the pending move unless
+    * it is still due at the same time. Cancelling and scheduling on the timing wheel are O(1), so a seek or skip
+    * costs next to nothing. Must hold the session's monitor, or own the session before it is shared.
+    */
+   private void scheduleSongEnd(final RoomSession session) {
+      final RoomState state = session.getState();
+      final long songEndsAt = state.isPaused() || state.getSongId() == null || session.getDurationMs() == null
+            ? 0
+            : state.getStartedAt() + session.getDurationMs();
+
+      final TimingWheel.Timeout timeout = session.getSongEndTimeout();
+      if (timeout != null && !timeout.isCancelled() && songEndsAt == session.getSongEndsAt()) {
+         return;
+      }
+
+      if (timeout != null) {
+         timeout.cancel();
+      }
+
+      session.setSongEndsAt(songEndsAt);
+      session.setSongEndTimeout(songEndsAt == 0
+            ? null
+            : roomTransitionWheel.schedule(() -> endSong(session, songEndsAt),
+                  songEndsAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+   }
+
+   /**
+    * Runs on the room transition wheel's thread, so only hands the move off to the room's queue, which picks
+    * the song to play next.
+    */
+   private void endSong(final RoomSession session, final long songEndsAt) {
+      if (session.getSongEndsAt() == songEndsAt && sessions.get(session.getRoomId()) == session) {
+         roomQueueService.advance(session.getRoomId(), songEndsAt);
+      }
+   }
+
+   private void cancelSongEnd(final RoomSession session) {
+      final TimingWheel.Timeout timeout = session.getSongEndTimeout();
+
+      if (timeout != null) {
+         timeout.cancel();
+      }
+   }
+
+   /**
+    * Bump the room's version and encode the change as a delta, keeping it for subscribers that reconnect.
+    * Every delta carries the new playback state. Must hold the session's monitor.
+    */
+   private EncodedRoomMessage commit(final RoomSession session, final RoomSyncMessage.RoomSyncMessageBuilder change) {
+      final RoomState state = session.getState();
+      state.setVersion(state.getVersion() + 1);
+
+      final EncodedRoomMessage message = encode(change
+            .version(state.getVersion())
+            .time(System.currentTimeMillis())
+            .state(state)
+            .build());
+      session.getDeltas().append(state.getVersion(), message);
+      scheduleSongEnd(session);
+
+      return message;
+   }
+
+   /**
+    * Get the session's snapshot, encoding it again only if the room changed since. Must hold the session's monitor.
+    */
+   private EncodedRoomMessage getSnapshot(final RoomSession session) {
+      final RoomState state = session.getState();
+
+      if (session.getSnapshot() == null || session.getSnapshotVersion() != state.getVersion()) {
+         session.setSnapshot(encode(RoomSyncMessage.builder()
+               .type(RoomSyncMessage.Type.SNAPSHOT)
+               .version(state.getVersion())
+               .time(System.currentTimeMillis())
+               .room(session.getRoom())
+               .songs(session.getSongs())
+               .state(state)
+               .build()));
+         session.setSnapshotVersion(state.getVersion());
+      }
+
+      return session.getSnapshot();
+   }
+
+   /**
+    * Encode the message as JSON and as a binary frame, so each subscriber gets the frame for its subprotocol
+    * without encoding it again.
+    */
+   private EncodedRoomMessage encode(final RoomSyncMessage message) {
+      try {
+         return new EncodedRoomMessage(new TextMessage(objectMapper.writeValueAsString(message)),
+               RoomSyncCodec.encode(message));
+      } catch (JsonProcessingException ex) {
+         throw new ApiException("Unable to encode room state", ValidationError.INTERNAL_SERVER_ERROR, ex);
+      }
+   }
+
+   /**
+    * Queue the already encoded message for every subscriber. Returns immediately, sending happens on the
+    * room's broadcaster so one slow room can't hold up the caller.
+    */
+   private void broadcast(final RoomSession session, final EncodedRoomMessage message) {
+      session.getBroadcaster().execute(() -> {
+         for (WebSocketSession subscriber : session.getSubscribers()) {
+            send(session, subscriber, message);
+         }
+      });
+   }
+
+   private void send(final RoomSession session, final WebSocketSession subscriber,
+                     final EncodedRoomMessage message) {
+      if (!subscriber.isOpen()) {
+         leave(session.getRoomId(), subscriber);
+         return;
+      }
+
+      try {
+         subscriber.sendMessage(message.forSubscriber(subscriber));
+      } catch (IOException | RuntimeException ex) {
+         leave(session.getRoomId(), subscriber);
+      }
+   }
+}
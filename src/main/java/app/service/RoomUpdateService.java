@@ -0,0 +1,293 @@
+package app.service;
+
+import app.dao.RoomDao;
+import app.model.Room;
+import app.request.UpdateRoomData;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static app.constant.FieldConstants.ROOM;
+
+/**
+ * Write-behind for room updates. An update is only applied to the room's pending state in memory, so a burst of
+ * renames or playlist changes to one room ends up as a single write. Every rooms.write-behind.flush-ms the pending
+ * rooms are written in JDBC batches of rooms.write-behind.batch-size. Until a room's write commits, getRoom returns
+ * its latest state, so reads going through RoomService never see an older one. Other nodes are told to evict a
+ * room once its write commits, as they read it from the database. A write only applies to the stored version the
+ * room's first staged change was based on, so when another node wrote the room in the meantime the write is
+ * skipped, logged and counted as a conflict; those updates had already been answered, as only updates on this node
+ * are checked against each other when they are made.
+ */
+@Service
+public class RoomUpdateService {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(RoomUpdateService.class);
+
+   @Autowired
+   private RoomDao roomDao;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Value("${rooms.write-behind.flush-ms:500}")
+   private long flushInterval;
+
+   @Value("${rooms.write-behind.batch-size:200}")
+   private int batchSize;
+
+   // Latest state of rooms with changes not written yet
+   private final ConcurrentMap<Integer, StagedRoom> pending = new ConcurrentHashMap<>();
+
+   // Rooms being written, still served to readers until the write commits
+   private final ConcurrentMap<Integer, StagedRoom> flushing = new ConcurrentHashMap<>();
+
+   private final AtomicLong coalescedUpdates = new AtomicLong();
+
+   private final AtomicLong failedFlushes = new AtomicLong();
+
+   private final AtomicLong conflicts = new AtomicLong();
+
+   private ScheduledExecutorService flusher;
+
+   /**
+    * Start the flusher.
+    */
+   @PostConstruct
+   public void init() {
+      flusher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("room-write-behind").setDaemon(true).build());
+      flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Get a room's latest state if it has changes that may not be written yet.
+    *
+    * @param id room id
+    * @return copy of the room, empty if its stored state is current
+    */
+   public Optional<Room> getRoom(final int id) {
+      StagedRoom staged = pending.get(id);
+      if (staged == null) {
+         staged = flushing.get(id);
+      }
+
+      return staged == null ? Optional.empty() : Optional.of(copy(staged.getRoom()));
+   }
+
+   /**
+    * Apply an update to a room's latest state and stage the result to be written with the next flush. Only the
+    * fields the update sets are changed, on top of whatever is already staged for the room, so concurrent updates
+    * to different fields all apply. An update giving a version only applies if the latest state still has it.
+    *
+    * @param stored room as read from the database, used if it has no changes staged or being written
+    * @param changes fields to change, null for those kept as they are
+    * @return copy of the room's new state, empty if the update's version is no longer the latest
+    */
+   public Optional<Room> stage(final Room stored, final UpdateRoomData changes) {
+      final Room[] updated = new Room[1];
+      final boolean[] coalesced = new boolean[1];
+      pending.compute(stored.getId(), (id, existing) -> {
+         final StagedRoom latest = existing != null ? existing : flushing.get(id);
+         final Room room = copy(latest != null ? latest.getRoom() : stored);
+         if (changes.getVersion() != null && !changes.getVersion().equals(room.getVersion())) {
+            return existing;
+         }
+
+         if (StringUtils.isNotBlank(changes.getName())) {
+            room.setName(changes.getName());
+         }
+
+         if (changes.getPlaylistId() != null) {
+            room.setPlaylistId(changes.getPlaylistId());
+         }
+
+         if (changes.getIsPrivate() != null) {
+            room.setPrivate(changes.getIsPrivate());
+         }
+
+         room.setVersion(room.getVersion() + 1);
+         updated[0] = room;
+         coalesced[0] = existing != null;
+         return staged(room, existing);
+      });
+
+      if (coalesced[0]) {
+         coalescedUpdates.incrementAndGet();
+      }
+
+      return updated[0] == null ? Optional.empty() : Optional.of(copy(updated[0]));
+   }
+
+   /**
+    * Drop a room's staged state, e.g. after it was deleted.
+    *
+    * @param id room id
+    */
+   public void discard(final int id) {
+      pending.remove(id);
+      flushing.remove(id);
+   }
+
+   /**
+    * Get the number of updates that replaced a staged state instead of costing a write.
+    *
+    * @return coalesced updates since startup
+    */
+   public long getCoalescedUpdates() {
+      return coalescedUpdates.get();
+   }
+
+   /**
+    * Get the number of batches whose write failed and was retried.
+    *
+    * @return failed batches since startup
+    */
+   public long getFailedFlushes() {
+      return failedFlushes.get();
+   }
+
+   /**
+    * Get the number of rooms whose write was skipped because they were deleted or written by another node since
+    * their changes were staged.
+    *
+    * @return skipped writes since startup
+    */
+   public long getConflicts() {
+      return conflicts.get();
+   }
+
+   /**
+    * Write every staged room, one batch at a time. Rooms whose write fails are staged again unless they changed
+    * in the meantime, so they are retried with the next flush.
+    */
+   public synchronized void flush() {
+      List<StagedRoom> batch = new ArrayList<>(batchSize);
+
+      for (Integer id : pending.keySet()) {
+         final StagedRoom staged = take(id);
+         if (staged == null) {
+            continue;
+         }
+
+         batch.add(staged);
+
+         if (batch.size() == batchSize) {
+            write(batch);
+            batch = new ArrayList<>(batchSize);
+         }
+      }
+
+      if (!batch.isEmpty()) {
+         write(batch);
+      }
+   }
+
+   /**
+    * Stop the flusher and write what is still staged.
+    */
+   @PreDestroy
+   public void shutdown() {
+      if (flusher != null) {
+         flusher.shutdownNow();
+      }
+
+      flush();
+   }
+
+   private void write(final List<StagedRoom> batch) {
+      final List<Room> rooms = batch.stream().map(StagedRoom::getRoom).collect(Collectors.toList());
+      final Map<Integer, Long> baseVersions = new LinkedHashMap<>();
+      batch.forEach(staged -> baseVersions.put(staged.getRoom().getId(), staged.getBaseVersion()));
+
+      try {
+         final int[] updated = roomDao.updateAll(rooms, baseVersions);
+         for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+               conflicts.incrementAndGet();
+               LOGGER.warn("Room {} changed since version {}, its update to version {} was not written",
+                     rooms.get(i).getId(), baseVersions.get(rooms.get(i).getId()), rooms.get(i).getVersion());
+            }
+         }
+         invalidationService.publish(ROOM, rooms.stream().map(Room::getId).collect(Collectors.toList()));
+      } catch (RuntimeException ex) {
+         failedFlushes.incrementAndGet();
+         LOGGER.error("Writing {} room updates failed, they are retried on the next flush", batch.size(), ex);
+         // A room changed in the meantime keeps its new state, but is still based on what is stored
+         batch.forEach(staged -> pending.merge(staged.getRoom().getId(), staged,
+               (newer, failed) -> new StagedRoom(newer.getRoom(), failed.getBaseVersion())));
+      } finally {
+         batch.forEach(staged -> flushing.remove(staged.getRoom().getId(), staged));
+      }
+   }
+
+   /**
+    * Move a room's staged state to flushing in one step, so a change staged from then on is based on the version
+    * being written instead of being dropped with it. It is readable in flushing before it leaves pending, so readers
+    * never fall back to the stored state.
+    */
+   private StagedRoom take(final int id) {
+      final StagedRoom[] taken = new StagedRoom[1];
+      pending.computeIfPresent(id, (key, staged) -> {
+         flushing.put(key, staged);
+         taken[0] = staged;
+         return null;
+      });
+
+      return taken[0];
+   }
+
+   /**
+    * Stage a room, keeping the stored version of the state it replaces if that isn't written yet.
+    */
+   private StagedRoom staged(final Room room, final StagedRoom existing) {
+      return new StagedRoom(room, existing != null ? existing.getBaseVersion() : room.getVersion() - 1);
+   }
+
+   private Room copy(final Room room) {
+      return Room.builder()
+            .id(room.getId())
+            .name(room.getName())
+            .isPrivate(room.isPrivate())
+            .userId(room.getUserId())
+            .playlistId(room.getPlaylistId())
+            .version(room.getVersion())
+            .build();
+   }
+
+   /**
+    * A room's latest state and the stored version its write applies to.
+    */
+   @Getter
+   @AllArgsConstructor
+   private static final class StagedRoom {
+
+      private final Room room;
+
+      private final long baseVersion;
+   }
+}
@@ -0,0 +1,263 @@
+package app.service;
+
+import app.dao.PlaylistSongDao;
+import app.util.IntIntHashMap;
+import app.util.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds the songs related to a song by how many playlists they share. Keeps a sparse song-to-song co-occurrence
+ * matrix in memory: for each song, the songs it shares a playlist with and how many playlists they share. The
+ * matrix is built from every PlaylistSong row at startup, in parallel, and kept current as songs are added to and
+ * removed from playlists, each change costing O(size of the playlist). Rows are primitive int maps, so no Integer
+ * is boxed per pair. A song in a playlist more than once counts once.
+ */
+@Service
+public class SongRecommendationService {
+
+   private static final IntFunction<IntIntHashMap> NEW_MAP = id -> new IntIntHashMap();
+
+   @Autowired
+   private PlaylistSongDao playlistSongDao;
+
+   // Playlist id to the ids of its songs, each with the number of times it is in the playlist
+   private IntObjectHashMap<IntIntHashMap> playlists = new IntObjectHashMap<>();
+
+   // Song id to the ids of the songs sharing a playlist with it, each with the number of playlists they share
+   private IntObjectHashMap<IntIntHashMap> related = new IntObjectHashMap<>();
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   /**
+    * Build the matrix from every song in every playlist.
+    */
+   @PostConstruct
+   public void init() {
+      lock.writeLock().lock();
+      try {
+         final IntObjectHashMap<IntIntHashMap> loaded = new IntObjectHashMap<>();
+         playlistSongDao.forEachPlaylistSong((playlistId, songId) ->
+               loaded.computeIfAbsent(playlistId, NEW_MAP).addTo(songId, 1));
+
+         playlists = loaded;
+         related = countPairs(loaded);
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Get the songs sharing the most playlists with a song.
+    *
+    * @param songId song id
+    * @param limit maximum number of songs to return
+    * @return ids of the related songs, most shared playlists first, then by id; empty if the song shares none
+    */
+   public int[] getRelated(final int songId, final int limit) {
+      lock.readLock().lock();
+      try {
+         final IntIntHashMap row = related.get(songId);
+
+         return row == null ? new int[0] : top(row, limit);
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get the songs sharing the most playlists with a song, with how many they share.
+    *
+    * @param songId song id
+    * @param limit maximum number of songs to return
+    * @return new map of related song id to the number of playlists shared, empty if the song shares none
+    */
+   public IntIntHashMap getRelatedCounts(final int songId, final int limit) {
+      lock.readLock().lock();
+      try {
+         final IntIntHashMap row = related.get(songId);
+         final IntIntHashMap counts = new IntIntHashMap(row == null ? 0 : Math.min(limit, row.size()));
+
+         if (row != null) {
+            for (int other : top(row, limit)) {
+               counts.addTo(other, row.get(other));
+            }
+         }
+
+         return counts;
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song added to a playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void addSong(final int playlistId, final int songId) {
+      lock.writeLock().lock();
+      try {
+         final IntIntHashMap songs = playlists.computeIfAbsent(playlistId, NEW_MAP);
+
+         if (songs.addTo(songId, 1) == 1) {
+            songs.forEach((other, copies) -> link(songId, other, 1));
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a song removed from a playlist. Ignored if the song isn't in the playlist.
+    *
+    * @param playlistId playlist id
+    * @param songId song id
+    */
+   public void removeSong(final int playlistId, final int songId) {
+      lock.writeLock().lock();
+      try {
+         final IntIntHashMap songs = playlists.get(playlistId);
+
+         if (songs == null || !songs.containsKey(songId)) {
+            return;
+         }
+
+         if (songs.addTo(songId, -1) == 0) {
+            songs.forEach((other, copies) -> link(songId, other, -1));
+            if (songs.isEmpty()) {
+               playlists.remove(playlistId);
+            }
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Record a deleted playlist, unlinking every pair of its songs.
+    *
+    * @param playlistId playlist id
+    */
+   public void removePlaylist(final int playlistId) {
+      lock.writeLock().lock();
+      try {
+         final IntIntHashMap songs = playlists.remove(playlistId);
+
+         if (songs == null) {
+            return;
+         }
+
+         final int[] songIds = songs.keys();
+         for (int i = 0; i < songIds.length; i++) {
+            for (int j = i + 1; j < songIds.length; j++) {
+               link(songIds[i], songIds[j], -1);
+            }
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Rank a row's songs, most shared playlists first, then by id.
+    */
+   private static int[] top(final IntIntHashMap row, final int limit) {
+      // Shared playlists in the high half and the inverted id in the low half, so one sort ranks both
+      final int[] others = row.keys();
+      final long[] ranked = new long[others.length];
+      for (int i = 0; i < others.length; i++) {
+         ranked[i] = ((long) row.get(others[i]) << Integer.SIZE) | (Integer.MAX_VALUE - others[i]);
+      }
+      Arrays.sort(ranked);
+
+      final int[] result = new int[Math.min(limit, ranked.length)];
+      for (int i = 0; i < result.length; i++) {
+         result[i] = Integer.MAX_VALUE - (int) ranked[ranked.length - 1 - i];
+      }
+
+      return result;
+   }
+
+   /**
+    * Count every pair of songs sharing a playlist. Songs are split between as many partitions as there are
+    * processors by id; each partition counts the rows of its own songs only, so they are built in parallel
+    * without sharing anything and merging is just putting the rows together.
+    */
+   private static IntObjectHashMap<IntIntHashMap> countPairs(final IntObjectHashMap<IntIntHashMap> playlists) {
+      final List<int[]> members = new ArrayList<>(playlists.size());
+      playlists.forEach((playlistId, songs) -> members.add(songs.keys()));
+
+      final int partitions = Runtime.getRuntime().availableProcessors();
+      final List<IntObjectHashMap<IntIntHashMap>> parts = IntStream.range(0, partitions)
+            .parallel()
+            .mapToObj(partition -> countPairs(members, partition, partitions))
+            .collect(Collectors.toList());
+
+      final IntObjectHashMap<IntIntHashMap> rows = new IntObjectHashMap<>(
+            parts.stream().mapToInt(IntObjectHashMap::size).sum());
+      for (IntObjectHashMap<IntIntHashMap> part : parts) {
+         part.forEach(rows::put);
+      }
+
+      return rows;
+   }
+
+   private static IntObjectHashMap<IntIntHashMap> countPairs(final List<int[]> members, final int partition,
+                                                             final int partitions) {
+      final IntObjectHashMap<IntIntHashMap> rows = new IntObjectHashMap<>();
+
+      for (int[] songs : members) {
+         for (int song : songs) {
+            if (Math.floorMod(song, partitions) != partition) {
+               continue;
+            }
+
+            final IntIntHashMap row = rows.computeIfAbsent(song, NEW_MAP);
+            for (int other : songs) {
+               if (other != song) {
+                  row.addTo(other, 1);
+               }
+            }
+         }
+      }
+
+      return rows;
+   }
+
+   /**
+    * Add to the number of playlists two songs share, in both of their rows. Must hold the write lock.
+    */
+   private void link(final int song, final int other, final int delta) {
+      if (song != other) {
+         adjust(song, other, delta);
+         adjust(other, song, delta);
+      }
+   }
+
+   private void adjust(final int song, final int other, final int delta) {
+      final IntIntHashMap row = delta > 0 ? related.computeIfAbsent(song, NEW_MAP) : related.get(song);
+
+      if (row == null || (delta < 0 && !row.containsKey(other))) {
+         return;
+      }
+
+      row.addTo(other, delta);
+      if (row.isEmpty()) {
+         related.remove(song);
+      }
+   }
+}
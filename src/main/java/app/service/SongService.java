@@ -1,16 +1,40 @@
 package app.service;
 
+import app.dao.PlaylistDao;
 import app.dao.SongDao;
 import app.exception.ApiException;
+import app.model.Playlist;
+import app.model.PlaylistPage;
 import app.model.Song;
+import app.util.SingleFlight;
 import app.validation.ValidationError;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+
+import static app.constant.FieldConstants.CURSOR;
 import static app.constant.FieldConstants.REFERENCE;
 import static app.constant.FieldConstants.SONG;
 
@@ -20,21 +44,49 @@ public class SongService {
    @Autowired
    private SongDao songDao;
 
+   @Autowired
+   private PlaylistDao playlistDao;
+
+   @Autowired
+   private SongRecommendationService songRecommendationService;
+
+   @Autowired
+   private InvalidationService invalidationService;
+
+   @Value("${songs.playlist-count.cache-size:10000}")
+   private long playlistCountCacheSize;
+
+   @Value("${songs.playlist-count.cache-ttl-ms:300000}")
+   private long playlistCountCacheTtl;
+
+   // Concurrent reads of one song share a single lookup
+   private final SingleFlight<Integer, Song> songReads = new SingleFlight<>();
+
+   // Song id to the number of public playlists it is in
+   private Cache<Integer, Long> playlistCounts;
+
+   /**
+    * Create the playlist count cache, evicting the songs changed on other nodes.
+    */
+   @PostConstruct
+   public void init() {
+      playlistCounts = CacheBuilder.newBuilder()
+            .maximumSize(playlistCountCacheSize)
+            .expireAfterWrite(playlistCountCacheTtl, TimeUnit.MILLISECONDS)
+            .build();
+      invalidationService.subscribe(SONG, playlistCounts::invalidate);
+   }
+
    /**
-    * Service call to get a song by id.
+    * Service call to get a song by id. Concurrent calls for the same song share one lookup and the Song it
+    * returns.
     *
     * @param id song id to check for
     * @return Song found for given id
     * @throws ApiException if no Song exists for given id
     */
    public Song getSongById(final int id) throws ApiException {
-      final Optional<Song> song = songDao.findById(id);
-
-      if (song.isPresent()) {
-         return song.get();
-      }
-
-      throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
+      return songReads.execute(id, () -> loadSong(id));
    }
 
    /**
@@ -56,6 +108,95 @@ public class SongService {
       return songDao.findByTitleContaining(title);
    }
 
+   /**
+    * Service call to get the songs sharing the most playlists with a song.
+    *
+    * @param id song id
+    * @param limit maximum number of songs to return
+    * @return List of related songs, most shared playlists first
+    * @throws ApiException if no Song exists for given id
+    */
+   public List<Song> getRelatedSongs(final int id, final int limit) {
+      final int[] relatedIds = songRecommendationService.getRelated(id, limit);
+
+      if (relatedIds.length == 0) {
+         if (!songDao.existsById(id)) {
+            throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
+         }
+
+         return Collections.emptyList();
+      }
+
+      final Map<Integer, Song> songs = songDao.findAllById(Ints.asList(relatedIds)).stream()
+            .collect(Collectors.toMap(Song::getId, Function.identity()));
+
+      return Arrays.stream(relatedIds)
+            .mapToObj(songs::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+   }
+
+   /**
+    * Service call to get a page of the public playlists a song is in, by playlist id. Pages are read from the
+    * (song_id, playlist_id) index, starting after the last playlist of the previous page, so every page costs the
+    * same however deep it is. The total is cached per song, and only used for the total: the page is always read,
+    * so a stale count never hides playlists.
+    *
+    * @param id song id
+    * @param cursor nextCursor of the previous page, null for the first page
+    * @param limit maximum number of playlists on the page
+    * @return playlists, the number of public playlists the song is in, and the cursor of the next page if any
+    * @throws ApiException if no Song exists for given id, or if the cursor is malformed
+    */
+   public PlaylistPage getPlaylistsWithSong(final int id, final String cursor, final int limit) {
+      final long total = getPlaylistCount(id);
+      final int afterId = cursor == null ? 0 : decodeCursor(cursor);
+      final List<Playlist> playlists = playlistDao.findPublicBySongId(id, afterId, PageRequest.of(0, limit + 1));
+
+      if (playlists.isEmpty() && total == 0 && !songDao.existsById(id)) {
+         throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
+      }
+
+      final boolean more = playlists.size() > limit;
+      final List<Playlist> page = more ? playlists.subList(0, limit) : playlists;
+
+      return PlaylistPage.builder()
+            .playlists(page)
+            .total(total)
+            .nextCursor(more ? encodeCursor(page.get(limit - 1).getId()) : null)
+            .build();
+   }
+
+   /**
+    * Service call to get the number of public playlists a song is in, cached for
+    * songs.playlist-count.cache-ttl-ms.
+    *
+    * @param id song id
+    * @return number of public playlists with the song, 0 if the song doesn't exist
+    */
+   public long getPlaylistCount(final int id) {
+      final Long cached = playlistCounts.getIfPresent(id);
+      if (cached != null) {
+         return cached;
+      }
+
+      final long count = playlistDao.countPublicBySongId(id);
+      playlistCounts.put(id, count);
+
+      return count;
+   }
+
+   /**
+    * Drop songs' cached playlist counts, here and on every other node, e.g. after they were added to or removed
+    * from a playlist.
+    *
+    * @param ids song ids
+    */
+   public void evictPlaylistCounts(final Collection<Integer> ids) {
+      playlistCounts.invalidateAll(ids);
+      invalidationService.publish(SONG, ids);
+   }
+
    /**
     * Service call for creating a new song.
     * Checks if a song already exists with the given reference.
@@ -70,6 +211,7 @@ public class SongService {
       }
 
       songDao.save(song);
+      invalidationService.publish(SONG, song.getId());
    }
 
    /**
@@ -78,14 +220,44 @@ public class SongService {
     * @param id song id to check for
     */
    public void deleteSongById(final int id) {
-      final Optional<Song> existingSong = songDao.findById(id);
-
-      if (existingSong.isPresent()) {
-         songDao.deleteById(id);
-      }
-      else {
+      if (songDao.deleteRowById(id) == 0) {
          throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
       }
+
+      songReads.forget(id);
+      playlistCounts.invalidate(id);
+      invalidationService.publish(SONG, id);
+   }
+
+   /**
+    * Get the single-flight groups of this service's hot reads by name, for their metrics.
+    *
+    * @return single-flight groups
+    */
+   public Map<String, SingleFlight<?, ?>> getSingleFlights() {
+      return ImmutableMap.of("song", songReads);
    }
 
+   private Song loadSong(final int id) {
+      final Optional<Song> song = songDao.findById(id);
+
+      if (song.isPresent()) {
+         return song.get();
+      }
+
+      throw new ApiException("Song does not exist", ValidationError.NOT_FOUND, SONG);
+   }
+
+   private static String encodeCursor(final int playlistId) {
+      return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(Integer.toString(playlistId).getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static int decodeCursor(final String cursor) {
+      try {
+         return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+      } catch (IllegalArgumentException ex) {
+         throw new ApiException("Cursor is invalid", ValidationError.BAD_VALUE, CURSOR);
+      }
+   }
 }
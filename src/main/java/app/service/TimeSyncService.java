@@ -0,0 +1,28 @@
+package app.service;
+
+import app.model.TimeSync;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Answers clock samples so clients can estimate their offset from the server clock, which room playback state is
+ * expressed in. Samples are stateless and cost the server nothing beyond the reply.
+ */
+@Service
+public class TimeSyncService {
+
+   /**
+    * Build the reply to a clock sample, stamped with the time it is sent.
+    *
+    * @param clientTime client time the request was sent
+    * @param receiveTime server time the request arrived, taken as early as possible
+    * @return sample to send back to the client
+    */
+   public TimeSync sample(final long clientTime, final long receiveTime) {
+      return TimeSync.builder()
+            .clientTime(clientTime)
+            .receiveTime(receiveTime)
+            .transmitTime(System.currentTimeMillis())
+            .build();
+   }
+}
@@ -6,20 +6,26 @@ import app.exception.ApiException;
 import app.model.Playlist;
 import app.model.User;
 import app.request.UpdateUserData;
+import app.util.SingleFlight;
 import app.validation.ValidationError;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.ImmutableMap;
+
 import static app.constant.FieldConstants.EMAIL;
 import static app.constant.FieldConstants.OLD_PASSWORD;
 import static app.constant.FieldConstants.USER;
 import static app.constant.FieldConstants.USERNAME;
+import static app.constant.FieldConstants.VERSION;
 
 @Service
 public class UserService {
@@ -30,6 +36,12 @@ public class UserService {
    @Autowired
    private PlaylistDao playlistDao;
 
+   @Autowired
+   private InvalidationService invalidationService;
+
+   // Concurrent reads of one user share a single lookup
+   private final SingleFlight<Integer, User> userReads = new SingleFlight<>();
+
    /**
     * Service call to get all playlists by user id.
     *
@@ -37,9 +49,7 @@ public class UserService {
     * @return List of Playlists found for given user id
     */
    public List<Playlist> getPlaylistsByUserId(final int id) {
-      final Optional<User> user = userDao.findById(id);
-
-      if (!user.isPresent()) {
+      if (!userDao.existsById(id)) {
          throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
       }
 
@@ -47,57 +57,53 @@ public class UserService {
    }
 
    /**
-    * Service call to get a user by id.
+    * Service call to get a user by id. Concurrent calls for the same user share one lookup and the User it
+    * returns.
     *
     * @param id user id to check for
     * @return User found for given id
     * @throws ApiException if no User exists for given id
     */
    public User getUserById(final int id) throws ApiException {
-      final Optional<User> user = userDao.findById(id);
-
-      if (user.isPresent()) {
-         return user.get();
-      }
-
-      throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
+      return userReads.execute(id, () -> loadUser(id));
    }
 
    /**
-    * Service call to update user by id.
+    * Service call to update user by id. Only the given fields are written, with one statement and without reading
+    * the user first; the user is only read to tell why an update didn't apply. An update with no field to change
+    * writes nothing and only checks the user exists, at the given version. Setting the user's own email again
+    * succeeds.
     *
     * @param id user id to check for
     * @param updateUserData contains information to update a user
     * @throws ApiException if no User exists for given id, if old password isn't correct, if email already exists
+    * @throws ApiException if the user no longer has the version the update is based on
     */
    public void updateUserById(final int id, final UpdateUserData updateUserData) throws ApiException {
-
-      final Optional<User> user = userDao.findById(id);
-
-      if (!user.isPresent()) {
-         throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
+      final String email = StringUtils.isNotBlank(updateUserData.getEmail()) ? updateUserData.getEmail() : null;
+      final boolean passwordChanged = StringUtils.isNotBlank(updateUserData.getPassword())
+            && StringUtils.isNotBlank(updateUserData.getOldPassword());
+      final String oldPassword = passwordChanged ? updateUserData.getOldPassword() : null;
+
+      final int updated;
+      try {
+         updated = userDao.updatePartially(id, updateUserData.getVersion(), email,
+               passwordChanged ? updateUserData.getPassword() : null, oldPassword);
+      } catch (DuplicateKeyException ex) {
+         throw new ApiException("Email already exists", ValidationError.DUPLICATE_VALUE, EMAIL);
       }
 
-      if (StringUtils.isNotBlank(updateUserData.getPassword())
-            && StringUtils.isNotBlank(updateUserData.getOldPassword())) {
-         if (!updateUserData.getOldPassword().equals(user.get().getPasswordHash())) {
-            throw new ApiException("Old password isn't correct", ValidationError.BAD_VALUE, OLD_PASSWORD);
-         }
-
-         user.get().setPasswordHash(updateUserData.getPassword());
+      if (updated == 0) {
+         throw notUpdated(id, oldPassword);
       }
 
-      if (StringUtils.isNotBlank(updateUserData.getEmail())) {
-         final Optional<User> existingUser = userDao.findByEmail(updateUserData.getEmail());
-
-         if (existingUser.isPresent()) {
-            throw new ApiException("Email already exists", ValidationError.DUPLICATE_VALUE, EMAIL);
-         }
-
-         user.get().setEmail(updateUserData.getEmail());
+      // Nothing was written, only checked
+      if (email == null && !passwordChanged) {
+         return;
       }
 
-      userDao.save(user.get());
+      userReads.forget(id);
+      invalidationService.publish(USER, id);
    }
 
    public List<User> getAllUsers() {
@@ -140,6 +146,7 @@ public class UserService {
       }
 
       userDao.save(user);
+      invalidationService.publish(USER, user.getId());
    }
 
    /**
@@ -148,13 +155,47 @@ public class UserService {
     * @param id user id to check for
     */
    public void deleteUserById(final int id) {
+      if (userDao.deleteRowById(id) == 0) {
+         throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
+      }
+
+      userReads.forget(id);
+      invalidationService.publish(USER, id);
+   }
+
+   /**
+    * Get the single-flight groups of this service's hot reads by name, for their metrics.
+    *
+    * @return single-flight groups
+    */
+   public Map<String, SingleFlight<?, ?>> getSingleFlights() {
+      return ImmutableMap.of("user", userReads);
+   }
+
+   private User loadUser(final int id) {
       final Optional<User> user = userDao.findById(id);
 
       if (user.isPresent()) {
-         userDao.deleteById(id);
+         return user.get();
       }
-      else {
-         throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
+
+      throw new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
+   }
+
+   /**
+    * Tell why an update of a user matched no row, reading the user now that the update failed.
+    */
+   private ApiException notUpdated(final int id, final String oldPassword) {
+      final Optional<User> user = userDao.findById(id);
+
+      if (!user.isPresent()) {
+         return new ApiException("User does not exist", ValidationError.NOT_FOUND, USER);
       }
+
+      if (oldPassword != null && !oldPassword.equals(user.get().getPasswordHash())) {
+         return new ApiException("Old password isn't correct", ValidationError.BAD_VALUE, OLD_PASSWORD);
+      }
+
+      return new ApiException("User was changed by another update", ValidationError.CONFLICT, VERSION);
    }
-}
\ No newline at end of file
+}
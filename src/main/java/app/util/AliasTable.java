@@ -0,0 +1,95 @@
+package app.util;
+
+import java.util.Random;
+
+/**
+ * Walker's alias method (Vose's variant): draws index i with probability weights[i] / sum(weights) in O(1), after
+ * O(n) setup. Every index gets one column of the table, split between itself and at most one "alias" that tops it
+ * up to the average weight, so a draw is one uniform column pick and one biased coin flip. Immutable and thread
+ * safe; callers bring their own Random.
+ */
+public class AliasTable {
+
+   private final double[] probability;
+   private final int[] alias;
+
+   /**
+    * Build the table.
+    *
+    * @param weights non-negative weight of each index, at least one positive
+    * @throws IllegalArgumentException if there are no weights, a weight is negative, or they add up to 0
+    */
+   public AliasTable(final double[] weights) {
+      final int n = weights.length;
+      double total = 0;
+      for (double weight : weights) {
+         if (weight < 0 || Double.isNaN(weight)) {
+            throw new IllegalArgumentException("Weights must not be negative");
+         }
+         total += weight;
+      }
+
+      if (n == 0 || total <= 0) {
+         throw new IllegalArgumentException("Weights must add up to more than 0");
+      }
+
+      probability = new double[n];
+      alias = new int[n];
+
+      // Scaled so the average is 1; columns below it are topped up from columns above it
+      final double[] scaled = new double[n];
+      final int[] small = new int[n];
+      final int[] large = new int[n];
+      int smallCount = 0;
+      int largeCount = 0;
+      for (int i = 0; i < n; i++) {
+         scaled[i] = weights[i] * n / total;
+         if (scaled[i] < 1) {
+            small[smallCount++] = i;
+         }
+         else {
+            large[largeCount++] = i;
+         }
+      }
+
+      while (smallCount > 0 && largeCount > 0) {
+         final int less = small[--smallCount];
+         final int more = large[--largeCount];
+
+         probability[less] = scaled[less];
+         alias[less] = more;
+
+         scaled[more] = scaled[more] + scaled[less] - 1;
+         if (scaled[more] < 1) {
+            small[smallCount++] = more;
+         }
+         else {
+            large[largeCount++] = more;
+         }
+      }
+
+      // Whatever is left is 1 up to rounding error
+      while (largeCount > 0) {
+         probability[large[--largeCount]] = 1;
+      }
+      while (smallCount > 0) {
+         probability[small[--smallCount]] = 1;
+      }
+   }
+
+   /**
+    * Draw an index.
+    *
+    * @param random source of randomness
+    * @return index drawn with probability proportional to its weight
+    */
+   public int sample(final Random random) {
+      final int column = random.nextInt(probability.length);
+
+      return random.nextDouble() < probability[column] ? column : alias[column];
+   }
+
+   public int size() {
+      return probability.length;
+   }
+}
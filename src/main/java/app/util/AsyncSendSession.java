@@ -0,0 +1,183 @@
+package app.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+/**
+ * WebSocket session whose sends never wait on the client. ConcurrentWebSocketSessionDecorator writes on the
+ * sending thread, so a listener that stops reading holds that thread until the send time limit, and a broadcast
+ * holds it once per such listener. Here messages are queued per session and written one at a time with the
+ * container's asynchronous send, each completed write starting the next, so no thread waits for a write and a slow
+ * listener only holds up itself. A session with more than bufferSizeLimit bytes queued, or whose write takes longer
+ * than sendTimeLimit, is closed with SESSION_NOT_RELIABLE; its client catches up when it reconnects. Only text and
+ * binary messages are supported. Sessions not backed by a JSR-356 session are written to directly.
+ */
+public class AsyncSendSession extends WebSocketSessionDecorator {
+
+   private final int bufferSizeLimit;
+
+   // Null if the container isn't JSR-356, then messages are written on the sending thread
+   private final Session nativeSession;
+
+   // Messages waiting for the write in progress; guards bufferSize, writing and failed too
+   private final Queue<WebSocketMessage<?>> queue = new ArrayDeque<>();
+
+   private int bufferSize;
+
+   private boolean writing;
+
+   private boolean failed;
+
+   /**
+    * Decorate a session.
+    *
+    * @param delegate session to send to
+    * @param sendTimeLimit millis a write may take before the session is closed
+    * @param bufferSizeLimit bytes that may be queued before the session is closed
+    */
+   public AsyncSendSession(final WebSocketSession delegate, final long sendTimeLimit, final int bufferSizeLimit) {
+      super(delegate);
+      this.bufferSizeLimit = bufferSizeLimit;
+
+      final WebSocketSession last = WebSocketSessionDecorator.unwrap(delegate);
+      nativeSession = last instanceof NativeWebSocketSession
+            ? ((NativeWebSocketSession) last).getNativeSession(Session.class)
+            : null;
+      if (nativeSession != null) {
+         nativeSession.getAsyncRemote().setSendTimeout(sendTimeLimit);
+      }
+   }
+
+   /**
+    * Queue a message and return. Does nothing once the session failed.
+    *
+    * @param message text or binary message, may be sent to other sessions too
+    * @throws IOException only if the session is written to directly and the write failed
+    */
+   @Override
+   public void sendMessage(final WebSocketMessage<?> message) throws IOException {
+      if (nativeSession == null) {
+         synchronized (queue) {
+            super.sendMessage(message);
+         }
+         return;
+      }
+
+      final boolean overflowed;
+      synchronized (queue) {
+         if (failed) {
+            return;
+         }
+
+         if (!writing) {
+            writing = true;
+            overflowed = false;
+         }
+         else if (bufferSize + message.getPayloadLength() <= bufferSizeLimit) {
+            queue.add(message);
+            bufferSize += message.getPayloadLength();
+            return;
+         }
+         else {
+            fail();
+            overflowed = true;
+         }
+      }
+
+      if (overflowed) {
+         closeUnreliable();
+      }
+      else {
+         write(message);
+      }
+   }
+
+   /**
+    * Get the bytes queued behind the write in progress.
+    *
+    * @return queued bytes
+    */
+   public int getBufferSize() {
+      synchronized (queue) {
+         return bufferSize;
+      }
+   }
+
+   private void write(final WebSocketMessage<?> message) {
+      final SendHandler handler = this::written;
+
+      try {
+         if (message instanceof BinaryMessage) {
+            // Duplicated, as the same message may be written to other sessions and sending moves its position
+            nativeSession.getAsyncRemote().sendBinary(((BinaryMessage) message).getPayload().duplicate(), handler);
+         }
+         else if (message instanceof TextMessage) {
+            nativeSession.getAsyncRemote().sendText(((TextMessage) message).getPayload(), handler);
+         }
+         else {
+            throw new IllegalArgumentException("Unsupported message type " + message.getClass().getSimpleName());
+         }
+      } catch (RuntimeException ex) {
+         written(new SendResult(ex));
+      }
+   }
+
+   /**
+    * Runs on the container's thread once a write completed, or on the sending thread if it failed to start.
+    */
+   private void written(final SendResult result) {
+      final WebSocketMessage<?> next;
+      synchronized (queue) {
+         if (!result.isOK()) {
+            fail();
+            next = null;
+         }
+         else {
+            next = queue.poll();
+            if (next == null) {
+               writing = false;
+            }
+            else {
+               bufferSize -= next.getPayloadLength();
+            }
+         }
+      }
+
+      if (!result.isOK()) {
+         closeUnreliable();
+      }
+      else if (next != null) {
+         write(next);
+      }
+   }
+
+   /**
+    * Drop what is queued and refuse what comes next. Called holding the queue's lock.
+    */
+   private void fail() {
+      failed = true;
+      queue.clear();
+      bufferSize = 0;
+   }
+
+   private void closeUnreliable() {
+      try {
+         close(CloseStatus.SESSION_NOT_RELIABLE);
+      } catch (IOException | RuntimeException ex) {
+         // Already closing
+      }
+   }
+}
@@ -0,0 +1,108 @@
+package app.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds how many blocking calls run at once. Virtual threads make it cheap to have thousands of requests
+ * in flight, so without a limit they would all queue up inside the connection pool instead of here.
+ */
+public class BlockingCallLimiter {
+
+   private final Semaphore permits;
+   private final int maxConcurrentCalls;
+   private final ThreadLocal<Boolean> holdsPermit = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+   private final LongAdder completedCalls = new LongAdder();
+   private final LongAdder totalWaitNanos = new LongAdder();
+   private final AtomicLong maxWaitNanos = new AtomicLong();
+
+   /**
+    * Functional interface for a blocking call that may throw anything, e.g. a proceeding join point.
+    *
+    * @param <T> type returned by the call
+    */
+   @FunctionalInterface
+   public interface BlockingCall<T> {
+      T call() throws Throwable;
+   }
+
+   /**
+    * Constructor for the maximum number of concurrent calls.
+    *
+    * @param maxConcurrentCalls number of calls allowed to run at the same time
+    */
+   public BlockingCallLimiter(final int maxConcurrentCalls) {
+      if (maxConcurrentCalls <= 0) {
+         throw new IllegalArgumentException("maxConcurrentCalls must be positive");
+      }
+
+      this.maxConcurrentCalls = maxConcurrentCalls;
+      this.permits = new Semaphore(maxConcurrentCalls, true);
+   }
+
+   /**
+    * Run the call once a permit is available. Nested calls on a thread that already holds a permit run
+    * immediately so a call can never deadlock waiting on itself.
+    *
+    * @param call the blocking call to run
+    * @param <T> type returned by the call
+    * @return the result of the call
+    * @throws Throwable anything thrown by the call, or InterruptedException if interrupted while waiting
+    */
+   public <T> T call(final BlockingCall<T> call) throws Throwable {
+      if (holdsPermit.get()) {
+         return call.call();
+      }
+
+      final long start = System.nanoTime();
+      permits.acquire();
+      recordWait(System.nanoTime() - start);
+
+      holdsPermit.set(Boolean.TRUE);
+      try {
+         return call.call();
+      } finally {
+         holdsPermit.set(Boolean.FALSE);
+         permits.release();
+         completedCalls.increment();
+      }
+   }
+
+   public int getMaxConcurrentCalls() {
+      return maxConcurrentCalls;
+   }
+
+   public int getActiveCalls() {
+      return maxConcurrentCalls - permits.availablePermits();
+   }
+
+   public int getWaitingCalls() {
+      return permits.getQueueLength();
+   }
+
+   public long getCompletedCalls() {
+      return completedCalls.sum();
+   }
+
+   /**
+    * Get the average time calls waited for a permit.
+    *
+    * @return average wait in milliseconds, 0 if no calls completed yet
+    */
+   public double getAverageWaitMillis() {
+      final long calls = completedCalls.sum();
+      return calls == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum()) / calls / 1000;
+   }
+
+   public double getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()) / 1000.0;
+   }
+
+   private void recordWait(final long waitNanos) {
+      totalWaitNanos.add(waitNanos);
+      maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+   }
+}
@@ -0,0 +1,102 @@
+package app.util;
+
+import app.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size history of a room's most recent chat messages. Only one thread may append, any thread may read.
+ * Appending never allocates or blocks; once full, each new message overwrites the oldest.
+ */
+public class ChatRingBuffer {
+
+   private final AtomicReferenceArray<ChatMessage> slots;
+
+   // Sequence of the last appended message, 0 while empty. Written only by the appending thread.
+   private volatile long lastSequence;
+
+   /**
+    * Constructor for the number of messages kept.
+    *
+    * @param capacity number of messages kept
+    */
+   public ChatRingBuffer(final int capacity) {
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("capacity must be positive");
+      }
+
+      this.slots = new AtomicReferenceArray<>(capacity);
+   }
+
+   /**
+    * Give the message the next sequence number and store it, overwriting the oldest message if full.
+    * Must only be called from the buffer's single writer.
+    *
+    * @param message message to store
+    * @return sequence number given to the message
+    */
+   public long append(final ChatMessage message) {
+      final long sequence = lastSequence + 1;
+      message.setSequence(sequence);
+      slots.set((int) (sequence % slots.length()), message);
+      lastSequence = sequence;
+
+      return sequence;
+   }
+
+   /**
+    * Store a message that already has a sequence number, e.g. reloaded from the database or handed over from
+    * another node, keeping its number so the cursors clients hold stay valid. Messages must be restored oldest
+    * first; one numbered no later than the last message is given the next number, as by append.
+    * Must only be called from the buffer's single writer.
+    *
+    * @param message message to store
+    * @return sequence number of the message
+    */
+   public long restore(final ChatMessage message) {
+      if (message.getSequence() <= lastSequence) {
+         return append(message);
+      }
+
+      final long sequence = message.getSequence();
+      slots.set((int) (sequence % slots.length()), message);
+      lastSequence = sequence;
+
+      return sequence;
+   }
+
+   /**
+    * Get the messages stored after the given sequence number, oldest first. Messages that were already
+    * overwritten are skipped. A sequence number after the last message's was handed out by an earlier history of
+    * the room, e.g. before a restart that lost it, so the caller gets everything stored to start over from.
+    *
+    * @param since sequence number of the last message the caller has, 0 for everything
+    * @return messages with a sequence number greater than since, or every message if since is ahead of them
+    */
+   public List<ChatMessage> since(final long since) {
+      final long last = lastSequence;
+      final long first = Math.max(since > last ? 1 : since + 1, last - slots.length() + 1);
+      final List<ChatMessage> messages = new ArrayList<>((int) Math.max(0, last - first + 1));
+
+      for (long sequence = Math.max(1, first); sequence <= last; sequence++) {
+         final ChatMessage message = slots.get((int) (sequence % slots.length()));
+
+         // The writer may have lapped us while reading
+         if (message != null && message.getSequence() == sequence) {
+            messages.add(message);
+         }
+      }
+
+      return messages;
+   }
+
+   public long getLastSequence() {
+      return lastSequence;
+   }
+
+   public int getCapacity() {
+      return slots.length();
+   }
+}
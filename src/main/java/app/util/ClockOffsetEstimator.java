@@ -0,0 +1,125 @@
+package app.util;
+
+import java.util.Arrays;
+
+/**
+ * Reference client-side estimator of the offset between the local clock and the server clock, from NTP-style
+ * samples (GET /time or TIME messages on a live room connection). Each sample gives an offset that is off by at
+ * most half its round trip, so the estimate comes from the fastest recent samples: those within a small margin of
+ * the lowest round trip, taking the median of their offsets. Samples slowed down by queueing or retransmits are
+ * ignored rather than averaged in.
+ *
+ * <p>A client takes a burst of samples when it joins a room (five to eight, a few hundred milliseconds apart), then
+ * one every minute or so to follow drift. A room's playback position is then
+ * {@code toServerTime(System.currentTimeMillis()) - state.getStartedAt()} while it is playing.
+ *
+ * <p>Not thread safe.
+ */
+public class ClockOffsetEstimator {
+
+   // Round trips this much above the lowest still count, absorbing the millisecond granularity of the timestamps
+   private static final long MIN_MARGIN_MS = 2;
+
+   private final long[] offsets;
+   private final long[] roundTrips;
+   private int count;
+   private int next;
+
+   /**
+    * Constructor for the number of recent samples kept.
+    *
+    * @param windowSize number of samples kept, older samples are dropped so drift is followed
+    */
+   public ClockOffsetEstimator(final int windowSize) {
+      if (windowSize <= 0) {
+         throw new IllegalArgumentException("windowSize must be positive");
+      }
+
+      this.offsets = new long[windowSize];
+      this.roundTrips = new long[windowSize];
+   }
+
+   /**
+    * Add a sample. Times are epoch milliseconds.
+    *
+    * @param clientSendTime local time the request was sent
+    * @param serverReceiveTime server time the request arrived
+    * @param serverSendTime server time the reply was sent
+    * @param clientReceiveTime local time the reply arrived
+    */
+   public void addSample(final long clientSendTime, final long serverReceiveTime, final long serverSendTime,
+                         final long clientReceiveTime) {
+      final long roundTrip = (clientReceiveTime - clientSendTime) - (serverSendTime - serverReceiveTime);
+
+      offsets[next] = ((serverReceiveTime - clientSendTime) + (serverSendTime - clientReceiveTime)) / 2;
+      roundTrips[next] = Math.max(0, roundTrip);
+      next = (next + 1) % offsets.length;
+      count = Math.min(count + 1, offsets.length);
+   }
+
+   /**
+    * Check whether any sample was added.
+    *
+    * @return true if getOffset can be used
+    */
+   public boolean hasEstimate() {
+      return count > 0;
+   }
+
+   /**
+    * Get the estimated offset of the server clock from the local clock.
+    *
+    * @return milliseconds to add to local time to get server time, 0 without samples
+    */
+   public long getOffset() {
+      if (count == 0) {
+         return 0;
+      }
+
+      final long limit = getRoundTripTime() + Math.max(MIN_MARGIN_MS, getRoundTripTime() / 2);
+
+      final long[] candidates = new long[count];
+      int size = 0;
+      for (int i = 0; i < count; i++) {
+         if (roundTrips[i] <= limit) {
+            candidates[size++] = offsets[i];
+         }
+      }
+
+      Arrays.sort(candidates, 0, size);
+      return candidates[size / 2];
+   }
+
+   /**
+    * Get the lowest round trip among the kept samples.
+    *
+    * @return round trip in milliseconds, 0 without samples
+    */
+   public long getRoundTripTime() {
+      long lowest = Long.MAX_VALUE;
+      for (int i = 0; i < count; i++) {
+         lowest = Math.min(lowest, roundTrips[i]);
+      }
+
+      return count == 0 ? 0 : lowest;
+   }
+
+   /**
+    * Get the bound on the estimate's error, half the lowest round trip.
+    *
+    * @return error bound in milliseconds
+    */
+   public long getErrorBound() {
+      return (getRoundTripTime() + 1) / 2;
+   }
+
+   /**
+    * Convert a local time to server time.
+    *
+    * @param localTime local epoch milliseconds
+    * @return corresponding server epoch milliseconds
+    */
+   public long toServerTime(final long localTime) {
+      return localTime + getOffset();
+   }
+}
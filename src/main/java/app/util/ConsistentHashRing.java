@@ -0,0 +1,92 @@
+package app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Immutable consistent-hash ring. Each member is placed at several points on the ring and a key belongs to the
+ * first member point at or after the key's hash, so adding or removing a member only moves the keys next to
+ * its points. Lookups are a binary search over a sorted array.
+ *
+ * @param <T> member type, placed on the ring by its toString
+ */
+public final class ConsistentHashRing<T> {
+
+   private static final HashFunction HASH = Hashing.murmur3_128();
+
+   private final List<T> members;
+   private final long[] points;
+   private final Object[] owners;
+
+   /**
+    * Constructor for the members and the number of points per member.
+    *
+    * @param members members of the ring, duplicates are ignored
+    * @param virtualNodes points per member, more points spread keys more evenly
+    */
+   public ConsistentHashRing(final Collection<T> members, final int virtualNodes) {
+      if (virtualNodes <= 0) {
+         throw new IllegalArgumentException("virtualNodes must be positive");
+      }
+
+      this.members = ImmutableList.sortedCopyOf(Comparator.comparing(Object::toString), new LinkedHashSet<>(members));
+
+      final long[][] entries = new long[this.members.size() * virtualNodes][];
+      int entry = 0;
+      for (int member = 0; member < this.members.size(); member++) {
+         for (int node = 0; node < virtualNodes; node++) {
+            final long point = HASH.hashString(this.members.get(member) + "#" + node, StandardCharsets.UTF_8)
+                  .asLong();
+            entries[entry++] = new long[] {point, member};
+         }
+      }
+
+      // Sorting by point, then member, keeps lookups the same on every node even if two points collide
+      Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+      this.points = new long[entries.length];
+      this.owners = new Object[entries.length];
+      for (int i = 0; i < entries.length; i++) {
+         points[i] = entries[i][0];
+         owners[i] = this.members.get((int) entries[i][1]);
+      }
+   }
+
+   /**
+    * Get the member that owns the key.
+    *
+    * @param key key to look up
+    * @return owning member, null if the ring has no members
+    */
+   @SuppressWarnings("unchecked")
+   public T getOwner(final int key) {
+      if (points.length == 0) {
+         return null;
+      }
+
+      final long hash = HASH.hashInt(key).asLong();
+      int index = Arrays.binarySearch(points, hash);
+      if (index < 0) {
+         index = -index - 1;
+      }
+
+      return (T) owners[index == points.length ? 0 : index];
+   }
+
+   /**
+    * Get the members of the ring.
+    *
+    * @return members sorted by their toString
+    */
+   public List<T> getMembers() {
+      return members;
+   }
+}
@@ -0,0 +1,95 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Fixed size log of the most recent changes to a versioned value, so a client that is a few versions behind can
+ * catch up from the changes instead of fetching the whole value. Versions are consecutive; once full, each new
+ * change overwrites the oldest. Not thread safe, callers guard it with the lock that guards the value.
+ *
+ * @param <T> type of the encoded changes
+ */
+public class DeltaLog<T> {
+
+   private final Object[] slots;
+
+   // Version of the newest change and number of changes kept, both 0 while empty
+   private long lastVersion;
+   private int size;
+
+   /**
+    * Constructor for the number of changes kept.
+    *
+    * @param capacity number of changes kept
+    */
+   public DeltaLog(final int capacity) {
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("capacity must be positive");
+      }
+
+      this.slots = new Object[capacity];
+   }
+
+   /**
+    * Store the change that produced the given version. If it doesn't directly follow the newest change, e.g. after
+    * the value was restored from elsewhere, the older changes no longer apply and are dropped.
+    *
+    * @param version version of the value after the change
+    * @param delta encoded change
+    */
+   public void append(final long version, final T delta) {
+      if (version != lastVersion + 1) {
+         reset(version - 1);
+      }
+
+      slots[(int) (version % slots.length)] = delta;
+      lastVersion = version;
+      size = Math.min(size + 1, slots.length);
+   }
+
+   /**
+    * Drop every change, starting over from the given version.
+    *
+    * @param version current version of the value
+    */
+   public void reset(final long version) {
+      lastVersion = version;
+      size = 0;
+   }
+
+   /**
+    * Get the changes made after the given version, oldest first.
+    *
+    * @param version version the caller has
+    * @return changes to apply to reach the newest version, empty list if the caller is up to date, or empty if the
+    *     log no longer goes back that far
+    */
+   @SuppressWarnings("unchecked")
+   public Optional<List<T>> since(final long version) {
+      if (version >= lastVersion) {
+         return version == lastVersion ? Optional.of(Collections.emptyList()) : Optional.empty();
+      }
+
+      if (version < lastVersion - size) {
+         return Optional.empty();
+      }
+
+      final List<T> deltas = new ArrayList<>((int) (lastVersion - version));
+      for (long v = version + 1; v <= lastVersion; v++) {
+         deltas.add((T) slots[(int) (v % slots.length)]);
+      }
+
+      return Optional.of(deltas);
+   }
+
+   public long getLastVersion() {
+      return lastVersion;
+   }
+
+   public int getSize() {
+      return size;
+   }
+}
@@ -0,0 +1,214 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Max-heap of keys that also tracks where each key sits in the heap, so a key's priority can be changed or the
+ * key removed in O(log n) instead of searching the heap. Keys with equal priority come out in the order they
+ * were added. Not thread safe; meant to be owned by a single writer.
+ *
+ * @param <K> key type
+ */
+public class IndexedPriorityQueue<K> {
+
+   private static final Comparator<Node<?>> ORDER = Comparator.<Node<?>>comparingLong(node -> node.priority)
+         .reversed()
+         .thenComparingLong(node -> node.sequence);
+
+   private final List<Node<K>> heap = new ArrayList<>();
+   private final Map<K, Node<K>> nodes = new HashMap<>();
+   private long sequence;
+
+   /**
+    * Add a key with the given priority.
+    *
+    * @param key key to add
+    * @param priority priority of the key, higher comes out first
+    * @return true if the key was added, false if it is already queued
+    */
+   public boolean offer(final K key, final long priority) {
+      if (nodes.containsKey(key)) {
+         return false;
+      }
+
+      final Node<K> node = new Node<>(key, priority, sequence++, heap.size());
+      heap.add(node);
+      nodes.put(key, node);
+      siftUp(node.index);
+
+      return true;
+   }
+
+   /**
+    * Change the priority of a queued key.
+    *
+    * @param key key to update
+    * @param priority new priority of the key
+    * @return true if the key was updated, false if it isn't queued
+    */
+   public boolean update(final K key, final long priority) {
+      final Node<K> node = nodes.get(key);
+
+      if (node == null) {
+         return false;
+      }
+
+      final long previous = node.priority;
+      node.priority = priority;
+      if (priority > previous) {
+         siftUp(node.index);
+      }
+      else if (priority < previous) {
+         siftDown(node.index);
+      }
+
+      return true;
+   }
+
+   /**
+    * Remove a queued key.
+    *
+    * @param key key to remove
+    * @return true if the key was removed, false if it isn't queued
+    */
+   public boolean remove(final K key) {
+      final Node<K> node = nodes.remove(key);
+
+      if (node == null) {
+         return false;
+      }
+
+      removeAt(node.index);
+      return true;
+   }
+
+   /**
+    * Get the key with the highest priority without removing it.
+    *
+    * @return first key, null if empty
+    */
+   public K peek() {
+      return heap.isEmpty() ? null : heap.get(0).key;
+   }
+
+   /**
+    * Remove the key with the highest priority.
+    *
+    * @return first key, null if empty
+    */
+   public K poll() {
+      if (heap.isEmpty()) {
+         return null;
+      }
+
+      final Node<K> first = heap.get(0);
+      nodes.remove(first.key);
+      removeAt(0);
+
+      return first.key;
+   }
+
+   public boolean contains(final K key) {
+      return nodes.containsKey(key);
+   }
+
+   public int size() {
+      return heap.size();
+   }
+
+   public boolean isEmpty() {
+      return heap.isEmpty();
+   }
+
+   /**
+    * Get every queued key in the order they would be polled. O(n log n), the heap is left untouched.
+    *
+    * @return keys, highest priority first
+    */
+   public List<K> toSortedList() {
+      return heap.stream()
+            .sorted(ORDER)
+            .map(node -> node.key)
+            .collect(Collectors.toList());
+   }
+
+   private void removeAt(final int index) {
+      final int last = heap.size() - 1;
+
+      if (index != last) {
+         swap(index, last);
+      }
+      heap.remove(last);
+
+      if (index != last) {
+         siftDown(index);
+         siftUp(index);
+      }
+   }
+
+   private void siftUp(final int start) {
+      int index = start;
+      while (index > 0) {
+         final int parent = (index - 1) / 2;
+         if (ORDER.compare(heap.get(index), heap.get(parent)) >= 0) {
+            return;
+         }
+         swap(index, parent);
+         index = parent;
+      }
+   }
+
+   private void siftDown(final int start) {
+      int index = start;
+      while (true) {
+         final int left = index * 2 + 1;
+         final int right = left + 1;
+         int first = index;
+
+         if (left < heap.size() && ORDER.compare(heap.get(left), heap.get(first)) < 0) {
+            first = left;
+         }
+         if (right < heap.size() && ORDER.compare(heap.get(right), heap.get(first)) < 0) {
+            first = right;
+         }
+         if (first == index) {
+            return;
+         }
+
+         swap(index, first);
+         index = first;
+      }
+   }
+
+   private void swap(final int a, final int b) {
+      final Node<K> nodeA = heap.get(a);
+      final Node<K> nodeB = heap.get(b);
+      heap.set(a, nodeB);
+      heap.set(b, nodeA);
+      nodeA.index = b;
+      nodeB.index = a;
+   }
+
+   /**
+    * A queued key with its priority and position in the heap.
+    */
+   private static final class Node<K> {
+
+      private final K key;
+      private final long sequence;
+      private long priority;
+      private int index;
+
+      private Node(final K key, final long priority, final long sequence, final int index) {
+         this.key = key;
+         this.priority = priority;
+         this.sequence = sequence;
+         this.index = index;
+      }
+   }
+}
@@ -0,0 +1,253 @@
+package app.util;
+
+import java.util.Arrays;
+
+/**
+ * Map of int keys to int values in two flat arrays, open addressed with linear probing. Unlike a
+ * Map&lt;Integer, Integer&gt; it allocates nothing per entry, so millions of entries cost about 8 bytes each
+ * plus free slots. Key 0 marks a free slot and can't be stored, which is fine for database ids.
+ * Not thread safe.
+ */
+public class IntIntHashMap {
+
+   private static final int FREE = 0;
+   private static final int MIN_CAPACITY = 4;
+   private static final float LOAD_FACTOR = 0.75f;
+
+   private int[] keys;
+   private int[] values;
+   private int mask;
+   private int size;
+   private int resizeAt;
+
+   public IntIntHashMap() {
+      this(MIN_CAPACITY);
+   }
+
+   /**
+    * Create a map sized to hold the given number of entries without growing.
+    *
+    * @param expectedSize number of entries expected
+    */
+   public IntIntHashMap(final int expectedSize) {
+      allocate(tableSize(expectedSize));
+   }
+
+   /**
+    * Get the value of a key.
+    *
+    * @param key key, not 0
+    * @return value of the key, 0 if absent
+    */
+   public int get(final int key) {
+      if (key == FREE) {
+         return 0;
+      }
+
+      final int slot = find(key);
+      return slot < 0 ? 0 : values[slot];
+   }
+
+   public boolean containsKey(final int key) {
+      return key != FREE && find(key) >= 0;
+   }
+
+   /**
+    * Add to the value of a key, adding the key if it is absent. A key whose value drops to 0 is removed, so the
+    * map can be used as a multiset of keys.
+    *
+    * @param key key, not 0
+    * @param delta amount to add
+    * @return the new value of the key
+    * @throws IllegalArgumentException if the key is 0
+    */
+   public int addTo(final int key, final int delta) {
+      if (key == FREE) {
+         throw new IllegalArgumentException("Key 0 is reserved");
+      }
+
+      int slot = hash(key) & mask;
+      while (keys[slot] != FREE) {
+         if (keys[slot] == key) {
+            final int value = values[slot] + delta;
+            if (value == 0) {
+               removeAt(slot);
+            }
+            else {
+               values[slot] = value;
+            }
+
+            return value;
+         }
+         slot = (slot + 1) & mask;
+      }
+
+      if (delta == 0) {
+         return 0;
+      }
+
+      keys[slot] = key;
+      values[slot] = delta;
+      if (++size >= resizeAt) {
+         rehash(keys.length * 2);
+      }
+
+      return delta;
+   }
+
+   /**
+    * Remove a key.
+    *
+    * @param key key
+    * @return the key's value, 0 if it was absent
+    */
+   public int remove(final int key) {
+      if (key == FREE) {
+         return 0;
+      }
+
+      final int slot = find(key);
+      if (slot < 0) {
+         return 0;
+      }
+
+      final int value = values[slot];
+      removeAt(slot);
+
+      return value;
+   }
+
+   /**
+    * Call the consumer with every entry, in no particular order. The map must not be changed meanwhile.
+    *
+    * @param consumer receives each key and its value
+    */
+   public void forEach(final IntIntConsumer consumer) {
+      for (int slot = 0; slot < keys.length; slot++) {
+         if (keys[slot] != FREE) {
+            consumer.accept(keys[slot], values[slot]);
+         }
+      }
+   }
+
+   /**
+    * Get every key, in no particular order.
+    *
+    * @return new array of the keys
+    */
+   public int[] keys() {
+      final int[] result = new int[size];
+      int next = 0;
+      for (int key : keys) {
+         if (key != FREE) {
+            result[next++] = key;
+         }
+      }
+
+      return result;
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   /**
+    * Remove every entry, keeping the allocated table.
+    */
+   public void clear() {
+      Arrays.fill(keys, FREE);
+      size = 0;
+   }
+
+   private int find(final int key) {
+      int slot = hash(key) & mask;
+      while (keys[slot] != FREE) {
+         if (keys[slot] == key) {
+            return slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+
+      return -1;
+   }
+
+   /**
+    * Free the slot and shift back any entry of the same probe run that would no longer be reachable.
+    */
+   private void removeAt(final int removed) {
+      int free = removed;
+      int slot = removed;
+
+      while (true) {
+         slot = (slot + 1) & mask;
+         final int key = keys[slot];
+         if (key == FREE) {
+            break;
+         }
+
+         final int home = hash(key) & mask;
+         final boolean reachable = free <= slot
+               ? free < home && home <= slot
+               : free < home || home <= slot;
+         if (!reachable) {
+            keys[free] = key;
+            values[free] = values[slot];
+            free = slot;
+         }
+      }
+
+      keys[free] = FREE;
+      values[free] = 0;
+      size--;
+   }
+
+   private void rehash(final int tableSize) {
+      final int[] oldKeys = keys;
+      final int[] oldValues = values;
+      allocate(tableSize);
+
+      for (int i = 0; i < oldKeys.length; i++) {
+         if (oldKeys[i] != FREE) {
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != FREE) {
+               slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+         }
+      }
+   }
+
+   private void allocate(final int tableSize) {
+      keys = new int[tableSize];
+      values = new int[tableSize];
+      mask = tableSize - 1;
+      resizeAt = (int) (tableSize * LOAD_FACTOR);
+   }
+
+   static int tableSize(final int expectedSize) {
+      final int needed = (int) Math.ceil(Math.max(expectedSize, MIN_CAPACITY) / LOAD_FACTOR) + 1;
+      return Integer.highestOneBit(needed - 1) << 1;
+   }
+
+   /**
+    * Spread sequential ids over the table; ids are often dense, which linear probing handles badly unhashed.
+    */
+   static int hash(final int key) {
+      final int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * Receives the entries of an IntIntHashMap.
+    */
+   @FunctionalInterface
+   public interface IntIntConsumer {
+
+      void accept(int key, int value);
+   }
+}
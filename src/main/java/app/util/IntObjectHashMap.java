@@ -0,0 +1,250 @@
+package app.util;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Map of int keys to objects, open addressed with linear probing like IntIntHashMap, so keys aren't boxed and
+ * entries aren't allocated. Key 0 marks a free slot and can't be stored. Not thread safe.
+ *
+ * @param <V> value type
+ */
+public class IntObjectHashMap<V> {
+
+   private static final int FREE = 0;
+   private static final int MIN_CAPACITY = 4;
+   private static final float LOAD_FACTOR = 0.75f;
+
+   private int[] keys;
+   private Object[] values;
+   private int mask;
+   private int size;
+   private int resizeAt;
+
+   public IntObjectHashMap() {
+      this(MIN_CAPACITY);
+   }
+
+   /**
+    * Create a map sized to hold the given number of entries without growing.
+    *
+    * @param expectedSize number of entries expected
+    */
+   public IntObjectHashMap(final int expectedSize) {
+      allocate(IntIntHashMap.tableSize(expectedSize));
+   }
+
+   /**
+    * Get the value of a key.
+    *
+    * @param key key
+    * @return value of the key, null if absent
+    */
+   @SuppressWarnings("unchecked")
+   public V get(final int key) {
+      if (key == FREE) {
+         return null;
+      }
+
+      final int slot = find(key);
+      return slot < 0 ? null : (V) values[slot];
+   }
+
+   /**
+    * Set the value of a key.
+    *
+    * @param key key, not 0
+    * @param value value, not null
+    * @return the previous value, null if the key was absent
+    * @throws IllegalArgumentException if the key is 0
+    */
+   @SuppressWarnings("unchecked")
+   public V put(final int key, final V value) {
+      final int slot = slotFor(key);
+
+      final V previous = (V) values[slot];
+      values[slot] = value;
+      if (previous == null) {
+         added(slot, key);
+      }
+
+      return previous;
+   }
+
+   /**
+    * Get the value of a key, adding the one created by the function if the key is absent.
+    *
+    * @param key key, not 0
+    * @param create creates the value of an absent key
+    * @return the key's value
+    * @throws IllegalArgumentException if the key is 0
+    */
+   @SuppressWarnings("unchecked")
+   public V computeIfAbsent(final int key, final IntFunction<V> create) {
+      final int slot = slotFor(key);
+
+      if (values[slot] != null) {
+         return (V) values[slot];
+      }
+
+      final V value = create.apply(key);
+      values[slot] = value;
+      added(slot, key);
+
+      return value;
+   }
+
+   /**
+    * Remove a key.
+    *
+    * @param key key
+    * @return the key's value, null if it was absent
+    */
+   @SuppressWarnings("unchecked")
+   public V remove(final int key) {
+      if (key == FREE) {
+         return null;
+      }
+
+      final int slot = find(key);
+      if (slot < 0) {
+         return null;
+      }
+
+      final V value = (V) values[slot];
+      removeAt(slot);
+
+      return value;
+   }
+
+   /**
+    * Call the consumer with every entry, in no particular order. The map must not be changed meanwhile.
+    *
+    * @param consumer receives each key and its value
+    */
+   @SuppressWarnings("unchecked")
+   public void forEach(final IntObjectConsumer<V> consumer) {
+      for (int slot = 0; slot < keys.length; slot++) {
+         if (keys[slot] != FREE) {
+            consumer.accept(keys[slot], (V) values[slot]);
+         }
+      }
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   /**
+    * Remove every entry, keeping the allocated table.
+    */
+   public void clear() {
+      Arrays.fill(keys, FREE);
+      Arrays.fill(values, null);
+      size = 0;
+   }
+
+   /**
+    * Find the key's slot, or the free slot where it would go.
+    */
+   private int slotFor(final int key) {
+      if (key == FREE) {
+         throw new IllegalArgumentException("Key 0 is reserved");
+      }
+
+      int slot = IntIntHashMap.hash(key) & mask;
+      while (keys[slot] != FREE && keys[slot] != key) {
+         slot = (slot + 1) & mask;
+      }
+
+      return slot;
+   }
+
+   private void added(final int slot, final int key) {
+      keys[slot] = key;
+      if (++size >= resizeAt) {
+         rehash(keys.length * 2);
+      }
+   }
+
+   private int find(final int key) {
+      int slot = IntIntHashMap.hash(key) & mask;
+      while (keys[slot] != FREE) {
+         if (keys[slot] == key) {
+            return slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+
+      return -1;
+   }
+
+   /**
+    * Free the slot and shift back any entry of the same probe run that would no longer be reachable.
+    */
+   private void removeAt(final int removed) {
+      int free = removed;
+      int slot = removed;
+
+      while (true) {
+         slot = (slot + 1) & mask;
+         final int key = keys[slot];
+         if (key == FREE) {
+            break;
+         }
+
+         final int home = IntIntHashMap.hash(key) & mask;
+         final boolean reachable = free <= slot
+               ? free < home && home <= slot
+               : free < home || home <= slot;
+         if (!reachable) {
+            keys[free] = key;
+            values[free] = values[slot];
+            free = slot;
+         }
+      }
+
+      keys[free] = FREE;
+      values[free] = null;
+      size--;
+   }
+
+   private void rehash(final int tableSize) {
+      final int[] oldKeys = keys;
+      final Object[] oldValues = values;
+      allocate(tableSize);
+
+      for (int i = 0; i < oldKeys.length; i++) {
+         if (oldKeys[i] != FREE) {
+            int slot = IntIntHashMap.hash(oldKeys[i]) & mask;
+            while (keys[slot] != FREE) {
+               slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+         }
+      }
+   }
+
+   private void allocate(final int tableSize) {
+      keys = new int[tableSize];
+      values = new Object[tableSize];
+      mask = tableSize - 1;
+      resizeAt = (int) (tableSize * LOAD_FACTOR);
+   }
+
+   /**
+    * Receives the entries of an IntObjectHashMap.
+    *
+    * @param <V> value type
+    */
+   @FunctionalInterface
+   public interface IntObjectConsumer<V> {
+
+      void accept(int key, V value);
+   }
+}
@@ -0,0 +1,99 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locality-sensitive hashing index of MinHash signatures. Each signature is cut into bands of rows slots, and each
+ * band is hashed to a bucket; ids whose signatures agree on all the slots of any one band share a bucket. Sets with
+ * Jaccard similarity s become candidates of each other with probability 1 - (1 - s^rows)^bands, which climbs
+ * steeply around (1 / bands)^(1 / rows), so finding the candidates of a set only looks at a few buckets instead of
+ * every other set. Buckets are keyed by a hash of the band, so unrelated sets can occasionally collide; candidates
+ * should be checked against their signatures. Not thread safe.
+ */
+public class LshIndex {
+
+   private final int bands;
+   private final int rows;
+
+   // For each band, bucket hash to the ids in the bucket
+   private final List<IntObjectHashMap<IntIntHashMap>> buckets;
+
+   /**
+    * Create an index of signatures of bands * rows slots.
+    *
+    * @param bands number of bands, more finds less similar sets
+    * @param rows number of slots per band, more finds only more similar sets
+    */
+   public LshIndex(final int bands, final int rows) {
+      this.bands = bands;
+      this.rows = rows;
+
+      buckets = new ArrayList<>(bands);
+      for (int band = 0; band < bands; band++) {
+         buckets.add(new IntObjectHashMap<>());
+      }
+   }
+
+   /**
+    * Add an id to the buckets of its signature.
+    *
+    * @param id id, not 0
+    * @param signature MinHash signature of the id's set
+    */
+   public void add(final int id, final int[] signature) {
+      for (int band = 0; band < bands; band++) {
+         buckets.get(band).computeIfAbsent(bucket(signature, band), key -> new IntIntHashMap(1)).addTo(id, 1);
+      }
+   }
+
+   /**
+    * Remove an id from the buckets of its signature.
+    *
+    * @param id id
+    * @param signature signature the id was added with
+    */
+   public void remove(final int id, final int[] signature) {
+      for (int band = 0; band < bands; band++) {
+         final IntObjectHashMap<IntIntHashMap> bandBuckets = buckets.get(band);
+         final int key = bucket(signature, band);
+         final IntIntHashMap ids = bandBuckets.get(key);
+
+         if (ids != null && ids.remove(id) != 0 && ids.isEmpty()) {
+            bandBuckets.remove(key);
+         }
+      }
+   }
+
+   /**
+    * Get the ids sharing a bucket with a signature.
+    *
+    * @param signature MinHash signature
+    * @return candidate ids, each with the number of bands they share with the signature
+    */
+   public IntIntHashMap candidates(final int[] signature) {
+      final IntIntHashMap candidates = new IntIntHashMap();
+
+      for (int band = 0; band < bands; band++) {
+         final IntIntHashMap ids = buckets.get(band).get(bucket(signature, band));
+         if (ids != null) {
+            ids.forEach((id, count) -> candidates.addTo(id, 1));
+         }
+      }
+
+      return candidates;
+   }
+
+   /**
+    * Hash the band's slots; 0 is the free key of IntObjectHashMap, so it is moved to 1.
+    */
+   private int bucket(final int[] signature, final int band) {
+      int hash = band;
+      for (int slot = band * rows; slot < (band + 1) * rows; slot++) {
+         hash = hash * 31 + signature[slot];
+      }
+
+      hash = IntIntHashMap.hash(hash);
+      return hash == 0 ? 1 : hash;
+   }
+}
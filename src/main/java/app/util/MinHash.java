@@ -0,0 +1,119 @@
+package app.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signatures of sets of int ids. A signature keeps, for each of its hash functions, the smallest hash of
+ * any id in the set; two sets agree on a slot with probability equal to their Jaccard similarity, so comparing
+ * signatures estimates it in O(signature length) whatever the size of the sets. The hash functions come from a
+ * fixed seed, so signatures are comparable across restarts and nodes. Thread safe once created.
+ */
+public class MinHash {
+
+   private static final long SEED = 0x5EED5EEDL;
+
+   private final int[] multipliers;
+   private final int[] offsets;
+
+   /**
+    * Create signatures of the given length.
+    *
+    * @param length number of hash functions, higher is more accurate
+    */
+   public MinHash(final int length) {
+      final Random random = new Random(SEED);
+
+      multipliers = new int[length];
+      offsets = new int[length];
+      for (int i = 0; i < length; i++) {
+         multipliers[i] = random.nextInt() | 1;
+         offsets[i] = random.nextInt();
+      }
+   }
+
+   public int length() {
+      return multipliers.length;
+   }
+
+   /**
+    * Get the signature of an empty set, which any id added to lowers.
+    *
+    * @return new signature
+    */
+   public int[] empty() {
+      final int[] signature = new int[multipliers.length];
+      Arrays.fill(signature, Integer.MAX_VALUE);
+
+      return signature;
+   }
+
+   /**
+    * Get the signature of a set.
+    *
+    * @param ids ids in the set
+    * @return new signature
+    */
+   public int[] signature(final int[] ids) {
+      final int[] signature = empty();
+      for (int id : ids) {
+         add(signature, id);
+      }
+
+      return signature;
+   }
+
+   /**
+    * Add an id to a signature in place. Removing one can't be done the same way, since the slots it set don't
+    * remember what they were before; the signature has to be computed again from the remaining ids.
+    *
+    * @param signature signature to update
+    * @param id id added to the set
+    * @return true if any slot changed
+    */
+   public boolean add(final int[] signature, final int id) {
+      boolean changed = false;
+      for (int i = 0; i < signature.length; i++) {
+         final int hash = hash(i, id);
+         if (hash < signature[i]) {
+            signature[i] = hash;
+            changed = true;
+         }
+      }
+
+      return changed;
+   }
+
+   /**
+    * Compare two signatures of the same length.
+    *
+    * @param a signature of the first set
+    * @param b signature of the second set
+    * @return number of slots the signatures agree on; divided by the length, the estimated Jaccard similarity
+    */
+   public static int matches(final int[] a, final int[] b) {
+      int matches = 0;
+      for (int i = 0; i < a.length; i++) {
+         if (a[i] == b[i]) {
+            matches++;
+         }
+      }
+
+      return matches;
+   }
+
+   /**
+    * Hash an id with the i-th function: a random odd multiplier and offset, then the Murmur3 finalizer so every
+    * output bit depends on every input bit. Kept non-negative so MAX_VALUE works as "no id yet".
+    */
+   private int hash(final int i, final int id) {
+      int h = id * multipliers[i] + offsets[i];
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      h *= 0xC2B2AE35;
+      h ^= h >>> 16;
+
+      return h & Integer.MAX_VALUE;
+   }
+}
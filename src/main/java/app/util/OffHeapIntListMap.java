@@ -0,0 +1,364 @@
+package app.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Map of int keys to lists of int values, stored outside the Java heap in direct buffers, so holding millions of
+ * values adds nothing for the garbage collector to trace or copy. The keys are an open addressed table with linear
+ * probing, like IntIntHashMap, of four ints per slot: the key and where its list is in the value arena. Each list
+ * has a block of the arena with room to grow; a full list moves to a block twice the size at the end of the arena.
+ * When the arena is full it is copied into a new one, leaving out the blocks lists moved away from, and grows only
+ * if the lists still don't fit. Key 0 marks a free slot and can't be stored, which is fine for database ids.
+ * Direct buffers count against -XX:MaxDirectMemorySize, and the ones replaced are freed when they are collected.
+ * Not thread safe.
+ */
+public class OffHeapIntListMap {
+
+   private static final int FREE = 0;
+   private static final float LOAD_FACTOR = 0.75f;
+   private static final int MIN_BLOCK = 4;
+   private static final int MIN_ARENA = 1024;
+
+   // Ints of a slot: the key, then its list's offset in the arena, length and block capacity
+   private static final int SLOT_INTS = 4;
+   private static final int KEY = 0;
+   private static final int OFFSET = 1;
+   private static final int LENGTH = 2;
+   private static final int CAPACITY = 3;
+
+   private IntBuffer table;
+   private int mask;
+   private int size;
+   private int resizeAt;
+
+   private IntBuffer arena;
+   // Next free int of the arena, and the ints before it in blocks no list uses any more
+   private int top;
+   private int garbage;
+
+   public OffHeapIntListMap() {
+      this(0);
+   }
+
+   /**
+    * Create a map sized to hold the given number of keys without growing its table.
+    *
+    * @param expectedSize number of keys expected
+    */
+   public OffHeapIntListMap(final int expectedSize) {
+      table = allocate(IntIntHashMap.tableSize(expectedSize) * SLOT_INTS);
+      mask = IntIntHashMap.tableSize(expectedSize) - 1;
+      resizeAt = (int) ((mask + 1) * LOAD_FACTOR);
+      arena = allocate(MIN_ARENA);
+   }
+
+   /**
+    * Get the list of a key.
+    *
+    * @param key key
+    * @return new array of the key's values in the order they were added, empty if the key is absent
+    */
+   public int[] get(final int key) {
+      final int slot = key == FREE ? -1 : find(key);
+      if (slot < 0) {
+         return new int[0];
+      }
+
+      final int[] values = new int[table.get(slot + LENGTH)];
+      final IntBuffer list = arena.duplicate();
+      list.position(table.get(slot + OFFSET));
+      list.get(values);
+
+      return values;
+   }
+
+   public boolean containsKey(final int key) {
+      return key != FREE && find(key) >= 0;
+   }
+
+   /**
+    * Add a value to the end of the list of a key, adding the key if it is absent.
+    *
+    * @param key key, not 0
+    * @param value value
+    * @throws IllegalArgumentException if the key is 0
+    */
+   public void add(final int key, final int value) {
+      if (key == FREE) {
+         throw new IllegalArgumentException("Key 0 is reserved");
+      }
+
+      int slot = find(key);
+      if (slot < 0) {
+         slot = insert(key, MIN_BLOCK);
+      }
+      else if (table.get(slot + LENGTH) == table.get(slot + CAPACITY)) {
+         grow(slot);
+      }
+
+      final int length = table.get(slot + LENGTH);
+      arena.put(table.get(slot + OFFSET) + length, value);
+      table.put(slot + LENGTH, length + 1);
+   }
+
+   /**
+    * Replace the list of a key.
+    *
+    * @param key key, not 0
+    * @param values values, in order; empty to remove the key
+    * @throws IllegalArgumentException if the key is 0
+    */
+   public void put(final int key, final int[] values) {
+      if (key == FREE) {
+         throw new IllegalArgumentException("Key 0 is reserved");
+      }
+
+      remove(key);
+      if (values.length == 0) {
+         return;
+      }
+
+      final int slot = insert(key, Math.max(MIN_BLOCK, values.length));
+      final IntBuffer list = arena.duplicate();
+      list.position(table.get(slot + OFFSET));
+      list.put(values);
+      table.put(slot + LENGTH, values.length);
+   }
+
+   /**
+    * Remove the first occurrence of a value from the list of a key, keeping the others in order. A key whose list
+    * becomes empty is removed.
+    *
+    * @param key key
+    * @param value value
+    * @return true if the value was in the key's list
+    */
+   public boolean remove(final int key, final int value) {
+      final int slot = key == FREE ? -1 : find(key);
+      if (slot < 0) {
+         return false;
+      }
+
+      final int offset = table.get(slot + OFFSET);
+      final int length = table.get(slot + LENGTH);
+      for (int i = 0; i < length; i++) {
+         if (arena.get(offset + i) == value) {
+            for (int j = i + 1; j < length; j++) {
+               arena.put(offset + j - 1, arena.get(offset + j));
+            }
+
+            if (length == 1) {
+               removeAt(slot);
+            }
+            else {
+               table.put(slot + LENGTH, length - 1);
+            }
+
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Remove a key and its list.
+    *
+    * @param key key
+    * @return true if the key was present
+    */
+   public boolean remove(final int key) {
+      final int slot = key == FREE ? -1 : find(key);
+      if (slot < 0) {
+         return false;
+      }
+
+      removeAt(slot);
+
+      return true;
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   /**
+    * Get the off-heap memory held, for both the table and the arena.
+    *
+    * @return bytes allocated
+    */
+   public long getAllocatedBytes() {
+      return ((long) table.capacity() + arena.capacity()) * Integer.BYTES;
+   }
+
+   private int find(final int key) {
+      int slot = slotOf(key);
+      while (table.get(slot + KEY) != FREE) {
+         if (table.get(slot + KEY) == key) {
+            return slot;
+         }
+         slot = next(slot);
+      }
+
+      return -1;
+   }
+
+   /**
+    * Add an absent key with an empty list in a new block.
+    *
+    * @return the key's slot
+    */
+   private int insert(final int key, final int capacity) {
+      if (size + 1 >= resizeAt) {
+         rehash((mask + 1) * 2);
+      }
+
+      final int offset = reserve(capacity);
+      int slot = slotOf(key);
+      while (table.get(slot + KEY) != FREE) {
+         slot = next(slot);
+      }
+
+      table.put(slot + KEY, key);
+      table.put(slot + OFFSET, offset);
+      table.put(slot + LENGTH, 0);
+      table.put(slot + CAPACITY, capacity);
+      size++;
+
+      return slot;
+   }
+
+   /**
+    * Move a full list to a block twice its size.
+    */
+   private void grow(final int slot) {
+      final int capacity = table.get(slot + CAPACITY);
+      // Reserving may compact the arena, which moves the list, so its offset is read after
+      final int offset = reserve(capacity * 2);
+      final IntBuffer list = arena.duplicate();
+      list.position(table.get(slot + OFFSET)).limit(table.get(slot + OFFSET) + table.get(slot + LENGTH));
+      final IntBuffer moved = arena.duplicate();
+      moved.position(offset);
+      moved.put(list);
+
+      garbage += capacity;
+      table.put(slot + OFFSET, offset);
+      table.put(slot + CAPACITY, capacity * 2);
+   }
+
+   /**
+    * Take ints at the end of the arena, compacting or growing it first if they don't fit.
+    *
+    * @return offset of the ints taken
+    */
+   private int reserve(final int ints) {
+      if (top + ints > arena.capacity()) {
+         final long live = (long) top - garbage + ints;
+         final long capacity = Math.max(MIN_ARENA, live <= arena.capacity() / 2 ? arena.capacity() : live * 2);
+         if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Lists don't fit in one arena");
+         }
+         compact((int) capacity);
+      }
+
+      final int offset = top;
+      top += ints;
+
+      return offset;
+   }
+
+   /**
+    * Copy every list into a new arena, block after block, dropping the unused blocks.
+    */
+   private void compact(final int capacity) {
+      final IntBuffer compacted = allocate(capacity);
+      int next = 0;
+
+      for (int slot = 0; slot < table.capacity(); slot += SLOT_INTS) {
+         if (table.get(slot + KEY) != FREE) {
+            final IntBuffer list = arena.duplicate();
+            list.position(table.get(slot + OFFSET)).limit(table.get(slot + OFFSET) + table.get(slot + LENGTH));
+            compacted.position(next);
+            compacted.put(list);
+
+            table.put(slot + OFFSET, next);
+            next += table.get(slot + CAPACITY);
+         }
+      }
+
+      arena = compacted;
+      top = next;
+      garbage = 0;
+   }
+
+   /**
+    * Free the slot and shift back any entry of the same probe run that would no longer be reachable.
+    */
+   private void removeAt(final int removed) {
+      garbage += table.get(removed + CAPACITY);
+      int free = removed;
+      int slot = removed;
+
+      while (true) {
+         slot = next(slot);
+         final int key = table.get(slot + KEY);
+         if (key == FREE) {
+            break;
+         }
+
+         final int home = slotOf(key);
+         final boolean reachable = free <= slot
+               ? free < home && home <= slot
+               : free < home || home <= slot;
+         if (!reachable) {
+            for (int i = 0; i < SLOT_INTS; i++) {
+               table.put(free + i, table.get(slot + i));
+            }
+            free = slot;
+         }
+      }
+
+      for (int i = 0; i < SLOT_INTS; i++) {
+         table.put(free + i, 0);
+      }
+      size--;
+   }
+
+   private void rehash(final int tableSize) {
+      final IntBuffer old = table;
+      table = allocate(tableSize * SLOT_INTS);
+      mask = tableSize - 1;
+      resizeAt = (int) (tableSize * LOAD_FACTOR);
+
+      for (int from = 0; from < old.capacity(); from += SLOT_INTS) {
+         if (old.get(from + KEY) != FREE) {
+            int slot = slotOf(old.get(from + KEY));
+            while (table.get(slot + KEY) != FREE) {
+               slot = next(slot);
+            }
+            for (int i = 0; i < SLOT_INTS; i++) {
+               table.put(slot + i, old.get(from + i));
+            }
+         }
+      }
+   }
+
+   private int slotOf(final int key) {
+      return (IntIntHashMap.hash(key) & mask) * SLOT_INTS;
+   }
+
+   private int next(final int slot) {
+      return (slot + SLOT_INTS) & (mask * SLOT_INTS + SLOT_INTS - 1);
+   }
+
+   private static IntBuffer allocate(final int ints) {
+      // Direct buffers start zeroed, which frees every slot
+      return ByteBuffer.allocateDirect(ints * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+   }
+}
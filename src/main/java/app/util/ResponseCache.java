@@ -0,0 +1,305 @@
+package app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Serialized responses by key, each tagged with what it was rendered from, e.g. "playlist:1". An entry is fresh
+ * for ttlMillis after it is stored, then stale for staleMillis more: one caller at a time may claim a stale entry
+ * to refresh it while the others keep getting it, so expiry never sends every caller to render the same response
+ * at once. Invalidating a tag drops its entries at once instead. The cache is bounded by the bytes it holds, the
+ * least recently used entries going first; no entry may take more than a sixteenth of it.
+ * Every tag has a version, striped by hash, bumped when it is invalidated. A response rendered from data that
+ * changes before it is stored would be stored stale; callers take a stamp of its tags' versions before rendering
+ * and the response is dropped if the stamp no longer matches once it is stored.
+ */
+public class ResponseCache {
+
+   private static final int STRIPES = 1024;
+
+   private static final int MAX_ENTRY_SHARE = 16;
+
+   // Estimated bytes of an entry besides its key and bodies
+   private static final int ENTRY_OVERHEAD = 128;
+
+   private final Cache<String, Entry> entries;
+
+   // Tag to the keys of its entries, each with the entry it was added for
+   private final Map<String, Map<String, Entry>> keysByTag = new ConcurrentHashMap<>();
+
+   private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+   private final AtomicLong bytes = new AtomicLong();
+
+   private final LongAdder evictions = new LongAdder();
+
+   private final long ttlMillis;
+
+   private final long staleMillis;
+
+   private final long maxEntryBytes;
+
+   private final int gzipMinBytes;
+
+   /**
+    * Create an empty cache.
+    *
+    * @param maxBytes maximum bytes held, bodies and keys included
+    * @param ttlMillis time an entry is fresh for after it is stored
+    * @param staleMillis time a stale entry is served for while it is refreshed
+    * @param gzipMinBytes smallest body also kept gzipped; negative to never gzip
+    */
+   public ResponseCache(final long maxBytes, final long ttlMillis, final long staleMillis, final int gzipMinBytes) {
+      this.ttlMillis = ttlMillis;
+      this.staleMillis = staleMillis;
+      this.maxEntryBytes = maxBytes / MAX_ENTRY_SHARE;
+      this.gzipMinBytes = gzipMinBytes;
+
+      entries = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.getWeight())
+            .expireAfterWrite(ttlMillis + staleMillis, TimeUnit.MILLISECONDS)
+            .removalListener(this::removed)
+            .build();
+   }
+
+   /**
+    * Make the tag of one entity.
+    *
+    * @param entity entity type, e.g. FieldConstants.PLAYLIST
+    * @param id entity id
+    * @return tag, e.g. "playlist:1"
+    */
+   public static String tag(final String entity, final int id) {
+      return entity + ":" + id;
+   }
+
+   /**
+    * Get an entry, fresh or stale.
+    *
+    * @param key response key
+    * @param now current time in milliseconds
+    * @return entry, or null if there is none or it is past being served stale
+    */
+   public Entry get(final String key, final long now) {
+      final Entry entry = entries.getIfPresent(key);
+
+      return entry == null || now >= entry.staleUntil ? null : entry;
+   }
+
+   /**
+    * Take a stamp of the versions of tags, before rendering the response to store for them.
+    *
+    * @param tags tags of the response
+    * @return stamp to pass to put
+    */
+   public long stamp(final Collection<String> tags) {
+      // Versions only go up, so the sum changes whenever one of them does
+      long stamp = 0;
+      for (String tag : tags) {
+         stamp += versions.get(stripe(tag));
+      }
+
+      return stamp;
+   }
+
+   /**
+    * Store a response, replacing any entry for its key, unless one of its tags was invalidated since the stamp.
+    *
+    * @param key response key
+    * @param tags what the response was rendered from
+    * @param contentType content type of the body
+    * @param body serialized response
+    * @param stamp stamp of the tags taken before rendering the response
+    * @param now current time in milliseconds
+    * @return entry stored, or null if the response is too big or a tag was invalidated
+    */
+   public Entry put(final String key, final Set<String> tags, final String contentType, final byte[] body,
+                    final long stamp, final long now) {
+      if (body.length > maxEntryBytes || stamp(tags) != stamp) {
+         return null;
+      }
+
+      final byte[] gzipped = gzipMinBytes >= 0 && body.length >= gzipMinBytes ? gzip(body) : null;
+      final Entry entry = new Entry(key, tags, contentType, body, gzipped != null && gzipped.length < body.length
+            ? gzipped : null, now, now + ttlMillis, now + ttlMillis + staleMillis);
+
+      // Indexed before it is added, so an invalidation that misses the stamp check below still finds it
+      for (String tag : tags) {
+         keysByTag.compute(tag, (t, keys) -> {
+            final Map<String, Entry> indexed = keys == null ? new ConcurrentHashMap<>() : keys;
+            indexed.put(key, entry);
+            return indexed;
+         });
+      }
+      bytes.addAndGet(entry.getWeight());
+      entries.put(key, entry);
+
+      if (stamp(tags) != stamp) {
+         entries.asMap().remove(key, entry);
+         return null;
+      }
+
+      return entry;
+   }
+
+   /**
+    * Drop the entries of a tag and stop responses rendered before now from being stored for it.
+    *
+    * @param tag tag, e.g. "playlist:1" or "playlist"
+    */
+   public void invalidate(final String tag) {
+      versions.incrementAndGet(stripe(tag));
+
+      final Map<String, Entry> keys = keysByTag.get(tag);
+      if (keys != null) {
+         keys.forEach(entries.asMap()::remove);
+      }
+   }
+
+   /**
+    * Drop the entry of a key.
+    *
+    * @param key response key
+    */
+   public void remove(final String key) {
+      entries.invalidate(key);
+   }
+
+   public long size() {
+      return entries.size();
+   }
+
+   public long getBytes() {
+      return bytes.get();
+   }
+
+   /**
+    * Get the number of entries dropped to stay within the maximum bytes.
+    *
+    * @return entries evicted since startup
+    */
+   public long getEvictions() {
+      return evictions.sum();
+   }
+
+   private void removed(final RemovalNotification<String, Entry> removal) {
+      final Entry entry = removal.getValue();
+      bytes.addAndGet(-entry.getWeight());
+      if (removal.getCause() == RemovalCause.SIZE) {
+         evictions.increment();
+      }
+
+      // Only unindexes this entry; one stored for the same key since has indexed itself
+      for (String tag : entry.tags) {
+         keysByTag.computeIfPresent(tag, (t, keys) -> {
+            keys.remove(entry.key, entry);
+            return keys.isEmpty() ? null : keys;
+         });
+      }
+   }
+
+   private static int stripe(final String tag) {
+      return Math.floorMod(tag.hashCode(), STRIPES);
+   }
+
+   private static byte[] gzip(final byte[] body) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+         gzip.write(body);
+      } catch (IOException ex) {
+         throw new UncheckedIOException(ex);
+      }
+
+      return out.toByteArray();
+   }
+
+   /**
+    * A stored response. Its bodies are shared between callers and must not be changed.
+    */
+   public static final class Entry {
+
+      private final String key;
+      private final Set<String> tags;
+      private final String contentType;
+      private final byte[] body;
+      private final byte[] gzipped;
+      private final long storedAt;
+      private final long freshUntil;
+      private final long staleUntil;
+      private final AtomicBoolean refreshing = new AtomicBoolean();
+
+      private Entry(final String key, final Set<String> tags, final String contentType, final byte[] body,
+                    final byte[] gzipped, final long storedAt, final long freshUntil, final long staleUntil) {
+         this.key = key;
+         this.tags = tags;
+         this.contentType = contentType;
+         this.body = body;
+         this.gzipped = gzipped;
+         this.storedAt = storedAt;
+         this.freshUntil = freshUntil;
+         this.staleUntil = staleUntil;
+      }
+
+      public boolean isFresh(final long now) {
+         return now < freshUntil;
+      }
+
+      /**
+       * Claim the refresh of a stale entry, so callers arriving while it is rendered are served the entry.
+       *
+       * @return true if the caller must render the response, false if another caller already is
+       */
+      public boolean claimRefresh() {
+         return refreshing.compareAndSet(false, true);
+      }
+
+      /**
+       * Give up a claimed refresh, e.g. after rendering failed, so the next caller tries again.
+       */
+      public void releaseRefresh() {
+         refreshing.set(false);
+      }
+
+      public long getAgeSeconds(final long now) {
+         return Math.max(0, now - storedAt) / 1000;
+      }
+
+      public String getContentType() {
+         return contentType;
+      }
+
+      public byte[] getBody() {
+         return body;
+      }
+
+      /**
+       * Get the gzipped body.
+       *
+       * @return gzipped body, or null if the body is too small or doesn't compress
+       */
+      public byte[] getGzipped() {
+         return gzipped;
+      }
+
+      private int getWeight() {
+         return ENTRY_OVERHEAD + key.length() * 2 + body.length + (gzipped == null ? 0 : gzipped.length);
+      }
+   }
+}
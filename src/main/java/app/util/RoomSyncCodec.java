@@ -0,0 +1,303 @@
+package app.util;
+
+import app.model.Room;
+import app.model.RoomState;
+import app.model.RoomSyncMessage;
+import app.model.Song;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoding of RoomSyncMessage, used by live room connections that negotiate the BINARY_PROTOCOL
+ * WebSocket subprotocol. Shared by the server and Java clients. A frame is laid out as
+ *
+ * <pre>
+ * frame    = format-version:byte type:byte version:varint time:varint body
+ * SNAPSHOT = room songs state
+ * STATE    = state
+ * ROOM     = room has-songs:byte [songs] state
+ * SONGS    = songs state
+ * room     = id:varint name:string private:byte user-id:opt playlist-id:opt
+ * songs    = count:varint { id:varint title:string reference:string duration-ms:opt }
+ * state    = song-id:opt queue-position:varint paused:byte started-at:zigzag position-ms:varint
+ * </pre>
+ *
+ * Varints are unsigned LEB128; opt is a varint of value + 1 with 0 for null; string is an opt of the UTF-8 length
+ * followed by the bytes. started-at is sent relative to the frame's time, so it takes a few bytes rather than an
+ * absolute timestamp. The state's roomId is not sent, a connection only follows one room.
+ */
+public final class RoomSyncCodec {
+
+   /**
+    * Subprotocol for binary frames.
+    */
+   public static final String BINARY_PROTOCOL = "room-sync.v1.binary";
+
+   /**
+    * Subprotocol for JSON text frames, also used when a client asks for no subprotocol.
+    */
+   public static final String JSON_PROTOCOL = "room-sync.v1.json";
+
+   /**
+    * Format version written as the first byte of every frame, bumped on incompatible layout changes.
+    */
+   public static final int FORMAT_VERSION = 2;
+
+   private static final RoomSyncMessage.Type[] TYPES = RoomSyncMessage.Type.values();
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private RoomSyncCodec() {
+   }
+
+   /**
+    * Encode a message as a binary frame.
+    *
+    * @param message message to encode, must have a type and a state
+    * @return encoded frame
+    */
+   public static byte[] encode(final RoomSyncMessage message) {
+      final Output out = new Output();
+      out.writeByte(FORMAT_VERSION);
+      out.writeByte(message.getType().ordinal());
+      out.writeVarint(message.getVersion());
+      out.writeVarint(message.getTime());
+
+      switch (message.getType()) {
+         case SNAPSHOT:
+            writeRoom(out, message.getRoom());
+            writeSongs(out, message.getSongs());
+            break;
+         case ROOM:
+            writeRoom(out, message.getRoom());
+            out.writeByte(message.getSongs() != null ? 1 : 0);
+            if (message.getSongs() != null) {
+               writeSongs(out, message.getSongs());
+            }
+            break;
+         case SONGS:
+            writeSongs(out, message.getSongs());
+            break;
+         default:
+            break;
+      }
+
+      writeState(out, message.getState(), message.getTime());
+      return out.toByteArray();
+   }
+
+   /**
+    * Decode a binary frame, reading from the buffer's position.
+    *
+    * @param buffer buffer holding the frame
+    * @return decoded message
+    * @throws IllegalArgumentException if the frame is malformed or uses another format version
+    */
+   public static RoomSyncMessage decode(final ByteBuffer buffer) {
+      try {
+         final int formatVersion = buffer.get();
+         if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported room sync format version " + formatVersion);
+         }
+
+         final int type = buffer.get();
+         if (type < 0 || type >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown room sync message type " + type);
+         }
+
+         final RoomSyncMessage message = RoomSyncMessage.builder()
+               .type(TYPES[type])
+               .version(readVarint(buffer))
+               .time(readVarint(buffer))
+               .build();
+
+         switch (message.getType()) {
+            case SNAPSHOT:
+               message.setRoom(readRoom(buffer));
+               message.setSongs(readSongs(buffer));
+               break;
+            case ROOM:
+               message.setRoom(readRoom(buffer));
+               if (buffer.get() != 0) {
+                  message.setSongs(readSongs(buffer));
+               }
+               break;
+            case SONGS:
+               message.setSongs(readSongs(buffer));
+               break;
+            default:
+               break;
+         }
+
+         message.setState(readState(buffer, message.getTime()));
+         return message;
+      } catch (BufferUnderflowException ex) {
+         throw new IllegalArgumentException("Room sync frame is truncated", ex);
+      }
+   }
+
+   private static void writeRoom(final Output out, final Room room) {
+      out.writeVarint(room.getId());
+      out.writeString(room.getName());
+      out.writeByte(room.isPrivate() ? 1 : 0);
+      out.writeOptional(room.getUserId());
+      out.writeOptional(room.getPlaylistId());
+   }
+
+   private static void writeSongs(final Output out, final List<Song> songs) {
+      out.writeVarint(songs.size());
+      for (Song song : songs) {
+         out.writeVarint(song.getId());
+         out.writeString(song.getTitle());
+         out.writeString(song.getReference());
+         out.writeOptional(song.getDurationMs());
+      }
+   }
+
+   private static void writeState(final Output out, final RoomState state, final long time) {
+      out.writeOptional(state.getSongId());
+      out.writeVarint(state.getQueuePosition());
+      out.writeByte(state.isPaused() ? 1 : 0);
+      out.writeVarint(zigzag(state.getStartedAt() - time));
+      out.writeVarint(state.getPositionMs());
+   }
+
+   private static Room readRoom(final ByteBuffer buffer) {
+      return Room.builder()
+            .id((int) readVarint(buffer))
+            .name(readString(buffer))
+            .isPrivate(buffer.get() != 0)
+            .userId(readOptional(buffer))
+            .playlistId(readOptional(buffer))
+            .build();
+   }
+
+   private static List<Song> readSongs(final ByteBuffer buffer) {
+      final int count = (int) readVarint(buffer);
+      if (count > buffer.remaining()) {
+         throw new IllegalArgumentException("Room sync frame is truncated");
+      }
+
+      final List<Song> songs = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         songs.add(Song.builder()
+               .id((int) readVarint(buffer))
+               .title(readString(buffer))
+               .reference(readString(buffer))
+               .durationMs(readOptional(buffer))
+               .build());
+      }
+
+      return songs;
+   }
+
+   private static RoomState readState(final ByteBuffer buffer, final long time) {
+      return RoomState.builder()
+            .songId(readOptional(buffer))
+            .queuePosition((int) readVarint(buffer))
+            .paused(buffer.get() != 0)
+            .startedAt(time + unzigzag(readVarint(buffer)))
+            .positionMs(readVarint(buffer))
+            .build();
+   }
+
+   private static long readVarint(final ByteBuffer buffer) {
+      long value = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+         final byte b = buffer.get();
+         value |= (long) (b & 0x7F) << shift;
+         if (b >= 0) {
+            return value;
+         }
+      }
+
+      throw new IllegalArgumentException("Malformed varint in room sync frame");
+   }
+
+   private static Integer readOptional(final ByteBuffer buffer) {
+      final long value = readVarint(buffer);
+
+      return value == 0 ? null : (int) (value - 1);
+   }
+
+   private static String readString(final ByteBuffer buffer) {
+      final long length = readVarint(buffer);
+
+      if (length == 0) {
+         return null;
+      }
+
+      if (length - 1 > buffer.remaining()) {
+         throw new IllegalArgumentException("Room sync frame is truncated");
+      }
+
+      final byte[] bytes = new byte[(int) (length - 1)];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   private static long zigzag(final long value) {
+      return (value << 1) ^ (value >> (Long.SIZE - 1));
+   }
+
+   private static long unzigzag(final long value) {
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   /**
+    * Growable byte array, unlike ByteArrayOutputStream it doesn't synchronize every write.
+    */
+   private static final class Output {
+
+      private byte[] bytes = new byte[64];
+      private int size;
+
+      void writeByte(final int value) {
+         ensureCapacity(1);
+         bytes[size++] = (byte) value;
+      }
+
+      void writeVarint(final long value) {
+         ensureCapacity(10);
+         long remaining = value;
+         while ((remaining & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+         }
+         bytes[size++] = (byte) remaining;
+      }
+
+      void writeOptional(final Integer value) {
+         writeVarint(value == null ? 0 : value + 1L);
+      }
+
+      void writeString(final String value) {
+         if (value == null) {
+            writeVarint(0);
+            return;
+         }
+
+         final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+         writeVarint(utf8.length + 1L);
+         ensureCapacity(utf8.length);
+         System.arraycopy(utf8, 0, bytes, size, utf8.length);
+         size += utf8.length;
+      }
+
+      byte[] toByteArray() {
+         return Arrays.copyOf(bytes, size);
+      }
+
+      private void ensureCapacity(final int extra) {
+         if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+         }
+      }
+   }
+}
@@ -0,0 +1,102 @@
+package app.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one: the first caller for a key runs the call, and callers for the
+ * same key arriving while it runs wait for it and get its result, or its exception, instead of running their own.
+ * Nothing is kept once the call returns, so this bounds duplicate work without serving stale results; the next
+ * caller runs the call again. Results are shared between callers, so they must not be changed.
+ *
+ * @param <K> key identifying identical calls
+ * @param <V> result of a call
+ */
+public class SingleFlight<K, V> {
+
+   private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+   private final LongAdder executedCalls = new LongAdder();
+
+   private final LongAdder collapsedCalls = new LongAdder();
+
+   /**
+    * Run a call, or wait for the identical call already running.
+    *
+    * @param key identifies the call
+    * @param call runs the call on the caller's thread, if no identical call is running
+    * @return result of the call
+    */
+   public V execute(final K key, final Supplier<V> call) {
+      final CompletableFuture<V> own = new CompletableFuture<>();
+      final CompletableFuture<V> running = calls.putIfAbsent(key, own);
+
+      if (running != null) {
+         collapsedCalls.increment();
+         return await(running);
+      }
+
+      executedCalls.increment();
+      try {
+         final V result = call.get();
+         own.complete(result);
+         return result;
+      } catch (RuntimeException | Error ex) {
+         own.completeExceptionally(ex);
+         throw ex;
+      } finally {
+         calls.remove(key, own);
+      }
+   }
+
+   /**
+    * Stop new callers from joining the call running for a key, e.g. after a write that call may have missed.
+    * Callers already waiting still get its result.
+    *
+    * @param key identifies the call
+    */
+   public void forget(final K key) {
+      calls.remove(key);
+   }
+
+   /**
+    * Get the number of calls that ran.
+    *
+    * @return calls run since startup
+    */
+   public long getExecutedCalls() {
+      return executedCalls.sum();
+   }
+
+   /**
+    * Get the number of calls that waited for an identical call instead of running.
+    *
+    * @return calls collapsed since startup
+    */
+   public long getCollapsedCalls() {
+      return collapsedCalls.sum();
+   }
+
+   public int getInFlightCalls() {
+      return calls.size();
+   }
+
+   private V await(final CompletableFuture<V> running) {
+      try {
+         return running.join();
+      } catch (CompletionException ex) {
+         // Rethrow what the call threw, so waiting callers see the same exception as the one that ran it
+         if (ex.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) ex.getCause();
+         }
+         if (ex.getCause() instanceof Error) {
+            throw (Error) ex.getCause();
+         }
+         throw ex;
+      }
+   }
+}
@@ -0,0 +1,345 @@
+package app.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel. One thread advances the wheel every tick and runs the tasks that are due, so scheduling
+ * and cancelling are O(1) no matter how many timeouts are pending. Tasks run on the wheel thread and should
+ * be short; hand anything slow off to an executor. Keeps metrics on how late tasks run (lag) and how long each
+ * tick takes (tick cost), which grow once the wheel is overloaded.
+ */
+public class TimingWheel {
+
+   private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheel.class);
+
+   private static final int ST_INIT = 0;
+   private static final int ST_CANCELLED = 1;
+   private static final int ST_EXPIRED = 2;
+
+   private final long tickNanos;
+   private final Bucket[] wheel;
+   private final int mask;
+   private final long startTime;
+   private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+   private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+   private final Thread worker;
+
+   private volatile boolean running = true;
+
+   private final AtomicInteger pendingCount = new AtomicInteger();
+
+   // Only written by the worker thread
+   private volatile long expiredCount;
+   private volatile long totalLagNanos;
+   private volatile long maxLagNanos;
+   private volatile long tickCount;
+   private volatile long totalTickNanos;
+   private volatile long maxTickNanos;
+
+   // Only touched by the worker thread
+   private long tick;
+
+   /**
+    * Constructor for the tick duration and wheel size, starts the wheel thread.
+    *
+    * @param tickDuration time between ticks, the precision of the timer
+    * @param unit unit of tickDuration
+    * @param wheelSize number of buckets, rounded up to a power of two
+    * @param threadName name of the wheel thread
+    */
+   public TimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize, final String threadName) {
+      if (tickDuration <= 0 || wheelSize <= 0) {
+         throw new IllegalArgumentException("tickDuration and wheelSize must be positive");
+      }
+
+      this.tickNanos = unit.toNanos(tickDuration);
+      int size = 1;
+      while (size < wheelSize) {
+         size <<= 1;
+      }
+
+      this.wheel = new Bucket[size];
+      for (int i = 0; i < wheel.length; i++) {
+         wheel[i] = new Bucket();
+      }
+      this.mask = wheel.length - 1;
+      this.startTime = System.nanoTime();
+
+      this.worker = new Thread(this::run, threadName);
+      this.worker.setDaemon(true);
+      this.worker.start();
+   }
+
+   /**
+    * Run the task once the delay has passed, rounded up to the next tick.
+    *
+    * @param task task to run on the wheel thread
+    * @param delay time to wait before running the task
+    * @param unit unit of delay
+    * @return Timeout that can be used to cancel the task
+    */
+   public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+      if (!running) {
+         throw new IllegalStateException("TimingWheel is stopped");
+      }
+
+      final long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+      final Timeout timeout = new Timeout(this, task, deadline);
+      pendingCount.incrementAndGet();
+      pendingTimeouts.add(timeout);
+
+      return timeout;
+   }
+
+   /**
+    * Stop the wheel thread. Pending tasks never run.
+    */
+   public void stop() {
+      running = false;
+      worker.interrupt();
+   }
+
+   public int getWheelSize() {
+      return wheel.length;
+   }
+
+   /**
+    * Get the number of tasks scheduled but not yet run or cancelled.
+    *
+    * @return pending tasks
+    */
+   public int getPendingTimeouts() {
+      return pendingCount.get();
+   }
+
+   public long getExpiredTimeouts() {
+      return expiredCount;
+   }
+
+   /**
+    * Get the average time between a task's deadline and when it ran. Includes up to one tick of rounding.
+    *
+    * @return average lag in milliseconds, 0 before any task ran
+    */
+   public double getAverageLagMillis() {
+      final long expired = expiredCount;
+
+      return expired == 0 ? 0 : (double) totalLagNanos / expired / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   public double getMaxLagMillis() {
+      return (double) maxLagNanos / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   /**
+    * Get the average time the wheel thread spent on a tick, running due tasks included.
+    *
+    * @return average tick cost in milliseconds, 0 before the first tick
+    */
+   public double getAverageTickMillis() {
+      final long ticks = tickCount;
+
+      return ticks == 0 ? 0 : (double) totalTickNanos / ticks / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   public double getMaxTickMillis() {
+      return (double) maxTickNanos / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   private void run() {
+      while (running) {
+         final long deadline = tickNanos * (tick + 1);
+         final long sleepNanos = deadline - (System.nanoTime() - startTime);
+
+         if (sleepNanos > 0) {
+            try {
+               TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException ex) {
+               if (!running) {
+                  return;
+               }
+            }
+            continue;
+         }
+
+         final long tickStart = System.nanoTime() - startTime;
+         removeCancelled();
+         transferPending();
+         wheel[(int) (tick & mask)].expire(tickStart);
+         tick++;
+         recordTick(System.nanoTime() - startTime - tickStart);
+      }
+   }
+
+   private void recordTick(final long tickNanos) {
+      tickCount++;
+      totalTickNanos += tickNanos;
+      maxTickNanos = Math.max(maxTickNanos, tickNanos);
+   }
+
+   private void recordExpired(final long lagNanos) {
+      pendingCount.decrementAndGet();
+      expiredCount++;
+      totalLagNanos += lagNanos;
+      maxLagNanos = Math.max(maxLagNanos, lagNanos);
+   }
+
+   private void transferPending() {
+      // Bounded so a flood of new timeouts can't stall the tick
+      for (int i = 0; i < 100000; i++) {
+         final Timeout timeout = pendingTimeouts.poll();
+         if (timeout == null) {
+            return;
+         }
+
+         if (timeout.state.get() == ST_CANCELLED) {
+            continue;
+         }
+
+         // Anything already overdue goes in the current bucket
+         final long deadlineTick = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos - 1);
+         timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+         wheel[(int) (deadlineTick & mask)].add(timeout);
+      }
+   }
+
+   private void removeCancelled() {
+      Timeout timeout;
+      while ((timeout = cancelledTimeouts.poll()) != null) {
+         if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+         }
+      }
+   }
+
+   /**
+    * Handle to a scheduled task.
+    */
+   public static final class Timeout {
+
+      private final TimingWheel timingWheel;
+      private final Runnable task;
+      private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+      // Nanoseconds since the wheel started
+      private final long deadline;
+
+      // Only touched by the worker thread
+      private long remainingRounds;
+      private Bucket bucket;
+      private Timeout next;
+      private Timeout prev;
+
+      private Timeout(final TimingWheel timingWheel, final Runnable task, final long deadline) {
+         this.timingWheel = timingWheel;
+         this.task = task;
+         this.deadline = deadline;
+      }
+
+      /**
+       * Cancel the task if it hasn't run yet.
+       *
+       * @return true if the task was cancelled, false if it already ran or was already cancelled
+       */
+      public boolean cancel() {
+         if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+            return false;
+         }
+
+         timingWheel.pendingCount.decrementAndGet();
+         timingWheel.cancelledTimeouts.add(this);
+         return true;
+      }
+
+      public boolean isCancelled() {
+         return state.get() == ST_CANCELLED;
+      }
+
+      public boolean isExpired() {
+         return state.get() == ST_EXPIRED;
+      }
+
+      private void expire(final long now) {
+         if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+            return;
+         }
+
+         timingWheel.recordExpired(Math.max(0, now - deadline));
+         try {
+            task.run();
+         } catch (Throwable ex) {
+            LOGGER.error("Timer task failed", ex);
+         }
+      }
+   }
+
+   /**
+    * Doubly linked list of the timeouts hashed to one slot of the wheel.
+    */
+   private static final class Bucket {
+
+      private Timeout head;
+      private Timeout tail;
+
+      private void add(final Timeout timeout) {
+         timeout.bucket = this;
+         if (head == null) {
+            head = timeout;
+            tail = timeout;
+         }
+         else {
+            tail.next = timeout;
+            timeout.prev = tail;
+            tail = timeout;
+         }
+      }
+
+      private void expire(final long now) {
+         Timeout timeout = head;
+         while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+               remove(timeout);
+               timeout.expire(now);
+            }
+            else if (timeout.isCancelled()) {
+               remove(timeout);
+            }
+            else {
+               timeout.remainingRounds--;
+            }
+            timeout = next;
+         }
+      }
+
+      private void remove(final Timeout timeout) {
+         if (timeout.bucket != this) {
+            return;
+         }
+
+         if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+         }
+         else {
+            head = timeout.next;
+         }
+
+         if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+         }
+         else {
+            tail = timeout.prev;
+         }
+
+         timeout.bucket = null;
+         timeout.next = null;
+         timeout.prev = null;
+      }
+   }
+}
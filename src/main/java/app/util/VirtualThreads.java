@@ -0,0 +1,80 @@
+package app.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reflective access to virtual threads so the project can keep targeting Java 8 while running on JDK 21+.
+ */
+public final class VirtualThreads {
+
+   private static final String PINNED_THREADS_PROPERTY = "jdk.tracePinnedThreads";
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private VirtualThreads() {
+   }
+
+   /**
+    * Check if the running JVM supports virtual threads.
+    *
+    * @return true if Thread.ofVirtual() is available, false if not
+    */
+   public static boolean isSupported() {
+      try {
+         Thread.class.getMethod("ofVirtual");
+         return true;
+      } catch (NoSuchMethodException ex) {
+         return false;
+      }
+   }
+
+   /**
+    * Create an executor that starts a new named virtual thread for each task.
+    *
+    * @param namePrefix prefix for the names of the threads, followed by a counter
+    * @return ExecutorService backed by virtual threads
+    * @throws IllegalStateException if the running JVM does not support virtual threads
+    */
+   public static ExecutorService newVirtualThreadPerTaskExecutor(final String namePrefix) {
+      try {
+         final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+         final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+         builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+         final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+         final Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+         return (ExecutorService) newExecutor.invoke(null, factory);
+      } catch (ReflectiveOperationException ex) {
+         throw new IllegalStateException("Virtual threads are not supported by this JVM", ex);
+      }
+   }
+
+   /**
+    * Check if the current thread is a virtual thread.
+    *
+    * @return true if the current thread is virtual, false if not or if virtual threads are not supported
+    */
+   public static boolean isCurrentThreadVirtual() {
+      try {
+         return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+      } catch (ReflectiveOperationException ex) {
+         return false;
+      }
+   }
+
+   /**
+    * Print a stack trace whenever a virtual thread blocks while pinned to its carrier, e.g. inside the
+    * synchronized sections of the JDBC driver. Only takes effect if called before the first virtual thread starts.
+    *
+    * @param mode "short" or "full", or null to leave the JVM default untouched
+    */
+   public static void tracePinnedThreads(final String mode) {
+      if (mode != null && System.getProperty(PINNED_THREADS_PROPERTY) == null) {
+         System.setProperty(PINNED_THREADS_PROPERTY, mode);
+      }
+   }
+}
@@ -16,7 +16,15 @@ public enum ValidationError {
 
    INTERNAL_SERVER_ERROR("internalServerError", HttpStatus.INTERNAL_SERVER_ERROR),
 
-   DUPLICATE_VALUE("duplicateValue", HttpStatus.BAD_REQUEST);
+   DUPLICATE_VALUE("duplicateValue", HttpStatus.BAD_REQUEST),
+
+   FORBIDDEN("forbidden", HttpStatus.FORBIDDEN),
+
+   CONFLICT("conflict", HttpStatus.CONFLICT),
+
+   TOO_MANY_REQUESTS("tooManyRequests", HttpStatus.TOO_MANY_REQUESTS),
+
+   SERVICE_UNAVAILABLE("serviceUnavailable", HttpStatus.SERVICE_UNAVAILABLE);
 
    private final String tag;
    private final HttpStatus status;
@@ -30,8 +30,10 @@ public class BaseTest {
    protected static final int VALID_ID = 1;
    protected static final int INVALID_ID = 0;
    protected static final String ID_FIELD = "id";
+   protected static final String VERSION = "version";
 
    // User
+   protected static final String USER = "user";
    protected static final String USERNAME = "test";
    protected static final String INVALID_USERNAME = " ";
    protected static final String EMAIL = "test@test.com";
@@ -45,6 +47,7 @@ public class BaseTest {
    // Song
    protected static final String SONG = "song";
    protected static final String SONG_ID = "songId";
+   protected static final String SONG_IDS = "songIds";
    protected static final String TITLE = "title";
    protected static final String INVALID_TITLE = " ";
    protected static final String REFERENCE = "reference";
@@ -198,10 +201,12 @@ public class BaseTest {
 
    protected Room buildRoom() {
       return Room.builder()
+            .id(VALID_ID)
             .name(NAME)
             .userId(VALID_ID)
             .isPrivate(false)
             .playlistId(VALID_ID)
+            .version(0L)
             .build();
    }
 
@@ -0,0 +1,104 @@
+package app.controller;
+
+import app.BaseTest;
+import app.model.RoomSnapshot;
+import app.service.ClusterService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClusterControllerTest extends BaseTest {
+
+   private static final String SELF = "http://localhost:8000/api";
+   private static final String ROOM_ID = "roomId";
+   private static final String SECRET = "secret";
+
+   @Mock
+   ClusterService clusterService;
+
+   @Mock
+   Validator validator;
+
+   @InjectMocks
+   ClusterController clusterController;
+
+   @Test
+   public void testGetHealth() {
+      // Arrange
+      when(clusterService.getSelf()).thenReturn(SELF);
+      when(clusterService.getLiveMembers()).thenReturn(ImmutableList.of(SELF));
+
+      // Act
+      final ResponseEntity response = clusterController.getHealth();
+
+      // Assert
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(ImmutableMap.of("self", SELF, "members", ImmutableList.of(SELF)), response.getBody());
+   }
+
+   @Test
+   public void testGetRoomOwner_ValidId() {
+      // Arrange
+      when(validator.check(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(true);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(SELF);
+      when(clusterService.isLocal(VALID_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = clusterController.getRoomOwner(VALID_ID);
+
+      // Assert
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(ImmutableMap.of("owner", SELF, "local", true), response.getBody());
+   }
+
+   @Test
+   public void testHandOff_Valid() {
+      // Arrange
+      final RoomSnapshot snapshot = RoomSnapshot.builder().roomId(VALID_ID).build();
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, ROOM_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = clusterController.handOff(VALID_ID, SECRET, snapshot);
+
+      // Assert
+      verify(clusterService).acceptHandoff(snapshot, SECRET);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertNull(response.getBody());
+   }
+
+   @Test
+   public void testHandOff_MismatchedRoomId() {
+      // Arrange
+      final RoomSnapshot snapshot = RoomSnapshot.builder().roomId(2).build();
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, ROOM_ID)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = clusterController.handOff(VALID_ID, SECRET, snapshot);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(clusterService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+}
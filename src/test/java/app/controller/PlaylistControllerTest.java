@@ -3,6 +3,7 @@ package app.controller;
 import app.BaseTest;
 import app.model.Playlist;
 import app.model.Song;
+import app.request.AddPlaylistSongsData;
 import app.request.CreatePlaylistData;
 import app.request.UpdatePlaylistData;
 import app.service.PlaylistService;
@@ -17,6 +18,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.google.common.collect.ImmutableList;
 import static org.mockito.ArgumentMatchers.any;
@@ -197,6 +199,55 @@ public class PlaylistControllerTest extends BaseTest {
       Assert.assertNull(responseEntity.getBody());
    }
 
+   @Test
+   public void testAddSongsToPlaylist_successful() {
+      //Arrange
+      final AddPlaylistSongsData addPlaylistSongsData = new AddPlaylistSongsData();
+      addPlaylistSongsData.setSongIds(ImmutableList.of(VALID_ID, VALID_ID + 1));
+      when(validator.chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.MISSING_FIELD, SONG_IDS)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, SONG_IDS)).thenReturn(true);
+
+      //Act
+      final ResponseEntity responseEntity = playlistController.addSongsToPlaylist(VALID_ID, addPlaylistSongsData);
+
+      //Assert
+      verify(validator).chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID);
+      verify(validator).chain(true, ValidationError.MISSING_FIELD, SONG_IDS);
+      verify(validator).check(true, ValidationError.BAD_VALUE, SONG_IDS);
+      verify(playlistService).addSongsToPlaylist(VALID_ID, ImmutableList.of(VALID_ID, VALID_ID + 1));
+      verifyNoMoreInteractions(validator);
+      verifyNoMoreInteractions(playlistService);
+
+      Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+      Assert.assertNull(responseEntity.getBody());
+   }
+
+   @Test
+   public void testAddSongsToPlaylist_unsuccessful() {
+      //Arrange
+      final AddPlaylistSongsData addPlaylistSongsData = new AddPlaylistSongsData();
+      addPlaylistSongsData.setSongIds(ImmutableList.of(VALID_ID, INVALID_ID));
+      when(validator.chain(false, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.MISSING_FIELD, SONG_IDS)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, SONG_IDS)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      //Act
+      final ResponseEntity responseEntity = playlistController.addSongsToPlaylist(INVALID_ID, addPlaylistSongsData);
+
+      //Assert
+      verify(validator).chain(false, ValidationError.BAD_VALUE, PLAYLIST_ID);
+      verify(validator).chain(true, ValidationError.MISSING_FIELD, SONG_IDS);
+      verify(validator).check(false, ValidationError.BAD_VALUE, SONG_IDS);
+      verify(validator).getResponseEntity();
+      verifyNoMoreInteractions(validator);
+      verifyZeroInteractions(playlistService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+      Assert.assertNull(responseEntity.getBody());
+   }
+
    @Test
    public void testDeletePlaylist_successful() {
 
@@ -325,4 +376,89 @@ public class PlaylistControllerTest extends BaseTest {
       Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
       Assert.assertNull(response.getBody());
    }
-}
\ No newline at end of file
+
+   @Test
+   public void testGetSimilarPlaylists_Success() {
+      // Arrange
+      final Playlist playlist = buildPlaylist();
+      when(validator.chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "limit")).thenReturn(true);
+      when(playlistService.getSimilarPlaylists(VALID_ID, 10)).thenReturn(ImmutableList.of(playlist));
+
+      // Act
+      final ResponseEntity response = playlistController.getSimilarPlaylists(VALID_ID, 10);
+
+      // Assert
+      verify(validator).chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID);
+      verify(validator).check(true, ValidationError.BAD_VALUE, "limit");
+      verify(playlistService).getSimilarPlaylists(VALID_ID, 10);
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(ImmutableList.of(playlist), response.getBody());
+   }
+
+   @Test
+   public void testGetSimilarPlaylists_InvalidLimit() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, "limit")).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = playlistController.getSimilarPlaylists(VALID_ID, 0);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, "limit");
+      verifyZeroInteractions(playlistService);
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testGetRadio_Success() {
+      // Arrange
+      final Song song = buildSong();
+      when(validator.chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "count")).thenReturn(true);
+      when(playlistService.getRadio(VALID_ID, 20)).thenReturn(ImmutableList.of(song));
+
+      // Act
+      final ResponseEntity response = playlistController.getRadio(VALID_ID, 20);
+
+      // Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, "count");
+      verify(playlistService).getRadio(VALID_ID, 20);
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(ImmutableList.of(song), response.getBody());
+   }
+
+   @Test
+   public void testGetRadio_CountTooLarge() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, PLAYLIST_ID)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, "count")).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = playlistController.getRadio(VALID_ID, 101);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, "count");
+      verifyZeroInteractions(playlistService);
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testGetPlaylistEvents() {
+      // Arrange
+      final ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+      when(playlistService.subscribeToPlaylist(VALID_ID)).thenReturn(emitter);
+
+      // Act
+      final ResponseBodyEmitter response = playlistController.getPlaylistEvents(VALID_ID);
+
+      // Assert
+      verify(playlistService).subscribeToPlaylist(VALID_ID);
+      verifyZeroInteractions(validator);
+
+      Assert.assertSame(emitter, response);
+   }
+}
@@ -0,0 +1,261 @@
+package app.controller;
+
+import app.BaseTest;
+import app.service.InvalidationService;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseCacheFilterTest extends BaseTest {
+
+   private static final String PLAYLIST_URI = "/api/playlists/1";
+   private static final String PLAYLISTS_URI = "/api/playlists";
+   private static final String PLAYLIST_SONGS_URI = "/api/playlists/1/songs";
+   private static final String BODY = "{\"id\":1}";
+
+   @Mock
+   private InvalidationService invalidationService;
+
+   @InjectMocks
+   private ResponseCacheFilter responseCacheFilter;
+
+   private final AtomicInteger rendered = new AtomicInteger();
+
+   private int status = HttpStatus.OK.value();
+
+   private String body = BODY;
+
+   // Called while a response is rendered, to send a request in the middle of it
+   private Runnable whileRendering;
+
+   private final HttpServlet servlet = new HttpServlet() {
+      @Override
+      protected void service(final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+         rendered.incrementAndGet();
+         if (whileRendering != null) {
+            final Runnable run = whileRendering;
+            whileRendering = null;
+            run.run();
+         }
+         response.setStatus(status);
+         response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+         response.getWriter().write(body);
+      }
+   };
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(responseCacheFilter, "meterRegistry", new SimpleMeterRegistry());
+      ReflectionTestUtils.setField(responseCacheFilter, "maxBytes", 1L << 20);
+      ReflectionTestUtils.setField(responseCacheFilter, "ttl", 60000L);
+      ReflectionTestUtils.setField(responseCacheFilter, "stale", 60000L);
+      ReflectionTestUtils.setField(responseCacheFilter, "gzipMinBytes", 100);
+      responseCacheFilter.init();
+   }
+
+   @Test
+   public void testDoFilter_RepeatedRequestIsHit() {
+      // Act
+      final MockHttpServletResponse first = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+      final MockHttpServletResponse second = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Assert
+      Assert.assertEquals(1, rendered.get());
+      Assert.assertEquals("MISS", first.getHeader(ResponseCacheFilter.CACHE_HEADER));
+      Assert.assertEquals("HIT", second.getHeader(ResponseCacheFilter.CACHE_HEADER));
+      Assert.assertEquals(BODY, first.getContentAsString());
+      Assert.assertEquals(BODY, second.getContentAsString());
+      Assert.assertEquals(MediaType.APPLICATION_JSON_UTF8_VALUE, second.getContentType());
+   }
+
+   @Test
+   public void testDoFilter_QueryParameterOrderDoesNotMatter() {
+      // Arrange
+      final MockHttpServletRequest request = new MockHttpServletRequest("GET", PLAYLISTS_URI);
+      request.addParameter("name", NAME);
+      request.addParameter("genre", GENRE);
+      final MockHttpServletRequest reordered = new MockHttpServletRequest("GET", PLAYLISTS_URI);
+      reordered.addParameter("genre", GENRE);
+      reordered.addParameter("name", NAME);
+
+      // Act
+      send(request);
+      final MockHttpServletResponse response = send(reordered);
+
+      // Assert
+      Assert.assertEquals(1, rendered.get());
+      Assert.assertEquals("HIT", response.getHeader(ResponseCacheFilter.CACHE_HEADER));
+   }
+
+   @Test
+   public void testDoFilter_ChangeDropsEntityAndListResponses() {
+      // Arrange
+      final ArgumentCaptor<IntConsumer> listener = ArgumentCaptor.forClass(IntConsumer.class);
+      verify(invalidationService).subscribeAll(eq(PLAYLIST), listener.capture());
+      send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+      send(new MockHttpServletRequest("GET", PLAYLISTS_URI));
+      send(new MockHttpServletRequest("GET", "/api/playlists/2"));
+
+      // Act
+      listener.getValue().accept(VALID_ID);
+      send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+      send(new MockHttpServletRequest("GET", PLAYLISTS_URI));
+      send(new MockHttpServletRequest("GET", "/api/playlists/2"));
+
+      // Assert
+      Assert.assertEquals(5, rendered.get());
+   }
+
+   @Test
+   public void testDoFilter_SongDeleteDropsPlaylistSongs() {
+      // Arrange
+      final ArgumentCaptor<IntConsumer> listener = ArgumentCaptor.forClass(IntConsumer.class);
+      verify(invalidationService).subscribeAll(eq(SONG), listener.capture());
+      send(new MockHttpServletRequest("GET", PLAYLIST_SONGS_URI));
+      send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Act
+      body = "[]";
+      listener.getValue().accept(3);
+      final MockHttpServletResponse songs = send(new MockHttpServletRequest("GET", PLAYLIST_SONGS_URI));
+      final MockHttpServletResponse playlist = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Assert
+      Assert.assertEquals(3, rendered.get());
+      Assert.assertEquals("MISS", songs.getHeader(ResponseCacheFilter.CACHE_HEADER));
+      Assert.assertEquals("[]", songs.getContentAsString());
+      Assert.assertEquals("HIT", playlist.getHeader(ResponseCacheFilter.CACHE_HEADER));
+   }
+
+   @Test
+   public void testDoFilter_StaleServedWhileRefreshing() {
+      // Arrange
+      ReflectionTestUtils.setField(responseCacheFilter, "ttl", 0L);
+      responseCacheFilter.init();
+      send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+      body = "{\"id\":1,\"name\":\"new\"}";
+      final MockHttpServletResponse[] during = new MockHttpServletResponse[1];
+      whileRendering = () -> during[0] = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Act
+      final MockHttpServletResponse refreshed = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Assert
+      Assert.assertEquals(2, rendered.get());
+      Assert.assertEquals("STALE", during[0].getHeader(ResponseCacheFilter.CACHE_HEADER));
+      Assert.assertEquals(BODY, during[0].getContentAsString());
+      Assert.assertEquals("MISS", refreshed.getHeader(ResponseCacheFilter.CACHE_HEADER));
+      Assert.assertEquals(body, refreshed.getContentAsString());
+   }
+
+   @Test
+   public void testDoFilter_ErrorsAreNotCached() {
+      // Arrange
+      status = HttpStatus.NOT_FOUND.value();
+
+      // Act
+      send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+      final MockHttpServletResponse response = send(new MockHttpServletRequest("GET", PLAYLIST_URI));
+
+      // Assert
+      Assert.assertEquals(2, rendered.get());
+      Assert.assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
+   }
+
+   @Test
+   public void testDoFilter_UncachedPaths() {
+      // Act
+      send(new MockHttpServletRequest("GET", "/api/playlists/1/radio"));
+      send(new MockHttpServletRequest("GET", "/api/playlists/1/radio"));
+      send(new MockHttpServletRequest("GET", "/api/rooms/1"));
+      final MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/api/rooms/1"));
+      send(new MockHttpServletRequest("DELETE", PLAYLIST_URI));
+      send(new MockHttpServletRequest("DELETE", PLAYLIST_URI));
+
+      // Assert
+      Assert.assertEquals(6, rendered.get());
+      Assert.assertNull(response.getHeader(ResponseCacheFilter.CACHE_HEADER));
+   }
+
+   @Test
+   public void testDoFilter_GzippedWhenAccepted() {
+      // Arrange
+      body = "[" + StringUtils.repeat(BODY, ",", 50) + "]";
+      send(new MockHttpServletRequest("GET", PLAYLISTS_URI));
+      final MockHttpServletRequest request = new MockHttpServletRequest("GET", PLAYLISTS_URI);
+      request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+      // Act
+      final MockHttpServletResponse gzipped = send(request);
+      final MockHttpServletResponse plain = send(new MockHttpServletRequest("GET", PLAYLISTS_URI));
+
+      // Assert
+      Assert.assertEquals("gzip", gzipped.getHeader(HttpHeaders.CONTENT_ENCODING));
+      Assert.assertTrue(gzipped.getContentAsByteArray().length < body.length());
+      Assert.assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+      Assert.assertEquals(body, plain.getContentAsString());
+   }
+
+   @Test
+   public void testGetTags() {
+      Assert.assertEquals(ImmutableSet.of("playlist:1", "song"), ResponseCacheFilter.getTags("/playlists/1/songs"));
+      Assert.assertEquals(ImmutableSet.of("song:1", "playlist"), ResponseCacheFilter.getTags("/songs/1/playlists"));
+      Assert.assertEquals(ImmutableSet.of("playlist:1"), ResponseCacheFilter.getTags("/playlists/1/similar"));
+      Assert.assertEquals(ImmutableSet.of("song"), ResponseCacheFilter.getTags("/songs"));
+      Assert.assertEquals(ImmutableSet.of("user:1", "playlist"), ResponseCacheFilter.getTags("/users/1/playlists"));
+      Assert.assertNull(ResponseCacheFilter.getTags("/playlists/1/radio"));
+      Assert.assertNull(ResponseCacheFilter.getTags("/songs/99999999999"));
+   }
+
+   @Test
+   public void testAcceptsGzip() {
+      Assert.assertTrue(ResponseCacheFilter.acceptsGzip("gzip, deflate, br"));
+      Assert.assertTrue(ResponseCacheFilter.acceptsGzip("deflate, GZIP;q=0.5"));
+      Assert.assertFalse(ResponseCacheFilter.acceptsGzip("gzip;q=0"));
+      Assert.assertFalse(ResponseCacheFilter.acceptsGzip("deflate"));
+      Assert.assertFalse(ResponseCacheFilter.acceptsGzip(null));
+   }
+
+   private MockHttpServletResponse send(final MockHttpServletRequest request) {
+      request.setContextPath("/api");
+      final MockHttpServletResponse response = new MockHttpServletResponse();
+
+      try {
+         responseCacheFilter.doFilter(request, response, new MockFilterChain(servlet));
+      } catch (Exception ex) {
+         throw new IllegalStateException(ex);
+      }
+
+      return response;
+   }
+}
@@ -0,0 +1,126 @@
+package app.controller;
+
+import app.BaseTest;
+import app.model.ChatMessage;
+import app.request.ChatMessageData;
+import app.service.RoomChatService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomChatControllerTest extends BaseTest {
+
+   private static final String USER_ID = "userId";
+   private static final String TEXT = "text";
+   private static final String SINCE = "since";
+
+   @Mock
+   RoomChatService roomChatService;
+
+   @Mock
+   Validator validator;
+
+   @InjectMocks
+   RoomChatController roomChatController;
+
+   @Test
+   public void testGetMessages_ValidId() {
+      // Arrange
+      final List<ChatMessage> messages = ImmutableList.of(ChatMessage.builder().text(TEXT).build());
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, SINCE)).thenReturn(true);
+      when(roomChatService.getMessages(VALID_ID, 0)).thenReturn(messages);
+
+      // Act
+      final ResponseEntity response = roomChatController.getMessages(VALID_ID, 0);
+
+      // Assert
+      verify(validator).chain(true, ValidationError.BAD_VALUE, ID_FIELD);
+      verify(validator).check(true, ValidationError.BAD_VALUE, SINCE);
+      verifyNoMoreInteractions(validator);
+      verify(roomChatService).getMessages(VALID_ID, 0);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(messages, response.getBody());
+   }
+
+   @Test
+   public void testGetMessages_InvalidId() {
+      // Arrange
+      when(validator.chain(false, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, SINCE)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomChatController.getMessages(INVALID_ID, 0);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomChatService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testPostMessage_Valid() {
+      // Arrange
+      final ChatMessageData chatMessageData = buildChatMessageData(VALID_ID, TEXT);
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(validator);
+      when(validator.check(true, ValidationError.MISSING_FIELD, TEXT)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = roomChatController.postMessage(VALID_ID, chatMessageData);
+
+      // Assert
+      verify(roomChatService).post(VALID_ID, VALID_ID, TEXT);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertNull(response.getBody());
+   }
+
+   @Test
+   public void testPostMessage_BlankText() {
+      // Arrange
+      final ChatMessageData chatMessageData = buildChatMessageData(VALID_ID, " ");
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(validator);
+      when(validator.check(false, ValidationError.MISSING_FIELD, TEXT)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomChatController.postMessage(VALID_ID, chatMessageData);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomChatService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   private ChatMessageData buildChatMessageData(final int userId, final String text) {
+      final ChatMessageData chatMessageData = new ChatMessageData();
+      chatMessageData.setUserId(userId);
+      chatMessageData.setText(text);
+
+      return chatMessageData;
+   }
+}
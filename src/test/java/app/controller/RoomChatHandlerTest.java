@@ -0,0 +1,161 @@
+package app.controller;
+
+import app.BaseTest;
+import app.exception.ApiException;
+import app.service.RoomChatService;
+import app.validation.ValidationError;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomChatHandlerTest extends BaseTest {
+
+   private static final String CHAT_URI = "ws://localhost:8000/api/rooms/1/chat?userId=1&since=5";
+   private static final String SUBSCRIBER = "subscriber";
+
+   @Mock
+   private RoomChatService roomChatService;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @Mock
+   private WebSocketSession session;
+
+   @Mock
+   private WebSocketSession subscriber;
+
+   @InjectMocks
+   private RoomChatHandler roomChatHandler;
+
+   private Map<String, Object> attributes;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomChatHandler, "sendTimeLimit", 5000);
+      ReflectionTestUtils.setField(roomChatHandler, "bufferSizeLimit", 65536);
+      attributes = new HashMap<>();
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_Subscribes() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI(CHAT_URI));
+      when(session.getAttributes()).thenReturn(attributes);
+
+      // Act
+      roomChatHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(roomChatService).subscribe(eq(VALID_ID), any(WebSocketSession.class), eq(5L));
+
+      Assert.assertEquals(VALID_ID, attributes.get("roomId"));
+      Assert.assertEquals(VALID_ID, attributes.get("userId"));
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_RoomNotFound() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI(CHAT_URI));
+      when(session.getAttributes()).thenReturn(attributes);
+      doThrow(new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM))
+            .when(roomChatService).subscribe(eq(VALID_ID), any(WebSocketSession.class), eq(5L));
+
+      // Act
+      roomChatHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(session).close(CloseStatus.POLICY_VIOLATION.withReason("Room does not exist"));
+   }
+
+   @Test
+   public void testHandleTextMessage_Posts() throws Exception {
+      // Arrange
+      putAttributes(VALID_ID);
+
+      // Act
+      roomChatHandler.handleTextMessage(session, new TextMessage("{\"text\":\"hello\"}"));
+
+      // Assert
+      verify(roomChatService).post(VALID_ID, VALID_ID, "hello");
+      verifyZeroInteractions(subscriber);
+   }
+
+   @Test
+   public void testHandleTextMessage_AnonymousUserRejected() throws Exception {
+      // Arrange
+      putAttributes(INVALID_ID);
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomChatHandler.handleTextMessage(session, new TextMessage("{\"text\":\"hello\"}"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(roomChatService);
+
+      Assert.assertEquals("{\"type\":\"error\",\"errors\":{\"forbidden\":[\"user\"]}}",
+            messageCaptor.getValue().getPayload());
+   }
+
+   @Test
+   public void testHandleTextMessage_BlankText() throws Exception {
+      // Arrange
+      putAttributes(VALID_ID);
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomChatHandler.handleTextMessage(session, new TextMessage("{\"text\":\"\"}"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(roomChatService);
+
+      Assert.assertEquals("{\"type\":\"error\",\"errors\":{\"missingField\":[\"text\"]}}",
+            messageCaptor.getValue().getPayload());
+   }
+
+   @Test
+   public void testAfterConnectionClosed_Unsubscribes() {
+      // Arrange
+      putAttributes(VALID_ID);
+
+      // Act
+      roomChatHandler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+      // Assert
+      verify(roomChatService).unsubscribe(VALID_ID, subscriber);
+   }
+
+   private void putAttributes(final int userId) {
+      attributes.put("roomId", VALID_ID);
+      attributes.put("userId", userId);
+      attributes.put(SUBSCRIBER, subscriber);
+      when(session.getAttributes()).thenReturn(attributes);
+   }
+}
@@ -2,6 +2,7 @@ package app.controller;
 
 import app.BaseTest;
 import app.model.Room;
+import app.model.RoomPage;
 import app.request.CreateRoomData;
 import app.request.UpdateRoomData;
 import app.service.RoomService;
@@ -15,7 +16,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.google.common.collect.ImmutableList;
 
@@ -28,6 +31,11 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class RoomControllerTest extends BaseTest {
 
+   private static final String USER_ID = "userId";
+   private static final String SNAPSHOT = "{\"type\":\"snapshot\",\"version\":0}";
+   private static final String LIMIT = "limit";
+   private static final String CURSOR = "MTUuMDox";
+
    @Mock
    RoomService roomService;
 
@@ -76,6 +84,42 @@ public class RoomControllerTest extends BaseTest {
       Assert.assertNull(response.getBody());
    }
 
+   @Test
+   public void testGetRoomSnapshot_ValidId() {
+      // Arrange
+      when(validator.check(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(true);
+      when(roomService.getRoomSnapshot(VALID_ID)).thenReturn(SNAPSHOT);
+
+      // Act
+      final ResponseEntity response = roomController.getRoomSnapshot(VALID_ID);
+
+      // Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, ID_FIELD);
+      verifyNoMoreInteractions(validator);
+      verify(roomService).getRoomSnapshot(VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+      Assert.assertEquals(SNAPSHOT, response.getBody());
+   }
+
+   @Test
+   public void testGetRoomSnapshot_InvalidId() {
+      // Arrange
+      when(validator.check(false, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomController.getRoomSnapshot(INVALID_ID);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, ID_FIELD);
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
    @Test
    public void testGetRoomById_ValidId() {
       // Arrange
@@ -149,6 +193,88 @@ public class RoomControllerTest extends BaseTest {
       Assert.assertNull(response.getBody());
    }
 
+   @Test
+   public void testGetRoomMembers_ValidId() {
+      // Arrange
+      when(validator.check(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(true);
+      when(roomService.getRoomMembers(VALID_ID)).thenReturn(ImmutableList.of(VALID_ID));
+
+      // Act
+      final ResponseEntity response = roomController.getRoomMembers(VALID_ID);
+
+      // Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, ID_FIELD);
+      verifyNoMoreInteractions(validator);
+      verify(roomService).getRoomMembers(VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(ImmutableList.of(VALID_ID), response.getBody());
+   }
+
+   @Test
+   public void testGetRoomMembers_InvalidId() {
+      // Arrange
+      when(validator.check(false, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomController.getRoomMembers(INVALID_ID);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testHeartbeat_ValidIds() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = roomController.heartbeat(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomService).heartbeat(VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertNull(response.getBody());
+   }
+
+   @Test
+   public void testHeartbeat_InvalidUserId() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, USER_ID)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomController.heartbeat(VALID_ID, INVALID_ID);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testLeaveRoom_ValidIds() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = roomController.leaveRoom(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomService).leaveRoom(VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+   }
+
    @Test
    public void testGetRooms_GetRoomsWithFilter() {
       //Arrange
@@ -183,6 +309,54 @@ public class RoomControllerTest extends BaseTest {
       Assert.assertNotNull(responseEntity.getBody());
    }
 
+   @Test
+   public void testDiscoverRooms_ValidLimit() {
+      //Arrange
+      final RoomPage page = RoomPage.builder().rooms(ImmutableList.of(buildRoom())).build();
+      when(validator.check(true, ValidationError.BAD_VALUE, LIMIT)).thenReturn(true);
+      when(roomService.discoverRooms(CURSOR, 20)).thenReturn(page);
+
+      //Act
+      final ResponseEntity responseEntity = roomController.discoverRooms(CURSOR, 20);
+
+      //Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, LIMIT);
+      verify(roomService).discoverRooms(CURSOR, 20);
+      verifyNoMoreInteractions(roomService);
+
+      Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+      Assert.assertEquals(page, responseEntity.getBody());
+   }
+
+   @Test
+   public void testDiscoverRooms_BlankCursorIsFirstPage() {
+      //Arrange
+      when(validator.check(true, ValidationError.BAD_VALUE, LIMIT)).thenReturn(true);
+
+      //Act
+      roomController.discoverRooms(" ", 20);
+
+      //Assert
+      verify(roomService).discoverRooms(null, 20);
+   }
+
+   @Test
+   public void testDiscoverRooms_InvalidLimit() {
+      //Arrange
+      when(validator.check(false, ValidationError.BAD_VALUE, LIMIT)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      //Act
+      final ResponseEntity responseEntity = roomController.discoverRooms(null, 101);
+
+      //Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, LIMIT);
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+   }
+
    @Test
    public void testUpdateRoomById_successful() {
       //Arrange
@@ -226,4 +400,20 @@ public class RoomControllerTest extends BaseTest {
       Assert.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
       Assert.assertNull(responseEntity.getBody());
    }
+
+   @Test
+   public void testGetRoomEvents() {
+      // Arrange
+      final ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+      when(roomService.subscribeToRoom(VALID_ID)).thenReturn(emitter);
+
+      // Act
+      final ResponseBodyEmitter response = roomController.getRoomEvents(VALID_ID);
+
+      // Assert
+      verify(roomService).subscribeToRoom(VALID_ID);
+      verifyZeroInteractions(validator);
+
+      Assert.assertSame(emitter, response);
+   }
 }
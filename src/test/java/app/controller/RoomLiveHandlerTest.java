@@ -0,0 +1,304 @@
+package app.controller;
+
+import app.BaseTest;
+import app.exception.ApiException;
+import app.model.TimeSync;
+import app.request.RoomCommandData;
+import app.service.RoomPresenceService;
+import app.service.RoomSessionService;
+import app.service.TimeSyncService;
+import app.util.RoomSyncCodec;
+import app.validation.ValidationError;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomLiveHandlerTest extends BaseTest {
+
+   private static final String LIVE_URI = "ws://localhost:8000/api/rooms/1/live?userId=1";
+   private static final String SUBSCRIBER = "subscriber";
+   private static final String MEMBER_ID = "memberId";
+   private static final long CLIENT_TIME = 1000;
+
+   @Mock
+   private RoomSessionService roomSessionService;
+
+   @Mock
+   private RoomPresenceService roomPresenceService;
+
+   @Mock
+   private TimeSyncService timeSyncService;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @Mock
+   private WebSocketSession session;
+
+   @Mock
+   private WebSocketSession subscriber;
+
+   @InjectMocks
+   private RoomLiveHandler roomLiveHandler;
+
+   private Map<String, Object> attributes;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomLiveHandler, "sendTimeLimit", 5000);
+      ReflectionTestUtils.setField(roomLiveHandler, "bufferSizeLimit", 65536);
+      attributes = new HashMap<>();
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_JoinsRoom() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI(LIVE_URI));
+      when(session.getAttributes()).thenReturn(attributes);
+
+      // Act
+      roomLiveHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(roomSessionService).join(eq(VALID_ID), any(WebSocketSession.class), isNull());
+      verify(roomPresenceService).join(VALID_ID, VALID_ID);
+
+      Assert.assertEquals(VALID_ID, attributes.get("roomId"));
+      Assert.assertEquals(VALID_ID, attributes.get("userId"));
+      Assert.assertNotNull(attributes.get(SUBSCRIBER));
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_JoinsSinceVersion() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI(LIVE_URI + "&since=7"));
+      when(session.getAttributes()).thenReturn(attributes);
+
+      // Act
+      roomLiveHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(roomSessionService).join(eq(VALID_ID), any(WebSocketSession.class), eq(7L));
+   }
+
+   @Test
+   public void testGetSubProtocols() {
+      // Assert
+      Assert.assertEquals(ImmutableList.of(RoomSyncCodec.BINARY_PROTOCOL, RoomSyncCodec.JSON_PROTOCOL),
+            roomLiveHandler.getSubProtocols());
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_AnonymousListener() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI("ws://localhost:8000/api/rooms/1/live"));
+      when(session.getAttributes()).thenReturn(attributes);
+      when(roomPresenceService.nextAnonymousId()).thenReturn(-1);
+
+      // Act
+      roomLiveHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(roomPresenceService).join(VALID_ID, -1);
+
+      Assert.assertEquals(-1, attributes.get(MEMBER_ID));
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_InvalidRoomId() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI("ws://localhost:8000/api/rooms/abc/live"));
+
+      // Act
+      roomLiveHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(session).close(CloseStatus.BAD_DATA.withReason(ID_FIELD));
+      verifyZeroInteractions(roomSessionService);
+   }
+
+   @Test
+   public void testAfterConnectionEstablished_RoomNotFound() throws Exception {
+      // Arrange
+      when(session.getUri()).thenReturn(new URI(LIVE_URI));
+      when(session.getAttributes()).thenReturn(attributes);
+      doThrow(new ApiException("Room does not exist", ValidationError.NOT_FOUND, ROOM))
+            .when(roomSessionService).join(eq(VALID_ID), any(WebSocketSession.class), isNull());
+
+      // Act
+      roomLiveHandler.afterConnectionEstablished(session);
+
+      // Assert
+      verify(session).close(CloseStatus.POLICY_VIOLATION.withReason("Room does not exist"));
+      verifyZeroInteractions(roomPresenceService);
+   }
+
+   @Test
+   public void testHandleTextMessage_AppliesCommand() throws Exception {
+      // Arrange
+      putAttributes();
+      final ArgumentCaptor<RoomCommandData> commandCaptor = ArgumentCaptor.forClass(RoomCommandData.class);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"SEEK\",\"positionMs\":1000}"));
+
+      // Assert
+      verify(roomSessionService).applyCommand(eq(VALID_ID), eq(VALID_ID), commandCaptor.capture());
+      verifyZeroInteractions(subscriber);
+
+      Assert.assertEquals(RoomCommandData.Type.SEEK, commandCaptor.getValue().getType());
+      Assert.assertEquals(Long.valueOf(1000), commandCaptor.getValue().getPositionMs());
+   }
+
+   @Test
+   public void testHandleTextMessage_Heartbeat() throws Exception {
+      // Arrange
+      putAttributes();
+      when(roomPresenceService.heartbeat(VALID_ID, VALID_ID)).thenReturn(true);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"HEARTBEAT\"}"));
+
+      // Assert
+      verify(roomPresenceService).heartbeat(VALID_ID, VALID_ID);
+      verifyNoMoreInteractions(roomPresenceService);
+      verifyZeroInteractions(roomSessionService);
+   }
+
+   @Test
+   public void testHandleTextMessage_HeartbeatAfterExpiryJoinsAgain() throws Exception {
+      // Arrange
+      putAttributes();
+      when(roomPresenceService.heartbeat(VALID_ID, VALID_ID)).thenReturn(false);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"HEARTBEAT\"}"));
+
+      // Assert
+      verify(roomPresenceService).heartbeat(VALID_ID, VALID_ID);
+      verify(roomPresenceService).join(VALID_ID, VALID_ID);
+      verifyZeroInteractions(roomSessionService);
+   }
+
+   @Test
+   public void testHandleTextMessage_TimeRepliesWithSample() throws Exception {
+      // Arrange
+      putAttributes();
+      when(timeSyncService.sample(eq(CLIENT_TIME), anyLong()))
+            .thenReturn(TimeSync.builder().clientTime(CLIENT_TIME).receiveTime(2000).transmitTime(2001).build());
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"TIME\",\"clientTime\":1000}"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(roomSessionService);
+
+      Assert.assertEquals("{\"type\":\"time\",\"clientTime\":1000,\"receiveTime\":2000,\"transmitTime\":2001}",
+            messageCaptor.getValue().getPayload());
+   }
+
+   @Test
+   public void testHandleTextMessage_TimeWithoutClientTime() throws Exception {
+      // Arrange
+      putAttributes();
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"TIME\"}"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(timeSyncService);
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("clientTime"));
+   }
+
+   @Test
+   public void testHandleTextMessage_RejectedCommandSendsError() throws Exception {
+      // Arrange
+      putAttributes();
+      when(roomSessionService.applyCommand(anyInt(), anyInt(), any(RoomCommandData.class)))
+            .thenThrow(new ApiException("Only the room owner can control playback", ValidationError.FORBIDDEN,
+                  "user"));
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("{\"type\":\"PLAY\"}"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+
+      Assert.assertEquals("{\"type\":\"error\",\"errors\":{\"forbidden\":[\"user\"]}}",
+            messageCaptor.getValue().getPayload());
+   }
+
+   @Test
+   public void testHandleTextMessage_InvalidJson() throws Exception {
+      // Arrange
+      putAttributes();
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomLiveHandler.handleTextMessage(session, new TextMessage("not json"));
+
+      // Assert
+      verify(subscriber).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(roomSessionService);
+
+      Assert.assertEquals("{\"type\":\"error\",\"errors\":{\"badValue\":[\"type\"]}}",
+            messageCaptor.getValue().getPayload());
+   }
+
+   @Test
+   public void testAfterConnectionClosed_LeavesRoom() {
+      // Arrange
+      putAttributes();
+
+      // Act
+      roomLiveHandler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+      // Assert
+      verify(roomSessionService).leave(VALID_ID, subscriber);
+      verify(roomPresenceService).leave(VALID_ID, VALID_ID);
+   }
+
+   private void putAttributes() {
+      attributes.put("roomId", VALID_ID);
+      attributes.put("userId", VALID_ID);
+      attributes.put(SUBSCRIBER, subscriber);
+      attributes.put(MEMBER_ID, VALID_ID);
+      when(session.getAttributes()).thenReturn(attributes);
+   }
+}
@@ -0,0 +1,185 @@
+package app.controller;
+
+import app.BaseTest;
+import app.model.QueuedSong;
+import app.request.QueueSongData;
+import app.service.RoomQueueService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomQueueControllerTest extends BaseTest {
+
+   private static final String USER_ID = "userId";
+
+   @Mock
+   RoomQueueService roomQueueService;
+
+   @Mock
+   Validator validator;
+
+   @InjectMocks
+   RoomQueueController roomQueueController;
+
+   @Test
+   public void testGetQueue_ValidId() {
+      // Arrange
+      final List<QueuedSong> songs = ImmutableList.of(QueuedSong.builder().songId(VALID_ID).votes(1).build());
+      when(validator.check(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(true);
+      when(roomQueueService.getSongs(VALID_ID)).thenReturn(songs);
+
+      // Act
+      final ResponseEntity response = roomQueueController.getQueue(VALID_ID);
+
+      // Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, ID_FIELD);
+      verifyNoMoreInteractions(validator);
+      verify(roomQueueService).getSongs(VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(songs, response.getBody());
+   }
+
+   @Test
+   public void testGetQueue_InvalidId() {
+      // Arrange
+      when(validator.check(false, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomQueueController.getQueue(INVALID_ID);
+
+      // Assert
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(roomQueueService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testAddSong_Valid() {
+      // Arrange
+      final QueueSongData queueSongData = buildQueueSongData(VALID_ID, VALID_ID);
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, SONG_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = roomQueueController.addSong(VALID_ID, queueSongData);
+
+      // Assert
+      verify(roomQueueService).addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertNull(response.getBody());
+   }
+
+   @Test
+   public void testAddSong_InvalidSongId() {
+      // Arrange
+      final QueueSongData queueSongData = buildQueueSongData(VALID_ID, INVALID_ID);
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, SONG_ID)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomQueueController.addSong(VALID_ID, queueSongData);
+
+      // Assert
+      verifyZeroInteractions(roomQueueService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testUpvote_Valid() {
+      // Arrange
+      mockVoteValidation();
+
+      // Act
+      final ResponseEntity response = roomQueueController.upvote(VALID_ID, VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomQueueService).upvote(VALID_ID, VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+   }
+
+   @Test
+   public void testRemoveUpvote_Valid() {
+      // Arrange
+      mockVoteValidation();
+
+      // Act
+      final ResponseEntity response = roomQueueController.removeUpvote(VALID_ID, VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomQueueService).removeUpvote(VALID_ID, VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+   }
+
+   @Test
+   public void testVoteToSkip_Valid() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(true);
+
+      // Act
+      final ResponseEntity response = roomQueueController.voteToSkip(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomQueueService).voteToSkip(VALID_ID, VALID_ID);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+   }
+
+   @Test
+   public void testVoteToSkip_InvalidUserId() {
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, USER_ID)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = roomQueueController.voteToSkip(VALID_ID, INVALID_ID);
+
+      // Assert
+      verifyZeroInteractions(roomQueueService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   private void mockVoteValidation() {
+      when(validator.chain(true, ValidationError.BAD_VALUE, ID_FIELD)).thenReturn(validator);
+      when(validator.chain(true, ValidationError.BAD_VALUE, SONG_ID)).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, USER_ID)).thenReturn(true);
+   }
+
+   private QueueSongData buildQueueSongData(final int userId, final int songId) {
+      final QueueSongData queueSongData = new QueueSongData();
+      queueSongData.setUserId(userId);
+      queueSongData.setSongId(songId);
+
+      return queueSongData;
+   }
+}
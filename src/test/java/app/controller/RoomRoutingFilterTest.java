@@ -0,0 +1,217 @@
+package app.controller;
+
+import app.BaseTest;
+import app.service.ClusterService;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomRoutingFilterTest extends BaseTest {
+
+   private static final String OWNER = "http://localhost:8002/api";
+   private static final String ROOM_URI = "/api/rooms/1";
+   private static final String SECRET = "secret";
+
+   @Mock
+   private ClusterService clusterService;
+
+   @Mock
+   private RestTemplate clusterRestTemplate;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @InjectMocks
+   private RoomRoutingFilter roomRoutingFilter;
+
+   private MockHttpServletRequest request;
+   private MockHttpServletResponse response;
+   private MockFilterChain filterChain;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomRoutingFilter, "mode", "forward");
+      request = new MockHttpServletRequest("GET", ROOM_URI);
+      request.setContextPath("/api");
+      response = new MockHttpServletResponse();
+      filterChain = new MockFilterChain();
+   }
+
+   @Test
+   public void testDoFilter_LocalRoom() throws Exception {
+      // Arrange
+      when(clusterService.isLocal(VALID_ID)).thenReturn(true);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verifyZeroInteractions(clusterRestTemplate);
+
+      Assert.assertSame(request, filterChain.getRequest());
+   }
+
+   @Test
+   public void testDoFilter_NotRoomPath() throws Exception {
+      // Arrange
+      request.setRequestURI("/api/rooms");
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verifyZeroInteractions(clusterService);
+
+      Assert.assertSame(request, filterChain.getRequest());
+   }
+
+   @Test
+   public void testDoFilter_AlreadyForwarded() throws Exception {
+      // Arrange
+      request.addHeader(RoomRoutingFilter.FORWARDED_HEADER, OWNER);
+      request.addHeader(ClusterService.SECRET_HEADER, SECRET);
+      when(clusterService.isTrusted(SECRET)).thenReturn(true);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verify(clusterService, never()).isLocal(anyInt());
+
+      Assert.assertSame(request, filterChain.getRequest());
+   }
+
+   @Test
+   public void testDoFilter_ForwardedWithoutSecret() throws Exception {
+      // Arrange
+      ReflectionTestUtils.setField(roomRoutingFilter, "mode", "redirect");
+      request.addHeader(RoomRoutingFilter.FORWARDED_HEADER, OWNER);
+      when(clusterService.isTrusted(null)).thenReturn(false);
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      Assert.assertNull(filterChain.getRequest());
+      Assert.assertEquals(307, response.getStatus());
+      Assert.assertEquals(OWNER + "/rooms/1", response.getHeader(HttpHeaders.LOCATION));
+   }
+
+   @Test
+   public void testDoFilter_RedirectMode() throws Exception {
+      // Arrange
+      ReflectionTestUtils.setField(roomRoutingFilter, "mode", "redirect");
+      request.setQueryString("userId=1");
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      Assert.assertNull(filterChain.getRequest());
+      Assert.assertEquals(307, response.getStatus());
+      Assert.assertEquals(OWNER + "/rooms/1?userId=1", response.getHeader(HttpHeaders.LOCATION));
+   }
+
+   @Test
+   public void testDoFilter_WebSocketRefusedWithOwner() throws Exception {
+      // Arrange
+      ReflectionTestUtils.setField(roomRoutingFilter, "mode", "redirect");
+      request.setRequestURI("/api/rooms/1/live");
+      request.addHeader(HttpHeaders.UPGRADE, "websocket");
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verifyZeroInteractions(clusterRestTemplate);
+
+      Assert.assertNull(filterChain.getRequest());
+      Assert.assertEquals(421, response.getStatus());
+      Assert.assertNull(response.getHeader(HttpHeaders.LOCATION));
+      Assert.assertEquals(OWNER, response.getHeader(RoomRoutingFilter.OWNER_HEADER));
+      Assert.assertEquals("{\"owner\":\"" + OWNER + "\"}", response.getContentAsString());
+   }
+
+   @Test
+   public void testDoFilter_EventStreamAlwaysRedirected() throws Exception {
+      // Arrange
+      request.setRequestURI("/api/rooms/1/events");
+      request.addHeader(HttpHeaders.ACCEPT, "text/event-stream");
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verifyZeroInteractions(clusterRestTemplate);
+
+      Assert.assertEquals(307, response.getStatus());
+      Assert.assertEquals(OWNER + "/rooms/1/events", response.getHeader(HttpHeaders.LOCATION));
+   }
+
+   @Test
+   public void testDoFilter_ForwardsToOwner() throws Exception {
+      // Arrange
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      verify(clusterRestTemplate).execute(eq(OWNER + "/rooms/1"), eq(HttpMethod.GET), any(RequestCallback.class),
+            any(ResponseExtractor.class));
+
+      Assert.assertNull(filterChain.getRequest());
+   }
+
+   @Test
+   public void testDoFilter_OwnerUnreachable() throws Exception {
+      // Arrange
+      when(clusterService.isLocal(VALID_ID)).thenReturn(false);
+      when(clusterService.getOwner(VALID_ID)).thenReturn(OWNER);
+      when(clusterRestTemplate.execute(eq(OWNER + "/rooms/1"), eq(HttpMethod.GET), any(RequestCallback.class),
+            any(ResponseExtractor.class))).thenThrow(new ResourceAccessException("Connection refused"));
+
+      // Act
+      roomRoutingFilter.doFilter(request, response, filterChain);
+
+      // Assert
+      Assert.assertEquals(503, response.getStatus());
+      Assert.assertEquals("{\"errors\":{\"serviceUnavailable\":[\"room\"]}}", response.getContentAsString());
+   }
+}
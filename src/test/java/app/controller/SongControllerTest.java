@@ -1,12 +1,15 @@
 package app.controller;
 
 import app.BaseTest;
+import app.model.PlaylistPage;
 import app.model.Song;
 import app.request.CreateSongData;
 import app.service.SongService;
 import app.validation.ValidationError;
 import app.validation.Validator;
 
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -22,6 +25,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -82,13 +86,14 @@ public class SongControllerTest extends BaseTest {
 
       // Arrange
       when(validator.chain(true, ValidationError.MISSING_FIELD, "title")).thenReturn(validator);
-      when(validator.check(true, ValidationError.MISSING_FIELD, "reference")).thenReturn(true);
+      when(validator.chain(true, ValidationError.MISSING_FIELD, "reference")).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "durationMs")).thenReturn(true);
 
       // Act
       final ResponseEntity response = controller.createNewSong(buildCreateSongModel());
 
       // Assert
-      verify(validator).chain(anyBoolean(), any(ValidationError.class), anyString());
+      verify(validator, times(2)).chain(anyBoolean(), any(ValidationError.class), anyString());
       verify(validator).check(anyBoolean(), any(ValidationError.class), anyString());
       verifyNoMoreInteractions(validator);
       verify(songService).createNewSong(any(Song.class));
@@ -102,14 +107,15 @@ public class SongControllerTest extends BaseTest {
 
       // Arrange
       when(validator.chain(false, ValidationError.MISSING_FIELD, "title")).thenReturn(validator);
-      when(validator.check(false, ValidationError.MISSING_FIELD, "reference")).thenReturn(false);
+      when(validator.chain(false, ValidationError.MISSING_FIELD, "reference")).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "durationMs")).thenReturn(false);
       when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
 
       // Act
       final ResponseEntity response = controller.createNewSong(new CreateSongData());
 
       // Assert
-      verify(validator).chain(anyBoolean(), any(ValidationError.class), anyString());
+      verify(validator, times(2)).chain(anyBoolean(), any(ValidationError.class), anyString());
       verify(validator).check(anyBoolean(), any(ValidationError.class), anyString());
       verify(validator).getResponseEntity();
       verifyZeroInteractions(songService);
@@ -119,6 +125,27 @@ public class SongControllerTest extends BaseTest {
 
    }
 
+   @Test
+   public void testCreateNewSong_InvalidDuration() {
+
+      // Arrange
+      final CreateSongData createSongData = buildCreateSongModel();
+      createSongData.setDurationMs(0);
+      when(validator.chain(true, ValidationError.MISSING_FIELD, "title")).thenReturn(validator);
+      when(validator.chain(true, ValidationError.MISSING_FIELD, "reference")).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, "durationMs")).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = controller.createNewSong(createSongData);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, "durationMs");
+      verifyZeroInteractions(songService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
    @Test
    public void testGetSongs_getSongsByFilter() {
 
@@ -192,4 +219,85 @@ public class SongControllerTest extends BaseTest {
       Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
       Assert.assertNull(response.getBody());
    }
+
+   @Test
+   public void testGetRelatedSongs_Success() {
+
+      // Arrange
+      final List<Song> songs = ImmutableList.of(buildSong());
+      when(validator.chain(true, ValidationError.BAD_VALUE, "id")).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "limit")).thenReturn(true);
+      when(songService.getRelatedSongs(VALID_ID, 10)).thenReturn(songs);
+
+      // Act
+      final ResponseEntity response = controller.getRelatedSongs(VALID_ID, 10);
+
+      // Assert
+      verify(validator).chain(true, ValidationError.BAD_VALUE, "id");
+      verify(validator).check(true, ValidationError.BAD_VALUE, "limit");
+      verify(songService).getRelatedSongs(VALID_ID, 10);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(songs, response.getBody());
+   }
+
+   @Test
+   public void testGetRelatedSongs_LimitTooLarge() {
+
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, "id")).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, "limit")).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = controller.getRelatedSongs(VALID_ID, 101);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, "limit");
+      verifyZeroInteractions(songService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_Success() {
+
+      // Arrange
+      final PlaylistPage page = PlaylistPage.builder()
+            .playlists(ImmutableList.of(buildPlaylist()))
+            .total(1)
+            .build();
+      when(validator.chain(true, ValidationError.BAD_VALUE, "id")).thenReturn(validator);
+      when(validator.check(true, ValidationError.BAD_VALUE, "limit")).thenReturn(true);
+      when(songService.getPlaylistsWithSong(VALID_ID, "Mg", 20)).thenReturn(page);
+
+      // Act
+      final ResponseEntity response = controller.getPlaylistsWithSong(VALID_ID, " Mg ", 20);
+
+      // Assert
+      verify(validator).chain(true, ValidationError.BAD_VALUE, "id");
+      verify(validator).check(true, ValidationError.BAD_VALUE, "limit");
+      verify(songService).getPlaylistsWithSong(VALID_ID, "Mg", 20);
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals(page, response.getBody());
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_InvalidLimit() {
+
+      // Arrange
+      when(validator.chain(true, ValidationError.BAD_VALUE, "id")).thenReturn(validator);
+      when(validator.check(false, ValidationError.BAD_VALUE, "limit")).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = controller.getPlaylistsWithSong(VALID_ID, null, 0);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, "limit");
+      verifyZeroInteractions(songService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
 }
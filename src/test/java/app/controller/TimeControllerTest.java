@@ -0,0 +1,75 @@
+package app.controller;
+
+import app.BaseTest;
+import app.model.TimeSync;
+import app.service.TimeSyncService;
+import app.validation.ValidationError;
+import app.validation.Validator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TimeControllerTest extends BaseTest {
+
+   private static final String CLIENT_TIME = "clientTime";
+   private static final long SENT_AT = 1571443200000L;
+
+   @Mock
+   TimeSyncService timeSyncService;
+
+   @Mock
+   Validator validator;
+
+   @InjectMocks
+   TimeController timeController;
+
+   @Test
+   public void testGetTime_Valid() {
+      // Arrange
+      final TimeSync sample = TimeSync.builder().clientTime(SENT_AT).receiveTime(SENT_AT + 20)
+            .transmitTime(SENT_AT + 21).build();
+      when(validator.check(true, ValidationError.BAD_VALUE, CLIENT_TIME)).thenReturn(true);
+      when(timeSyncService.sample(eq(SENT_AT), anyLong())).thenReturn(sample);
+
+      // Act
+      final ResponseEntity response = timeController.getTime(SENT_AT);
+
+      // Assert
+      verify(validator).check(true, ValidationError.BAD_VALUE, CLIENT_TIME);
+      verify(timeSyncService).sample(eq(SENT_AT), anyLong());
+
+      Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+      Assert.assertEquals("no-store", response.getHeaders().getCacheControl());
+      Assert.assertEquals(sample, response.getBody());
+   }
+
+   @Test
+   public void testGetTime_MissingClientTime() {
+      // Arrange
+      when(validator.check(false, ValidationError.BAD_VALUE, CLIENT_TIME)).thenReturn(false);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(HttpStatus.BAD_REQUEST));
+
+      // Act
+      final ResponseEntity response = timeController.getTime(null);
+
+      // Assert
+      verify(validator).check(false, ValidationError.BAD_VALUE, CLIENT_TIME);
+      verify(validator).getResponseEntity();
+      verifyZeroInteractions(timeSyncService);
+
+      Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+   }
+}
@@ -0,0 +1,123 @@
+package app.dao;
+
+import app.Application;
+import app.model.Playlist;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Measures what flushing costs per managed entity, with ENTITIES playlists loaded into one persistence context:
+ * once with none of them changed, which is only the dirty check, and once with one field of each changed, which
+ * adds the UPDATE statements. Without bytecode enhancement the dirty check compares every field of every entity
+ * with its snapshot; enhanced entities record their own changes. Compare the output of
+ * ./gradlew benchmark -Pbenchmark=app.dao.EntityFlushBenchmark with that of a clean build run with
+ * -PskipEnhancement. Needs the database from application.properties with at least one user; the playlists are
+ * created for the first user, every change is rolled back and the playlists are deleted afterwards.
+ */
+public final class EntityFlushBenchmark {
+
+   private static final int ENTITIES = 10000;
+   private static final int ROUNDS = 20;
+   private static final int WARM_UP_ROUNDS = 5;
+   private static final String NAME = "flushBenchmark";
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private EntityFlushBenchmark() {
+   }
+
+   /**
+    * Print the flush time per entity, with the entities unchanged and changed.
+    *
+    * @param args unused
+    */
+   public static void main(final String[] args) {
+      try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+            .web(WebApplicationType.NONE)
+            .run(args)) {
+         final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+         final EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+         final int userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM User", Integer.class);
+
+         final List<Playlist> playlists = new ArrayList<>();
+         for (int i = 0; i < ENTITIES; i++) {
+            playlists.add(Playlist.builder().name(NAME).userId(userId).genre("genre").totalListens(0)
+                  .dateCreated(ZonedDateTime.now()).build());
+         }
+
+         try {
+            context.getBean(PlaylistDao.class).saveAll(playlists);
+
+            for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+               flush(entityManagerFactory, round);
+            }
+
+            long cleanNanos = 0;
+            long dirtyNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+               final long[] nanos = flush(entityManagerFactory, round);
+               cleanNanos += nanos[0];
+               dirtyNanos += nanos[1];
+            }
+
+            System.out.println(String.format("enhanced: %s, %d entities",
+                  SelfDirtinessTracker.class.isAssignableFrom(Playlist.class), ENTITIES));
+            print("unchanged", cleanNanos);
+            print("changed", dirtyNanos);
+         } finally {
+            jdbcTemplate.update("DELETE FROM Playlist WHERE name = ? AND user_id = ?", NAME, userId);
+         }
+      }
+   }
+
+   /**
+    * Load the playlists, flush, change every one, flush again and roll back.
+    *
+    * @return nanoseconds taken by the flush with nothing changed, then by the flush with every playlist changed
+    */
+   private static long[] flush(final EntityManagerFactory entityManagerFactory, final int round) {
+      final EntityManager entityManager = entityManagerFactory.createEntityManager();
+      entityManager.getTransaction().begin();
+
+      try {
+         final List<Playlist> playlists = entityManager
+               .createQuery("SELECT p FROM Playlist p WHERE p.name = :name", Playlist.class)
+               .setParameter("name", NAME)
+               .getResultList();
+
+         final long cleanStart = System.nanoTime();
+         entityManager.flush();
+         final long cleanNanos = System.nanoTime() - cleanStart;
+
+         for (Playlist playlist : playlists) {
+            playlist.setGenre("genre" + round);
+         }
+
+         final long dirtyStart = System.nanoTime();
+         entityManager.flush();
+         final long dirtyNanos = System.nanoTime() - dirtyStart;
+
+         return new long[] {cleanNanos, dirtyNanos};
+      } finally {
+         entityManager.getTransaction().rollback();
+         entityManager.close();
+      }
+   }
+
+   private static void print(final String entities, final long nanos) {
+      System.out.println(String.format("%-10s %10.1f us/flush %10.0f ns/entity", entities,
+            nanos / 1e3 / ROUNDS, (double) nanos / ROUNDS / ENTITIES));
+   }
+}
@@ -0,0 +1,61 @@
+package app.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PartialUpdateTest {
+
+   private static final int ID = 1;
+   private static final Long VERSION = 3L;
+   private static final String EMAIL = "test@test.com";
+   private static final String PASSWORD_HASH = "hash";
+
+   @Mock
+   private JdbcTemplate jdbcTemplate;
+
+   @Test
+   public void testExecute_SetsGivenColumnsAndVersion() {
+      // Arrange
+      when(jdbcTemplate.update("UPDATE User SET email = ?, version = version + 1 WHERE id = ? AND version = ?"
+            + " AND password_hash = ?", EMAIL, ID, VERSION, PASSWORD_HASH)).thenReturn(1);
+
+      // Act
+      final int updated = new PartialUpdate("User")
+            .set("email", EMAIL)
+            .set("password_hash", null)
+            .where("password_hash", PASSWORD_HASH)
+            .execute(jdbcTemplate, ID, VERSION);
+
+      // Assert
+      Assert.assertEquals(1, updated);
+   }
+
+   @Test
+   public void testExecute_NothingToSetOnlyChecksRow() {
+      // Arrange
+      when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM User WHERE id = ? AND version = ?", Integer.class,
+            ID, VERSION)).thenReturn(1);
+
+      // Act
+      final int updated = new PartialUpdate("User")
+            .set("email", null)
+            .where("password_hash", null)
+            .execute(jdbcTemplate, ID, VERSION);
+
+      // Assert
+      verify(jdbcTemplate).queryForObject("SELECT COUNT(*) FROM User WHERE id = ? AND version = ?", Integer.class,
+            ID, VERSION);
+      verifyNoMoreInteractions(jdbcTemplate);
+
+      Assert.assertEquals(1, updated);
+   }
+}
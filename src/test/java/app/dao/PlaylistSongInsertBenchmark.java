@@ -0,0 +1,129 @@
+package app.dao;
+
+import app.Application;
+import app.model.PlaylistSong;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares inserting PlaylistSong rows one statement at a time with generated keys, which is what Hibernate does for
+ * IDENTITY ids, against saving them through PlaylistSongDao with ids from PooledIdGenerator, which Hibernate sends
+ * in JDBC batches. Both insert ROWS rows in transactions of CHUNK rows into the first playlist, using the first
+ * song, and print rows per second; the pooled run also prints Hibernate's count of entities inserted against JDBC
+ * statements prepared, which shows the batching. Needs the database from application.properties with the
+ * Id_Sequence table of initializeDB.sql; the rows inserted are deleted afterwards. Run with
+ * ./gradlew benchmark -Pbenchmark=app.dao.PlaylistSongInsertBenchmark
+ */
+public final class PlaylistSongInsertBenchmark {
+
+   private static final int ROWS = 20000;
+   private static final int CHUNK = 1000;
+   private static final int WARM_UP_ROWS = 2000;
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private PlaylistSongInsertBenchmark() {
+   }
+
+   /**
+    * Print rows per second for both ways of inserting.
+    *
+    * @param args unused
+    */
+   public static void main(final String[] args) {
+      try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+            .web(WebApplicationType.NONE)
+            .properties("spring.jpa.properties.hibernate.generate_statistics=true")
+            .run(args)) {
+         final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+         final TransactionTemplate transactionTemplate =
+               new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+         final PlaylistSongDao playlistSongDao = context.getBean(PlaylistSongDao.class);
+         final Statistics statistics = context.getBean(EntityManagerFactory.class)
+               .unwrap(SessionFactory.class).getStatistics();
+
+         final int playlistId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM Playlist", Integer.class);
+         final int songId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM Song", Integer.class);
+         final int lastId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM Playlist_Song",
+               Integer.class);
+
+         try {
+            insertOneByOne(jdbcTemplate, transactionTemplate, playlistId, songId, WARM_UP_ROWS);
+            final long identityStart = System.nanoTime();
+            insertOneByOne(jdbcTemplate, transactionTemplate, playlistId, songId, ROWS);
+            print("identity", System.nanoTime() - identityStart);
+
+            // The rows inserted with generated keys took ids Id_Sequence doesn't know about
+            deleteInserted(jdbcTemplate, playlistId, lastId);
+
+            saveInBatches(playlistSongDao, transactionTemplate, playlistId, songId, WARM_UP_ROWS);
+            statistics.clear();
+            final long pooledStart = System.nanoTime();
+            saveInBatches(playlistSongDao, transactionTemplate, playlistId, songId, ROWS);
+            print("pooled", System.nanoTime() - pooledStart);
+            System.out.println(String.format("%d entities inserted with %d statements prepared",
+                  statistics.getEntityInsertCount(), statistics.getPrepareStatementCount()));
+         } finally {
+            deleteInserted(jdbcTemplate, playlistId, lastId);
+         }
+      }
+   }
+
+   private static void insertOneByOne(final JdbcTemplate jdbcTemplate, final TransactionTemplate transactionTemplate,
+                                      final int playlistId, final int songId, final int rows) {
+      for (int inserted = 0; inserted < rows; inserted += CHUNK) {
+         final int chunk = Math.min(CHUNK, rows - inserted);
+         transactionTemplate.execute(status -> {
+            for (int i = 0; i < chunk; i++) {
+               final KeyHolder keyHolder = new GeneratedKeyHolder();
+               jdbcTemplate.update(connection -> {
+                  final PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO Playlist_Song (playlist_id, song_id) VALUES (?, ?)",
+                        Statement.RETURN_GENERATED_KEYS);
+                  statement.setInt(1, playlistId);
+                  statement.setInt(2, songId);
+                  return statement;
+               }, keyHolder);
+            }
+            return null;
+         });
+      }
+   }
+
+   private static void saveInBatches(final PlaylistSongDao playlistSongDao,
+                                     final TransactionTemplate transactionTemplate, final int playlistId,
+                                     final int songId, final int rows) {
+      for (int inserted = 0; inserted < rows; inserted += CHUNK) {
+         final List<PlaylistSong> chunk = new ArrayList<>();
+         for (int i = 0; i < Math.min(CHUNK, rows - inserted); i++) {
+            chunk.add(PlaylistSong.builder().playlistId(playlistId).songId(songId).build());
+         }
+         transactionTemplate.execute(status -> playlistSongDao.saveAll(chunk));
+      }
+   }
+
+   private static void deleteInserted(final JdbcTemplate jdbcTemplate, final int playlistId, final int lastId) {
+      jdbcTemplate.update("DELETE FROM Playlist_Song WHERE playlist_id = ? AND id > ?", playlistId, lastId);
+   }
+
+   private static void print(final String method, final long nanos) {
+      System.out.println(String.format("%-10s %8d rows %10.0f rows/s", method, ROWS, ROWS / (nanos / 1e9)));
+   }
+}
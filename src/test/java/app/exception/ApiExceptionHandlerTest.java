@@ -11,6 +11,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import com.google.common.collect.ImmutableList;
 
@@ -85,4 +86,22 @@ public class ApiExceptionHandlerTest extends BaseTest {
       Assert.assertEquals(error.getStatus(), response.getStatusCode());
       Assert.assertEquals(error.getTag(), response.getBody());
    }
+
+   @Test
+   public void testHandleOptimisticLockingFailure() {
+      // Arrange
+      final ValidationError error = ValidationError.CONFLICT;
+      when(validator.chain(false, error, VERSION)).thenReturn(validator);
+      when(validator.getResponseEntity()).thenReturn(buildResponseEntity(error));
+
+      // Act
+      final ResponseEntity response = handler.handleOptimisticLockingFailure(
+            new ObjectOptimisticLockingFailureException(Object.class, VALID_ID));
+
+      // Assert
+      verify(validator).chain(false, error, VERSION);
+      verify(validator).getResponseEntity();
+
+      Assert.assertEquals(error.getStatus(), response.getStatusCode());
+   }
 }
@@ -0,0 +1,261 @@
+package app.service;
+
+import app.BaseTest;
+import app.exception.ApiException;
+import app.model.ChatMessage;
+import app.model.QueuedSong;
+import app.model.RoomSnapshot;
+import app.model.RoomState;
+import app.util.ConsistentHashRing;
+import app.validation.ValidationError;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClusterServiceTest extends BaseTest {
+
+   private static final String SELF = "http://localhost:8000/api";
+   private static final String OTHER = "http://localhost:8002/api";
+   private static final String SECRET = "secret";
+
+   @Mock
+   private RoomSessionService roomSessionService;
+
+   @Mock
+   private RoomChatService roomChatService;
+
+   @Mock
+   private RoomQueueService roomQueueService;
+
+   @Mock
+   private RestTemplate clusterRestTemplate;
+
+   @InjectMocks
+   private ClusterService clusterService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(clusterService, "self", SELF);
+      ReflectionTestUtils.setField(clusterService, "members", new String[] {SELF, OTHER});
+      ReflectionTestUtils.setField(clusterService, "virtualNodes", 160);
+      ReflectionTestUtils.setField(clusterService, "secret", SECRET);
+   }
+
+   @Test
+   public void testIsLocal_ClusterDisabled() {
+      // Act
+      final boolean local = clusterService.isLocal(VALID_ID);
+
+      // Assert
+      Assert.assertTrue(local);
+      Assert.assertEquals(SELF, clusterService.getOwner(VALID_ID));
+      Assert.assertEquals(ImmutableList.of(SELF), clusterService.getLiveMembers());
+   }
+
+   @Test
+   public void testCheckMembers_AddsHealthyMember() {
+      // Arrange
+      enable();
+      when(clusterRestTemplate.getForEntity(OTHER + "/cluster/health", String.class))
+            .thenReturn(ResponseEntity.ok(""));
+
+      // Act
+      clusterService.checkMembers();
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(SELF, OTHER), clusterService.getLiveMembers());
+   }
+
+   @Test
+   public void testCheckMembers_SkipsUnreachableMember() {
+      // Arrange
+      enable();
+      when(clusterRestTemplate.getForEntity(OTHER + "/cluster/health", String.class))
+            .thenThrow(new ResourceAccessException("Connection refused"));
+
+      // Act
+      clusterService.checkMembers();
+
+      // Assert
+      verifyZeroInteractions(roomSessionService);
+      Assert.assertEquals(ImmutableList.of(SELF), clusterService.getLiveMembers());
+   }
+
+   @Test
+   @SuppressWarnings("unchecked")
+   public void testCheckMembers_HandsOffMovedRooms() {
+      // Arrange
+      enable();
+      final int movedRoomId = findRoomOwnedBy(OTHER);
+      final RoomState state = RoomState.builder().roomId(movedRoomId).build();
+      final List<ChatMessage> messages = ImmutableList.of(ChatMessage.builder().text("hello").build());
+      when(clusterRestTemplate.getForEntity(OTHER + "/cluster/health", String.class))
+            .thenReturn(ResponseEntity.ok(""));
+      when(roomSessionService.getLiveRoomIds()).thenReturn(ImmutableList.of(movedRoomId));
+      when(roomChatService.getRoomIds()).thenReturn(ImmutableList.of(movedRoomId));
+      when(roomSessionService.getState(movedRoomId)).thenReturn(Optional.of(state));
+      when(roomChatService.getLocalMessages(movedRoomId)).thenReturn(Optional.of(messages));
+      when(roomQueueService.getLocalSongs(movedRoomId)).thenReturn(Optional.empty());
+      when(clusterRestTemplate.exchange(eq(OTHER + "/cluster/rooms/" + movedRoomId + "/handoff"),
+            eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).thenReturn(ResponseEntity.ok(""));
+      final ArgumentCaptor<HttpEntity> entityCaptor = ArgumentCaptor.forClass(HttpEntity.class);
+
+      // Act
+      clusterService.checkMembers();
+
+      // Assert
+      verify(clusterRestTemplate).exchange(eq(OTHER + "/cluster/rooms/" + movedRoomId + "/handoff"),
+            eq(HttpMethod.POST), entityCaptor.capture(), eq(String.class));
+      verify(roomSessionService).close(movedRoomId, "Room moved");
+      verify(roomChatService).close(movedRoomId, "Room moved");
+      verify(roomQueueService).close(movedRoomId);
+
+      final RoomSnapshot snapshot = (RoomSnapshot) entityCaptor.getValue().getBody();
+      Assert.assertEquals(movedRoomId, snapshot.getRoomId());
+      Assert.assertEquals(state, snapshot.getState());
+      Assert.assertEquals(messages, snapshot.getMessages());
+      Assert.assertNull(snapshot.getQueue());
+      Assert.assertEquals(SECRET, entityCaptor.getValue().getHeaders().getFirst(ClusterService.SECRET_HEADER));
+   }
+
+   @Test
+   public void testCheckMembers_KeepsOwnedRooms() {
+      // Arrange
+      enable();
+      final int keptRoomId = findRoomOwnedBy(SELF);
+      when(clusterRestTemplate.getForEntity(OTHER + "/cluster/health", String.class))
+            .thenReturn(ResponseEntity.ok(""));
+      when(roomSessionService.getLiveRoomIds()).thenReturn(ImmutableList.of(keptRoomId));
+
+      // Act
+      clusterService.checkMembers();
+
+      // Assert
+      verify(roomSessionService, never()).close(anyInt(), any());
+   }
+
+   @Test
+   public void testInit_SecretRequired() {
+      // Arrange
+      ReflectionTestUtils.setField(clusterService, "enabled", true);
+      ReflectionTestUtils.setField(clusterService, "secret", "");
+
+      // Act
+      try {
+         clusterService.init();
+         fail("Exception not thrown");
+      } catch (IllegalStateException ex) {
+         // Assert
+         Assert.assertEquals("cluster.secret must be set when cluster.enabled is true", ex.getMessage());
+      }
+   }
+
+   @Test
+   public void testAcceptHandoff_RestoresRoom() {
+      // Arrange
+      enable();
+      final RoomState state = RoomState.builder().roomId(VALID_ID).build();
+      final List<ChatMessage> messages = ImmutableList.of(ChatMessage.builder().text("hello").build());
+      final List<QueuedSong> queue = ImmutableList.of(QueuedSong.builder().songId(VALID_ID).votes(2).build());
+
+      // Act
+      clusterService.acceptHandoff(new RoomSnapshot(VALID_ID, state, messages, queue), SECRET);
+
+      // Assert
+      verify(roomSessionService).restore(state);
+      verify(roomChatService).restore(VALID_ID, messages);
+      verify(roomQueueService).restore(VALID_ID, queue);
+   }
+
+   @Test
+   public void testAcceptHandoff_ClusterDisabled() {
+      // Act
+      try {
+         clusterService.acceptHandoff(new RoomSnapshot(VALID_ID, null, null, null), SECRET);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verifyZeroInteractions(roomSessionService);
+
+         Assert.assertEquals(ValidationError.FORBIDDEN, ex.getError());
+      }
+   }
+
+   @Test
+   public void testAcceptHandoff_MissingSecret() {
+      // Arrange
+      enable();
+
+      // Act
+      try {
+         clusterService.acceptHandoff(new RoomSnapshot(VALID_ID, null, null, null), null);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verifyZeroInteractions(roomSessionService);
+
+         Assert.assertEquals(ValidationError.FORBIDDEN, ex.getError());
+      }
+   }
+
+   @Test
+   public void testAcceptHandoff_WrongSecret() {
+      // Arrange
+      enable();
+
+      // Act
+      try {
+         clusterService.acceptHandoff(new RoomSnapshot(VALID_ID, null, null, null), "wrong");
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verifyZeroInteractions(roomSessionService);
+         verifyZeroInteractions(roomChatService);
+         verifyZeroInteractions(roomQueueService);
+
+         Assert.assertEquals(ValidationError.FORBIDDEN, ex.getError());
+      }
+   }
+
+   private void enable() {
+      ReflectionTestUtils.setField(clusterService, "enabled", true);
+      ReflectionTestUtils.setField(clusterService, "ring", new ConsistentHashRing<>(ImmutableList.of(SELF), 160));
+   }
+
+   private int findRoomOwnedBy(final String member) {
+      final ConsistentHashRing<String> ring = new ConsistentHashRing<>(ImmutableList.of(SELF, OTHER), 160);
+      int roomId = 1;
+      while (!member.equals(ring.getOwner(roomId))) {
+         roomId++;
+      }
+
+      return roomId;
+   }
+}
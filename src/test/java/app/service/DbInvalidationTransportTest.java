@@ -0,0 +1,157 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.CacheInvalidationDao;
+import app.model.CacheInvalidation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DbInvalidationTransportTest extends BaseTest {
+
+   private static final int BATCH_SIZE = 2;
+
+   private static final long START_ID = 10;
+
+   @Mock
+   private CacheInvalidationDao cacheInvalidationDao;
+
+   @InjectMocks
+   private DbInvalidationTransport transport;
+
+   private final List<Long> delivered = new ArrayList<>();
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(transport, "pollInterval", 60000L);
+      ReflectionTestUtils.setField(transport, "batchSize", BATCH_SIZE);
+      ReflectionTestUtils.setField(transport, "gapTimeout", 60000L);
+      ReflectionTestUtils.setField(transport, "retention", 60000L);
+      when(cacheInvalidationDao.findMaxId()).thenReturn(START_ID);
+      transport.start(invalidation -> delivered.add(invalidation.getId()));
+   }
+
+   @After
+   public void teardown() {
+      transport.stop();
+   }
+
+   @Test
+   public void testPoll_ReadsEveryBatchAfterTheCursor() {
+      // Arrange
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(START_ID, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of(buildInvalidation(11), buildInvalidation(12)));
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(12, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of(buildInvalidation(13)));
+
+      // Act
+      transport.poll();
+
+      // Assert
+      verify(cacheInvalidationDao, never()).findByIdIn(anyCollection());
+      verify(cacheInvalidationDao, never()).deletePublishedBefore(anyLong());
+
+      Assert.assertEquals(ImmutableList.of(11L, 12L, 13L), delivered);
+   }
+
+   @Test
+   public void testPoll_SkippedIdIsDeliveredWhenItCommits() {
+      // Arrange
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(START_ID, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of(buildInvalidation(12)));
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(12, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of());
+      when(cacheInvalidationDao.findByIdIn(ImmutableList.of(11L)))
+            .thenReturn(ImmutableList.of(buildInvalidation(11)));
+
+      // Act
+      transport.poll();
+      transport.poll();
+      transport.poll();
+
+      // Assert
+      verify(cacheInvalidationDao).findByIdIn(ImmutableList.of(11L));
+
+      Assert.assertEquals(ImmutableList.of(12L, 11L), delivered);
+   }
+
+   @Test
+   public void testPoll_SkippedIdIsGivenUpAfterTimeout() {
+      // Arrange
+      ReflectionTestUtils.setField(transport, "gapTimeout", -1L);
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(START_ID, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of(buildInvalidation(12)));
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(12, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of());
+      when(cacheInvalidationDao.findByIdIn(ImmutableList.of(11L))).thenReturn(ImmutableList.of());
+
+      // Act
+      transport.poll();
+      transport.poll();
+      transport.poll();
+
+      // Assert
+      verify(cacheInvalidationDao).findByIdIn(ImmutableList.of(11L));
+
+      Assert.assertEquals(ImmutableList.of(12L), delivered);
+   }
+
+   @Test
+   public void testPoll_PrunesOldRows() {
+      // Arrange
+      ReflectionTestUtils.setField(transport, "retention", 0L);
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(START_ID, PageRequest.of(0, BATCH_SIZE)))
+            .thenReturn(ImmutableList.of());
+
+      // Act
+      transport.poll();
+
+      // Assert
+      verify(cacheInvalidationDao).deletePublishedBefore(anyLong());
+   }
+
+   @Test
+   public void testPoll_FailureKeepsTheCursor() {
+      // Arrange
+      when(cacheInvalidationDao.findByIdGreaterThanOrderById(START_ID, PageRequest.of(0, BATCH_SIZE)))
+            .thenThrow(new IllegalStateException("down"))
+            .thenReturn(ImmutableList.of(buildInvalidation(11)));
+
+      // Act
+      transport.poll();
+      transport.poll();
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(11L), delivered);
+   }
+
+   private CacheInvalidation buildInvalidation(final long id) {
+      return CacheInvalidation.builder()
+            .id(id)
+            .node("other-node")
+            .entity(SONG)
+            .entityId(VALID_ID)
+            .publishedAt(System.currentTimeMillis())
+            .build();
+   }
+}
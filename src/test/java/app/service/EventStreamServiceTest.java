@@ -0,0 +1,151 @@
+package app.service;
+
+import app.BaseTest;
+import app.exception.ApiException;
+import app.validation.ValidationError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventStreamServiceTest extends BaseTest {
+
+   private static final String TOPIC = "rooms/1";
+   private static final String OTHER_TOPIC = "rooms/2";
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @InjectMocks
+   private EventStreamService eventStreamService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(eventStreamService, "timeout", 60000L);
+      ReflectionTestUtils.setField(eventStreamService, "heartbeatInterval", 60000L);
+      ReflectionTestUtils.setField(eventStreamService, "maxSubscribers", 2);
+      ReflectionTestUtils.setField(eventStreamService, "queueSize", 1);
+      eventStreamService.init();
+   }
+
+   @After
+   public void teardown() {
+      eventStreamService.shutdown();
+   }
+
+   @Test
+   public void testSubscribe_CountsSubscribers() {
+      // Act
+      final ResponseBodyEmitter emitter = eventStreamService.subscribe(TOPIC);
+
+      // Assert
+      Assert.assertNotNull(emitter);
+      Assert.assertEquals(1, eventStreamService.getSubscriberCount());
+   }
+
+   @Test
+   public void testSubscribe_TooManySubscribers() {
+      // Arrange
+      eventStreamService.subscribe(TOPIC);
+      eventStreamService.subscribe(OTHER_TOPIC);
+
+      // Act
+      try {
+         eventStreamService.subscribe(TOPIC);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.TOO_MANY_REQUESTS, ex.getError());
+         Assert.assertEquals("events", ex.getFields().get(0));
+         Assert.assertEquals(2, eventStreamService.getSubscriberCount());
+      }
+   }
+
+   @Test
+   public void testPublish_EncodesOnceForEverySubscriber() throws Exception {
+      // Arrange
+      eventStreamService.subscribe(TOPIC);
+      eventStreamService.subscribe(TOPIC);
+
+      // Act
+      eventStreamService.publish(TOPIC, ROOM, ImmutableMap.of(NAME, ROOM));
+
+      // Assert
+      verify(objectMapper, times(1)).writeValueAsString(any());
+   }
+
+   @Test
+   public void testPublish_NoSubscribers() throws Exception {
+      // Arrange
+      eventStreamService.subscribe(OTHER_TOPIC);
+
+      // Act
+      eventStreamService.publish(TOPIC, ROOM, ImmutableMap.of(NAME, ROOM));
+
+      // Assert
+      verify(objectMapper, never()).writeValueAsString(any());
+   }
+
+   @Test
+   public void testPublish_SubscriberTooFarBehindIsDropped() {
+      // Arrange
+      final List<Runnable> writes = new ArrayList<>();
+      ReflectionTestUtils.setField(eventStreamService, "writerPool", MoreExecutors.newDirectExecutorService());
+      final ResponseBodyEmitter stalled = eventStreamService.subscribe(TOPIC);
+      ReflectionTestUtils.setField(stalled, "writer", (Executor) writes::add);
+
+      // Act
+      eventStreamService.publish(TOPIC, ROOM, ImmutableMap.of(NAME, ROOM));
+      eventStreamService.publish(TOPIC, ROOM, ImmutableMap.of(NAME, NEW_NAME));
+
+      // Assert
+      Assert.assertEquals(2, writes.size());
+      Assert.assertEquals(0, eventStreamService.getSubscriberCount());
+      Assert.assertFalse(eventStreamService.hasSubscribers(TOPIC));
+   }
+
+   @Test
+   public void testClose_EndsSubscriptions() throws Exception {
+      // Arrange
+      eventStreamService.subscribe(TOPIC);
+      eventStreamService.subscribe(OTHER_TOPIC);
+
+      // Act
+      eventStreamService.close(TOPIC);
+      eventStreamService.publish(TOPIC, ROOM, ImmutableMap.of(NAME, ROOM));
+
+      // Assert
+      verify(objectMapper, never()).writeValueAsString(any());
+
+      Assert.assertEquals(1, eventStreamService.getSubscriberCount());
+   }
+
+   @Test
+   public void testTopics() {
+      // Assert
+      Assert.assertEquals(TOPIC, EventStreamService.roomTopic(VALID_ID));
+      Assert.assertEquals("playlists/1", EventStreamService.playlistTopic(VALID_ID));
+   }
+}
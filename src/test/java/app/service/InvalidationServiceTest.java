@@ -0,0 +1,168 @@
+package app.service;
+
+import app.BaseTest;
+import app.model.CacheInvalidation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InvalidationServiceTest extends BaseTest {
+
+   private static final int OTHER_ID = 2;
+
+   @Mock
+   private InvalidationTransport transport;
+
+   @InjectMocks
+   private InvalidationService invalidationService;
+
+   private Consumer<CacheInvalidation> received;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(invalidationService, "meterRegistry", new SimpleMeterRegistry());
+      when(transport.getName()).thenReturn("test");
+      invalidationService.init();
+
+      final ArgumentCaptor<Consumer<CacheInvalidation>> listener = ArgumentCaptor.forClass(Consumer.class);
+      verify(transport).start(listener.capture());
+      received = listener.getValue();
+   }
+
+   @Test
+   public void testPublish_OneInvalidationPerId() {
+      // Arrange
+      final ArgumentCaptor<List<CacheInvalidation>> sent = ArgumentCaptor.forClass(List.class);
+
+      // Act
+      invalidationService.publish(SONG, ImmutableList.of(VALID_ID, OTHER_ID));
+
+      // Assert
+      verify(transport).publish(sent.capture());
+
+      Assert.assertEquals(2, sent.getValue().size());
+      Assert.assertEquals(SONG, sent.getValue().get(0).getEntity());
+      Assert.assertEquals(Integer.valueOf(OTHER_ID), sent.getValue().get(1).getEntityId());
+      Assert.assertEquals(2, invalidationService.getPublished());
+   }
+
+   @Test
+   public void testPublish_FailureIsSwallowed() {
+      // Arrange
+      doThrow(new IllegalStateException("down")).when(transport).publish(anyList());
+
+      // Act
+      invalidationService.publish(ROOM, VALID_ID);
+
+      // Assert
+      Assert.assertEquals(0, invalidationService.getPublished());
+   }
+
+   @Test
+   public void testPublish_NoIds() {
+      // Act
+      invalidationService.publish(ROOM, ImmutableList.of());
+
+      // Assert
+      verify(transport).getName();
+      verify(transport).start(received);
+      verifyNoMoreInteractions(transport);
+   }
+
+   @Test
+   public void testReceive_CallsListenersOfTheEntity() {
+      // Arrange
+      final List<Integer> songs = new ArrayList<>();
+      final List<Integer> playlists = new ArrayList<>();
+      invalidationService.subscribe(SONG, songs::add);
+      invalidationService.subscribe(PLAYLIST, playlists::add);
+
+      // Act
+      received.accept(buildInvalidation("other-node", SONG, VALID_ID, System.currentTimeMillis() - 50));
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(VALID_ID), songs);
+      Assert.assertTrue(playlists.isEmpty());
+      Assert.assertEquals(1, invalidationService.getReceived());
+      Assert.assertTrue(invalidationService.getMaxLagMillis() >= 50);
+      Assert.assertEquals(invalidationService.getMaxLagMillis(), invalidationService.getAverageLagMillis(), 0);
+   }
+
+   @Test
+   public void testReceive_IgnoresOwnInvalidations() {
+      // Arrange
+      final List<Integer> songs = new ArrayList<>();
+      final ArgumentCaptor<List<CacheInvalidation>> sent = ArgumentCaptor.forClass(List.class);
+      invalidationService.subscribe(SONG, songs::add);
+      invalidationService.publish(SONG, VALID_ID);
+      verify(transport).publish(sent.capture());
+
+      // Act
+      sent.getValue().forEach(received);
+
+      // Assert
+      Assert.assertTrue(songs.isEmpty());
+      Assert.assertEquals(0, invalidationService.getReceived());
+   }
+
+   @Test
+   public void testSubscribeAll_OwnAndOtherNodesChanges() {
+      // Arrange
+      final List<Integer> songs = new ArrayList<>();
+      invalidationService.subscribeAll(SONG, songs::add);
+
+      // Act
+      invalidationService.publish(SONG, VALID_ID);
+      received.accept(buildInvalidation("other-node", SONG, OTHER_ID, System.currentTimeMillis()));
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(VALID_ID, OTHER_ID), songs);
+   }
+
+   @Test
+   public void testReceive_FailingListenerDoesNotStopOthers() {
+      // Arrange
+      final List<Integer> songs = new ArrayList<>();
+      invalidationService.subscribe(SONG, id -> {
+         throw new IllegalStateException("broken");
+      });
+      invalidationService.subscribe(SONG, songs::add);
+
+      // Act
+      received.accept(buildInvalidation("other-node", SONG, VALID_ID, System.currentTimeMillis()));
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(VALID_ID), songs);
+   }
+
+   private CacheInvalidation buildInvalidation(final String node, final String entity, final int id,
+                                               final long publishedAt) {
+      return CacheInvalidation.builder()
+            .node(node)
+            .entity(entity)
+            .entityId(id)
+            .publishedAt(publishedAt)
+            .build();
+   }
+}
@@ -0,0 +1,88 @@
+package app.service;
+
+import app.BaseTest;
+import app.model.CacheInvalidation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class MulticastInvalidationTransportTest extends BaseTest {
+
+   private static final String NODE = "0b9ad9c4-5c6e-4c5e-9a3b-1f2e3d4c5b6a";
+
+   @Test
+   public void testEncode_RoundTrip() throws IOException {
+      // Arrange
+      final List<CacheInvalidation> invalidations = ImmutableList.of(buildInvalidation(SONG, VALID_ID),
+            buildInvalidation(PLAYLIST, Integer.MAX_VALUE));
+
+      // Act
+      final List<byte[]> datagrams = MulticastInvalidationTransport.encode(invalidations);
+
+      // Assert
+      Assert.assertEquals(1, datagrams.size());
+      Assert.assertEquals(invalidations,
+            MulticastInvalidationTransport.decode(datagrams.get(0), 0, datagrams.get(0).length));
+   }
+
+   @Test
+   public void testEncode_SplitsIntoDatagramsThatFit() throws IOException {
+      // Arrange
+      final List<CacheInvalidation> invalidations = new ArrayList<>();
+      for (int id = 1; id <= 500; id++) {
+         invalidations.add(buildInvalidation(SONG, id));
+      }
+
+      // Act
+      final List<byte[]> datagrams = MulticastInvalidationTransport.encode(invalidations);
+
+      // Assert
+      final List<CacheInvalidation> decoded = new ArrayList<>();
+      for (byte[] datagram : datagrams) {
+         Assert.assertTrue(datagram.length <= MulticastInvalidationTransport.MAX_DATAGRAM);
+         decoded.addAll(MulticastInvalidationTransport.decode(datagram, 0, datagram.length));
+      }
+
+      Assert.assertTrue(datagrams.size() > 1);
+      Assert.assertEquals(invalidations, decoded);
+   }
+
+   @Test
+   public void testDecode_OtherVersionIsIgnored() throws IOException {
+      // Arrange
+      final byte[] datagram = MulticastInvalidationTransport.encode(
+            ImmutableList.of(buildInvalidation(SONG, VALID_ID))).get(0);
+      datagram[0]++;
+
+      // Act
+      final List<CacheInvalidation> decoded = MulticastInvalidationTransport.decode(datagram, 0, datagram.length);
+
+      // Assert
+      Assert.assertTrue(decoded.isEmpty());
+   }
+
+   @Test(expected = IOException.class)
+   public void testDecode_Truncated() throws IOException {
+      // Arrange
+      final byte[] datagram = MulticastInvalidationTransport.encode(
+            ImmutableList.of(buildInvalidation(SONG, VALID_ID))).get(0);
+
+      // Act
+      MulticastInvalidationTransport.decode(datagram, 0, datagram.length - 1);
+   }
+
+   private CacheInvalidation buildInvalidation(final String entity, final int id) {
+      return CacheInvalidation.builder()
+            .node(NODE)
+            .entity(entity)
+            .entityId(id)
+            .publishedAt(1561766400000L + id)
+            .build();
+   }
+}
@@ -0,0 +1,127 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.PlaylistSongDao;
+import app.util.IntIntHashMap;
+
+import java.util.function.IntConsumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PlaylistMembershipServiceTest extends BaseTest {
+
+   private static final int OTHER_PLAYLIST_ID = 2;
+
+   @Mock
+   private PlaylistSongDao playlistSongDao;
+
+   @Mock
+   private InvalidationService invalidationService;
+
+   @InjectMocks
+   private PlaylistMembershipService playlistMembershipService;
+
+   @Before
+   public void setup() {
+      doAnswer(invocation -> {
+         final IntIntHashMap.IntIntConsumer consumer = invocation.getArgument(0);
+         consumer.accept(VALID_ID, 3);
+         consumer.accept(VALID_ID, 1);
+         consumer.accept(VALID_ID, 3);
+         consumer.accept(OTHER_PLAYLIST_ID, 2);
+         return null;
+      }).when(playlistSongDao).forEachPlaylistSong(any());
+
+      when(invalidationService.isEnabled()).thenReturn(true);
+      ReflectionTestUtils.setField(playlistMembershipService, "meterRegistry", new SimpleMeterRegistry());
+      playlistMembershipService.init();
+   }
+
+   @Test
+   public void testGetSongIds_InOrderAdded() {
+      // Assert
+      Assert.assertArrayEquals(new int[] {3, 1, 3}, playlistMembershipService.getSongIds(VALID_ID));
+      Assert.assertArrayEquals(new int[] {2}, playlistMembershipService.getSongIds(OTHER_PLAYLIST_ID));
+      Assert.assertArrayEquals(new int[0], playlistMembershipService.getSongIds(99));
+   }
+
+   @Test
+   public void testAddSong_AppendsToPlaylist() {
+      // Act
+      playlistMembershipService.addSong(OTHER_PLAYLIST_ID, 5);
+      playlistMembershipService.addSong(99, 5);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 5}, playlistMembershipService.getSongIds(OTHER_PLAYLIST_ID));
+      Assert.assertArrayEquals(new int[] {5}, playlistMembershipService.getSongIds(99));
+   }
+
+   @Test
+   public void testRemoveSong_OneCopy() {
+      // Act
+      playlistMembershipService.removeSong(VALID_ID, 3);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {1, 3}, playlistMembershipService.getSongIds(VALID_ID));
+   }
+
+   @Test
+   public void testRemovePlaylist() {
+      // Act
+      playlistMembershipService.removePlaylist(VALID_ID);
+
+      // Assert
+      Assert.assertArrayEquals(new int[0], playlistMembershipService.getSongIds(VALID_ID));
+      Assert.assertArrayEquals(new int[] {2}, playlistMembershipService.getSongIds(OTHER_PLAYLIST_ID));
+   }
+
+   @Test
+   public void testChangedOnOtherNode_Reloaded() {
+      // Arrange
+      final ArgumentCaptor<IntConsumer> listener = ArgumentCaptor.forClass(IntConsumer.class);
+      verify(invalidationService).subscribe(eq(PLAYLIST), listener.capture());
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(4, 3));
+
+      // Act
+      listener.getValue().accept(VALID_ID);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {4, 3}, playlistMembershipService.getSongIds(VALID_ID));
+   }
+
+   @Test
+   public void testNoTransport_ReadsDatabase() {
+      // Arrange
+      when(invalidationService.isEnabled()).thenReturn(false);
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(4, 3));
+      playlistMembershipService.init();
+
+      // Act
+      playlistMembershipService.addSong(VALID_ID, 5);
+      final int[] songIds = playlistMembershipService.getSongIds(VALID_ID);
+
+      // Assert
+      verify(playlistSongDao).findSongIdsByPlaylistId(VALID_ID);
+      verify(invalidationService).subscribe(eq(PLAYLIST), any());
+
+      Assert.assertArrayEquals(new int[] {4, 3}, songIds);
+   }
+}
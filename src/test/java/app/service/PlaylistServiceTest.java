@@ -20,12 +20,15 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.google.common.collect.ImmutableList;
 
 import static org.assertj.core.api.Fail.fail;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -34,6 +37,10 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class PlaylistServiceTest extends BaseTest {
 
+   private static final String PLAYLIST_TOPIC = "playlists/1";
+   private static final int OTHER_SONG_ID = 2;
+   private static final long STALE_VERSION = 3;
+
    @Mock
    private PlaylistDao playlistDao;
 
@@ -43,6 +50,30 @@ public class PlaylistServiceTest extends BaseTest {
    @Mock
    private PlaylistSongDao playlistSongDao;
 
+   @Mock
+   private EventStreamService eventStreamService;
+
+   @Mock
+   private RoomSessionService roomSessionService;
+
+   @Mock
+   private SongRecommendationService songRecommendationService;
+
+   @Mock
+   private PlaylistSimilarityService playlistSimilarityService;
+
+   @Mock
+   private PlaylistMembershipService playlistMembershipService;
+
+   @Mock
+   private RadioService radioService;
+
+   @Mock
+   private SongService songService;
+
+   @Mock
+   private InvalidationService invalidationService;
+
    @InjectMocks
    private PlaylistService playlistService;
 
@@ -51,12 +82,14 @@ public class PlaylistServiceTest extends BaseTest {
 
       // Arrange
       final Playlist playlist = buildPlaylist();
+      playlist.setId(VALID_ID);
 
       // Act
       playlistService.createNewPlaylist(playlist);
 
       // Assert
       verify(playlistDao).save(playlist);
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
    }
 
    @Test
@@ -101,7 +134,7 @@ public class PlaylistServiceTest extends BaseTest {
    public void testUpdatePlaylistById_InvalidId() {
 
       // Arrange
-      when(playlistDao.findById(anyInt())).thenReturn(Optional.empty());
+      when(playlistDao.updatePartially(VALID_ID, null, NAME, GENRE, false)).thenReturn(0);
 
       // Act
       try {
@@ -109,7 +142,9 @@ public class PlaylistServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          // Assert
-         verify(playlistDao).findById(anyInt());
+         verify(playlistDao).updatePartially(VALID_ID, null, NAME, GENRE, false);
+         verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(invalidationService);
 
          Assert.assertEquals("Playlist does not exist", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -119,107 +154,115 @@ public class PlaylistServiceTest extends BaseTest {
    }
 
    @Test
-   public void testUpdatePlaylistById_ValidName() {
+   public void testUpdatePlaylistById_StaleVersion() {
 
       // Arrange
-      final Playlist playlist = buildPlaylist();
-      when(playlistDao.findById(anyInt())).thenReturn(Optional.of(playlist));
+      final UpdatePlaylistData updatePlaylistData = buildUpdatePlaylistData();
+      updatePlaylistData.setVersion(STALE_VERSION);
+      when(playlistDao.updatePartially(VALID_ID, STALE_VERSION, NAME, GENRE, false)).thenReturn(0);
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
 
       // Act
-      final UpdatePlaylistData updatePlaylistData = new UpdatePlaylistData();
-      updatePlaylistData.setName(NEW_NAME);
-      playlistService.updatePlaylistById(VALID_ID, updatePlaylistData);
-
-      // Assert
-      verify(playlistDao).findById(VALID_ID);
-      verify(playlistDao).save(playlist);
-      verifyNoMoreInteractions(playlistDao);
+      try {
+         playlistService.updatePlaylistById(VALID_ID, updatePlaylistData);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(playlistDao).updatePartially(VALID_ID, STALE_VERSION, NAME, GENRE, false);
+         verify(playlistDao).existsById(VALID_ID);
+         verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(invalidationService);
 
-      Assert.assertEquals(NEW_NAME, playlist.getName());
-      Assert.assertEquals(GENRE, playlist.getGenre());
-      Assert.assertEquals(false, playlist.isPrivate());
+         Assert.assertEquals("Playlist was changed by another update", ex.getMessage());
+         Assert.assertEquals(ValidationError.CONFLICT, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(VERSION));
+      }
    }
 
    @Test
-   public void testUpdatePlaylistById_ValidGenre() {
+   public void testUpdatePlaylistById_ValidName() {
 
       // Arrange
       final Playlist playlist = buildPlaylist();
-      when(playlistDao.findById(anyInt())).thenReturn(Optional.of(playlist));
+      when(playlistDao.updatePartially(VALID_ID, null, NEW_NAME, null, null)).thenReturn(1);
+      when(eventStreamService.hasSubscribers(PLAYLIST_TOPIC)).thenReturn(true);
+      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlist));
 
       // Act
       final UpdatePlaylistData updatePlaylistData = new UpdatePlaylistData();
-      updatePlaylistData.setGenre(NEW_GENRE);
+      updatePlaylistData.setName(NEW_NAME);
       playlistService.updatePlaylistById(VALID_ID, updatePlaylistData);
 
       // Assert
+      verify(playlistDao).updatePartially(VALID_ID, null, NEW_NAME, null, null);
       verify(playlistDao).findById(VALID_ID);
-      verify(playlistDao).save(playlist);
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
+      verify(eventStreamService).publish(PLAYLIST_TOPIC, PLAYLIST, playlist);
+      verifyZeroInteractions(songService);
       verifyNoMoreInteractions(playlistDao);
-
-      Assert.assertEquals(NAME, playlist.getName());
-      Assert.assertEquals(NEW_GENRE, playlist.getGenre());
-      Assert.assertEquals(false, playlist.isPrivate());
    }
 
    @Test
-   public void testUpdatePlaylistById_ChangePrivacy_FalseToTrue() {
+   public void testUpdatePlaylistById_ValidGenreWithoutSubscribers() {
+
       // Arrange
-      final Playlist playlist = buildPlaylist();
-      when(playlistDao.findById(anyInt())).thenReturn(Optional.of(playlist));
+      when(playlistDao.updatePartially(VALID_ID, null, null, NEW_GENRE, null)).thenReturn(1);
 
       // Act
       final UpdatePlaylistData updatePlaylistData = new UpdatePlaylistData();
-      updatePlaylistData.setIsPrivate(true);
+      updatePlaylistData.setGenre(NEW_GENRE);
       playlistService.updatePlaylistById(VALID_ID, updatePlaylistData);
 
       // Assert
-      verify(playlistDao).findById(VALID_ID);
-      verify(playlistDao).save(playlist);
+      verify(playlistDao).updatePartially(VALID_ID, null, null, NEW_GENRE, null);
+      verify(eventStreamService).hasSubscribers(PLAYLIST_TOPIC);
+      verifyNoMoreInteractions(eventStreamService);
+      verifyZeroInteractions(songService);
       verifyNoMoreInteractions(playlistDao);
-
-      Assert.assertEquals(NAME, playlist.getName());
-      Assert.assertEquals(GENRE, playlist.getGenre());
-      Assert.assertEquals(true, playlist.isPrivate());
    }
 
    @Test
-   public void testUpdatePlaylistById_ChangePrivacy_TrueToFalse() {
+   public void testUpdatePlaylistById_ChangePrivacy() {
       // Arrange
-      final Playlist playlist = buildPlaylist();
-      playlist.setPrivate(true);
-      when(playlistDao.findById(anyInt())).thenReturn(Optional.of(playlist));
+      when(playlistDao.updatePartially(VALID_ID, null, null, null, true)).thenReturn(1);
+      when(playlistMembershipService.getSongIds(VALID_ID)).thenReturn(new int[] {VALID_ID});
 
       // Act
-      final UpdatePlaylistData updatePlaylistData = buildUpdatePlaylistData();
+      final UpdatePlaylistData updatePlaylistData = new UpdatePlaylistData();
+      updatePlaylistData.setIsPrivate(true);
       playlistService.updatePlaylistById(VALID_ID, updatePlaylistData);
 
       // Assert
-      verify(playlistDao).findById(VALID_ID);
-      verify(playlistDao).save(playlist);
+      verify(playlistDao).updatePartially(VALID_ID, null, null, null, true);
+      verify(songService).evictPlaylistCounts(ImmutableList.of(VALID_ID));
       verifyNoMoreInteractions(playlistDao);
-
-      Assert.assertEquals(NAME, playlist.getName());
-      Assert.assertEquals(GENRE, playlist.getGenre());
-      Assert.assertEquals(false, playlist.isPrivate());
+      verifyZeroInteractions(playlistSongDao);
    }
 
    @Test
    public void testAddSongToPlaylist_Successful() {
 
       //Arrange
-      final Playlist playlist = buildPlaylist();
-      final Song song = buildSong();
-      when(songDao.findById(VALID_ID)).thenReturn(Optional.of(song));
-      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlist));
+      final PlaylistSong playlistSong = buildPlaylistSong();
+      when(songDao.existsById(VALID_ID)).thenReturn(true);
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+      when(playlistSongDao.save(any(PlaylistSong.class))).thenReturn(playlistSong);
 
       //Act
       playlistService.addSongToPlaylist(VALID_ID, VALID_ID);
 
       //Assert
-      verify(songDao).findById(VALID_ID);
-      verify(playlistDao).findById(VALID_ID);
+      verify(songDao).existsById(VALID_ID);
+      verify(playlistDao).existsById(VALID_ID);
       verify(playlistSongDao).save(any(PlaylistSong.class));
+      verify(eventStreamService).publish(PLAYLIST_TOPIC, "songAdded", playlistSong);
+      verify(roomSessionService).refreshPlaylist(VALID_ID);
+      verify(songRecommendationService).addSong(VALID_ID, VALID_ID);
+      verify(playlistSimilarityService).addSong(VALID_ID, VALID_ID);
+      verify(playlistMembershipService).addSong(VALID_ID, VALID_ID);
+      verify(radioService).evict(VALID_ID);
+      verify(songService).evictPlaylistCounts(ImmutableList.of(VALID_ID));
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
       verifyNoMoreInteractions(songDao);
       verifyNoMoreInteractions(playlistDao);
       verifyNoMoreInteractions(playlistSongDao);
@@ -229,19 +272,20 @@ public class PlaylistServiceTest extends BaseTest {
    public void testAddSongToPlaylist_SongNotFound() {
 
       //Arrange
-      final Playlist playlist = buildPlaylist();
-      when(songDao.findById(INVALID_ID)).thenReturn(Optional.empty());
-      when(playlistDao.findById(INVALID_ID)).thenReturn(Optional.of(playlist));
+      when(songDao.existsById(INVALID_ID)).thenReturn(false);
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(true);
 
       try {
          playlistService.addSongToPlaylist(INVALID_ID, INVALID_ID);
          fail("Exception not thrown");
       } catch (ApiException ex) {
-         verify(songDao).findById(INVALID_ID);
-         verify(playlistDao).findById(INVALID_ID);
+         verify(songDao).existsById(INVALID_ID);
+         verify(playlistDao).existsById(INVALID_ID);
          verifyNoMoreInteractions(songDao);
          verifyNoMoreInteractions(playlistDao);
          verifyZeroInteractions(playlistSongDao);
+         verifyZeroInteractions(songRecommendationService);
+         verifyZeroInteractions(playlistSimilarityService);
 
          Assert.assertEquals("Song not found", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -253,18 +297,97 @@ public class PlaylistServiceTest extends BaseTest {
    public void testAddSongToPlaylist_PlaylistNotFound() {
 
       //Arrange
-      when(songDao.findById(INVALID_ID)).thenReturn(Optional.empty());
-      when(playlistDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
 
       try {
          playlistService.addSongToPlaylist(INVALID_ID, INVALID_ID);
          fail("Exception not thrown");
       } catch (ApiException ex) {
-         verify(songDao).findById(INVALID_ID);
-         verify(playlistDao).findById(INVALID_ID);
+         verify(playlistDao).existsById(INVALID_ID);
+         verifyZeroInteractions(songDao);
+         verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(playlistSongDao);
+         verifyZeroInteractions(songRecommendationService);
+         verifyZeroInteractions(playlistSimilarityService);
+
+         Assert.assertEquals("Playlist not found", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(PLAYLIST_ID));
+      }
+   }
+
+   @Test
+   public void testAddSongsToPlaylist_Successful() {
+
+      //Arrange
+      final List<Integer> songIds = ImmutableList.of(VALID_ID, OTHER_SONG_ID, VALID_ID);
+      final List<PlaylistSong> playlistSongs = ImmutableList.of(
+            PlaylistSong.builder().id(VALID_ID).playlistId(VALID_ID).songId(VALID_ID).build(),
+            PlaylistSong.builder().id(2).playlistId(VALID_ID).songId(OTHER_SONG_ID).build(),
+            PlaylistSong.builder().id(3).playlistId(VALID_ID).songId(VALID_ID).build());
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+      when(songDao.countByIdIn(ImmutableList.of(VALID_ID, OTHER_SONG_ID))).thenReturn(2L);
+      when(playlistSongDao.saveAll(any())).thenReturn(playlistSongs);
+
+      //Act
+      playlistService.addSongsToPlaylist(VALID_ID, songIds);
+
+      //Assert
+      verify(playlistDao).existsById(VALID_ID);
+      verify(songDao).countByIdIn(ImmutableList.of(VALID_ID, OTHER_SONG_ID));
+      verify(playlistSongDao).saveAll(any());
+      verify(playlistMembershipService, times(2)).addSong(VALID_ID, VALID_ID);
+      verify(playlistMembershipService).addSong(VALID_ID, OTHER_SONG_ID);
+      verify(songRecommendationService, times(2)).addSong(VALID_ID, VALID_ID);
+      verify(playlistSimilarityService).addSong(VALID_ID, OTHER_SONG_ID);
+      verify(eventStreamService).publish(PLAYLIST_TOPIC, "songAdded", playlistSongs.get(1));
+      verify(radioService).evict(VALID_ID);
+      verify(songService).evictPlaylistCounts(ImmutableList.of(VALID_ID, OTHER_SONG_ID));
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
+      verify(roomSessionService).refreshPlaylist(VALID_ID);
+      verifyNoMoreInteractions(songDao);
+      verifyNoMoreInteractions(playlistDao);
+      verifyNoMoreInteractions(playlistSongDao);
+   }
+
+   @Test
+   public void testAddSongsToPlaylist_SongNotFound() {
+
+      //Arrange
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+      when(songDao.countByIdIn(ImmutableList.of(VALID_ID, OTHER_SONG_ID))).thenReturn(1L);
+
+      try {
+         playlistService.addSongsToPlaylist(VALID_ID, ImmutableList.of(VALID_ID, OTHER_SONG_ID));
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         verify(playlistDao).existsById(VALID_ID);
+         verify(songDao).countByIdIn(ImmutableList.of(VALID_ID, OTHER_SONG_ID));
          verifyNoMoreInteractions(songDao);
          verifyNoMoreInteractions(playlistDao);
          verifyZeroInteractions(playlistSongDao);
+         verifyZeroInteractions(playlistMembershipService);
+
+         Assert.assertEquals("Song not found", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(SONG_ID));
+      }
+   }
+
+   @Test
+   public void testAddSongsToPlaylist_PlaylistNotFound() {
+
+      //Arrange
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
+
+      try {
+         playlistService.addSongsToPlaylist(INVALID_ID, ImmutableList.of(VALID_ID));
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         verify(playlistDao).existsById(INVALID_ID);
+         verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(songDao);
+         verifyZeroInteractions(playlistSongDao);
 
          Assert.assertEquals("Playlist not found", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -276,15 +399,21 @@ public class PlaylistServiceTest extends BaseTest {
    public void testDeletePlaylist_successful() {
 
       //Arrange
-      final Playlist playlist = buildPlaylist();
-      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlist));
+      when(playlistMembershipService.getSongIds(VALID_ID)).thenReturn(new int[] {VALID_ID, OTHER_SONG_ID});
+      when(playlistDao.deleteRowById(VALID_ID)).thenReturn(1);
 
       //Act
       playlistService.deletePlaylist(VALID_ID);
 
       //Assert
-      verify(playlistDao).findById(VALID_ID);
-      verify(playlistDao).delete(any(Playlist.class));
+      verify(playlistDao).deleteRowById(VALID_ID);
+      verify(eventStreamService).close(PLAYLIST_TOPIC);
+      verify(songRecommendationService).removePlaylist(VALID_ID);
+      verify(playlistSimilarityService).removePlaylist(VALID_ID);
+      verify(playlistMembershipService).removePlaylist(VALID_ID);
+      verify(radioService).evict(VALID_ID);
+      verify(songService).evictPlaylistCounts(ImmutableList.of(VALID_ID, OTHER_SONG_ID));
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
       verifyNoMoreInteractions(playlistDao);
    }
 
@@ -292,7 +421,8 @@ public class PlaylistServiceTest extends BaseTest {
    public void testDeletePlaylist_unsuccessful() {
 
       //Arrange
-      when(playlistDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(playlistMembershipService.getSongIds(INVALID_ID)).thenReturn(new int[0]);
+      when(playlistDao.deleteRowById(INVALID_ID)).thenReturn(0);
 
       try {
          //Act
@@ -300,8 +430,10 @@ public class PlaylistServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          //Assert
-         verify(playlistDao).findById(INVALID_ID);
+         verify(playlistDao).deleteRowById(INVALID_ID);
          verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(songService);
+         verifyZeroInteractions(invalidationService);
 
          Assert.assertEquals("Playlist not found", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -332,25 +464,41 @@ public class PlaylistServiceTest extends BaseTest {
 
       //Arrange
       final Song song = buildSong();
-      final Playlist playlists = buildPlaylist();
-      playlists.setSongs(ImmutableList.of(song));
-      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlists));
+      song.setId(VALID_ID);
+      final Song other = buildSong();
+      other.setId(OTHER_SONG_ID);
+      when(playlistMembershipService.getSongIds(VALID_ID)).thenReturn(new int[] {VALID_ID, OTHER_SONG_ID, VALID_ID});
+      when(songDao.findAllById(ImmutableList.of(VALID_ID, OTHER_SONG_ID))).thenReturn(ImmutableList.of(other, song));
 
       //Act
       final List<Song> songs = playlistService.getSongsInPlaylist(VALID_ID);
 
       //Assert
-      verify(playlistDao).findById(VALID_ID);
-      verifyNoMoreInteractions(playlistDao);
-      Assert.assertEquals(1, songs.size());
-      Assert.assertTrue(songs.contains(song));
+      verifyZeroInteractions(playlistDao);
+      Assert.assertEquals(ImmutableList.of(song, other, song), songs);
+   }
+
+   @Test
+   public void testGetSongsInPlaylist_emptyPlaylist() {
+
+      //Arrange
+      when(playlistMembershipService.getSongIds(VALID_ID)).thenReturn(new int[0]);
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+
+      //Act
+      final List<Song> songs = playlistService.getSongsInPlaylist(VALID_ID);
+
+      //Assert
+      verifyZeroInteractions(songDao);
+      Assert.assertTrue(songs.isEmpty());
    }
 
    @Test
    public void testGetSongsInPlaylist_unsuccessful() {
 
       //Arrange
-      when(playlistDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(playlistMembershipService.getSongIds(INVALID_ID)).thenReturn(new int[0]);
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
 
       try {
          //Act
@@ -358,7 +506,7 @@ public class PlaylistServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          //Assert
-         verify(playlistDao).findById(INVALID_ID);
+         verify(playlistDao).existsById(INVALID_ID);
          verifyNoMoreInteractions(playlistDao);
          Assert.assertEquals("Playlist not found", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -388,16 +536,144 @@ public class PlaylistServiceTest extends BaseTest {
    }
 
    @Test
-   public void testDeleteSongInPlaylist_Successful() {
+   public void testDeleteSongInPlaylist_DeletedConcurrently() {
       // Arrange
       when(playlistSongDao.findById(VALID_ID)).thenReturn(Optional.of(buildPlaylistSong()));
+      when(playlistSongDao.deleteRowById(VALID_ID)).thenReturn(0);
+
+      // Act
+      try {
+         playlistService.deleteSongInPlaylist(VALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(playlistSongDao).findById(VALID_ID);
+         verify(playlistSongDao).deleteRowById(VALID_ID);
+         verifyNoMoreInteractions(playlistSongDao);
+         verifyZeroInteractions(playlistMembershipService);
+         verifyZeroInteractions(eventStreamService);
+
+         Assert.assertEquals("Song does not exist in this playlist", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(PLAYLIST_SONG));
+      }
+   }
+
+   @Test
+   public void testDeleteSongInPlaylist_Successful() {
+      // Arrange
+      final PlaylistSong playlistSong = buildPlaylistSong();
+      when(playlistSongDao.findById(VALID_ID)).thenReturn(Optional.of(playlistSong));
+      when(playlistSongDao.deleteRowById(VALID_ID)).thenReturn(1);
 
       // Act
       playlistService.deleteSongInPlaylist(VALID_ID);
 
       // Assert
       verify(playlistSongDao).findById(VALID_ID);
-      verify(playlistSongDao).delete(any(PlaylistSong.class));
+      verify(playlistSongDao).deleteRowById(VALID_ID);
+      verify(eventStreamService).publish(PLAYLIST_TOPIC, "songRemoved", playlistSong);
+      verify(roomSessionService).refreshPlaylist(VALID_ID);
+      verify(songRecommendationService).removeSong(VALID_ID, VALID_ID);
+      verify(playlistSimilarityService).removeSong(VALID_ID, VALID_ID);
+      verify(playlistMembershipService).removeSong(VALID_ID, VALID_ID);
+      verify(radioService).evict(VALID_ID);
+      verify(songService).evictPlaylistCounts(ImmutableList.of(VALID_ID));
+      verify(invalidationService).publish(PLAYLIST, VALID_ID);
    }
-}
 
+   @Test
+   public void testSubscribeToPlaylist_Successful() {
+      // Arrange
+      final ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+      when(eventStreamService.subscribe(PLAYLIST_TOPIC)).thenReturn(emitter);
+
+      // Act
+      final ResponseBodyEmitter result = playlistService.subscribeToPlaylist(VALID_ID);
+
+      // Assert
+      verify(playlistDao).existsById(VALID_ID);
+      verify(eventStreamService).subscribe(PLAYLIST_TOPIC);
+
+      Assert.assertSame(emitter, result);
+   }
+
+   @Test
+   public void testSubscribeToPlaylist_PlaylistNotFound() {
+      // Arrange
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         playlistService.subscribeToPlaylist(INVALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(eventStreamService, never()).subscribe(anyString());
+
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(PLAYLIST, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testGetSimilarPlaylists_InRankedOrderWithoutPrivate() {
+      // Arrange
+      final Playlist first = buildPlaylist();
+      first.setId(3);
+      final Playlist second = buildPlaylist();
+      second.setId(2);
+      final Playlist hidden = buildPlaylist();
+      hidden.setId(4);
+      hidden.setPrivate(true);
+      when(playlistSimilarityService.getSimilar(VALID_ID, 10)).thenReturn(new int[] {3, 4, 2});
+      when(playlistDao.findAllById(ImmutableList.of(3, 4, 2))).thenReturn(ImmutableList.of(second, hidden, first));
+
+      // Act
+      final List<Playlist> playlists = playlistService.getSimilarPlaylists(VALID_ID, 10);
+
+      // Assert
+      verify(playlistSimilarityService).getSimilar(VALID_ID, 10);
+      verify(playlistDao).findAllById(ImmutableList.of(3, 4, 2));
+      verifyNoMoreInteractions(playlistDao);
+
+      Assert.assertEquals(ImmutableList.of(first, second), playlists);
+   }
+
+   @Test
+   public void testGetSimilarPlaylists_PlaylistNotFound() {
+      // Arrange
+      when(playlistSimilarityService.getSimilar(INVALID_ID, 10)).thenReturn(new int[0]);
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         playlistService.getSimilarPlaylists(INVALID_ID, 10);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(playlistDao).existsById(INVALID_ID);
+         verifyNoMoreInteractions(playlistDao);
+
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ImmutableList.of(PLAYLIST), ex.getFields());
+      }
+   }
+
+   @Test
+   public void testGetRadio() {
+      // Arrange
+      final List<Song> songs = ImmutableList.of(buildSong());
+      when(radioService.getRadio(VALID_ID, 20)).thenReturn(songs);
+
+      // Act
+      final List<Song> radio = playlistService.getRadio(VALID_ID, 20);
+
+      // Assert
+      verify(radioService).getRadio(VALID_ID, 20);
+      verifyZeroInteractions(playlistDao);
+
+      Assert.assertEquals(songs, radio);
+   }
+}
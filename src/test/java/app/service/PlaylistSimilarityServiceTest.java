@@ -0,0 +1,99 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.PlaylistSongDao;
+import app.util.IntIntHashMap;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PlaylistSimilarityServiceTest extends BaseTest {
+
+   private static final int NEAR_PLAYLIST_ID = 2;
+   private static final int UNRELATED_PLAYLIST_ID = 3;
+   private static final int NEW_PLAYLIST_ID = 4;
+
+   @Mock
+   private PlaylistSongDao playlistSongDao;
+
+   @InjectMocks
+   private PlaylistSimilarityService playlistSimilarityService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(playlistSimilarityService, "bands", 16);
+      ReflectionTestUtils.setField(playlistSimilarityService, "rows", 4);
+
+      // Playlist 2 shares 36 of playlist 1's 40 songs; playlist 3 shares none
+      doAnswer(invocation -> {
+         final IntIntHashMap.IntIntConsumer consumer = invocation.getArgument(0);
+         for (int song = 1; song <= 40; song++) {
+            consumer.accept(VALID_ID, song);
+            consumer.accept(NEAR_PLAYLIST_ID, song <= 36 ? song : song + 100);
+            consumer.accept(UNRELATED_PLAYLIST_ID, song + 1000);
+         }
+         return null;
+      }).when(playlistSongDao).forEachPlaylistSong(any());
+
+      playlistSimilarityService.init();
+   }
+
+   @Test
+   public void testGetSimilar_FindsOverlappingPlaylist() {
+      // Act
+      final int[] similar = playlistSimilarityService.getSimilar(VALID_ID, 10);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {NEAR_PLAYLIST_ID}, similar);
+      Assert.assertArrayEquals(new int[0], playlistSimilarityService.getSimilar(NEW_PLAYLIST_ID, 10));
+   }
+
+   @Test
+   public void testAddSong_IdenticalPlaylistRanksFirst() {
+      // Act
+      for (int song = 1; song <= 40; song++) {
+         playlistSimilarityService.addSong(NEW_PLAYLIST_ID, song);
+      }
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {NEW_PLAYLIST_ID, NEAR_PLAYLIST_ID},
+            playlistSimilarityService.getSimilar(VALID_ID, 10));
+      Assert.assertArrayEquals(new int[] {NEW_PLAYLIST_ID}, playlistSimilarityService.getSimilar(VALID_ID, 1));
+   }
+
+   @Test
+   public void testRemoveSong_LastSongUnindexesPlaylist() {
+      // Arrange
+      playlistSimilarityService.addSong(NEW_PLAYLIST_ID, 1);
+
+      // Act
+      playlistSimilarityService.removeSong(NEW_PLAYLIST_ID, 1);
+
+      // Assert
+      Assert.assertArrayEquals(new int[0], playlistSimilarityService.getSimilar(NEW_PLAYLIST_ID, 10));
+      Assert.assertFalse(Arrays.stream(playlistSimilarityService.getSimilar(VALID_ID, 10))
+            .anyMatch(id -> id == NEW_PLAYLIST_ID));
+   }
+
+   @Test
+   public void testRemovePlaylist() {
+      // Act
+      playlistSimilarityService.removePlaylist(NEAR_PLAYLIST_ID);
+
+      // Assert
+      Assert.assertArrayEquals(new int[0], playlistSimilarityService.getSimilar(VALID_ID, 10));
+      Assert.assertArrayEquals(new int[0], playlistSimilarityService.getSimilar(NEAR_PLAYLIST_ID, 10));
+   }
+}
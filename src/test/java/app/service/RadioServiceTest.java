@@ -0,0 +1,178 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.PlaylistDao;
+import app.dao.PlaylistSongDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.Song;
+import app.util.IntIntHashMap;
+import app.validation.ValidationError;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RadioServiceTest extends BaseTest {
+
+   private static final int REPEAT_WINDOW = 5;
+
+   @Mock
+   private PlaylistDao playlistDao;
+
+   @Mock
+   private PlaylistSongDao playlistSongDao;
+
+   @Mock
+   private SongDao songDao;
+
+   @Mock
+   private SongRecommendationService songRecommendationService;
+
+   @Mock
+   private InvalidationService invalidationService;
+
+   @InjectMocks
+   private RadioService radioService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(radioService, "neighboursPerSong", 50);
+      ReflectionTestUtils.setField(radioService, "repeatWindow", REPEAT_WINDOW);
+      ReflectionTestUtils.setField(radioService, "cacheSize", 10L);
+      ReflectionTestUtils.setField(radioService, "cacheTtl", 60000L);
+      radioService.init();
+   }
+
+   @Test
+   public void testGetRadio_DrawsFromNeighbourhood() {
+      // Arrange
+      final IntIntHashMap related = new IntIntHashMap();
+      related.addTo(3, 2);
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(1, 2));
+      when(songRecommendationService.getRelatedCounts(1, 50)).thenReturn(related);
+      when(songRecommendationService.getRelatedCounts(2, 50)).thenReturn(new IntIntHashMap());
+      when(playlistSongDao.sumListensBySongIds(any())).thenReturn(ImmutableList.of(new Object[] {1, 100L}));
+      stubSongs();
+
+      // Act
+      final List<Song> first = radioService.getRadio(VALID_ID, 10);
+      final List<Song> second = radioService.getRadio(VALID_ID, 10);
+
+      // Assert
+      verify(playlistSongDao).findSongIdsByPlaylistId(VALID_ID);
+      verify(playlistSongDao).sumListensBySongIds(any());
+      verify(songDao, times(2)).findAllById(any());
+
+      Assert.assertEquals(10, first.size());
+      Assert.assertEquals(10, second.size());
+      Assert.assertTrue(ImmutableSet.of(1, 2, 3).containsAll(getSongIds(first)));
+   }
+
+   @Test
+   public void testGetRadio_AvoidsRecentRepeats() {
+      // Arrange
+      final List<Integer> seed = IntStream.rangeClosed(1, 30).boxed().collect(Collectors.toList());
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(seed);
+      when(songRecommendationService.getRelatedCounts(anyInt(), anyInt())).thenReturn(new IntIntHashMap());
+      stubSongs();
+
+      // Act
+      final List<Integer> songIds = getSongIds(radioService.getRadio(VALID_ID, 100));
+
+      // Assert
+      for (int i = REPEAT_WINDOW; i <= songIds.size(); i++) {
+         Assert.assertEquals(REPEAT_WINDOW, new HashSet<>(songIds.subList(i - REPEAT_WINDOW, i)).size());
+      }
+   }
+
+   @Test
+   public void testEvict_RebuildsStation() {
+      // Arrange
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(1));
+      when(songRecommendationService.getRelatedCounts(1, 50)).thenReturn(new IntIntHashMap());
+      stubSongs();
+      radioService.getRadio(VALID_ID, 1);
+
+      // Act
+      radioService.evict(VALID_ID);
+      final List<Song> songs = radioService.getRadio(VALID_ID, 2);
+
+      // Assert
+      verify(playlistSongDao, times(2)).findSongIdsByPlaylistId(VALID_ID);
+      Assert.assertEquals(ImmutableList.of(1, 1), getSongIds(songs));
+   }
+
+   @Test
+   public void testGetRadio_EmptyPlaylist() {
+      // Arrange
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of());
+      when(playlistDao.existsById(VALID_ID)).thenReturn(true);
+
+      // Act
+      final List<Song> songs = radioService.getRadio(VALID_ID, 10);
+
+      // Assert
+      Assert.assertTrue(songs.isEmpty());
+   }
+
+   @Test
+   public void testGetRadio_PlaylistNotFound() {
+      // Arrange
+      when(playlistSongDao.findSongIdsByPlaylistId(INVALID_ID)).thenReturn(ImmutableList.of());
+      when(playlistDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         radioService.getRadio(INVALID_ID, 10);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(playlistDao).existsById(INVALID_ID);
+
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ImmutableList.of("playlist"), ex.getFields());
+      }
+   }
+
+   private void stubSongs() {
+      when(songDao.findAllById(any())).thenAnswer(invocation -> {
+         final Iterable<Integer> ids = invocation.getArgument(0);
+         return StreamSupport.stream(ids.spliterator(), false).map(this::buildSong).collect(Collectors.toList());
+      });
+   }
+
+   private Song buildSong(final int id) {
+      final Song song = buildSong();
+      song.setId(id);
+
+      return song;
+   }
+
+   private List<Integer> getSongIds(final List<Song> songs) {
+      return songs.stream().map(Song::getId).collect(Collectors.toCollection(ArrayList::new));
+   }
+}
@@ -0,0 +1,269 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.ChatMessageDao;
+import app.dao.RoomDao;
+import app.exception.ApiException;
+import app.model.ChatMessage;
+import app.validation.ValidationError;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomChatServiceTest extends BaseTest {
+
+   private static final String TEXT = "hello";
+
+   @Mock
+   private RoomDao roomDao;
+
+   @Mock
+   private ChatMessageDao chatMessageDao;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @Mock
+   private RoomDiscoveryService roomDiscoveryService;
+
+   @Mock
+   private WebSocketSession subscriber;
+
+   @InjectMocks
+   private RoomChatService roomChatService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomChatService, "historySize", 10);
+      ReflectionTestUtils.setField(roomChatService, "inboxLimit", 100);
+      ReflectionTestUtils.setField(roomChatService, "batchSize", 10);
+      ReflectionTestUtils.setField(roomChatService, "maxLength", 20);
+      ReflectionTestUtils.setField(roomChatService, "persistQueueSize", 100);
+      ReflectionTestUtils.setField(roomChatService, "flushInterval", 10L);
+      ReflectionTestUtils.setField(roomChatService, "flushBatchSize", 10);
+      lenient().when(roomDao.existsById(VALID_ID)).thenReturn(true);
+      lenient().when(subscriber.isOpen()).thenReturn(true);
+   }
+
+   @After
+   public void teardown() {
+      roomChatService.shutdown();
+   }
+
+   @Test
+   public void testPost_SendsBatchToSubscribers() throws Exception {
+      // Arrange
+      roomChatService.subscribe(VALID_ID, subscriber, 0);
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+
+      // Assert
+      verify(subscriber, timeout(1000)).sendMessage(messageCaptor.capture());
+      verifyZeroInteractions(chatMessageDao);
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().startsWith("{\"type\":\"chat\",\"messages\":["));
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"text\":\"" + TEXT + "\""));
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"sequence\":1"));
+   }
+
+   @Test
+   public void testPost_AddsToHistory() throws Exception {
+      // Arrange
+      roomChatService.subscribe(VALID_ID, subscriber, 0);
+
+      // Act
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+
+      // Assert
+      verify(subscriber, timeout(1000)).sendMessage(any(TextMessage.class));
+      verify(roomDiscoveryService).recordMessage(VALID_ID);
+
+      final List<ChatMessage> messages = roomChatService.getMessages(VALID_ID, 0);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals(TEXT, messages.get(0).getText());
+      Assert.assertEquals(Integer.valueOf(VALID_ID), messages.get(0).getUserId());
+   }
+
+   @Test
+   public void testPost_RoomNotFound() {
+      // Arrange
+      when(roomDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         roomChatService.post(INVALID_ID, VALID_ID, TEXT);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(roomDao).existsById(INVALID_ID);
+
+         Assert.assertEquals("Room does not exist", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ROOM, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testPost_TooLong() {
+      // Act
+      try {
+         roomChatService.post(VALID_ID, VALID_ID, "this message is far too long");
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verifyZeroInteractions(roomDao);
+
+         Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
+         Assert.assertEquals("text", ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testPost_InboxFull() {
+      // Arrange
+      ReflectionTestUtils.setField(roomChatService, "inboxLimit", 0);
+
+      // Act
+      try {
+         roomChatService.post(VALID_ID, VALID_ID, TEXT);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.TOO_MANY_REQUESTS, ex.getError());
+         Assert.assertTrue(roomChatService.getMessages(VALID_ID, 0).isEmpty());
+      }
+   }
+
+   @Test
+   public void testSubscribe_SendsMissedMessages() throws Exception {
+      // Arrange
+      final WebSocketSession other = mock(WebSocketSession.class);
+      when(other.isOpen()).thenReturn(true);
+      roomChatService.subscribe(VALID_ID, other, 0);
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+      verify(other, timeout(1000)).sendMessage(any(TextMessage.class));
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+
+      // Act
+      roomChatService.subscribe(VALID_ID, subscriber, 0);
+
+      // Assert
+      verify(subscriber, timeout(1000)).sendMessage(messageCaptor.capture());
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"text\":\"" + TEXT + "\""));
+   }
+
+   @Test
+   public void testPost_SlowSubscriberDisconnected() throws Exception {
+      // Arrange
+      doThrow(new IOException("Send buffer full")).when(subscriber).sendMessage(any(TextMessage.class));
+      roomChatService.subscribe(VALID_ID, subscriber, 0);
+
+      // Act
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+
+      // Assert
+      verify(subscriber, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+   }
+
+   @Test
+   public void testPost_WritesBehindWhenPersistEnabled() {
+      // Arrange
+      ReflectionTestUtils.setField(roomChatService, "persist", true);
+      roomChatService.init();
+
+      // Act
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+
+      // Assert
+      verify(chatMessageDao).findByRoomIdOrderByIdDesc(eq(VALID_ID), any(Pageable.class));
+      verify(chatMessageDao, timeout(1000)).saveAll(anyList());
+   }
+
+   @Test
+   public void testGetMessages_LoadsSavedHistoryWhenPersistEnabled() {
+      // Arrange
+      ReflectionTestUtils.setField(roomChatService, "persist", true);
+      when(chatMessageDao.findByRoomIdOrderByIdDesc(eq(VALID_ID), any(Pageable.class))).thenReturn(ImmutableList.of(
+            ChatMessage.builder().id(2).roomId(VALID_ID).userId(VALID_ID).text("second").sequence(8).build(),
+            ChatMessage.builder().id(1).roomId(VALID_ID).userId(VALID_ID).text("first").sequence(7).build()));
+
+      // Act
+      final List<ChatMessage> messages = roomChatService.getMessages(VALID_ID, 7);
+
+      // Assert
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("second", messages.get(0).getText());
+      Assert.assertEquals(8, messages.get(0).getSequence());
+   }
+
+   @Test
+   public void testRestore_TakesOverHistory() {
+      // Act
+      roomChatService.restore(VALID_ID, ImmutableList.of(ChatMessage.builder().text(TEXT).sequence(12).build()));
+
+      // Assert
+      verifyZeroInteractions(roomDao);
+
+      final List<ChatMessage> messages = roomChatService.getLocalMessages(VALID_ID).get();
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals(TEXT, messages.get(0).getText());
+      Assert.assertEquals(12, messages.get(0).getSequence());
+      Assert.assertEquals(ImmutableList.of(VALID_ID), roomChatService.getRoomIds());
+   }
+
+   @Test
+   public void testGetLocalMessages_NotHeld() {
+      // Assert
+      Assert.assertFalse(roomChatService.getLocalMessages(VALID_ID).isPresent());
+      verifyZeroInteractions(roomDao);
+   }
+
+   @Test
+   public void testClose_DisconnectsSubscribers() throws Exception {
+      // Arrange
+      roomChatService.subscribe(VALID_ID, subscriber, 0);
+      roomChatService.post(VALID_ID, VALID_ID, TEXT);
+      verify(subscriber, timeout(1000)).sendMessage(any(TextMessage.class));
+
+      // Act
+      roomChatService.close(VALID_ID);
+
+      // Assert
+      verify(subscriber).close(any(CloseStatus.class));
+   }
+}
@@ -0,0 +1,210 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.RoomDao;
+import app.exception.ApiException;
+import app.model.Room;
+import app.model.RoomPage;
+import app.validation.ValidationError;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomDiscoveryServiceTest extends BaseTest {
+
+   private static final int SECOND_ROOM_ID = 2;
+   private static final int THIRD_ROOM_ID = 3;
+   private static final String CURSOR = "cursor";
+
+   @Mock
+   private RoomDao roomDao;
+
+   @Mock
+   private InvalidationService invalidationService;
+
+   @InjectMocks
+   private RoomDiscoveryService roomDiscoveryService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomDiscoveryService, "messageHalfLife", 600000L);
+      ReflectionTestUtils.setField(roomDiscoveryService, "freshnessHalfLife", 3600000L);
+      ReflectionTestUtils.setField(roomDiscoveryService, "rescoreInterval", 60000L);
+   }
+
+   @After
+   public void teardown() {
+      roomDiscoveryService.shutdown();
+   }
+
+   @Test
+   public void testInit_IndexesPublicRooms() {
+      // Arrange
+      final Room privateRoom = buildRoom(SECOND_ROOM_ID);
+      privateRoom.setPrivate(true);
+      when(roomDao.findAll()).thenReturn(ImmutableList.of(buildRoom(VALID_ID), privateRoom));
+
+      // Act
+      roomDiscoveryService.init();
+
+      // Assert
+      verify(roomDao).findAll();
+      Assert.assertEquals(ImmutableList.of(VALID_ID), getRoomIds(roomDiscoveryService.getRooms(null, 10)));
+   }
+
+   @Test
+   public void testGetRooms_MostListenersFirst() {
+      // Arrange
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+      roomDiscoveryService.addRoom(buildRoom(SECOND_ROOM_ID));
+      roomDiscoveryService.addRoom(buildRoom(THIRD_ROOM_ID));
+
+      // Act
+      roomDiscoveryService.setListenerCount(THIRD_ROOM_ID, 3);
+      roomDiscoveryService.setListenerCount(SECOND_ROOM_ID, 1);
+
+      // Assert
+      final RoomPage page = roomDiscoveryService.getRooms(null, 10);
+      Assert.assertEquals(ImmutableList.of(THIRD_ROOM_ID, SECOND_ROOM_ID, VALID_ID), getRoomIds(page));
+      Assert.assertEquals(3, page.getRooms().get(0).getListenerCount());
+      Assert.assertNull(page.getNextCursor());
+   }
+
+   @Test
+   public void testRecordMessage_RaisesRoom() {
+      // Arrange
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+      roomDiscoveryService.addRoom(buildRoom(SECOND_ROOM_ID));
+
+      // Act
+      roomDiscoveryService.recordMessage(SECOND_ROOM_ID);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(SECOND_ROOM_ID, VALID_ID),
+            getRoomIds(roomDiscoveryService.getRooms(null, 10)));
+   }
+
+   @Test
+   public void testGetRooms_CursorPaging() {
+      // Arrange
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+      roomDiscoveryService.addRoom(buildRoom(SECOND_ROOM_ID));
+      roomDiscoveryService.addRoom(buildRoom(THIRD_ROOM_ID));
+      roomDiscoveryService.setListenerCount(VALID_ID, 3);
+      roomDiscoveryService.setListenerCount(SECOND_ROOM_ID, 2);
+      roomDiscoveryService.setListenerCount(THIRD_ROOM_ID, 1);
+
+      // Act
+      final RoomPage first = roomDiscoveryService.getRooms(null, 2);
+      final RoomPage second = roomDiscoveryService.getRooms(first.getNextCursor(), 2);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(VALID_ID, SECOND_ROOM_ID), getRoomIds(first));
+      Assert.assertNotNull(first.getNextCursor());
+      Assert.assertEquals(ImmutableList.of(THIRD_ROOM_ID), getRoomIds(second));
+      Assert.assertNull(second.getNextCursor());
+   }
+
+   @Test
+   public void testUpdateRoom_MadePrivateIsRemoved() {
+      // Arrange
+      final Room room = buildRoom(VALID_ID);
+      roomDiscoveryService.addRoom(room);
+      room.setPrivate(true);
+
+      // Act
+      roomDiscoveryService.updateRoom(room);
+      roomDiscoveryService.setListenerCount(VALID_ID, 2);
+
+      // Assert
+      Assert.assertTrue(roomDiscoveryService.getRooms(null, 10).getRooms().isEmpty());
+   }
+
+   @Test
+   public void testUpdateRoom_ChangesName() {
+      // Arrange
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+      final Room updated = buildRoom(VALID_ID);
+      updated.setName(NEW_NAME);
+
+      // Act
+      roomDiscoveryService.updateRoom(updated);
+
+      // Assert
+      Assert.assertEquals(NEW_NAME, roomDiscoveryService.getRooms(null, 10).getRooms().get(0).getName());
+   }
+
+   @Test
+   public void testReload_ChangedElsewhere() {
+      // Arrange
+      final Room renamed = buildRoom(VALID_ID);
+      renamed.setName(NEW_NAME);
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+      roomDiscoveryService.addRoom(buildRoom(SECOND_ROOM_ID));
+      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(renamed));
+      when(roomDao.findById(SECOND_ROOM_ID)).thenReturn(Optional.empty());
+
+      // Act
+      roomDiscoveryService.reload(VALID_ID);
+      roomDiscoveryService.reload(SECOND_ROOM_ID);
+
+      // Assert
+      final RoomPage page = roomDiscoveryService.getRooms(null, 10);
+      Assert.assertEquals(ImmutableList.of(VALID_ID), getRoomIds(page));
+      Assert.assertEquals(NEW_NAME, page.getRooms().get(0).getName());
+   }
+
+   @Test
+   public void testRemoveRoom() {
+      // Arrange
+      roomDiscoveryService.addRoom(buildRoom(VALID_ID));
+
+      // Act
+      roomDiscoveryService.removeRoom(VALID_ID);
+
+      // Assert
+      Assert.assertTrue(roomDiscoveryService.getRooms(null, 10).getRooms().isEmpty());
+   }
+
+   @Test
+   public void testGetRooms_InvalidCursor() {
+      // Act
+      try {
+         roomDiscoveryService.getRooms(CURSOR, 10);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
+         Assert.assertEquals(ImmutableList.of(CURSOR), ex.getFields());
+      }
+   }
+
+   private Room buildRoom(final int id) {
+      final Room room = buildRoom();
+      room.setId(id);
+
+      return room;
+   }
+
+   private List<Integer> getRoomIds(final RoomPage page) {
+      return page.getRooms().stream().map(Room::getId).collect(Collectors.toList());
+   }
+}
@@ -0,0 +1,143 @@
+package app.service;
+
+import app.BaseTest;
+import app.util.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class RoomPresenceServiceTest extends BaseTest {
+
+   private static final int OTHER_USER_ID = 2;
+   private static final long TTL_MS = 60000;
+   private static final long SHORT_TTL_MS = 50;
+
+   private TimingWheel timingWheel;
+
+   private RoomDiscoveryService roomDiscoveryService;
+
+   private RoomPresenceService roomPresenceService;
+
+   @Before
+   public void setup() {
+      timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "room-presence-test");
+      roomDiscoveryService = mock(RoomDiscoveryService.class);
+      roomPresenceService = new RoomPresenceService();
+      ReflectionTestUtils.setField(roomPresenceService, "timingWheel", timingWheel);
+      ReflectionTestUtils.setField(roomPresenceService, "roomDiscoveryService", roomDiscoveryService);
+      ReflectionTestUtils.setField(roomPresenceService, "ttl", TTL_MS);
+   }
+
+   @After
+   public void teardown() {
+      timingWheel.stop();
+   }
+
+   @Test
+   public void testJoin_CountsEachMemberOnce() {
+      // Act
+      roomPresenceService.join(VALID_ID, VALID_ID);
+      roomPresenceService.join(VALID_ID, VALID_ID);
+      roomPresenceService.join(VALID_ID, OTHER_USER_ID);
+
+      // Assert
+      Assert.assertEquals(2, roomPresenceService.getListenerCount(VALID_ID));
+      Assert.assertEquals(ImmutableList.of(VALID_ID, OTHER_USER_ID), roomPresenceService.getMembers(VALID_ID));
+      verify(roomDiscoveryService).setListenerCount(VALID_ID, 2);
+   }
+
+   @Test
+   public void testLeave_KeepsMemberWithOtherConnections() {
+      // Arrange
+      roomPresenceService.join(VALID_ID, VALID_ID);
+      roomPresenceService.join(VALID_ID, VALID_ID);
+
+      // Act
+      roomPresenceService.leave(VALID_ID, VALID_ID);
+
+      // Assert
+      Assert.assertEquals(1, roomPresenceService.getListenerCount(VALID_ID));
+
+      roomPresenceService.leave(VALID_ID, VALID_ID);
+      Assert.assertEquals(0, roomPresenceService.getListenerCount(VALID_ID));
+      Assert.assertTrue(roomPresenceService.getMembers(VALID_ID).isEmpty());
+   }
+
+   @Test
+   public void testGetMembers_ExcludesAnonymousListeners() {
+      // Arrange
+      final int anonymousId = roomPresenceService.nextAnonymousId();
+
+      // Act
+      roomPresenceService.join(VALID_ID, anonymousId);
+      roomPresenceService.join(VALID_ID, VALID_ID);
+
+      // Assert
+      Assert.assertTrue(anonymousId < 0);
+      Assert.assertEquals(2, roomPresenceService.getListenerCount(VALID_ID));
+      Assert.assertEquals(ImmutableList.of(VALID_ID), roomPresenceService.getMembers(VALID_ID));
+   }
+
+   @Test
+   public void testHeartbeat_NotMember() {
+      // Act
+      final boolean member = roomPresenceService.heartbeat(VALID_ID, VALID_ID);
+
+      // Assert
+      Assert.assertFalse(member);
+      Assert.assertEquals(0, roomPresenceService.getListenerCount(VALID_ID));
+   }
+
+   @Test
+   public void testExpire_DropsIdleMembers() throws InterruptedException {
+      // Arrange
+      ReflectionTestUtils.setField(roomPresenceService, "ttl", SHORT_TTL_MS);
+      roomPresenceService.join(VALID_ID, VALID_ID);
+
+      // Act
+      Thread.sleep(SHORT_TTL_MS * 4);
+
+      // Assert
+      Assert.assertEquals(0, roomPresenceService.getListenerCount(VALID_ID));
+      Assert.assertFalse(roomPresenceService.heartbeat(VALID_ID, VALID_ID));
+   }
+
+   @Test
+   public void testExpire_HeartbeatKeepsMember() throws InterruptedException {
+      // Arrange
+      ReflectionTestUtils.setField(roomPresenceService, "ttl", SHORT_TTL_MS);
+      roomPresenceService.join(VALID_ID, VALID_ID);
+
+      // Act
+      for (int i = 0; i < 8; i++) {
+         Thread.sleep(SHORT_TTL_MS / 2);
+         Assert.assertTrue(roomPresenceService.heartbeat(VALID_ID, VALID_ID));
+      }
+
+      // Assert
+      Assert.assertEquals(1, roomPresenceService.getListenerCount(VALID_ID));
+   }
+
+   @Test
+   public void testRemoveRoom_ForgetsMembers() {
+      // Arrange
+      roomPresenceService.join(VALID_ID, VALID_ID);
+
+      // Act
+      roomPresenceService.removeRoom(VALID_ID);
+
+      // Assert
+      Assert.assertEquals(0, roomPresenceService.getListenerCount(VALID_ID));
+      Assert.assertTrue(roomPresenceService.getMembers(VALID_ID).isEmpty());
+   }
+}
@@ -0,0 +1,393 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.RoomDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.QueuedSong;
+import app.validation.ValidationError;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomQueueServiceTest extends BaseTest {
+
+   private static final int OTHER_ID = 2;
+   private static final int THIRD_ID = 3;
+   private static final long SONG_ENDS_AT = 1571443200000L;
+   private static final String SONG_ID_PATTERN = "\"songId\":";
+
+   @Mock
+   private RoomDao roomDao;
+
+   @Mock
+   private SongDao songDao;
+
+   @Mock
+   private RoomSessionService roomSessionService;
+
+   @Mock
+   private RoomPresenceService roomPresenceService;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @InjectMocks
+   private RoomQueueService roomQueueService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomQueueService, "maxSize", 10);
+      ReflectionTestUtils.setField(roomQueueService, "skipRatio", 0.5);
+      lenient().when(roomDao.existsById(VALID_ID)).thenReturn(true);
+      lenient().when(songDao.existsById(anyInt())).thenReturn(true);
+   }
+
+   @After
+   public void teardown() {
+      roomQueueService.shutdown();
+   }
+
+   @Test
+   public void testAddSong_PublishesQueue() {
+      // Act
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().startsWith("{\"type\":\"queue\",\"queue\":[")
+                  && message.getPayload().contains(SONG_ID_PATTERN + VALID_ID)
+                  && message.getPayload().contains("\"votes\":1")));
+
+      final List<QueuedSong> songs = roomQueueService.getSongs(VALID_ID);
+      Assert.assertEquals(1, songs.size());
+      Assert.assertEquals(VALID_ID, songs.get(0).getSongId());
+      Assert.assertEquals(VALID_ID, songs.get(0).getAddedBy());
+   }
+
+   @Test
+   public void testUpvote_ReordersQueue() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+      roomQueueService.addSong(VALID_ID, VALID_ID, OTHER_ID);
+
+      // Act
+      roomQueueService.upvote(VALID_ID, OTHER_ID, OTHER_ID);
+      roomQueueService.upvote(VALID_ID, OTHER_ID, THIRD_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":3")));
+
+      final List<QueuedSong> songs = roomQueueService.getSongs(VALID_ID);
+      Assert.assertEquals(OTHER_ID, songs.get(0).getSongId());
+      Assert.assertEquals(3, songs.get(0).getVotes());
+      Assert.assertEquals(VALID_ID, songs.get(1).getSongId());
+   }
+
+   @Test
+   public void testUpvote_SameUserCountsOnce() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.upvote(VALID_ID, VALID_ID, VALID_ID);
+      roomQueueService.upvote(VALID_ID, VALID_ID, OTHER_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":2")));
+      verify(roomSessionService, never()).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":3")));
+   }
+
+   @Test
+   public void testRemoveUpvote_LowersTally() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+      roomQueueService.addSong(VALID_ID, OTHER_ID, OTHER_ID);
+
+      // Act
+      roomQueueService.removeUpvote(VALID_ID, VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":0")));
+
+      final List<QueuedSong> songs = roomQueueService.getSongs(VALID_ID);
+      Assert.assertEquals(OTHER_ID, songs.get(0).getSongId());
+      Assert.assertEquals(0, songs.get(1).getVotes());
+   }
+
+   @Test
+   public void testUpvote_SongNotQueued() {
+      // Act
+      try {
+         roomQueueService.upvote(VALID_ID, VALID_ID, VALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals("Song is not queued", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(SONG_ID, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testAddSong_AlreadyQueued() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      try {
+         roomQueueService.addSong(VALID_ID, OTHER_ID, VALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.DUPLICATE_VALUE, ex.getError());
+         Assert.assertEquals(SONG_ID, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testAddSong_QueueFull() {
+      // Arrange
+      ReflectionTestUtils.setField(roomQueueService, "maxSize", 1);
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      try {
+         roomQueueService.addSong(VALID_ID, VALID_ID, OTHER_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals("Queue is full", ex.getMessage());
+         Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
+         Assert.assertEquals(ROOM, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testAddSong_SongNotFound() {
+      // Arrange
+      when(songDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         roomQueueService.addSong(VALID_ID, VALID_ID, INVALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(SONG, ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testAddSong_RoomNotFound() {
+      // Act
+      try {
+         roomQueueService.addSong(INVALID_ID, VALID_ID, VALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals("Room does not exist", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ROOM, ex.getFields().get(0));
+         Assert.assertTrue(roomQueueService.getRoomIds().isEmpty());
+      }
+   }
+
+   @Test
+   public void testVoteToSkip_PlaysMostUpvotedSong() {
+      // Arrange
+      when(roomPresenceService.getListenerCount(VALID_ID)).thenReturn(2L);
+      when(roomSessionService.playNext(VALID_ID, OTHER_ID)).thenReturn(true);
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+      roomQueueService.addSong(VALID_ID, VALID_ID, OTHER_ID);
+      roomQueueService.upvote(VALID_ID, OTHER_ID, OTHER_ID);
+
+      // Act
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNext(VALID_ID, OTHER_ID);
+
+      try {
+         roomQueueService.upvote(VALID_ID, OTHER_ID, THIRD_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+      }
+   }
+
+   @Test
+   public void testVoteToSkip_RoomNotLiveKeepsSong() {
+      // Arrange
+      when(roomPresenceService.getListenerCount(VALID_ID)).thenReturn(1L);
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNext(VALID_ID, VALID_ID);
+      roomQueueService.upvote(VALID_ID, VALID_ID, OTHER_ID);
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":2") && message.getPayload().contains("\"skipVotes\":1")));
+   }
+
+   @Test
+   public void testVoteToSkip_WaitsForEnoughVotes() {
+      // Arrange
+      when(roomPresenceService.getListenerCount(VALID_ID)).thenReturn(4L);
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"skipVotes\":1")));
+      verify(roomSessionService, never()).playNext(anyInt(), any());
+
+      // Act
+      roomQueueService.voteToSkip(VALID_ID, OTHER_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNext(VALID_ID, VALID_ID);
+   }
+
+   @Test
+   public void testVoteToSkip_EmptyQueueMovesPlaylistOn() {
+      // Arrange
+      when(roomPresenceService.getListenerCount(VALID_ID)).thenReturn(1L);
+
+      // Act
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNext(eq(VALID_ID), isNull());
+   }
+
+   @Test
+   public void testAdvance_PlaysQueuedSong() {
+      // Arrange
+      when(roomSessionService.playNextAfterEnd(VALID_ID, VALID_ID, SONG_ENDS_AT)).thenReturn(true);
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.advance(VALID_ID, SONG_ENDS_AT);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNextAfterEnd(VALID_ID, VALID_ID, SONG_ENDS_AT);
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"queue\":[]")));
+   }
+
+   @Test
+   public void testAdvance_PlaybackChangedKeepsQueue() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.advance(VALID_ID, SONG_ENDS_AT);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNextAfterEnd(VALID_ID, VALID_ID, SONG_ENDS_AT);
+      roomQueueService.upvote(VALID_ID, VALID_ID, OTHER_ID);
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), argThat(message ->
+            message.getPayload().contains("\"votes\":2")));
+   }
+
+   @Test
+   public void testAdvance_NoQueueMovesPlaylistOn() {
+      // Act
+      roomQueueService.advance(VALID_ID, SONG_ENDS_AT);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).playNextAfterEnd(eq(VALID_ID), isNull(), eq(SONG_ENDS_AT));
+      verify(roomDao, never()).existsById(anyInt());
+   }
+
+   @Test
+   public void testRestore_KeepsTalliesAndOrder() {
+      // Arrange
+      final List<QueuedSong> songs = ImmutableList.of(
+            QueuedSong.builder().songId(OTHER_ID).addedBy(VALID_ID).votes(3).build(),
+            QueuedSong.builder().songId(VALID_ID).addedBy(VALID_ID).votes(1).build());
+
+      // Act
+      roomQueueService.restore(VALID_ID, songs);
+
+      // Assert
+      verify(roomSessionService, timeout(1000)).publish(eq(VALID_ID), any(TextMessage.class));
+
+      Assert.assertEquals(songs, roomQueueService.getLocalSongs(VALID_ID).get());
+      Assert.assertEquals(ImmutableList.of(VALID_ID), roomQueueService.getRoomIds());
+   }
+
+   @Test
+   public void testEvict_DropsEmptyQueue() {
+      // Arrange
+      roomQueueService.voteToSkip(VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.evict(VALID_ID);
+
+      // Assert
+      Assert.assertTrue(roomQueueService.getRoomIds().isEmpty());
+   }
+
+   @Test
+   public void testEvict_KeepsQueuedSongs() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.evict(VALID_ID);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(VALID_ID), roomQueueService.getRoomIds());
+   }
+
+   @Test
+   public void testClose_DropsQueue() {
+      // Arrange
+      roomQueueService.addSong(VALID_ID, VALID_ID, VALID_ID);
+
+      // Act
+      roomQueueService.close(VALID_ID);
+
+      // Assert
+      Assert.assertFalse(roomQueueService.getLocalSongs(VALID_ID).isPresent());
+   }
+}
@@ -6,6 +6,7 @@ import app.dao.RoomDao;
 import app.exception.ApiException;
 import app.model.Playlist;
 import app.model.Room;
+import app.model.RoomPage;
 import app.request.UpdateRoomData;
 import app.validation.ValidationError;
 
@@ -18,11 +19,11 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.google.common.collect.ImmutableList;
 
 import static org.assertj.core.api.Fail.fail;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -32,12 +33,40 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class RoomServiceTest extends BaseTest {
 
+   private static final int OTHER_ROOM_ID = 2;
+   private static final String ROOM_TOPIC = "rooms/1";
+   private static final String SNAPSHOT = "{\"type\":\"snapshot\",\"version\":0}";
+
    @Mock
    RoomDao roomDao;
 
    @Mock
    PlaylistDao playlistDao;
 
+   @Mock
+   RoomSessionService roomSessionService;
+
+   @Mock
+   RoomPresenceService roomPresenceService;
+
+   @Mock
+   RoomChatService roomChatService;
+
+   @Mock
+   RoomQueueService roomQueueService;
+
+   @Mock
+   EventStreamService eventStreamService;
+
+   @Mock
+   RoomDiscoveryService roomDiscoveryService;
+
+   @Mock
+   RoomUpdateService roomUpdateService;
+
+   @Mock
+   InvalidationService invalidationService;
+
    @InjectMocks
    RoomService roomService;
 
@@ -51,6 +80,7 @@ public class RoomServiceTest extends BaseTest {
 
       // Assert
       verify(roomDao).save(room);
+      verify(roomDiscoveryService).addRoom(room);
    }
 
    @Test
@@ -91,21 +121,27 @@ public class RoomServiceTest extends BaseTest {
    @Test
    public void testDeleteRoomById_ValidId() {
       // Arrange
-      final Room existingRoom = buildRoom();
-      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(existingRoom));
+      when(roomDao.deleteRowById(VALID_ID)).thenReturn(1);
 
       // Act
       roomService.deleteRoomById(VALID_ID);
 
       // Assert
-      verify(roomDao).findById(VALID_ID);
-      verify(roomDao).deleteById(VALID_ID);
+      verify(roomDao).deleteRowById(VALID_ID);
+      verify(roomSessionService).close(VALID_ID);
+      verify(roomPresenceService).removeRoom(VALID_ID);
+      verify(roomChatService).close(VALID_ID);
+      verify(roomQueueService).close(VALID_ID);
+      verify(roomDiscoveryService).removeRoom(VALID_ID);
+      verify(roomUpdateService).discard(VALID_ID);
+      verify(invalidationService).publish(ROOM, VALID_ID);
+      verify(eventStreamService).close(ROOM_TOPIC);
    }
 
    @Test
    public void testDeleteRoomById_InvalidId() {
       // Arrange
-      when(roomDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(roomDao.deleteRowById(INVALID_ID)).thenReturn(0);
 
       // Act
       try {
@@ -113,8 +149,10 @@ public class RoomServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          // Assert
-         verify(roomDao).findById(INVALID_ID);
+         verify(roomDao).deleteRowById(INVALID_ID);
          verifyNoMoreInteractions(roomDao);
+         verifyZeroInteractions(roomSessionService);
+         verifyZeroInteractions(roomPresenceService);
 
          Assert.assertEquals("Room does not exist", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -140,6 +178,156 @@ public class RoomServiceTest extends BaseTest {
       Assert.assertEquals(room, rooms.get(0));
    }
 
+   @Test
+   public void testGetAllRooms_SeesPendingUpdates() {
+      //Arrange
+      final Room room = buildRoom();
+      final Room renamed = buildRoom();
+      renamed.setName(NEW_NAME);
+      when(roomDao.findAll()).thenReturn(ImmutableList.of(room));
+      when(roomUpdateService.getRoom(VALID_ID)).thenReturn(Optional.of(renamed));
+
+      //Act
+      final List<Room> rooms = roomService.getAllRooms();
+
+      //Assert
+      Assert.assertEquals(ImmutableList.of(renamed), rooms);
+   }
+
+   @Test
+   public void testGetRoomById_PendingUpdateSkipsDatabase() {
+      //Arrange
+      final Room renamed = buildRoom();
+      renamed.setName(NEW_NAME);
+      when(roomUpdateService.getRoom(VALID_ID)).thenReturn(Optional.of(renamed));
+
+      //Act
+      final Room room = roomService.getRoomById(VALID_ID);
+
+      //Assert
+      verifyZeroInteractions(roomDao);
+
+      Assert.assertEquals(NEW_NAME, room.getName());
+   }
+
+   @Test
+   public void testUpdateRoomById_StagesOverPendingUpdate() {
+      //Arrange
+      final Room renamed = buildRoom();
+      renamed.setName(NEW_NAME);
+      final Room updated = buildUpdatedRoom();
+      updated.setName(NEW_NAME);
+      updated.setPrivate(true);
+      final UpdateRoomData updateRoomData = buildUpdateRoomData();
+      updateRoomData.setPlaylistId(null);
+      updateRoomData.setName(null);
+      updateRoomData.setIsPrivate(true);
+      when(roomUpdateService.getRoom(VALID_ID)).thenReturn(Optional.of(renamed));
+      when(roomUpdateService.stage(renamed, updateRoomData)).thenReturn(Optional.of(updated));
+
+      //Act
+      roomService.updateRoomById(VALID_ID, updateRoomData);
+
+      //Assert
+      verify(roomUpdateService).stage(renamed, updateRoomData);
+      verify(eventStreamService).publish(ROOM_TOPIC, ROOM, updated);
+      verify(roomSessionService).updateRoom(updated);
+      verifyZeroInteractions(roomDao);
+   }
+
+   @Test
+   public void testGetAllRooms_BusiestFirst() {
+      //Arrange
+      final Room quietRoom = buildRoom();
+      final Room busyRoom = buildRoom();
+      busyRoom.setId(OTHER_ROOM_ID);
+      when(roomDao.findAll()).thenReturn(ImmutableList.of(quietRoom, busyRoom));
+      when(roomPresenceService.getListenerCount(VALID_ID)).thenReturn(1L);
+      when(roomPresenceService.getListenerCount(OTHER_ROOM_ID)).thenReturn(5L);
+
+      //Act
+      final List<Room> rooms = roomService.getAllRooms();
+
+      //Assert
+      Assert.assertEquals(2, rooms.size());
+      Assert.assertEquals(OTHER_ROOM_ID, rooms.get(0).getId());
+      Assert.assertEquals(5L, rooms.get(0).getListenerCount());
+      Assert.assertEquals(VALID_ID, rooms.get(1).getId());
+      Assert.assertEquals(1L, rooms.get(1).getListenerCount());
+   }
+
+   @Test
+   public void testGetRoomMembers() {
+      //Arrange
+      when(roomPresenceService.getMembers(VALID_ID)).thenReturn(ImmutableList.of(VALID_ID));
+
+      //Act
+      final List<Integer> members = roomService.getRoomMembers(VALID_ID);
+
+      //Assert
+      verify(roomPresenceService).getMembers(VALID_ID);
+
+      Assert.assertEquals(ImmutableList.of(VALID_ID), members);
+   }
+
+   @Test
+   public void testHeartbeat_AlreadyMember() {
+      // Arrange
+      when(roomPresenceService.heartbeat(VALID_ID, VALID_ID)).thenReturn(true);
+
+      // Act
+      roomService.heartbeat(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomPresenceService).heartbeat(VALID_ID, VALID_ID);
+      verifyNoMoreInteractions(roomPresenceService);
+      verifyZeroInteractions(roomDao);
+   }
+
+   @Test
+   public void testHeartbeat_JoinsRoom() {
+      // Arrange
+      when(roomPresenceService.heartbeat(VALID_ID, VALID_ID)).thenReturn(false);
+      when(roomDao.existsById(VALID_ID)).thenReturn(true);
+
+      // Act
+      roomService.heartbeat(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomDao).existsById(VALID_ID);
+      verify(roomPresenceService).join(VALID_ID, VALID_ID);
+   }
+
+   @Test
+   public void testHeartbeat_RoomNotFound() {
+      // Arrange
+      when(roomPresenceService.heartbeat(INVALID_ID, VALID_ID)).thenReturn(false);
+      when(roomDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         roomService.heartbeat(INVALID_ID, VALID_ID);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(roomPresenceService).heartbeat(INVALID_ID, VALID_ID);
+         verifyNoMoreInteractions(roomPresenceService);
+
+         Assert.assertEquals("Room does not exist", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(ROOM));
+      }
+   }
+
+   @Test
+   public void testLeaveRoom() {
+      // Act
+      roomService.leaveRoom(VALID_ID, VALID_ID);
+
+      // Assert
+      verify(roomPresenceService).leave(VALID_ID, VALID_ID);
+   }
+
    @Test
    public void testGetRoomsWithFilter() {
       //Arrange
@@ -180,32 +368,98 @@ public class RoomServiceTest extends BaseTest {
       }
    }
 
+   @Test
+   public void testGetRoomSnapshot() {
+      //Arrange
+      when(roomSessionService.getSnapshot(VALID_ID)).thenReturn(SNAPSHOT);
+
+      //Act
+      final String result = roomService.getRoomSnapshot(VALID_ID);
+
+      //Assert
+      verify(roomSessionService).getSnapshot(VALID_ID);
+
+      Assert.assertEquals(SNAPSHOT, result);
+   }
+
+   @Test
+   public void testDiscoverRooms() {
+      //Arrange
+      final RoomPage page = RoomPage.builder().rooms(ImmutableList.of(buildRoom())).build();
+      when(roomDiscoveryService.getRooms(null, 10)).thenReturn(page);
+
+      //Act
+      final RoomPage result = roomService.discoverRooms(null, 10);
+
+      //Assert
+      verify(roomDiscoveryService).getRooms(null, 10);
+      verifyZeroInteractions(roomDao);
+
+      Assert.assertEquals(page, result);
+   }
+
+   @Test
+   public void testSubscribeToRoom_ValidId() {
+      //Arrange
+      final ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+      when(roomDao.existsById(VALID_ID)).thenReturn(true);
+      when(eventStreamService.subscribe(ROOM_TOPIC)).thenReturn(emitter);
+
+      //Act
+      final ResponseBodyEmitter result = roomService.subscribeToRoom(VALID_ID);
+
+      //Assert
+      verify(roomDao).existsById(VALID_ID);
+      verify(eventStreamService).subscribe(ROOM_TOPIC);
+
+      Assert.assertSame(emitter, result);
+   }
+
+   @Test
+   public void testSubscribeToRoom_InvalidRoom() {
+      //Arrange
+      when(roomDao.existsById(INVALID_ID)).thenReturn(false);
+
+      try {
+         //Act
+         roomService.subscribeToRoom(INVALID_ID);
+         fail("exception not thrown");
+      }
+      catch (ApiException ex) {
+         //Assert
+         verifyZeroInteractions(eventStreamService);
+
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ROOM, ex.getFields().get(0));
+      }
+   }
+
    @Test
    public void testUpdateRoomById_ValidPlaylistId() {
       //Arrange
       final Room room = buildRoom();
+      final Room updated = buildUpdatedRoom();
       final Playlist playlist = buildPlaylist();
-      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
-      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlist));
-
-      //Act
       final UpdateRoomData updateRoomData = buildUpdateRoomData();
       updateRoomData.setPlaylistId(VALID_ID);
       updateRoomData.setIsPrivate(null);
       updateRoomData.setName(" ");
+      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
+      when(playlistDao.findById(VALID_ID)).thenReturn(Optional.of(playlist));
+      when(roomUpdateService.stage(room, updateRoomData)).thenReturn(Optional.of(updated));
+
+      //Act
       roomService.updateRoomById(VALID_ID, updateRoomData);
 
       //Assert
       verify(roomDao).findById(VALID_ID);
       verify(playlistDao).findById(VALID_ID);
-      verify(roomDao).save(any(Room.class));
+      verify(roomUpdateService).stage(room, updateRoomData);
+      verify(eventStreamService).publish(ROOM_TOPIC, ROOM, updated);
+      verify(roomSessionService).updateRoom(updated);
+      verify(roomDiscoveryService).updateRoom(updated);
       verifyNoMoreInteractions(roomDao);
       verifyNoMoreInteractions(playlistDao);
-
-      Assert.assertEquals(updateRoomData.getPlaylistId(), room.getPlaylistId());
-      Assert.assertNull(updateRoomData.getIsPrivate());
-      Assert.assertEquals(" ", updateRoomData.getName());
-      Assert.assertNotNull(updateRoomData.getPlaylistId());
    }
 
    @Test
@@ -227,59 +481,71 @@ public class RoomServiceTest extends BaseTest {
          //Assert
          verify(roomDao).findById(VALID_ID);
          verify(playlistDao).findById(INVALID_ID);
+         verify(roomUpdateService).getRoom(VALID_ID);
+         verifyNoMoreInteractions(roomUpdateService);
          verifyNoMoreInteractions(roomDao);
          verifyNoMoreInteractions(playlistDao);
+         verifyZeroInteractions(roomSessionService);
 
          Assert.assertEquals("Playlist not found", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
          Assert.assertEquals(PLAYLIST_ID, ex.getFields().get(0));
-         Assert.assertNotNull(updateRoomData.getPlaylistId());
       }
    }
 
    @Test
-   public void testUpdateRoomById_UpdateName() {
+   public void testUpdateRoomById_WithoutPlaylistId() {
       //Arrange
       final Room room = buildRoom();
+      final Room updated = buildUpdatedRoom();
+      final UpdateRoomData updateRoomData = buildUpdateRoomData();
+      updateRoomData.setPlaylistId(null);
+      updateRoomData.setIsPrivate(true);
       when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
+      when(roomUpdateService.stage(room, updateRoomData)).thenReturn(Optional.of(updated));
 
       //Act
-      final UpdateRoomData updateRoomData = buildUpdateRoomData();
-      updateRoomData.setPlaylistId(null);
-      updateRoomData.setIsPrivate(null);
       roomService.updateRoomById(VALID_ID, updateRoomData);
 
       //Assert
-      verify(roomDao).findById(VALID_ID);
-      verify(roomDao).save(any(Room.class));
-      verifyNoMoreInteractions(roomDao);
+      verify(roomUpdateService).stage(room, updateRoomData);
+      verify(roomSessionService).updateRoom(updated);
+      verify(roomDiscoveryService).updateRoom(updated);
       verifyZeroInteractions(playlistDao);
-
-      Assert.assertEquals(updateRoomData.getName(), room.getName());
-      Assert.assertNull(updateRoomData.getPlaylistId());
-      Assert.assertNull(updateRoomData.getIsPrivate());
    }
 
    @Test
-   public void testUpdateRoomById_UpdatePrivate() {
+   public void testUpdateRoomById_StaleVersion() {
       //Arrange
       final Room room = buildRoom();
-      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
-
-      //Act
       final UpdateRoomData updateRoomData = buildUpdateRoomData();
       updateRoomData.setPlaylistId(null);
-      updateRoomData.setName(" ");
-      roomService.updateRoomById(VALID_ID, updateRoomData);
+      updateRoomData.setVersion(3L);
+      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
+      when(roomUpdateService.stage(room, updateRoomData)).thenReturn(Optional.empty());
 
-      //Assert
-      verify(roomDao).findById(VALID_ID);
-      verify(roomDao).save(any(Room.class));
-      verifyNoMoreInteractions(roomDao);
-      verifyZeroInteractions(playlistDao);
+      try {
+         //Act
+         roomService.updateRoomById(VALID_ID, updateRoomData);
+         fail("exception not thrown");
+      }
+      catch (ApiException ex) {
+         //Assert
+         verify(roomUpdateService).stage(room, updateRoomData);
+         verifyZeroInteractions(eventStreamService);
+         verifyZeroInteractions(roomSessionService);
+         verifyZeroInteractions(roomDiscoveryService);
+
+         Assert.assertEquals("Room was changed by another update", ex.getMessage());
+         Assert.assertEquals(ValidationError.CONFLICT, ex.getError());
+         Assert.assertEquals(VERSION, ex.getFields().get(0));
+      }
+   }
+
+   private Room buildUpdatedRoom() {
+      final Room room = buildRoom();
+      room.setVersion(1L);
 
-      Assert.assertEquals(updateRoomData.getIsPrivate(), room.isPrivate());
-      Assert.assertEquals(" ", updateRoomData.getName());
-      Assert.assertNull(updateRoomData.getPlaylistId());
+      return room;
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,696 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.PlaylistSongDao;
+import app.dao.RoomDao;
+import app.dao.RoomStateDao;
+import app.dao.SongDao;
+import app.exception.ApiException;
+import app.model.Room;
+import app.model.RoomState;
+import app.model.RoomSyncMessage;
+import app.model.Song;
+import app.request.RoomCommandData;
+import app.util.RoomSyncCodec;
+import app.util.TimingWheel;
+import app.validation.ValidationError;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomSessionServiceTest extends BaseTest {
+
+   private static final int OTHER_USER_ID = 2;
+   private static final int SECOND_SONG_ID = 2;
+   private static final int QUEUED_SONG_ID = 3;
+   private static final long IDLE_MS = 60000;
+   private static final long SHORT_IDLE_MS = 50;
+   private static final int SONG_MS = 60000;
+   private static final int SHORT_SONG_MS = 50;
+
+   @Mock
+   private RoomDao roomDao;
+
+   @Mock
+   private PlaylistSongDao playlistSongDao;
+
+   @Mock
+   private SongDao songDao;
+
+   @Mock
+   private RoomStateDao roomStateDao;
+
+   @Mock
+   private RoomQueueService roomQueueService;
+
+   @Spy
+   private ObjectMapper objectMapper = new ObjectMapper();
+
+   @Mock
+   private WebSocketSession subscriber;
+
+   @InjectMocks
+   private RoomSessionService roomSessionService;
+
+   private TimingWheel timingWheel;
+
+   @Before
+   public void setup() {
+      timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "room-session-test");
+      ReflectionTestUtils.setField(roomSessionService, "timingWheel", timingWheel);
+      ReflectionTestUtils.setField(roomSessionService, "roomTransitionWheel", timingWheel);
+      ReflectionTestUtils.setField(roomSessionService, "idleTime", IDLE_MS);
+      ReflectionTestUtils.setField(roomSessionService, "deltaLogSize", 4);
+      lenient().when(subscriber.isOpen()).thenReturn(true);
+   }
+
+   @After
+   public void teardown() {
+      roomSessionService.shutdown();
+      timingWheel.stop();
+   }
+
+   @Test
+   public void testJoin_SendsSnapshot() throws Exception {
+      // Arrange
+      joinRoom();
+
+      // Assert
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+      verify(subscriber, timeout(1000)).sendMessage(messageCaptor.capture());
+      verify(roomDao).findById(VALID_ID);
+      verify(playlistSongDao).findSongIdsByPlaylistId(VALID_ID);
+      verify(roomStateDao).findById(VALID_ID);
+
+      final String payload = messageCaptor.getValue().getPayload();
+      Assert.assertTrue(payload.contains("\"type\":\"snapshot\""));
+      Assert.assertTrue(payload.contains("\"version\":0"));
+      Assert.assertTrue(payload.contains("\"songs\":[{\"id\":" + VALID_ID));
+      Assert.assertTrue(payload.contains("\"songId\":" + VALID_ID));
+      Assert.assertTrue(payload.contains("\"paused\":true"));
+      Assert.assertEquals(1, roomSessionService.getLiveRoomCount());
+   }
+
+   @Test
+   public void testJoin_BinarySubscriberGetsBinaryFrames() throws Exception {
+      // Arrange
+      final WebSocketSession binarySubscriber = mock(WebSocketSession.class);
+      when(binarySubscriber.isOpen()).thenReturn(true);
+      when(binarySubscriber.getAcceptedProtocol()).thenReturn(RoomSyncCodec.BINARY_PROTOCOL);
+      joinRoom();
+
+      // Act
+      roomSessionService.join(VALID_ID, binarySubscriber, null);
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+
+      // Assert
+      final ArgumentCaptor<BinaryMessage> messageCaptor = ArgumentCaptor.forClass(BinaryMessage.class);
+      verify(binarySubscriber, timeout(1000).times(2)).sendMessage(messageCaptor.capture());
+      verify(subscriber, timeout(1000).times(2)).sendMessage(any(TextMessage.class));
+      verify(objectMapper, times(2)).writeValueAsString(any());
+
+      final RoomSyncMessage snapshot = RoomSyncCodec.decode(messageCaptor.getAllValues().get(0).getPayload());
+      final RoomSyncMessage update = RoomSyncCodec.decode(messageCaptor.getAllValues().get(1).getPayload());
+      Assert.assertEquals(RoomSyncMessage.Type.SNAPSHOT, snapshot.getType());
+      Assert.assertEquals(2, snapshot.getSongs().size());
+      Assert.assertEquals(RoomSyncMessage.Type.STATE, update.getType());
+      Assert.assertEquals(1, update.getVersion());
+      Assert.assertFalse(update.getState().isPaused());
+   }
+
+   @Test
+   public void testJoin_SinceSendsOnlyMissedDeltas() throws Exception {
+      // Arrange
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+      final WebSocketSession rejoined = mock(WebSocketSession.class);
+      when(rejoined.isOpen()).thenReturn(true);
+
+      // Act
+      roomSessionService.join(VALID_ID, rejoined, 1L);
+
+      // Assert
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+      verify(rejoined, timeout(1000)).sendMessage(messageCaptor.capture());
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"type\":\"state\""));
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"version\":2"));
+   }
+
+   @Test
+   public void testJoin_SinceTooOldSendsSnapshot() throws Exception {
+      // Arrange
+      joinRoom();
+      for (int i = 0; i < 5; i++) {
+         roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+      }
+      final WebSocketSession rejoined = mock(WebSocketSession.class);
+      when(rejoined.isOpen()).thenReturn(true);
+
+      // Act
+      roomSessionService.join(VALID_ID, rejoined, 0L);
+
+      // Assert
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+      verify(rejoined, timeout(1000)).sendMessage(messageCaptor.capture());
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"type\":\"snapshot\""));
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"version\":5"));
+   }
+
+   @Test
+   public void testJoin_ResumesSavedState() {
+      // Arrange
+      when(roomStateDao.findById(VALID_ID)).thenReturn(Optional.of(RoomState.builder().roomId(VALID_ID)
+            .songId(SECOND_SONG_ID).queuePosition(1).positionMs(30000L).paused(true).version(7).build()));
+
+      // Act
+      joinRoom();
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(30000L, state.getPositionMs());
+      Assert.assertEquals(7, state.getVersion());
+   }
+
+   @Test
+   public void testJoin_SavedSongMovedInPlaylist() {
+      // Arrange
+      when(roomStateDao.findById(VALID_ID)).thenReturn(Optional.of(RoomState.builder().roomId(VALID_ID)
+            .songId(VALID_ID).queuePosition(1).positionMs(30000L).paused(true).version(7).build()));
+
+      // Act
+      joinRoom();
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(VALID_ID), state.getSongId());
+      Assert.assertEquals(0, state.getQueuePosition());
+      Assert.assertEquals(0L, state.getPositionMs());
+      Assert.assertEquals(8, state.getVersion());
+   }
+
+   @Test
+   public void testJoin_ResumesSavedQueuedSong() {
+      // Arrange
+      when(roomStateDao.findById(VALID_ID)).thenReturn(Optional.of(RoomState.builder().roomId(VALID_ID)
+            .songId(QUEUED_SONG_ID).queuePosition(1).positionMs(30000L).paused(true).version(7).build()));
+
+      // Act
+      joinRoom();
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(QUEUED_SONG_ID), state.getSongId());
+      Assert.assertEquals(1, state.getQueuePosition());
+      Assert.assertEquals(30000L, state.getPositionMs());
+      Assert.assertEquals(7, state.getVersion());
+   }
+
+   @Test
+   public void testGetSnapshot_EncodesOnlyAfterChange() throws Exception {
+      // Arrange
+      joinRoom();
+
+      // Act
+      final String snapshot = roomSessionService.getSnapshot(VALID_ID);
+      roomSessionService.getSnapshot(VALID_ID);
+
+      // Assert
+      verify(objectMapper, times(1)).writeValueAsString(any());
+
+      Assert.assertTrue(snapshot.contains("\"type\":\"snapshot\""));
+   }
+
+   @Test
+   public void testJoin_RoomNotFound() {
+      // Arrange
+      when(roomDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+
+      // Act
+      try {
+         roomSessionService.join(INVALID_ID, subscriber, null);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(roomDao).findById(INVALID_ID);
+         verifyZeroInteractions(playlistSongDao);
+
+         Assert.assertEquals("Room does not exist", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ROOM, ex.getFields().get(0));
+         Assert.assertEquals(0, roomSessionService.getLiveRoomCount());
+      }
+   }
+
+   @Test
+   public void testLeave_LastSubscriberKeepsRoomUntilIdle() {
+      // Arrange
+      joinRoom();
+
+      // Act
+      roomSessionService.leave(VALID_ID, subscriber);
+
+      // Assert
+      verify(roomStateDao, never()).save(any());
+
+      Assert.assertEquals(1, roomSessionService.getLiveRoomCount());
+   }
+
+   @Test
+   public void testLeave_IdleRoomEvicted() {
+      // Arrange
+      ReflectionTestUtils.setField(roomSessionService, "idleTime", SHORT_IDLE_MS);
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+
+      // Act
+      roomSessionService.leave(VALID_ID, subscriber);
+
+      // Assert
+      final ArgumentCaptor<RoomState> stateCaptor = ArgumentCaptor.forClass(RoomState.class);
+      verify(roomStateDao, timeout(1000)).save(stateCaptor.capture());
+
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), stateCaptor.getValue().getSongId());
+      Assert.assertEquals(1, stateCaptor.getValue().getVersion());
+      Assert.assertEquals(0, roomSessionService.getLiveRoomCount());
+      verify(roomQueueService).evict(VALID_ID);
+   }
+
+   @Test
+   public void testApplyCommand_PlayBroadcastsState() throws Exception {
+      // Arrange
+      joinRoom();
+
+      // Act
+      final RoomState state = roomSessionService.applyCommand(VALID_ID, VALID_ID,
+            buildCommand(RoomCommandData.Type.PLAY));
+
+      // Assert
+      verify(subscriber, timeout(1000).times(2)).sendMessage(any(TextMessage.class));
+
+      Assert.assertFalse(state.isPaused());
+      Assert.assertEquals(1, state.getVersion());
+      Assert.assertEquals(Integer.valueOf(VALID_ID), state.getSongId());
+   }
+
+   @Test
+   public void testApplyCommand_NextSelectsNextSong() {
+      // Arrange
+      joinRoom();
+
+      // Act
+      final RoomState state = roomSessionService.applyCommand(VALID_ID, VALID_ID,
+            buildCommand(RoomCommandData.Type.NEXT));
+
+      // Assert
+      Assert.assertEquals(1, state.getQueuePosition());
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(0, state.getPositionMs());
+   }
+
+   @Test
+   public void testApplyCommand_SelectOutOfRange() {
+      // Arrange
+      joinRoom();
+      final RoomCommandData command = buildCommand(RoomCommandData.Type.SELECT);
+      command.setQueuePosition(5);
+
+      // Act
+      try {
+         roomSessionService.applyCommand(VALID_ID, VALID_ID, command);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
+         Assert.assertEquals("queuePosition", ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testApplyCommand_SeekWhilePaused() {
+      // Arrange
+      joinRoom();
+      final RoomCommandData command = buildCommand(RoomCommandData.Type.SEEK);
+      command.setPositionMs(30000L);
+
+      // Act
+      final RoomState state = roomSessionService.applyCommand(VALID_ID, VALID_ID, command);
+
+      // Assert
+      Assert.assertTrue(state.isPaused());
+      Assert.assertEquals(30000L, state.getPositionMs());
+   }
+
+   @Test
+   public void testApplyCommand_NotOwner() {
+      // Arrange
+      joinRoom();
+
+      // Act
+      try {
+         roomSessionService.applyCommand(VALID_ID, OTHER_USER_ID, buildCommand(RoomCommandData.Type.PLAY));
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.FORBIDDEN, ex.getError());
+         Assert.assertEquals("user", ex.getFields().get(0));
+      }
+   }
+
+   @Test
+   public void testApplyCommand_RoomNotLive() {
+      // Act
+      try {
+         roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verifyZeroInteractions(roomDao);
+
+         Assert.assertEquals("Room is not live", ex.getMessage());
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+      }
+   }
+
+   @Test
+   public void testPlayNext_PlaysQueuedSong() throws Exception {
+      // Arrange
+      joinRoom();
+
+      // Act
+      final boolean played = roomSessionService.playNext(VALID_ID, QUEUED_SONG_ID);
+
+      // Assert
+      Assert.assertTrue(played);
+      verify(subscriber, timeout(1000).times(2)).sendMessage(any(TextMessage.class));
+
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(QUEUED_SONG_ID), state.getSongId());
+      Assert.assertEquals(0, state.getQueuePosition());
+      Assert.assertEquals(1, state.getVersion());
+   }
+
+   @Test
+   public void testPlayNext_RoomNotLive() {
+      // Act
+      final boolean played = roomSessionService.playNext(VALID_ID, QUEUED_SONG_ID);
+
+      // Assert
+      Assert.assertFalse(played);
+      verifyZeroInteractions(roomStateDao);
+   }
+
+   @Test
+   public void testPlayNext_EmptyQueueMovesPlaylistOn() {
+      // Arrange
+      joinRoom();
+
+      // Act
+      roomSessionService.playNext(VALID_ID, null);
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(1, state.getQueuePosition());
+   }
+
+   @Test
+   public void testPlayNext_EndOfPlaylistPauses() {
+      // Arrange
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+
+      // Act
+      roomSessionService.playNext(VALID_ID, null);
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertTrue(state.isPaused());
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(3, state.getVersion());
+   }
+
+   @Test
+   public void testPlayNextAfterEnd_SongEndMovesRoomOn() {
+      // Arrange
+      joinRoom(SHORT_SONG_MS);
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+      final ArgumentCaptor<Long> songEndsAtCaptor = ArgumentCaptor.forClass(Long.class);
+      verify(roomQueueService, timeout(1000)).advance(eq(VALID_ID), songEndsAtCaptor.capture());
+
+      // Act
+      final boolean moved = roomSessionService.playNextAfterEnd(VALID_ID, null, songEndsAtCaptor.getValue());
+
+      // Assert
+      Assert.assertTrue(moved);
+
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertFalse(state.isPaused());
+      Assert.assertFalse(roomSessionService.playNextAfterEnd(VALID_ID, null, songEndsAtCaptor.getValue()));
+   }
+
+   @Test
+   public void testPlayNextAfterEnd_PlaybackChanged() {
+      // Arrange
+      joinRoom(SONG_MS);
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+
+      // Act
+      final boolean moved = roomSessionService.playNextAfterEnd(VALID_ID, null, System.currentTimeMillis());
+
+      // Assert
+      Assert.assertFalse(moved);
+      Assert.assertEquals(Integer.valueOf(VALID_ID), roomSessionService.getState(VALID_ID).get().getSongId());
+      verify(roomQueueService, never()).advance(anyInt(), anyLong());
+   }
+
+   @Test
+   public void testApplyCommand_SeekReschedulesSongEnd() {
+      // Arrange
+      joinRoom(SONG_MS);
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+      final RoomCommandData seek = buildCommand(RoomCommandData.Type.SEEK);
+      seek.setPositionMs((long) SONG_MS - SHORT_SONG_MS);
+
+      // Act
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, seek);
+
+      // Assert
+      verify(roomQueueService, timeout(1000)).advance(eq(VALID_ID), anyLong());
+   }
+
+   @Test
+   public void testApplyCommand_PauseCancelsSongEnd() throws InterruptedException {
+      // Arrange
+      joinRoom(SHORT_SONG_MS);
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PLAY));
+
+      // Act
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.PAUSE));
+
+      // Assert
+      Thread.sleep(SHORT_SONG_MS * 2);
+      verify(roomQueueService, never()).advance(anyInt(), anyLong());
+   }
+
+   @Test
+   public void testPublish_SendsMessage() throws Exception {
+      // Arrange
+      joinRoom();
+      final TextMessage message = new TextMessage("{\"type\":\"queue\"}");
+
+      // Act
+      roomSessionService.publish(VALID_ID, message);
+
+      // Assert
+      verify(subscriber, timeout(1000)).sendMessage(message);
+   }
+
+   @Test
+   public void testUpdateRoom_NewPlaylistResetsQueue() throws Exception {
+      // Arrange
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+      when(playlistSongDao.findSongIdsByPlaylistId(SECOND_SONG_ID)).thenReturn(ImmutableList.of(SECOND_SONG_ID));
+      final Room room = buildRoom();
+      room.setPlaylistId(SECOND_SONG_ID);
+
+      // Act
+      roomSessionService.updateRoom(room);
+
+      // Assert
+      final ArgumentCaptor<TextMessage> messageCaptor = ArgumentCaptor.forClass(TextMessage.class);
+      verify(playlistSongDao).findSongIdsByPlaylistId(SECOND_SONG_ID);
+      verify(subscriber, timeout(1000).times(3)).sendMessage(messageCaptor.capture());
+
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"type\":\"room\""));
+      Assert.assertTrue(messageCaptor.getValue().getPayload().contains("\"songs\""));
+
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(0, state.getQueuePosition());
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(2, state.getVersion());
+   }
+
+   @Test
+   public void testUpdateRoom_SamePlaylistKeepsQueue() {
+      // Arrange
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+
+      // Act
+      roomSessionService.updateRoom(buildRoom());
+
+      // Assert
+      verify(playlistSongDao, times(1)).findSongIdsByPlaylistId(VALID_ID);
+
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(1, state.getQueuePosition());
+      Assert.assertEquals(2, state.getVersion());
+   }
+
+   @Test
+   public void testUpdateRoom_RoomNotLive() {
+      // Act
+      roomSessionService.updateRoom(buildRoom());
+
+      // Assert
+      verifyZeroInteractions(playlistSongDao);
+   }
+
+   @Test
+   public void testRefreshPlaylist_KeepsCurrentSong() {
+      // Arrange
+      joinRoom();
+      roomSessionService.applyCommand(VALID_ID, VALID_ID, buildCommand(RoomCommandData.Type.NEXT));
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(SECOND_SONG_ID));
+      when(songDao.findAllById(anyIterable())).thenReturn(ImmutableList.of(buildSong(SECOND_SONG_ID)));
+
+      // Act
+      roomSessionService.refreshPlaylist(VALID_ID);
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(0, state.getQueuePosition());
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(2, state.getVersion());
+   }
+
+   @Test
+   public void testRefreshPlaylist_NoLiveRooms() {
+      // Act
+      roomSessionService.refreshPlaylist(VALID_ID);
+
+      // Assert
+      verifyZeroInteractions(playlistSongDao);
+   }
+
+   @Test
+   public void testClose_DisconnectsSubscribers() throws Exception {
+      // Arrange
+      joinRoom();
+
+      // Act
+      roomSessionService.close(VALID_ID);
+
+      // Assert
+      verify(subscriber, times(1)).close(any(CloseStatus.class));
+      Assert.assertEquals(0, roomSessionService.getLiveRoomCount());
+   }
+
+   @Test
+   public void testRestore_ResumesHandedOffState() {
+      // Arrange
+      roomSessionService.restore(RoomState.builder().roomId(VALID_ID).songId(SECOND_SONG_ID).queuePosition(1)
+            .positionMs(30000L).paused(true).version(7).build());
+
+      // Act
+      joinRoom();
+
+      // Assert
+      final RoomState state = roomSessionService.getState(VALID_ID).get();
+      Assert.assertEquals(Integer.valueOf(SECOND_SONG_ID), state.getSongId());
+      Assert.assertEquals(30000L, state.getPositionMs());
+      Assert.assertEquals(7, state.getVersion());
+   }
+
+   @Test
+   public void testGetState_RoomNotLive() {
+      // Assert
+      Assert.assertFalse(roomSessionService.getState(VALID_ID).isPresent());
+      Assert.assertTrue(roomSessionService.getLiveRoomIds().isEmpty());
+   }
+
+   private void joinRoom() {
+      joinRoom(null);
+   }
+
+   private void joinRoom(final Integer durationMs) {
+      final Room room = buildRoom();
+      when(roomDao.findById(VALID_ID)).thenReturn(Optional.of(room));
+      when(playlistSongDao.findSongIdsByPlaylistId(VALID_ID)).thenReturn(ImmutableList.of(VALID_ID, SECOND_SONG_ID));
+      when(songDao.findAllById(anyIterable()))
+            .thenReturn(ImmutableList.of(buildSong(SECOND_SONG_ID, durationMs), buildSong(VALID_ID, durationMs)));
+
+      roomSessionService.join(VALID_ID, subscriber, null);
+   }
+
+   private Song buildSong(final int id) {
+      return buildSong(id, null);
+   }
+
+   private Song buildSong(final int id, final Integer durationMs) {
+      final Song song = buildSong();
+      song.setId(id);
+      song.setDurationMs(durationMs);
+
+      return song;
+   }
+
+   private RoomCommandData buildCommand(final RoomCommandData.Type type) {
+      final RoomCommandData command = new RoomCommandData();
+      command.setType(type);
+
+      return command;
+   }
+}
@@ -0,0 +1,249 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.RoomDao;
+import app.model.Room;
+import app.request.UpdateRoomData;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomUpdateServiceTest extends BaseTest {
+
+   private static final int OTHER_ROOM_ID = 2;
+   private static final int THIRD_ROOM_ID = 3;
+   private static final String OTHER_NAME = "other name";
+
+   @Mock
+   private RoomDao roomDao;
+
+   @Mock
+   private InvalidationService invalidationService;
+
+   @InjectMocks
+   private RoomUpdateService roomUpdateService;
+
+   @Before
+   public void setup() {
+      ReflectionTestUtils.setField(roomUpdateService, "batchSize", 2);
+   }
+
+   @Test
+   public void testStage_ChangesAreMergedWithStagedState() {
+      // Arrange
+      final UpdateRoomData rename = buildChanges(NEW_NAME);
+      final UpdateRoomData makePrivate = buildChanges(" ");
+      makePrivate.setIsPrivate(true);
+      final Room expected = buildRoom(VALID_ID, 2L);
+      expected.setName(NEW_NAME);
+      expected.setPrivate(true);
+
+      // Act
+      roomUpdateService.stage(buildRoom(), rename);
+      final Optional<Room> updated = roomUpdateService.stage(buildRoom(), makePrivate);
+
+      // Assert
+      verifyZeroInteractions(roomDao);
+
+      Assert.assertEquals(expected, updated.get());
+      Assert.assertEquals(expected, roomUpdateService.getRoom(VALID_ID).get());
+      Assert.assertEquals(1, roomUpdateService.getCoalescedUpdates());
+   }
+
+   @Test
+   public void testStage_StaleVersionIsRefused() {
+      // Arrange
+      final UpdateRoomData first = buildChanges(NEW_NAME);
+      first.setVersion(0L);
+      final UpdateRoomData racing = buildChanges(NAME);
+      racing.setVersion(0L);
+      final UpdateRoomData next = buildChanges(NAME);
+      next.setVersion(1L);
+
+      // Act
+      final Optional<Room> firstStaged = roomUpdateService.stage(buildRoom(), first);
+      final Optional<Room> racingStaged = roomUpdateService.stage(buildRoom(), racing);
+      final Room latest = roomUpdateService.getRoom(VALID_ID).get();
+      final Optional<Room> nextStaged = roomUpdateService.stage(buildRoom(), next);
+
+      // Assert
+      Assert.assertTrue(firstStaged.isPresent());
+      Assert.assertFalse(racingStaged.isPresent());
+      Assert.assertEquals(firstStaged.get(), latest);
+      Assert.assertEquals(NEW_NAME, latest.getName());
+      Assert.assertEquals(Long.valueOf(2), nextStaged.get().getVersion());
+      Assert.assertEquals(NAME, roomUpdateService.getRoom(VALID_ID).get().getName());
+      Assert.assertEquals(1, roomUpdateService.getCoalescedUpdates());
+   }
+
+   @Test
+   public void testFlush_WritesLatestStateOnce() {
+      // Arrange
+      roomUpdateService.stage(buildRoom(), buildChanges(OTHER_NAME));
+      final Room renamed = roomUpdateService.stage(buildRoom(), buildChanges(NEW_NAME)).get();
+      when(roomDao.updateAll(anyList(), anyMap())).thenReturn(new int[] {1});
+
+      // Act
+      roomUpdateService.flush();
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao).updateAll(ImmutableList.of(renamed), ImmutableMap.of(VALID_ID, 0L));
+      verify(invalidationService).publish(ROOM, ImmutableList.of(VALID_ID));
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+      Assert.assertEquals(0, roomUpdateService.getConflicts());
+   }
+
+   @Test
+   public void testFlush_StagedDuringWriteIsBasedOnIt() {
+      // Arrange
+      final Room renamed = roomUpdateService.stage(buildRoom(), buildChanges(NEW_NAME)).get();
+      final Room[] changed = new Room[1];
+      when(roomDao.updateAll(anyList(), anyMap())).thenAnswer(invocation -> {
+         changed[0] = roomUpdateService.stage(buildRoom(), buildChanges(OTHER_NAME)).get();
+         return new int[] {1};
+      }).thenReturn(new int[] {1});
+
+      // Act
+      roomUpdateService.flush();
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao).updateAll(ImmutableList.of(renamed), ImmutableMap.of(VALID_ID, 0L));
+      verify(roomDao).updateAll(ImmutableList.of(changed[0]), ImmutableMap.of(VALID_ID, 1L));
+      Assert.assertEquals(Long.valueOf(2), changed[0].getVersion());
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+   }
+
+   @Test
+   public void testFlush_RoomWrittenElsewhereIsCounted() {
+      // Arrange
+      roomUpdateService.stage(buildRoom(), buildChanges(NAME));
+      when(roomDao.updateAll(anyList(), anyMap())).thenReturn(new int[] {0});
+
+      // Act
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao).updateAll(ImmutableList.of(buildRoom(VALID_ID, 1L)), ImmutableMap.of(VALID_ID, 0L));
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+      Assert.assertEquals(1, roomUpdateService.getConflicts());
+   }
+
+   @Test
+   public void testFlush_WritesInBatches() {
+      // Arrange
+      roomUpdateService.stage(buildRoom(VALID_ID), buildChanges(NEW_NAME));
+      roomUpdateService.stage(buildRoom(OTHER_ROOM_ID), buildChanges(NEW_NAME));
+      roomUpdateService.stage(buildRoom(THIRD_ROOM_ID), buildChanges(NEW_NAME));
+      final ArgumentCaptor<List<Room>> batchCaptor = ArgumentCaptor.forClass(List.class);
+      when(roomDao.updateAll(anyList(), anyMap())).thenReturn(new int[] {1, 1}).thenReturn(new int[] {1});
+
+      // Act
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao, times(2)).updateAll(batchCaptor.capture(), anyMap());
+
+      Assert.assertEquals(2, batchCaptor.getAllValues().get(0).size());
+      Assert.assertEquals(1, batchCaptor.getAllValues().get(1).size());
+   }
+
+   @Test
+   public void testFlush_FailedWriteIsRetried() {
+      // Arrange
+      final Room room = roomUpdateService.stage(buildRoom(), buildChanges(NEW_NAME)).get();
+      when(roomDao.updateAll(anyList(), anyMap())).thenThrow(new IllegalStateException("down"))
+            .thenReturn(new int[] {1});
+
+      // Act
+      roomUpdateService.flush();
+
+      // Assert
+      Assert.assertEquals(room, roomUpdateService.getRoom(VALID_ID).get());
+      Assert.assertEquals(1, roomUpdateService.getFailedFlushes());
+
+      // Act
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao, times(2)).updateAll(ImmutableList.of(room), ImmutableMap.of(VALID_ID, 0L));
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+   }
+
+   @Test
+   public void testFlush_ChangedDuringFailedWriteKeepsStoredVersion() {
+      // Arrange
+      final Room[] renamed = new Room[1];
+      roomUpdateService.stage(buildRoom(), buildChanges(OTHER_NAME));
+      when(roomDao.updateAll(anyList(), anyMap())).thenAnswer(invocation -> {
+         renamed[0] = roomUpdateService.stage(buildRoom(), buildChanges(NEW_NAME)).get();
+         throw new IllegalStateException("down");
+      }).thenReturn(new int[] {1});
+
+      // Act
+      roomUpdateService.flush();
+      roomUpdateService.flush();
+
+      // Assert
+      verify(roomDao).updateAll(ImmutableList.of(renamed[0]), ImmutableMap.of(VALID_ID, 0L));
+      Assert.assertEquals(Long.valueOf(2), renamed[0].getVersion());
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+   }
+
+   @Test
+   public void testDiscard_DropsStagedState() {
+      // Arrange
+      roomUpdateService.stage(buildRoom(), buildChanges(NEW_NAME));
+
+      // Act
+      roomUpdateService.discard(VALID_ID);
+      roomUpdateService.flush();
+
+      // Assert
+      verifyZeroInteractions(roomDao);
+      Assert.assertFalse(roomUpdateService.getRoom(VALID_ID).isPresent());
+   }
+
+   private UpdateRoomData buildChanges(final String name) {
+      final UpdateRoomData changes = new UpdateRoomData();
+      changes.setName(name);
+
+      return changes;
+   }
+
+   private Room buildRoom(final int id) {
+      final Room room = buildRoom();
+      room.setId(id);
+
+      return room;
+   }
+
+   private Room buildRoom(final int id, final long version) {
+      final Room room = buildRoom(id);
+      room.setVersion(version);
+
+      return room;
+   }
+}
@@ -0,0 +1,125 @@
+package app.service;
+
+import app.BaseTest;
+import app.dao.PlaylistSongDao;
+import app.util.IntIntHashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SongRecommendationServiceTest extends BaseTest {
+
+   private static final int OTHER_PLAYLIST_ID = 2;
+   private static final int THIRD_PLAYLIST_ID = 3;
+
+   @Mock
+   private PlaylistSongDao playlistSongDao;
+
+   @InjectMocks
+   private SongRecommendationService songRecommendationService;
+
+   @Before
+   public void setup() {
+      // Song 1 shares two playlists with song 2 and one with songs 3 and 4
+      doAnswer(invocation -> {
+         final IntIntHashMap.IntIntConsumer consumer = invocation.getArgument(0);
+         consumer.accept(VALID_ID, 1);
+         consumer.accept(VALID_ID, 2);
+         consumer.accept(VALID_ID, 3);
+         consumer.accept(OTHER_PLAYLIST_ID, 1);
+         consumer.accept(OTHER_PLAYLIST_ID, 2);
+         consumer.accept(OTHER_PLAYLIST_ID, 4);
+         consumer.accept(THIRD_PLAYLIST_ID, 5);
+         return null;
+      }).when(playlistSongDao).forEachPlaylistSong(any());
+
+      songRecommendationService.init();
+   }
+
+   @Test
+   public void testGetRelated_MostSharedPlaylistsFirst() {
+      // Act
+      final int[] related = songRecommendationService.getRelated(1, 10);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 3, 4}, related);
+      Assert.assertArrayEquals(new int[] {1, 2}, songRecommendationService.getRelated(4, 10));
+      Assert.assertArrayEquals(new int[0], songRecommendationService.getRelated(5, 10));
+   }
+
+   @Test
+   public void testGetRelated_Limit() {
+      // Act
+      final int[] related = songRecommendationService.getRelated(1, 2);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 3}, related);
+   }
+
+   @Test
+   public void testGetRelatedCounts() {
+      // Act
+      final IntIntHashMap counts = songRecommendationService.getRelatedCounts(1, 2);
+
+      // Assert
+      Assert.assertEquals(2, counts.size());
+      Assert.assertEquals(2, counts.get(2));
+      Assert.assertEquals(1, counts.get(3));
+   }
+
+   @Test
+   public void testAddSong_LinksSongsOfPlaylist() {
+      // Act
+      songRecommendationService.addSong(THIRD_PLAYLIST_ID, 1);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 3, 4, 5}, songRecommendationService.getRelated(1, 10));
+      Assert.assertArrayEquals(new int[] {1}, songRecommendationService.getRelated(5, 10));
+   }
+
+   @Test
+   public void testAddSong_SecondCopyCountsOnce() {
+      // Act
+      songRecommendationService.addSong(VALID_ID, 3);
+      songRecommendationService.removeSong(VALID_ID, 3);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 3, 4}, songRecommendationService.getRelated(1, 10));
+   }
+
+   @Test
+   public void testRemoveSong_UnlinksSongsOfPlaylist() {
+      // Act
+      songRecommendationService.removeSong(VALID_ID, 2);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 3, 4}, songRecommendationService.getRelated(1, 10));
+      Assert.assertArrayEquals(new int[] {1}, songRecommendationService.getRelated(3, 10));
+
+      // Act
+      songRecommendationService.removeSong(OTHER_PLAYLIST_ID, 2);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {3, 4}, songRecommendationService.getRelated(1, 10));
+      Assert.assertArrayEquals(new int[0], songRecommendationService.getRelated(2, 10));
+   }
+
+   @Test
+   public void testRemovePlaylist() {
+      // Act
+      songRecommendationService.removePlaylist(VALID_ID);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {2, 4}, songRecommendationService.getRelated(1, 10));
+      Assert.assertArrayEquals(new int[0], songRecommendationService.getRelated(3, 10));
+   }
+}
@@ -1,20 +1,28 @@
 package app.service;
 
 import app.BaseTest;
+import app.dao.PlaylistDao;
 import app.dao.SongDao;
 import app.exception.ApiException;
+import app.model.Playlist;
+import app.model.PlaylistPage;
 import app.model.Song;
 import app.validation.ValidationError;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.google.common.collect.ImmutableList;
 
@@ -22,6 +30,9 @@ import static org.assertj.core.api.Fail.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -32,9 +43,25 @@ public class SongServiceTest extends BaseTest {
    @Mock
    private SongDao songDao;
 
+   @Mock
+   private PlaylistDao playlistDao;
+
+   @Mock
+   private SongRecommendationService songRecommendationService;
+
+   @Mock
+   private InvalidationService invalidationService;
+
    @InjectMocks
    private SongService songService;
 
+   @Before
+   public void setUp() {
+      ReflectionTestUtils.setField(songService, "playlistCountCacheSize", 10L);
+      ReflectionTestUtils.setField(songService, "playlistCountCacheTtl", 60000L);
+      songService.init();
+   }
+
    @Test
    public void testGetSongById_ReturnsSong() {
 
@@ -75,6 +102,7 @@ public class SongServiceTest extends BaseTest {
 
       // Arrange
       final Song song = buildSong();
+      song.setId(VALID_ID);
       when(songDao.findByReference(REFERENCE)).thenReturn(Optional.empty());
 
       // Act
@@ -83,6 +111,7 @@ public class SongServiceTest extends BaseTest {
       // Assert
       verify(songDao).findByReference(anyString());
       verify(songDao).save(any(Song.class));
+      verify(invalidationService).publish(SONG, VALID_ID);
    }
 
    @Test
@@ -112,14 +141,13 @@ public class SongServiceTest extends BaseTest {
    public void testDeleteSongById_ValidId() {
 
       // Arrange
-      when(songDao.findById(VALID_ID)).thenReturn(Optional.of(buildSong()));
+      when(songDao.deleteRowById(VALID_ID)).thenReturn(1);
 
       // Act
       songService.deleteSongById(VALID_ID);
 
       // Assert
-      verify(songDao).findById(VALID_ID);
-      verify(songDao).deleteById(VALID_ID);
+      verify(songDao).deleteRowById(VALID_ID);
       verifyNoMoreInteractions(songDao);
    }
 
@@ -127,7 +155,7 @@ public class SongServiceTest extends BaseTest {
    public void testDeleteSongById_InvalidId() {
 
       // Arrange
-      when(songDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(songDao.deleteRowById(INVALID_ID)).thenReturn(0);
 
       // Act
       try {
@@ -135,7 +163,7 @@ public class SongServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          // Assert
-         verify(songDao).findById(INVALID_ID);
+         verify(songDao).deleteRowById(INVALID_ID);
          verifyNoMoreInteractions(songDao);
 
          Assert.assertEquals("Song does not exist", ex.getMessage());
@@ -178,4 +206,207 @@ public class SongServiceTest extends BaseTest {
 
       Assert.assertFalse(songs.isEmpty());
    }
+
+   @Test
+   public void testGetRelatedSongs_InRankedOrder() {
+
+      // Arrange
+      final Song first = buildSong();
+      first.setId(3);
+      final Song second = buildSong();
+      second.setId(2);
+      when(songRecommendationService.getRelated(VALID_ID, 10)).thenReturn(new int[] {3, 2});
+      when(songDao.findAllById(ImmutableList.of(3, 2))).thenReturn(ImmutableList.of(second, first));
+
+      // Act
+      final List<Song> songs = songService.getRelatedSongs(VALID_ID, 10);
+
+      // Assert
+      verify(songRecommendationService).getRelated(VALID_ID, 10);
+      verify(songDao).findAllById(ImmutableList.of(3, 2));
+      verifyNoMoreInteractions(songDao);
+
+      Assert.assertEquals(ImmutableList.of(first, second), songs);
+   }
+
+   @Test
+   public void testGetRelatedSongs_NoRelatedSongs() {
+
+      // Arrange
+      when(songRecommendationService.getRelated(VALID_ID, 10)).thenReturn(new int[0]);
+      when(songDao.existsById(VALID_ID)).thenReturn(true);
+
+      // Act
+      final List<Song> songs = songService.getRelatedSongs(VALID_ID, 10);
+
+      // Assert
+      verify(songDao).existsById(VALID_ID);
+      verifyNoMoreInteractions(songDao);
+
+      Assert.assertTrue(songs.isEmpty());
+   }
+
+   @Test
+   public void testGetRelatedSongs_SongNotFound() {
+
+      // Arrange
+      when(songRecommendationService.getRelated(INVALID_ID, 10)).thenReturn(new int[0]);
+      when(songDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         songService.getRelatedSongs(INVALID_ID, 10);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(songDao).existsById(INVALID_ID);
+         verifyNoMoreInteractions(songDao);
+
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ImmutableList.of("song"), ex.getFields());
+      }
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_PagesByCursor() {
+
+      // Arrange
+      final List<Playlist> firstPage = ImmutableList.of(buildPlaylist(3), buildPlaylist(5), buildPlaylist(8));
+      final List<Playlist> lastPage = ImmutableList.of(buildPlaylist(9));
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(3L);
+      when(playlistDao.findPublicBySongId(VALID_ID, 0, PageRequest.of(0, 3))).thenReturn(firstPage);
+      when(playlistDao.findPublicBySongId(VALID_ID, 5, PageRequest.of(0, 3))).thenReturn(lastPage);
+
+      // Act
+      final PlaylistPage first = songService.getPlaylistsWithSong(VALID_ID, null, 2);
+      final PlaylistPage last = songService.getPlaylistsWithSong(VALID_ID, first.getNextCursor(), 2);
+
+      // Assert
+      verify(playlistDao, times(1)).countPublicBySongId(VALID_ID);
+      verify(songDao, never()).existsById(anyInt());
+
+      Assert.assertEquals(firstPage.subList(0, 2), first.getPlaylists());
+      Assert.assertEquals(3L, first.getTotal());
+      Assert.assertEquals(lastPage, last.getPlaylists());
+      Assert.assertEquals(3L, last.getTotal());
+      Assert.assertNull(last.getNextCursor());
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_NoPlaylists() {
+
+      // Arrange
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(0L);
+      when(songDao.existsById(VALID_ID)).thenReturn(true);
+
+      // Act
+      final PlaylistPage page = songService.getPlaylistsWithSong(VALID_ID, null, 20);
+
+      // Assert
+      verify(playlistDao).countPublicBySongId(VALID_ID);
+      verify(playlistDao).findPublicBySongId(VALID_ID, 0, PageRequest.of(0, 21));
+      verifyNoMoreInteractions(playlistDao);
+
+      Assert.assertTrue(page.getPlaylists().isEmpty());
+      Assert.assertEquals(0L, page.getTotal());
+      Assert.assertNull(page.getNextCursor());
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_StaleCountStillReadsPage() {
+
+      // Arrange
+      final List<Playlist> playlists = ImmutableList.of(buildPlaylist(3));
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(0L);
+      when(playlistDao.findPublicBySongId(VALID_ID, 0, PageRequest.of(0, 21))).thenReturn(playlists);
+
+      // Act
+      final PlaylistPage page = songService.getPlaylistsWithSong(VALID_ID, null, 20);
+
+      // Assert
+      verify(songDao, never()).existsById(anyInt());
+
+      Assert.assertEquals(playlists, page.getPlaylists());
+      Assert.assertEquals(0L, page.getTotal());
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_SongNotFound() {
+
+      // Arrange
+      when(playlistDao.countPublicBySongId(INVALID_ID)).thenReturn(0L);
+      when(songDao.existsById(INVALID_ID)).thenReturn(false);
+
+      // Act
+      try {
+         songService.getPlaylistsWithSong(INVALID_ID, null, 20);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
+         Assert.assertEquals(ImmutableList.of(SONG), ex.getFields());
+      }
+   }
+
+   @Test
+   public void testGetPlaylistsWithSong_InvalidCursor() {
+
+      // Arrange
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(3L);
+
+      // Act
+      try {
+         songService.getPlaylistsWithSong(VALID_ID, "not a cursor", 20);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(playlistDao, never()).findPublicBySongId(anyInt(), anyInt(), any());
+
+         Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
+         Assert.assertEquals(ImmutableList.of("cursor"), ex.getFields());
+      }
+   }
+
+   @Test
+   public void testInit_FollowsSongsChangedElsewhere() {
+
+      // Arrange
+      final ArgumentCaptor<IntConsumer> listener = ArgumentCaptor.forClass(IntConsumer.class);
+      verify(invalidationService).subscribe(eq(SONG), listener.capture());
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(1L, 2L);
+      songService.getPlaylistCount(VALID_ID);
+
+      // Act
+      listener.getValue().accept(VALID_ID);
+
+      // Assert
+      Assert.assertEquals(2L, songService.getPlaylistCount(VALID_ID));
+      verify(invalidationService, never()).publish(anyString(), anyInt());
+   }
+
+   @Test
+   public void testEvictPlaylistCounts() {
+
+      // Arrange
+      when(playlistDao.countPublicBySongId(VALID_ID)).thenReturn(1L, 2L);
+
+      // Act
+      final long before = songService.getPlaylistCount(VALID_ID);
+      songService.evictPlaylistCounts(ImmutableList.of(VALID_ID));
+      final long after = songService.getPlaylistCount(VALID_ID);
+
+      // Assert
+      verify(playlistDao, times(2)).countPublicBySongId(VALID_ID);
+      verify(invalidationService).publish(SONG, ImmutableList.of(VALID_ID));
+
+      Assert.assertEquals(1L, before);
+      Assert.assertEquals(2L, after);
+   }
+
+   private Playlist buildPlaylist(final int id) {
+      final Playlist playlist = buildPlaylist();
+      playlist.setId(id);
+
+      return playlist;
+   }
 }
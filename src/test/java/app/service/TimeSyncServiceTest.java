@@ -0,0 +1,29 @@
+package app.service;
+
+import app.BaseTest;
+import app.model.TimeSync;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeSyncServiceTest extends BaseTest {
+
+   private static final long CLIENT_TIME = 1571443200000L;
+
+   private final TimeSyncService timeSyncService = new TimeSyncService();
+
+   @Test
+   public void testSample_StampsTransmitTime() {
+      // Arrange
+      final long receiveTime = System.currentTimeMillis();
+
+      // Act
+      final TimeSync sample = timeSyncService.sample(CLIENT_TIME, receiveTime);
+
+      // Assert
+      Assert.assertEquals(CLIENT_TIME, sample.getClientTime());
+      Assert.assertEquals(receiveTime, sample.getReceiveTime());
+      Assert.assertTrue(sample.getTransmitTime() >= receiveTime);
+      Assert.assertNull(sample.getType());
+   }
+}
@@ -19,6 +19,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DuplicateKeyException;
 
 import com.google.common.collect.ImmutableList;
 
@@ -26,8 +27,6 @@ import static org.assertj.core.api.Fail.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -36,28 +35,32 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class UserServiceTest extends BaseTest {
 
+   private static final long STALE_VERSION = 3;
+
    @Mock
    private UserDao userDao;
 
    @Mock
    private PlaylistDao playlistDao;
 
+   @Mock
+   private InvalidationService invalidationService;
+
    @InjectMocks
    private UserService userService;
 
    @Test
    public void testGetPlaylistsByUserId_ReturnsUser() {
       // Arrange
-      final User existingUser = buildUser();
       final Playlist playlist = buildPlaylist();
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(existingUser));
+      when(userDao.existsById(VALID_ID)).thenReturn(true);
       when(playlistDao.findByUserId(VALID_ID)).thenReturn(ImmutableList.of(playlist));
 
       // Act
       final List<Playlist> playlists = userService.getPlaylistsByUserId(VALID_ID);
 
       // Assert
-      verify(userDao).findById(VALID_ID);
+      verify(userDao).existsById(VALID_ID);
       verify(playlistDao).findByUserId(VALID_ID);
       verifyNoMoreInteractions(userDao);
       verifyNoMoreInteractions(playlistDao);
@@ -69,7 +72,7 @@ public class UserServiceTest extends BaseTest {
    @Test
    public void testGetPlaylistsByUserId_UserNotFound() {
       // Arrange
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.empty());
+      when(userDao.existsById(VALID_ID)).thenReturn(false);
 
       // Act
       try {
@@ -77,7 +80,7 @@ public class UserServiceTest extends BaseTest {
          fail("exception not thrown");
       } catch (ApiException ex) {
          //Assert
-         verify(userDao).findById(VALID_ID);
+         verify(userDao).existsById(VALID_ID);
          verifyNoMoreInteractions(userDao);
          verifyZeroInteractions(playlistDao);
 
@@ -155,6 +158,7 @@ public class UserServiceTest extends BaseTest {
       verify(userDao).findByUsernameOrEmail(anyString(), anyString());
       verify(userDao).save(any(User.class));
       verifyNoMoreInteractions(userDao);
+      verify(invalidationService).publish(USER, VALID_ID);
    }
 
 
@@ -263,35 +267,21 @@ public class UserServiceTest extends BaseTest {
    @Test
    public void testUpdateUser_Success_Email_And_Password() {
       //Arrange
-      final User user = buildUser();
-      user.setPasswordHash(OLD_PASSWORD);
-
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
-      when(userDao.findByEmail(anyString())).thenReturn(Optional.empty());
+      when(userDao.updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD)).thenReturn(1);
 
       //Act
-      final UpdateUserData updateUserData = buildUpdateUserData();
-      userService.updateUserById(VALID_ID, updateUserData);
+      userService.updateUserById(VALID_ID, buildUpdateUserData());
 
       //Assert
-      verify(userDao).findById(VALID_ID);
-      verify(userDao).findByEmail(anyString());
-      verify(userDao).save(any(User.class));
+      verify(userDao).updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD);
+      verify(invalidationService).publish(USER, VALID_ID);
       verifyNoMoreInteractions(userDao);
-
-      Assert.assertEquals(updateUserData.getEmail(), user.getEmail());
-      Assert.assertEquals(updateUserData.getPassword(), user.getPasswordHash());
-      Assert.assertNotNull(updateUserData.getEmail());
-      Assert.assertNotNull(updateUserData.getPassword());
    }
 
    @Test
    public void testUpdateUser_validEmail() {
       //Arrange
-      final User user = buildUser();
-
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
-      when(userDao.findByEmail(anyString())).thenReturn((Optional.empty()));
+      when(userDao.updatePartially(VALID_ID, null, DIFFERENT_EMAIL, null, null)).thenReturn(1);
 
       //Act
       final UpdateUserData updateUserData = buildUpdateUserData();
@@ -301,66 +291,67 @@ public class UserServiceTest extends BaseTest {
       userService.updateUserById(VALID_ID, updateUserData);
 
       //Assert
-      verify(userDao).findById(VALID_ID);
-      verify(userDao).findByEmail(anyString());
-      verify(userDao).save(any(User.class));
+      verify(userDao).updatePartially(VALID_ID, null, DIFFERENT_EMAIL, null, null);
+      verify(invalidationService).publish(USER, VALID_ID);
       verifyNoMoreInteractions(userDao);
-
-      Assert.assertEquals(updateUserData.getEmail(), user.getEmail());
-      Assert.assertEquals(PASSWORD, user.getPasswordHash());
    }
 
    @Test
    public void testUpdateUserById_validPassword() {
       //Arrange
-      final User user = buildUser();
-
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
+      when(userDao.updatePartially(VALID_ID, null, null, NEW_PASSWORD, PASSWORD)).thenReturn(1);
 
       //Act
       final UpdateUserData updateUserData = buildUpdateUserData();
       updateUserData.setOldPassword(PASSWORD);
-      updateUserData.setPassword("newPassword");
+      updateUserData.setPassword(NEW_PASSWORD);
       updateUserData.setEmail(null);
       userService.updateUserById(VALID_ID, updateUserData);
 
-      //Arrange
-      verify(userDao).findById(VALID_ID);
-      verify(userDao).save(any(User.class));
-      verify(userDao, never()).findByEmail(anyString());
+      //Assert
+      verify(userDao).updatePartially(VALID_ID, null, null, NEW_PASSWORD, PASSWORD);
       verifyNoMoreInteractions(userDao);
-
-      Assert.assertEquals(updateUserData.getPassword(), user.getPasswordHash());
-      Assert.assertEquals(EMAIL, user.getEmail());
    }
 
    @Test
    public void testUpdateUserById_validPassword_invalidOldPassword() {
       //Arrange
-      final User user = buildUser();
-
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
+      when(userDao.updatePartially(VALID_ID, null, null, null, null)).thenReturn(1);
 
       //Act
       final UpdateUserData updateUserData = buildUpdateUserData();
       updateUserData.setOldPassword(null);
-      updateUserData.setPassword("newPassword");
+      updateUserData.setPassword(NEW_PASSWORD);
       updateUserData.setEmail(null);
       userService.updateUserById(VALID_ID, updateUserData);
 
-      //Arrange
-      verify(userDao).findById(VALID_ID);
-      verify(userDao).save(any(User.class));
-      verify(userDao, never()).findByEmail(anyString());
+      //Assert
+      verify(userDao).updatePartially(VALID_ID, null, null, null, null);
       verifyNoMoreInteractions(userDao);
+      verifyZeroInteractions(invalidationService);
+   }
 
-      Assert.assertNotEquals(updateUserData.getPassword(), user.getPasswordHash());
-      Assert.assertEquals(EMAIL, user.getEmail());
+   @Test
+   public void testUpdateUserById_OwnEmail() {
+      //Arrange
+      when(userDao.updatePartially(VALID_ID, null, EMAIL, null, null)).thenReturn(1);
+
+      //Act
+      final UpdateUserData updateUserData = buildUpdateUserData();
+      updateUserData.setPassword(null);
+      updateUserData.setOldPassword(null);
+      userService.updateUserById(VALID_ID, updateUserData);
+
+      //Assert
+      verify(userDao).updatePartially(VALID_ID, null, EMAIL, null, null);
+      verify(invalidationService).publish(USER, VALID_ID);
+      verifyNoMoreInteractions(userDao);
    }
 
    @Test
    public void testUpdateUserById_InvalidId() {
       //Arrange
+      when(userDao.updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD)).thenReturn(0);
       when(userDao.findById(VALID_ID)).thenReturn(Optional.empty());
 
       //Act
@@ -370,8 +361,10 @@ public class UserServiceTest extends BaseTest {
          fail("exception not thrown");
       } catch (ApiException ex) {
          //Assert
+         verify(userDao).updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD);
          verify(userDao).findById(VALID_ID);
          verifyNoMoreInteractions(userDao);
+         verifyZeroInteractions(invalidationService);
 
          Assert.assertEquals("User does not exist", ex.getMessage());
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
@@ -383,11 +376,9 @@ public class UserServiceTest extends BaseTest {
    @Test
    public void testUpdateUserByID_EmailAlreadyExists() {
       // Arrange
-      final User user = buildUser();
-      user.setPasswordHash(OLD_PASSWORD);
       final UpdateUserData updateUserData = buildUpdateUserData();
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
-      when(userDao.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+      when(userDao.updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD))
+            .thenThrow(new DuplicateKeyException("Duplicate entry"));
 
       // Act
       try {
@@ -395,16 +386,13 @@ public class UserServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          // Assert
-         verify(userDao).findById(VALID_ID);
-         verify(userDao).findByEmail(EMAIL);
-         verify(userDao, times(0)).save(user);
+         verify(userDao).updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD);
          verifyNoMoreInteractions(userDao);
 
          Assert.assertEquals("Email already exists", ex.getMessage());
          Assert.assertEquals(ValidationError.DUPLICATE_VALUE, ex.getError());
          Assert.assertEquals(1, ex.getFields().size());
          Assert.assertTrue(ex.getFields().contains("email"));
-         Assert.assertNotNull(updateUserData.getEmail());
       }
    }
 
@@ -413,6 +401,7 @@ public class UserServiceTest extends BaseTest {
       // Arrange
       final User user = buildUser();
       final UpdateUserData updateUserData = buildUpdateUserData();
+      when(userDao.updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD)).thenReturn(0);
       when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
 
       // Act
@@ -421,16 +410,41 @@ public class UserServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          // Assert
+         verify(userDao).updatePartially(VALID_ID, null, EMAIL, PASSWORD, OLD_PASSWORD);
          verify(userDao).findById(VALID_ID);
-         verify(userDao, times(0)).findByEmail(EMAIL);
-         verify(userDao, times(0)).save(user);
          verifyNoMoreInteractions(userDao);
 
          Assert.assertEquals("Old password isn't correct", ex.getMessage());
          Assert.assertEquals(ValidationError.BAD_VALUE, ex.getError());
          Assert.assertEquals(1, ex.getFields().size());
          Assert.assertTrue(ex.getFields().contains("oldPassword"));
-         Assert.assertNotNull(updateUserData.getPassword());
+      }
+   }
+
+   @Test
+   public void testUpdateUserByID_StaleVersion() {
+      // Arrange
+      final User user = buildUser();
+      user.setPasswordHash(OLD_PASSWORD);
+      final UpdateUserData updateUserData = buildUpdateUserData();
+      updateUserData.setVersion(STALE_VERSION);
+      when(userDao.updatePartially(VALID_ID, STALE_VERSION, EMAIL, PASSWORD, OLD_PASSWORD)).thenReturn(0);
+      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
+
+      // Act
+      try {
+         userService.updateUserById(VALID_ID, updateUserData);
+         fail("Exception not thrown");
+      } catch (ApiException ex) {
+         // Assert
+         verify(userDao).updatePartially(VALID_ID, STALE_VERSION, EMAIL, PASSWORD, OLD_PASSWORD);
+         verify(userDao).findById(VALID_ID);
+         verifyNoMoreInteractions(userDao);
+         verifyZeroInteractions(invalidationService);
+
+         Assert.assertEquals("User was changed by another update", ex.getMessage());
+         Assert.assertEquals(ValidationError.CONFLICT, ex.getError());
+         Assert.assertTrue(ex.getFields().contains(VERSION));
       }
    }
 
@@ -453,22 +467,21 @@ public class UserServiceTest extends BaseTest {
    @Test
    public void testDeleteUserById_validID() {
       //Arrange
-      final User user = buildUser();
-      when(userDao.findById(VALID_ID)).thenReturn(Optional.of(user));
+      when(userDao.deleteRowById(VALID_ID)).thenReturn(1);
 
       //Act
       userService.deleteUserById(VALID_ID);
 
       //Assert
-      verify(userDao).findById(VALID_ID);
-      verify(userDao).deleteById(VALID_ID);
+      verify(userDao).deleteRowById(VALID_ID);
+      verify(invalidationService).publish(USER, VALID_ID);
       verifyNoMoreInteractions(userDao);
    }
 
    @Test
    public void testDeleteUserById_invalidID() {
       //Arrange
-      when(userDao.findById(INVALID_ID)).thenReturn(Optional.empty());
+      when(userDao.deleteRowById(INVALID_ID)).thenReturn(0);
 
       //Act
       try {
@@ -476,8 +489,9 @@ public class UserServiceTest extends BaseTest {
          fail("Exception not thrown");
       } catch (ApiException ex) {
          //Assert
-         verify(userDao).findById(INVALID_ID);
+         verify(userDao).deleteRowById(INVALID_ID);
          verifyNoMoreInteractions(userDao);
+         verifyZeroInteractions(invalidationService);
 
          Assert.assertEquals(ValidationError.NOT_FOUND, ex.getError());
          Assert.assertEquals("User does not exist", ex.getMessage());
@@ -0,0 +1,51 @@
+package app.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AliasTableTest {
+
+   private static final int DRAWS = 100000;
+
+   @Test
+   public void testSample_ProportionalToWeights() {
+      // Arrange
+      final double[] weights = {1, 2, 0, 7};
+      final AliasTable table = new AliasTable(weights);
+      final Random random = new Random(3);
+      final int[] counts = new int[weights.length];
+
+      // Act
+      for (int i = 0; i < DRAWS; i++) {
+         counts[table.sample(random)]++;
+      }
+
+      // Assert
+      Assert.assertEquals(0.1, (double) counts[0] / DRAWS, 0.01);
+      Assert.assertEquals(0.2, (double) counts[1] / DRAWS, 0.01);
+      Assert.assertEquals(0, counts[2]);
+      Assert.assertEquals(0.7, (double) counts[3] / DRAWS, 0.01);
+   }
+
+   @Test
+   public void testSample_SingleWeight() {
+      // Arrange
+      final AliasTable table = new AliasTable(new double[] {0.5});
+
+      // Assert
+      Assert.assertEquals(0, table.sample(new Random()));
+      Assert.assertEquals(1, table.size());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testAliasTable_ZeroTotal() {
+      new AliasTable(new double[] {0, 0});
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testAliasTable_NegativeWeight() {
+      new AliasTable(new double[] {1, -1});
+   }
+}
@@ -0,0 +1,109 @@
+package app.util;
+
+import java.io.IOException;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncSendSessionTest {
+
+   private static final long SEND_TIME_LIMIT = 5000;
+   private static final TextMessage FIRST = new TextMessage("first");
+   private static final TextMessage SECOND = new TextMessage("second");
+   private static final TextMessage THIRD = new TextMessage("third");
+
+   @Mock
+   private NativeWebSocketSession delegate;
+
+   @Mock
+   private Session nativeSession;
+
+   @Mock
+   private RemoteEndpoint.Async remote;
+
+   @Captor
+   private ArgumentCaptor<SendHandler> handlerCaptor;
+
+   private AsyncSendSession session;
+
+   @Before
+   public void setup() {
+      when(delegate.getNativeSession(Session.class)).thenReturn(nativeSession);
+      when(nativeSession.getAsyncRemote()).thenReturn(remote);
+
+      // Room for the second message only
+      session = new AsyncSendSession(delegate, SEND_TIME_LIMIT, SECOND.getPayloadLength());
+   }
+
+   @Test
+   public void testSendMessage_QueuedBehindWriteInProgress() throws IOException {
+      // Act
+      session.sendMessage(FIRST);
+      session.sendMessage(SECOND);
+
+      // Assert
+      verify(remote).setSendTimeout(SEND_TIME_LIMIT);
+      verify(remote).sendText(eq(FIRST.getPayload()), handlerCaptor.capture());
+      verify(remote, never()).sendText(eq(SECOND.getPayload()), any());
+      Assert.assertEquals(SECOND.getPayloadLength(), session.getBufferSize());
+
+      // Act
+      handlerCaptor.getValue().onResult(new SendResult());
+
+      // Assert
+      verify(remote).sendText(eq(SECOND.getPayload()), any());
+      Assert.assertEquals(0, session.getBufferSize());
+   }
+
+   @Test
+   public void testSendMessage_BufferFullClosesSession() throws IOException {
+      // Act
+      session.sendMessage(FIRST);
+      session.sendMessage(SECOND);
+      session.sendMessage(THIRD);
+      session.sendMessage(FIRST);
+
+      // Assert
+      verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+      verify(remote).sendText(anyString(), any());
+      Assert.assertEquals(0, session.getBufferSize());
+   }
+
+   @Test
+   public void testSendMessage_FailedWriteClosesSession() throws IOException {
+      // Arrange
+      session.sendMessage(FIRST);
+      session.sendMessage(SECOND);
+      verify(remote).sendText(eq(FIRST.getPayload()), handlerCaptor.capture());
+
+      // Act
+      handlerCaptor.getValue().onResult(new SendResult(new IOException("timed out")));
+
+      // Assert
+      verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+      verify(remote, never()).sendText(eq(SECOND.getPayload()), any());
+      Assert.assertEquals(0, session.getBufferSize());
+   }
+}
@@ -0,0 +1,99 @@
+package app.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockingCallLimiterTest {
+
+   @Test
+   public void testCall_ReturnsResult() throws Throwable {
+      // Arrange
+      final BlockingCallLimiter limiter = new BlockingCallLimiter(1);
+
+      // Act
+      final String result = limiter.call(() -> "result");
+
+      // Assert
+      Assert.assertEquals("result", result);
+      Assert.assertEquals(1, limiter.getCompletedCalls());
+      Assert.assertEquals(0, limiter.getActiveCalls());
+   }
+
+   @Test
+   public void testCall_ReleasesPermitWhenCallThrows() throws Throwable {
+      // Arrange
+      final BlockingCallLimiter limiter = new BlockingCallLimiter(1);
+
+      // Act
+      try {
+         limiter.call(() -> {
+            throw new IllegalStateException("failure");
+         });
+         Assert.fail("Exception not thrown");
+      } catch (IllegalStateException ex) {
+         // Assert
+         Assert.assertEquals("failure", ex.getMessage());
+         Assert.assertEquals(0, limiter.getActiveCalls());
+      }
+   }
+
+   @Test
+   public void testCall_NestedCallDoesNotDeadlock() throws Throwable {
+      // Arrange
+      final BlockingCallLimiter limiter = new BlockingCallLimiter(1);
+
+      // Act
+      final int result = limiter.call(() -> limiter.call(() -> 1));
+
+      // Assert
+      Assert.assertEquals(1, result);
+   }
+
+   @Test
+   public void testCall_LimitsConcurrentCalls() throws Exception {
+      // Arrange
+      final int maxConcurrentCalls = 2;
+      final BlockingCallLimiter limiter = new BlockingCallLimiter(maxConcurrentCalls);
+      final ExecutorService executor = Executors.newFixedThreadPool(8);
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      final CountDownLatch done = new CountDownLatch(16);
+
+      // Act
+      for (int i = 0; i < 16; i++) {
+         executor.execute(() -> {
+            try {
+               limiter.call(() -> {
+                  maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                  Thread.sleep(5);
+                  running.decrementAndGet();
+                  return null;
+               });
+            } catch (Throwable ex) {
+               throw new IllegalStateException(ex);
+            } finally {
+               done.countDown();
+            }
+         });
+      }
+
+      // Assert
+      Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+      executor.shutdown();
+
+      Assert.assertTrue(maxRunning.get() <= maxConcurrentCalls);
+      Assert.assertEquals(16, limiter.getCompletedCalls());
+      Assert.assertTrue(limiter.getMaxWaitMillis() >= limiter.getAverageWaitMillis());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testConstructor_InvalidLimit() {
+      new BlockingCallLimiter(0);
+   }
+}
@@ -0,0 +1,124 @@
+package app.util;
+
+import app.model.ChatMessage;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChatRingBufferTest {
+
+   @Test
+   public void testAppend_AssignsSequence() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(4);
+      final ChatMessage message = buildMessage("first");
+
+      // Act
+      final long sequence = buffer.append(message);
+
+      // Assert
+      Assert.assertEquals(1, sequence);
+      Assert.assertEquals(1, message.getSequence());
+      Assert.assertEquals(1, buffer.getLastSequence());
+   }
+
+   @Test
+   public void testSince_ReturnsNewerMessagesInOrder() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(4);
+      buffer.append(buildMessage("first"));
+      buffer.append(buildMessage("second"));
+      buffer.append(buildMessage("third"));
+
+      // Act
+      final List<ChatMessage> messages = buffer.since(1);
+
+      // Assert
+      Assert.assertEquals(2, messages.size());
+      Assert.assertEquals("second", messages.get(0).getText());
+      Assert.assertEquals("third", messages.get(1).getText());
+   }
+
+   @Test
+   public void testSince_OverwritesOldestWhenFull() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(2);
+      buffer.append(buildMessage("first"));
+      buffer.append(buildMessage("second"));
+      buffer.append(buildMessage("third"));
+
+      // Act
+      final List<ChatMessage> messages = buffer.since(0);
+
+      // Assert
+      Assert.assertEquals(2, messages.size());
+      Assert.assertEquals(2, messages.get(0).getSequence());
+      Assert.assertEquals(3, messages.get(1).getSequence());
+   }
+
+   @Test
+   public void testSince_UpToDate() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(2);
+      buffer.append(buildMessage("first"));
+
+      // Act
+      final List<ChatMessage> messages = buffer.since(1);
+
+      // Assert
+      Assert.assertTrue(messages.isEmpty());
+   }
+
+   @Test
+   public void testSince_CursorFromEarlierHistoryGetsEverything() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(2);
+      buffer.append(buildMessage("first"));
+
+      // Act
+      final List<ChatMessage> messages = buffer.since(5);
+
+      // Assert
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("first", messages.get(0).getText());
+   }
+
+   @Test
+   public void testRestore_KeepsSequence() {
+      // Arrange
+      final ChatRingBuffer buffer = new ChatRingBuffer(4);
+      final ChatMessage saved = buildMessage("saved");
+      saved.setSequence(41);
+      final ChatMessage unnumbered = buildMessage("unnumbered");
+
+      // Act
+      buffer.restore(saved);
+      buffer.restore(unnumbered);
+      final long sequence = buffer.append(buildMessage("new"));
+
+      // Assert
+      Assert.assertEquals(41, saved.getSequence());
+      Assert.assertEquals(42, unnumbered.getSequence());
+      Assert.assertEquals(43, sequence);
+      Assert.assertEquals(2, buffer.since(41).size());
+   }
+
+   @Test
+   public void testSince_Empty() {
+      // Act
+      final List<ChatMessage> messages = new ChatRingBuffer(2).since(0);
+
+      // Assert
+      Assert.assertTrue(messages.isEmpty());
+   }
+
+   private ChatMessage buildMessage(final String text) {
+      return ChatMessage.builder()
+            .roomId(1)
+            .userId(1)
+            .text(text)
+            .build();
+   }
+}
@@ -0,0 +1,78 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClockOffsetEstimatorTest {
+
+   private static final long LOCAL_TIME = 1571443200000L;
+   private static final long OFFSET = 1234;
+
+   @Test
+   public void testGetOffset_SymmetricDelay() {
+      // Arrange
+      final ClockOffsetEstimator estimator = new ClockOffsetEstimator(8);
+
+      // Act
+      addSample(estimator, LOCAL_TIME, 20, 20);
+
+      // Assert
+      Assert.assertTrue(estimator.hasEstimate());
+      Assert.assertEquals(OFFSET, estimator.getOffset());
+      Assert.assertEquals(40, estimator.getRoundTripTime());
+      Assert.assertEquals(LOCAL_TIME + OFFSET, estimator.toServerTime(LOCAL_TIME));
+   }
+
+   @Test
+   public void testGetOffset_IgnoresSlowSamples() {
+      // Arrange
+      final ClockOffsetEstimator estimator = new ClockOffsetEstimator(8);
+
+      // Act
+      addSample(estimator, LOCAL_TIME, 10, 10);
+      addSample(estimator, LOCAL_TIME + 100, 400, 10);
+      addSample(estimator, LOCAL_TIME + 200, 11, 10);
+      addSample(estimator, LOCAL_TIME + 300, 10, 250);
+
+      // Assert
+      Assert.assertEquals(20, estimator.getRoundTripTime());
+      Assert.assertEquals(10, estimator.getErrorBound());
+      Assert.assertTrue(Math.abs(estimator.getOffset() - OFFSET) <= 1);
+   }
+
+   @Test
+   public void testGetOffset_DropsOldSamples() {
+      // Arrange
+      final ClockOffsetEstimator estimator = new ClockOffsetEstimator(2);
+      estimator.addSample(LOCAL_TIME, LOCAL_TIME + 5000, LOCAL_TIME + 5000, LOCAL_TIME + 2);
+
+      // Act
+      addSample(estimator, LOCAL_TIME + 100, 30, 30);
+      addSample(estimator, LOCAL_TIME + 200, 30, 30);
+
+      // Assert
+      Assert.assertEquals(OFFSET, estimator.getOffset());
+      Assert.assertEquals(60, estimator.getRoundTripTime());
+   }
+
+   @Test
+   public void testGetOffset_NoSamples() {
+      // Arrange
+      final ClockOffsetEstimator estimator = new ClockOffsetEstimator(8);
+
+      // Assert
+      Assert.assertFalse(estimator.hasEstimate());
+      Assert.assertEquals(0, estimator.getOffset());
+      Assert.assertEquals(LOCAL_TIME, estimator.toServerTime(LOCAL_TIME));
+   }
+
+   /**
+    * Simulate a sample against a server whose clock is OFFSET ahead, with the given one-way delays.
+    */
+   private void addSample(final ClockOffsetEstimator estimator, final long sendTime, final long requestDelay,
+                          final long replyDelay) {
+      final long serverReceiveTime = sendTime + requestDelay + OFFSET;
+      final long serverSendTime = serverReceiveTime + 1;
+      estimator.addSample(sendTime, serverReceiveTime, serverSendTime, serverSendTime - OFFSET + replyDelay);
+   }
+}
@@ -0,0 +1,84 @@
+package app.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ConsistentHashRingTest {
+
+   private static final String NODE_A = "http://localhost:8000/api";
+   private static final String NODE_B = "http://localhost:8002/api";
+   private static final String NODE_C = "http://localhost:8004/api";
+   private static final int KEYS = 30000;
+
+   @Test
+   public void testGetOwner_SameOnEveryRing() {
+      // Arrange
+      final ConsistentHashRing<String> ring = new ConsistentHashRing<>(ImmutableList.of(NODE_A, NODE_B, NODE_C), 160);
+      final ConsistentHashRing<String> reordered = new ConsistentHashRing<>(ImmutableList.of(NODE_C, NODE_A, NODE_B),
+            160);
+
+      // Act & Assert
+      for (int key = 1; key <= KEYS; key++) {
+         Assert.assertEquals(ring.getOwner(key), reordered.getOwner(key));
+      }
+   }
+
+   @Test
+   public void testGetOwner_SpreadsKeysEvenly() {
+      // Arrange
+      final ConsistentHashRing<String> ring = new ConsistentHashRing<>(ImmutableList.of(NODE_A, NODE_B, NODE_C), 160);
+      final Map<String, Integer> counts = new HashMap<>();
+
+      // Act
+      for (int key = 1; key <= KEYS; key++) {
+         counts.merge(ring.getOwner(key), 1, Integer::sum);
+      }
+
+      // Assert
+      Assert.assertEquals(3, counts.size());
+      for (int count : counts.values()) {
+         Assert.assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2);
+      }
+   }
+
+   @Test
+   public void testGetOwner_RemovingMemberOnlyMovesItsKeys() {
+      // Arrange
+      final ConsistentHashRing<String> before = new ConsistentHashRing<>(ImmutableList.of(NODE_A, NODE_B, NODE_C),
+            160);
+
+      // Act
+      final ConsistentHashRing<String> after = new ConsistentHashRing<>(ImmutableList.of(NODE_A, NODE_B), 160);
+
+      // Assert
+      for (int key = 1; key <= KEYS; key++) {
+         if (!NODE_C.equals(before.getOwner(key))) {
+            Assert.assertEquals(before.getOwner(key), after.getOwner(key));
+         }
+      }
+   }
+
+   @Test
+   public void testGetOwner_EmptyRing() {
+      // Arrange
+      final ConsistentHashRing<String> ring = new ConsistentHashRing<>(ImmutableList.of(), 160);
+
+      // Assert
+      Assert.assertNull(ring.getOwner(1));
+      Assert.assertTrue(ring.getMembers().isEmpty());
+   }
+
+   @Test
+   public void testGetMembers_SortedWithoutDuplicates() {
+      // Arrange
+      final ConsistentHashRing<String> ring = new ConsistentHashRing<>(ImmutableList.of(NODE_B, NODE_A, NODE_B), 10);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of(NODE_A, NODE_B), ring.getMembers());
+   }
+}
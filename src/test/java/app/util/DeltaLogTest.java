@@ -0,0 +1,94 @@
+package app.util;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class DeltaLogTest {
+
+   @Test
+   public void testSince_ReturnsNewerChangesInOrder() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(4);
+      log.append(1, "first");
+      log.append(2, "second");
+      log.append(3, "third");
+
+      // Act
+      final Optional<List<String>> deltas = log.since(1);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of("second", "third"), deltas.get());
+   }
+
+   @Test
+   public void testSince_UpToDate() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(4);
+      log.append(1, "first");
+
+      // Assert
+      Assert.assertTrue(log.since(1).get().isEmpty());
+      Assert.assertTrue(new DeltaLog<String>(4).since(0).get().isEmpty());
+   }
+
+   @Test
+   public void testSince_OverwrittenChanges() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(2);
+      log.append(1, "first");
+      log.append(2, "second");
+      log.append(3, "third");
+
+      // Assert
+      Assert.assertFalse(log.since(0).isPresent());
+      Assert.assertEquals(ImmutableList.of("second", "third"), log.since(1).get());
+      Assert.assertEquals(2, log.getSize());
+   }
+
+   @Test
+   public void testSince_AheadOfLog() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(4);
+      log.append(1, "first");
+
+      // Assert
+      Assert.assertFalse(log.since(5).isPresent());
+   }
+
+   @Test
+   public void testAppend_GapDropsOlderChanges() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(4);
+      log.append(1, "first");
+      log.append(2, "second");
+
+      // Act
+      log.append(7, "seventh");
+
+      // Assert
+      Assert.assertFalse(log.since(2).isPresent());
+      Assert.assertEquals(ImmutableList.of("seventh"), log.since(6).get());
+      Assert.assertEquals(7, log.getLastVersion());
+   }
+
+   @Test
+   public void testReset_StartsFromVersion() {
+      // Arrange
+      final DeltaLog<String> log = new DeltaLog<>(4);
+      log.append(1, "first");
+
+      // Act
+      log.reset(10);
+      log.append(11, "eleventh");
+
+      // Assert
+      Assert.assertTrue(log.since(11).get().isEmpty());
+      Assert.assertEquals(ImmutableList.of("eleventh"), log.since(10).get());
+      Assert.assertFalse(log.since(9).isPresent());
+   }
+}
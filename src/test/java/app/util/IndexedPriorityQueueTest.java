@@ -0,0 +1,106 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class IndexedPriorityQueueTest {
+
+   @Test
+   public void testPoll_HighestPriorityFirst() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+      queue.offer("low", 1);
+      queue.offer("high", 5);
+      queue.offer("middle", 3);
+
+      // Act
+      final String first = queue.poll();
+
+      // Assert
+      Assert.assertEquals("high", first);
+      Assert.assertEquals("middle", queue.peek());
+      Assert.assertEquals(2, queue.size());
+   }
+
+   @Test
+   public void testPoll_TiesInInsertionOrder() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+      queue.offer("first", 2);
+      queue.offer("second", 2);
+      queue.offer("third", 2);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of("first", "second", "third"), queue.toSortedList());
+      Assert.assertEquals("first", queue.poll());
+   }
+
+   @Test
+   public void testOffer_DuplicateKey() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+      queue.offer("song", 1);
+
+      // Act
+      final boolean added = queue.offer("song", 10);
+
+      // Assert
+      Assert.assertFalse(added);
+      Assert.assertEquals(1, queue.size());
+   }
+
+   @Test
+   public void testUpdate_MovesKeyUpAndDown() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+      queue.offer("a", 3);
+      queue.offer("b", 2);
+      queue.offer("c", 1);
+
+      // Act
+      queue.update("c", 4);
+      queue.update("a", 0);
+
+      // Assert
+      Assert.assertEquals(ImmutableList.of("c", "b", "a"), queue.toSortedList());
+   }
+
+   @Test
+   public void testUpdate_MissingKey() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+
+      // Assert
+      Assert.assertFalse(queue.update("missing", 1));
+      Assert.assertTrue(queue.isEmpty());
+   }
+
+   @Test
+   public void testRemove_KeepsHeapOrder() {
+      // Arrange
+      final IndexedPriorityQueue<Integer> queue = new IndexedPriorityQueue<>();
+      for (int i = 0; i < 10; i++) {
+         queue.offer(i, i);
+      }
+
+      // Act
+      final boolean removed = queue.remove(7);
+
+      // Assert
+      Assert.assertTrue(removed);
+      Assert.assertFalse(queue.contains(7));
+      Assert.assertEquals(ImmutableList.of(9, 8, 6, 5, 4, 3, 2, 1, 0), queue.toSortedList());
+   }
+
+   @Test
+   public void testPoll_Empty() {
+      // Arrange
+      final IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<>();
+
+      // Assert
+      Assert.assertNull(queue.poll());
+      Assert.assertNull(queue.peek());
+   }
+}
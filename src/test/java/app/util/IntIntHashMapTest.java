@@ -0,0 +1,96 @@
+package app.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntIntHashMapTest {
+
+   @Test
+   public void testAddTo_CountsPerKey() {
+      // Arrange
+      final IntIntHashMap map = new IntIntHashMap();
+
+      // Act
+      map.addTo(7, 1);
+      map.addTo(7, 2);
+      map.addTo(9, 1);
+
+      // Assert
+      Assert.assertEquals(3, map.get(7));
+      Assert.assertEquals(1, map.get(9));
+      Assert.assertEquals(0, map.get(8));
+      Assert.assertEquals(2, map.size());
+   }
+
+   @Test
+   public void testAddTo_ZeroValueRemovesKey() {
+      // Arrange
+      final IntIntHashMap map = new IntIntHashMap();
+      map.addTo(7, 2);
+
+      // Act
+      final int value = map.addTo(7, -2);
+
+      // Assert
+      Assert.assertEquals(0, value);
+      Assert.assertFalse(map.containsKey(7));
+      Assert.assertTrue(map.isEmpty());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testAddTo_ReservedKey() {
+      new IntIntHashMap().addTo(0, 1);
+   }
+
+   @Test
+   public void testKeys() {
+      // Arrange
+      final IntIntHashMap map = new IntIntHashMap();
+      map.addTo(3, 1);
+      map.addTo(1, 1);
+      map.addTo(2, 1);
+
+      // Act
+      final int[] keys = map.keys();
+
+      // Assert
+      Arrays.sort(keys);
+      Assert.assertArrayEquals(new int[] {1, 2, 3}, keys);
+   }
+
+   @Test
+   public void testMatchesHashMap_ManyAddsAndRemoves() {
+      // Arrange
+      final IntIntHashMap map = new IntIntHashMap();
+      final Map<Integer, Integer> expected = new HashMap<>();
+      final Random random = new Random(42);
+
+      // Act
+      for (int i = 0; i < 100000; i++) {
+         final int key = random.nextInt(2000) + 1;
+         if (random.nextInt(3) == 0) {
+            map.remove(key);
+            expected.remove(key);
+         }
+         else {
+            map.addTo(key, 1);
+            expected.merge(key, 1, Integer::sum);
+         }
+      }
+
+      // Assert
+      Assert.assertEquals(expected.size(), map.size());
+      for (int key = 1; key <= 2000; key++) {
+         Assert.assertEquals(expected.getOrDefault(key, 0).intValue(), map.get(key));
+      }
+
+      final Map<Integer, Integer> visited = new HashMap<>();
+      map.forEach(visited::put);
+      Assert.assertEquals(expected, visited);
+   }
+}
@@ -0,0 +1,65 @@
+package app.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntObjectHashMapTest {
+
+   @Test
+   public void testPutAndGet() {
+      // Arrange
+      final IntObjectHashMap<String> map = new IntObjectHashMap<>();
+
+      // Act
+      final String previous = map.put(5, "five");
+      final String replaced = map.put(5, "FIVE");
+
+      // Assert
+      Assert.assertNull(previous);
+      Assert.assertEquals("five", replaced);
+      Assert.assertEquals("FIVE", map.get(5));
+      Assert.assertNull(map.get(6));
+      Assert.assertEquals(1, map.size());
+   }
+
+   @Test
+   public void testComputeIfAbsent_CreatesOnce() {
+      // Arrange
+      final IntObjectHashMap<StringBuilder> map = new IntObjectHashMap<>();
+
+      // Act
+      map.computeIfAbsent(3, key -> new StringBuilder()).append("a");
+      map.computeIfAbsent(3, key -> new StringBuilder()).append("b");
+
+      // Assert
+      Assert.assertEquals("ab", map.get(3).toString());
+      Assert.assertEquals(1, map.size());
+   }
+
+   @Test
+   public void testRemove_KeepsCollidingKeysReachable() {
+      // Arrange
+      final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+      for (int key = 1; key <= 1000; key++) {
+         map.put(key, key);
+      }
+
+      // Act
+      for (int key = 1; key <= 1000; key += 2) {
+         map.remove(key);
+      }
+
+      // Assert
+      Assert.assertEquals(500, map.size());
+      for (int key = 1; key <= 1000; key++) {
+         Assert.assertEquals(key % 2 == 0 ? Integer.valueOf(key) : null, map.get(key));
+      }
+
+      final Map<Integer, Integer> visited = new HashMap<>();
+      map.forEach(visited::put);
+      Assert.assertEquals(500, visited.size());
+   }
+}
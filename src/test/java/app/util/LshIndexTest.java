@@ -0,0 +1,50 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LshIndexTest {
+
+   private static final int BANDS = 16;
+   private static final int ROWS = 4;
+
+   private final MinHash minHash = new MinHash(BANDS * ROWS);
+
+   @Test
+   public void testCandidates_FindsSimilarSet() {
+      // Arrange
+      final LshIndex index = new LshIndex(BANDS, ROWS);
+      index.add(1, minHash.signature(range(1, 100)));
+      index.add(2, minHash.signature(range(1000, 1100)));
+
+      // Act
+      final IntIntHashMap candidates = index.candidates(minHash.signature(range(5, 100)));
+
+      // Assert
+      Assert.assertTrue(candidates.get(1) > 0);
+      Assert.assertFalse(candidates.containsKey(2));
+   }
+
+   @Test
+   public void testRemove() {
+      // Arrange
+      final LshIndex index = new LshIndex(BANDS, ROWS);
+      final int[] signature = minHash.signature(range(1, 100));
+      index.add(1, signature);
+
+      // Act
+      index.remove(1, signature);
+
+      // Assert
+      Assert.assertTrue(index.candidates(signature).isEmpty());
+   }
+
+   private static int[] range(final int from, final int to) {
+      final int[] ids = new int[to - from];
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = from + i;
+      }
+
+      return ids;
+   }
+}
@@ -0,0 +1,56 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MinHashTest {
+
+   private static final int LENGTH = 256;
+
+   @Test
+   public void testSignature_SameSetSameSignature() {
+      // Arrange
+      final MinHash minHash = new MinHash(LENGTH);
+
+      // Act
+      final int[] first = minHash.signature(new int[] {1, 2, 3});
+      final int[] second = new MinHash(LENGTH).signature(new int[] {3, 1, 2});
+
+      // Assert
+      Assert.assertArrayEquals(first, second);
+      Assert.assertEquals(LENGTH, MinHash.matches(first, second));
+   }
+
+   @Test
+   public void testAdd_MatchesSignatureOfWholeSet() {
+      // Arrange
+      final MinHash minHash = new MinHash(LENGTH);
+      final int[] signature = minHash.signature(new int[] {1, 2});
+
+      // Act
+      minHash.add(signature, 3);
+
+      // Assert
+      Assert.assertArrayEquals(minHash.signature(new int[] {1, 2, 3}), signature);
+      Assert.assertFalse(minHash.add(signature, 2));
+   }
+
+   @Test
+   public void testMatches_EstimatesJaccard() {
+      // Arrange
+      final MinHash minHash = new MinHash(LENGTH);
+      final int[] a = new int[100];
+      final int[] b = new int[100];
+      for (int i = 0; i < 100; i++) {
+         a[i] = i + 1;
+         b[i] = i + 51;
+      }
+
+      // Act
+      final double estimate = (double) MinHash.matches(minHash.signature(a), minHash.signature(b)) / LENGTH;
+
+      // Assert
+      // 50 shared of 150 ids
+      Assert.assertEquals(1.0 / 3, estimate, 0.1);
+   }
+}
@@ -0,0 +1,142 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.Ints;
+
+public class OffHeapIntListMapTest {
+
+   @Test
+   public void testAdd_KeepsOrderAndRepeats() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+
+      // Act
+      map.add(7, 3);
+      map.add(7, 1);
+      map.add(7, 3);
+      map.add(9, 5);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {3, 1, 3}, map.get(7));
+      Assert.assertArrayEquals(new int[] {5}, map.get(9));
+      Assert.assertArrayEquals(new int[0], map.get(8));
+      Assert.assertEquals(2, map.size());
+   }
+
+   @Test
+   public void testRemove_FirstOccurrenceOnly() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+      map.add(7, 3);
+      map.add(7, 1);
+      map.add(7, 3);
+
+      // Act
+      final boolean removed = map.remove(7, 3);
+      final boolean absent = map.remove(7, 4);
+
+      // Assert
+      Assert.assertTrue(removed);
+      Assert.assertFalse(absent);
+      Assert.assertArrayEquals(new int[] {1, 3}, map.get(7));
+   }
+
+   @Test
+   public void testRemove_LastValueRemovesKey() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+      map.add(7, 3);
+
+      // Act
+      map.remove(7, 3);
+
+      // Assert
+      Assert.assertFalse(map.containsKey(7));
+      Assert.assertTrue(map.isEmpty());
+   }
+
+   @Test
+   public void testPut_ReplacesList() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+      map.add(7, 3);
+
+      // Act
+      map.put(7, new int[] {4, 5, 6, 7, 8, 9});
+      map.add(7, 10);
+
+      // Assert
+      Assert.assertArrayEquals(new int[] {4, 5, 6, 7, 8, 9, 10}, map.get(7));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testAdd_ReservedKey() {
+      new OffHeapIntListMap().add(0, 1);
+   }
+
+   @Test
+   public void testMatchesHashMap_ManyAddsAndRemoves() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+      final Map<Integer, List<Integer>> expected = new HashMap<>();
+      final Random random = new Random(42);
+
+      // Act
+      for (int i = 0; i < 200000; i++) {
+         final int key = random.nextInt(2000) + 1;
+         final int value = random.nextInt(50);
+         final int operation = random.nextInt(20);
+         if (operation == 0) {
+            map.remove(key);
+            expected.remove(key);
+         }
+         else if (operation < 6) {
+            map.remove(key, value);
+            final List<Integer> list = expected.get(key);
+            if (list != null && list.remove(Integer.valueOf(value)) && list.isEmpty()) {
+               expected.remove(key);
+            }
+         }
+         else {
+            map.add(key, value);
+            expected.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+         }
+      }
+
+      // Assert
+      Assert.assertEquals(expected.size(), map.size());
+      for (int key = 1; key <= 2000; key++) {
+         Assert.assertEquals(expected.getOrDefault(key, new ArrayList<>()), Ints.asList(map.get(key)));
+      }
+   }
+
+   @Test
+   public void testAllocatedBytes_ArenaIsReusedAfterRemoves() {
+      // Arrange
+      final OffHeapIntListMap map = new OffHeapIntListMap();
+      for (int value = 0; value < 100000; value++) {
+         map.add(1, value);
+      }
+      final long allocated = map.getAllocatedBytes();
+
+      // Act
+      for (int round = 0; round < 10; round++) {
+         map.remove(1);
+         for (int value = 0; value < 100000; value++) {
+            map.add(1, value);
+         }
+      }
+
+      // Assert
+      Assert.assertEquals(allocated, map.getAllocatedBytes());
+      Assert.assertEquals(100000, map.get(1).length);
+   }
+}
@@ -0,0 +1,230 @@
+package app.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares MinHash/LSH lookups of similar playlists with exact Jaccard similarity against every playlist, on
+ * synthetic playlists: each draws its songs from one of a few thousand themes, and some are near copies of an
+ * earlier playlist. Prints the recall of the exact top 10 and of the playlists sharing at least half their songs,
+ * and the time per lookup. Run with ./gradlew benchmark -Pbenchmark=app.util.PlaylistSimilarityBenchmark
+ */
+public final class PlaylistSimilarityBenchmark {
+
+   private static final int PLAYLISTS = 50000;
+   private static final int THEMES = 2500;
+   private static final int THEME_SIZE = 60;
+   private static final int CATALOGUE = 200000;
+   private static final int QUERIES = 200;
+   private static final int TOP = 10;
+   private static final double CLOSE = 0.5;
+   private static final int[][] SETTINGS = {{16, 4}, {32, 4}, {32, 3}, {64, 4}};
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private PlaylistSimilarityBenchmark() {
+   }
+
+   /**
+    * Print recall and lookup time for a few band and row settings.
+    *
+    * @param args unused
+    */
+   public static void main(final String[] args) {
+      final int[][] playlists = generate(new Random(7));
+      final Random random = new Random(11);
+      final int[] queries = new int[QUERIES];
+      for (int i = 0; i < QUERIES; i++) {
+         queries[i] = random.nextInt(PLAYLISTS);
+      }
+
+      final int[][] exact = new int[QUERIES][];
+      final int[][] close = new int[QUERIES][];
+      final long exactStart = System.nanoTime();
+      for (int i = 0; i < QUERIES; i++) {
+         exact[i] = exactTop(playlists, queries[i], 0);
+         close[i] = exactTop(playlists, queries[i], CLOSE);
+      }
+      final double exactMillis = (System.nanoTime() - exactStart) / 2e6 / QUERIES;
+
+      System.out.println(String.format("%-10s %10s %10s %12s %12s %10s", "method", "build ms", "recall@10",
+            "recall>=0.5", "candidates", "us/lookup"));
+      System.out.println(String.format("%-10s %10s %10.3f %12.3f %12d %10.1f", "exact", "-", 1.0, 1.0,
+            PLAYLISTS, exactMillis * 1000));
+
+      for (int[] setting : SETTINGS) {
+         run(playlists, queries, exact, close, setting[0], setting[1]);
+      }
+   }
+
+   private static void run(final int[][] playlists, final int[] queries, final int[][] exact, final int[][] close,
+                           final int bands, final int rows) {
+      final MinHash minHash = new MinHash(bands * rows);
+      final LshIndex index = new LshIndex(bands, rows);
+      final int[][] signatures = new int[playlists.length][];
+
+      final long buildStart = System.nanoTime();
+      for (int id = 0; id < playlists.length; id++) {
+         signatures[id] = minHash.signature(playlists[id]);
+         index.add(id + 1, signatures[id]);
+      }
+      final long buildMillis = (System.nanoTime() - buildStart) / 1000000;
+
+      // Warm up the lookup path before timing it
+      for (int query : queries) {
+         lookup(index, signatures, query, rows);
+      }
+
+      final int[][] found = new int[queries.length][];
+      final long start = System.nanoTime();
+      for (int i = 0; i < queries.length; i++) {
+         found[i] = lookup(index, signatures, queries[i], rows);
+      }
+      final double micros = (System.nanoTime() - start) / 1e3 / queries.length;
+
+      long candidates = 0;
+      double topRecall = 0;
+      double closeRecall = 0;
+      int closeQueries = 0;
+      for (int i = 0; i < queries.length; i++) {
+         candidates += index.candidates(signatures[queries[i]]).size();
+         topRecall += exact[i].length == 0 ? 1 : (double) overlap(exact[i], found[i]) / exact[i].length;
+         if (close[i].length > 0) {
+            final int[] all = lookup(index, signatures, queries[i], rows, playlists.length);
+            closeRecall += (double) overlap(close[i], all) / close[i].length;
+            closeQueries++;
+         }
+      }
+
+      System.out.println(String.format("%-10s %10d %10.3f %12.3f %12d %10.1f", bands + "x" + rows, buildMillis,
+            topRecall / queries.length, closeRecall / closeQueries, candidates / queries.length, micros));
+   }
+
+   private static int[] lookup(final LshIndex index, final int[][] signatures, final int query, final int rows) {
+      return lookup(index, signatures, query, rows, TOP);
+   }
+
+   /**
+    * Same ranking as PlaylistSimilarityService: candidates by matching slots, then by id.
+    */
+   private static int[] lookup(final LshIndex index, final int[][] signatures, final int query, final int rows,
+                               final int limit) {
+      final int[] signature = signatures[query];
+      final IntIntHashMap candidates = index.candidates(signature);
+      candidates.remove(query + 1);
+
+      final long[] ranked = new long[candidates.size()];
+      int count = 0;
+      for (int candidate : candidates.keys()) {
+         final int matches = MinHash.matches(signature, signatures[candidate - 1]);
+         if (matches >= rows) {
+            ranked[count++] = ((long) matches << Integer.SIZE) | (Integer.MAX_VALUE - candidate);
+         }
+      }
+      Arrays.sort(ranked, 0, count);
+
+      final int[] result = new int[Math.min(limit, count)];
+      for (int i = 0; i < result.length; i++) {
+         result[i] = Integer.MAX_VALUE - (int) ranked[count - 1 - i] - 1;
+      }
+
+      return result;
+   }
+
+   /**
+    * Rank every other playlist by exact Jaccard similarity.
+    *
+    * @return the top 10 if minimum is 0, otherwise every playlist at least that similar
+    */
+   private static int[] exactTop(final int[][] playlists, final int query, final double minimum) {
+      final long[] ranked = new long[playlists.length];
+      int count = 0;
+      for (int id = 0; id < playlists.length; id++) {
+         if (id == query) {
+            continue;
+         }
+
+         final double similarity = jaccard(playlists[query], playlists[id]);
+         if (similarity > 0 && similarity >= minimum) {
+            ranked[count++] = ((long) (similarity * 1e6) << Integer.SIZE) | (Integer.MAX_VALUE - id);
+         }
+      }
+      Arrays.sort(ranked, 0, count);
+
+      final int[] result = new int[minimum > 0 ? count : Math.min(TOP, count)];
+      for (int i = 0; i < result.length; i++) {
+         result[i] = Integer.MAX_VALUE - (int) ranked[count - 1 - i];
+      }
+
+      return result;
+   }
+
+   private static double jaccard(final int[] a, final int[] b) {
+      int shared = 0;
+      int i = 0;
+      int j = 0;
+      while (i < a.length && j < b.length) {
+         if (a[i] == b[j]) {
+            shared++;
+            i++;
+            j++;
+         }
+         else if (a[i] < b[j]) {
+            i++;
+         }
+         else {
+            j++;
+         }
+      }
+
+      return (double) shared / (a.length + b.length - shared);
+   }
+
+   private static int overlap(final int[] expected, final int[] found) {
+      int overlap = 0;
+      for (int id : expected) {
+         for (int other : found) {
+            if (id == other) {
+               overlap++;
+               break;
+            }
+         }
+      }
+
+      return overlap;
+   }
+
+   /**
+    * Playlists of 20 to 40 songs from one theme plus a few from anywhere; one in five copies an earlier playlist
+    * with about a tenth of its songs swapped. Each playlist is sorted, without duplicates.
+    */
+   private static int[][] generate(final Random random) {
+      final int[][] playlists = new int[PLAYLISTS][];
+
+      for (int id = 0; id < PLAYLISTS; id++) {
+         final IntIntHashMap songs = new IntIntHashMap();
+
+         if (id > 0 && random.nextInt(5) == 0) {
+            for (int song : playlists[random.nextInt(id)]) {
+               songs.addTo(random.nextInt(10) == 0 ? 1 + random.nextInt(CATALOGUE) : song, 1);
+            }
+         }
+         else {
+            final int theme = random.nextInt(THEMES);
+            final int size = 20 + random.nextInt(21);
+            while (songs.size() < size) {
+               songs.addTo(1 + theme * THEME_SIZE + random.nextInt(THEME_SIZE), 1);
+            }
+            for (int extra = random.nextInt(6); extra > 0; extra--) {
+               songs.addTo(1 + random.nextInt(CATALOGUE), 1);
+            }
+         }
+
+         playlists[id] = songs.keys();
+         Arrays.sort(playlists[id]);
+      }
+
+      return playlists;
+   }
+}
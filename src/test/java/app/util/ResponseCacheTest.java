@@ -0,0 +1,155 @@
+package app.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ResponseCacheTest {
+
+   private static final String KEY = "/playlists/1";
+   private static final String OTHER_KEY = "/playlists/2";
+   private static final String JSON = "application/json";
+   private static final Set<String> TAGS = ImmutableSet.of("playlist:1");
+   private static final long TTL = 1000;
+   private static final long STALE = 5000;
+   private static final long NOW = 100000;
+
+   private final ResponseCache cache = new ResponseCache(1 << 20, TTL, STALE, -1);
+
+   @Test
+   public void testGet_FreshThenStaleThenGone() {
+      // Arrange
+      cache.put(KEY, TAGS, JSON, body("{}"), cache.stamp(TAGS), NOW);
+
+      // Act
+      final ResponseCache.Entry fresh = cache.get(KEY, NOW + TTL - 1);
+      final ResponseCache.Entry stale = cache.get(KEY, NOW + TTL);
+      final ResponseCache.Entry gone = cache.get(KEY, NOW + TTL + STALE);
+
+      // Assert
+      Assert.assertTrue(fresh.isFresh(NOW + TTL - 1));
+      Assert.assertFalse(stale.isFresh(NOW + TTL));
+      Assert.assertNull(gone);
+   }
+
+   @Test
+   public void testClaimRefresh_OneCallerAtATime() {
+      // Arrange
+      final ResponseCache.Entry entry = cache.put(KEY, TAGS, JSON, body("{}"), cache.stamp(TAGS), NOW);
+
+      // Act
+      final boolean first = entry.claimRefresh();
+      final boolean second = entry.claimRefresh();
+      entry.releaseRefresh();
+      final boolean afterRelease = entry.claimRefresh();
+
+      // Assert
+      Assert.assertTrue(first);
+      Assert.assertFalse(second);
+      Assert.assertTrue(afterRelease);
+   }
+
+   @Test
+   public void testInvalidate_DropsEntriesOfTheTagOnly() {
+      // Arrange
+      cache.put(KEY, TAGS, JSON, body("{}"), cache.stamp(TAGS), NOW);
+      cache.put(OTHER_KEY, ImmutableSet.of("playlist:2"), JSON, body("{}"), 0, NOW);
+
+      // Act
+      cache.invalidate("playlist:1");
+
+      // Assert
+      Assert.assertNull(cache.get(KEY, NOW));
+      Assert.assertNotNull(cache.get(OTHER_KEY, NOW));
+      Assert.assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testPut_RenderedBeforeInvalidationIsNotStored() {
+      // Arrange
+      final long stamp = cache.stamp(TAGS);
+      cache.invalidate("playlist:1");
+
+      // Act
+      final ResponseCache.Entry entry = cache.put(KEY, TAGS, JSON, body("{}"), stamp, NOW);
+
+      // Assert
+      Assert.assertNull(entry);
+      Assert.assertNull(cache.get(KEY, NOW));
+   }
+
+   @Test
+   public void testPut_EvictsToStayWithinMaxBytes() {
+      // Arrange
+      final ResponseCache small = new ResponseCache(16 * 1024, TTL, STALE, -1);
+      final byte[] body = new byte[900];
+
+      // Act
+      for (int i = 0; i < 40; i++) {
+         small.put("/songs/" + i, ImmutableSet.of("song:" + i), JSON, body, 0, NOW);
+      }
+
+      // Assert
+      Assert.assertTrue(small.getBytes() <= 16 * 1024);
+      Assert.assertTrue(small.getEvictions() > 0);
+      Assert.assertEquals(40, small.size() + small.getEvictions());
+   }
+
+   @Test
+   public void testPut_TooBigIsNotStored() {
+      // Arrange
+      final ResponseCache small = new ResponseCache(16 * 1024, TTL, STALE, -1);
+
+      // Act
+      final ResponseCache.Entry entry = small.put(KEY, TAGS, JSON, new byte[2048], 0, NOW);
+
+      // Assert
+      Assert.assertNull(entry);
+      Assert.assertEquals(0, small.getBytes());
+   }
+
+   @Test
+   public void testPut_GzipsLargeBodies() throws IOException {
+      // Arrange
+      final ResponseCache gzipping = new ResponseCache(1 << 20, TTL, STALE, 100);
+      final byte[] large = new byte[1000];
+      Arrays.fill(large, (byte) 'a');
+
+      // Act
+      final ResponseCache.Entry compressed = gzipping.put(KEY, TAGS, JSON, large, 0, NOW);
+      final ResponseCache.Entry plain = gzipping.put(OTHER_KEY, TAGS, JSON, body("{}"), 0, NOW);
+
+      // Assert
+      Assert.assertTrue(compressed.getGzipped().length < large.length);
+      Assert.assertArrayEquals(large, StreamUtils.copyToByteArray(
+            new GZIPInputStream(new ByteArrayInputStream(compressed.getGzipped()))));
+      Assert.assertNull(plain.getGzipped());
+   }
+
+   @Test
+   public void testPut_ReplacingKeepsTheNewEntryIndexed() {
+      // Arrange
+      cache.put(KEY, TAGS, JSON, body("old"), 0, NOW);
+      cache.put(KEY, TAGS, JSON, body("new"), 0, NOW);
+
+      // Act
+      cache.invalidate("playlist:1");
+
+      // Assert
+      Assert.assertNull(cache.get(KEY, NOW));
+      Assert.assertEquals(0, cache.getBytes());
+   }
+
+   private static byte[] body(final String json) {
+      return json.getBytes(StandardCharsets.UTF_8);
+   }
+}
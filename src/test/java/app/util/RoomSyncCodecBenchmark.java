@@ -0,0 +1,98 @@
+package app.util;
+
+import app.model.Room;
+import app.model.RoomState;
+import app.model.RoomSyncMessage;
+import app.model.Song;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the size and encode time of room sync messages as JSON and as RoomSyncCodec frames.
+ * Run with ./gradlew benchmark -Pbenchmark=app.util.RoomSyncCodecBenchmark
+ */
+public final class RoomSyncCodecBenchmark {
+
+   private static final int WARMUP_ITERATIONS = 200000;
+   private static final int ITERATIONS = 1000000;
+   private static final int PLAYLIST_SIZE = 50;
+
+   /**
+    * Prevent instantiating this class.
+    */
+   private RoomSyncCodecBenchmark() {
+   }
+
+   /**
+    * Print bytes and encode time per message for a playback update and a room snapshot.
+    *
+    * @param args unused
+    * @throws Exception if encoding fails
+    */
+   public static void main(final String[] args) throws Exception {
+      final ObjectMapper objectMapper = new ObjectMapper();
+      final long now = System.currentTimeMillis();
+
+      final RoomState state = RoomState.builder()
+            .roomId(1042)
+            .songId(18734)
+            .queuePosition(12)
+            .startedAt(now - 83000)
+            .paused(false)
+            .version(4817)
+            .build();
+
+      final List<Song> songs = new ArrayList<>();
+      for (int i = 0; i < PLAYLIST_SIZE; i++) {
+         songs.add(Song.builder().id(18700 + i).title("Song number " + i).reference("dQw4w9WgXc" + i).build());
+      }
+
+      final RoomSyncMessage update = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.STATE)
+            .version(state.getVersion())
+            .time(now)
+            .state(state)
+            .build();
+      final RoomSyncMessage snapshot = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.SNAPSHOT)
+            .version(state.getVersion())
+            .time(now)
+            .room(Room.builder().id(1042).name("Friday night").userId(77).playlistId(310).build())
+            .songs(songs)
+            .state(state)
+            .build();
+
+      System.out.println(String.format("%-10s %-8s %10s %12s", "message", "format", "bytes", "ns/encode"));
+      run("state", "json", () -> objectMapper.writeValueAsString(update).getBytes(StandardCharsets.UTF_8));
+      run("state", "binary", () -> RoomSyncCodec.encode(update));
+      run("snapshot", "json", () -> objectMapper.writeValueAsString(snapshot).getBytes(StandardCharsets.UTF_8));
+      run("snapshot", "binary", () -> RoomSyncCodec.encode(snapshot));
+   }
+
+   private static void run(final String message, final String format, final Callable<byte[]> encoder)
+         throws Exception {
+      long sink = 0;
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+         sink += encoder.call().length;
+      }
+
+      final long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+         sink += encoder.call().length;
+      }
+      final long elapsed = System.nanoTime() - start;
+
+      System.out.println(String.format("%-10s %-8s %10d %12.1f", message, format, encoder.call().length,
+            (double) elapsed / ITERATIONS));
+
+      // Keeps the encoded lengths alive so the loops can't be optimized away
+      if (sink == 0) {
+         System.out.println();
+      }
+   }
+}
@@ -0,0 +1,136 @@
+package app.util;
+
+import app.model.Room;
+import app.model.RoomState;
+import app.model.RoomSyncMessage;
+import app.model.Song;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class RoomSyncCodecTest {
+
+   private static final long TIME = 1571443200000L;
+
+   @Test
+   public void testEncode_SnapshotRoundTrip() {
+      // Arrange
+      final RoomSyncMessage message = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.SNAPSHOT)
+            .version(42)
+            .time(TIME)
+            .room(Room.builder().id(7).name("Lo-fi \u266B").isPrivate(true).userId(3).build())
+            .songs(ImmutableList.of(Song.builder().id(1).title("First").reference("abc123").durationMs(215000).build(),
+                  Song.builder().id(300).title(null).reference("def456").build()))
+            .state(buildState())
+            .build();
+
+      // Act
+      final RoomSyncMessage decoded = RoomSyncCodec.decode(ByteBuffer.wrap(RoomSyncCodec.encode(message)));
+
+      // Assert
+      Assert.assertEquals(message, decoded);
+      Assert.assertNull(decoded.getRoom().getPlaylistId());
+      Assert.assertNull(decoded.getSongs().get(1).getTitle());
+      Assert.assertEquals(Integer.valueOf(215000), decoded.getSongs().get(0).getDurationMs());
+      Assert.assertNull(decoded.getSongs().get(1).getDurationMs());
+   }
+
+   @Test
+   public void testEncode_RoomWithoutSongsRoundTrip() {
+      // Arrange
+      final RoomSyncMessage message = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.ROOM)
+            .version(1)
+            .time(TIME)
+            .room(Room.builder().id(1).name("Room").userId(1).playlistId(2).build())
+            .state(buildState())
+            .build();
+
+      // Act
+      final RoomSyncMessage decoded = RoomSyncCodec.decode(ByteBuffer.wrap(RoomSyncCodec.encode(message)));
+
+      // Assert
+      Assert.assertEquals(message, decoded);
+      Assert.assertNull(decoded.getSongs());
+   }
+
+   @Test
+   public void testEncode_StateIsCompact() {
+      // Arrange
+      final RoomSyncMessage message = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.STATE)
+            .version(1000)
+            .time(TIME)
+            .state(buildState())
+            .build();
+
+      // Act
+      final byte[] frame = RoomSyncCodec.encode(message);
+
+      // Assert
+      Assert.assertEquals(RoomSyncCodec.FORMAT_VERSION, frame[0]);
+      Assert.assertTrue("State frame takes " + frame.length + " bytes", frame.length <= 24);
+      Assert.assertEquals(message, RoomSyncCodec.decode(ByteBuffer.wrap(frame)));
+   }
+
+   @Test
+   public void testEncode_StartedAfterTime() {
+      // Arrange
+      final RoomState state = buildState();
+      state.setSongId(null);
+      state.setStartedAt(TIME + 5000);
+      final RoomSyncMessage message = RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.STATE)
+            .time(TIME)
+            .state(state)
+            .build();
+
+      // Act
+      final RoomSyncMessage decoded = RoomSyncCodec.decode(ByteBuffer.wrap(RoomSyncCodec.encode(message)));
+
+      // Assert
+      Assert.assertEquals(TIME + 5000, decoded.getState().getStartedAt());
+      Assert.assertNull(decoded.getState().getSongId());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testDecode_UnsupportedFormatVersion() {
+      // Act
+      RoomSyncCodec.decode(ByteBuffer.wrap(new byte[] {1, 1, 0, 0}));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testDecode_UnknownType() {
+      // Act
+      RoomSyncCodec.decode(ByteBuffer.wrap(new byte[] {RoomSyncCodec.FORMAT_VERSION, 9, 0, 0}));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testDecode_Truncated() {
+      // Arrange
+      final byte[] frame = RoomSyncCodec.encode(RoomSyncMessage.builder()
+            .type(RoomSyncMessage.Type.STATE)
+            .time(TIME)
+            .state(buildState())
+            .build());
+
+      // Act
+      RoomSyncCodec.decode(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 2)));
+   }
+
+   private RoomState buildState() {
+      return RoomState.builder()
+            .songId(12)
+            .queuePosition(3)
+            .paused(false)
+            .startedAt(TIME - 95000)
+            .positionMs(0)
+            .build();
+   }
+}
@@ -0,0 +1,146 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class SingleFlightTest {
+
+   private static final int CALLERS = 8;
+
+   private final SingleFlight<Integer, String> singleFlight = new SingleFlight<>();
+
+   private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+   @After
+   public void teardown() {
+      executor.shutdownNow();
+   }
+
+   @Test
+   public void testExecute_ConcurrentCallsShareOneResult() throws Exception {
+      // Arrange
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final AtomicInteger calls = new AtomicInteger();
+      final List<Future<String>> results = new ArrayList<>();
+
+      // Act
+      results.add(executor.submit(() -> singleFlight.execute(1, () -> {
+         calls.incrementAndGet();
+         running.countDown();
+         await(release);
+         return "result";
+      })));
+      running.await();
+      for (int i = 1; i < CALLERS; i++) {
+         results.add(executor.submit(() -> singleFlight.execute(1, () -> {
+            calls.incrementAndGet();
+            return "other";
+         })));
+      }
+      waitForCollapsedCalls(CALLERS - 1);
+      release.countDown();
+
+      // Assert
+      for (Future<String> result : results) {
+         Assert.assertEquals("result", result.get(5, TimeUnit.SECONDS));
+      }
+      Assert.assertEquals(1, calls.get());
+      Assert.assertEquals(1, singleFlight.getExecutedCalls());
+      Assert.assertEquals(CALLERS - 1, singleFlight.getCollapsedCalls());
+      Assert.assertEquals(0, singleFlight.getInFlightCalls());
+   }
+
+   @Test
+   public void testExecute_WaitingCallersGetTheException() throws Exception {
+      // Arrange
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final IllegalStateException failure = new IllegalStateException("lookup failed");
+
+      // Act
+      final Future<String> first = executor.submit(() -> singleFlight.execute(1, () -> {
+         running.countDown();
+         await(release);
+         throw failure;
+      }));
+      running.await();
+      final Future<String> second = executor.submit(() -> singleFlight.execute(1, () -> "other"));
+      waitForCollapsedCalls(1);
+      release.countDown();
+
+      // Assert
+      for (Future<String> result : ImmutableList.of(first, second)) {
+         try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("Exception not thrown");
+         } catch (ExecutionException ex) {
+            Assert.assertSame(failure, ex.getCause());
+         }
+      }
+   }
+
+   @Test
+   public void testExecute_SequentialCallsEachRun() {
+      // Act
+      final String first = singleFlight.execute(1, () -> "first");
+      final String second = singleFlight.execute(1, () -> "second");
+
+      // Assert
+      Assert.assertEquals("first", first);
+      Assert.assertEquals("second", second);
+      Assert.assertEquals(2, singleFlight.getExecutedCalls());
+      Assert.assertEquals(0, singleFlight.getCollapsedCalls());
+   }
+
+   @Test
+   public void testForget_NewCallersRunTheirOwnCall() throws Exception {
+      // Arrange
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final Future<String> first = executor.submit(() -> singleFlight.execute(1, () -> {
+         running.countDown();
+         await(release);
+         return "before write";
+      }));
+      running.await();
+
+      // Act
+      singleFlight.forget(1);
+      final String second = singleFlight.execute(1, () -> "after write");
+      release.countDown();
+
+      // Assert
+      Assert.assertEquals("after write", second);
+      Assert.assertEquals("before write", first.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals(0, singleFlight.getCollapsedCalls());
+   }
+
+   private void waitForCollapsedCalls(final long expected) throws InterruptedException {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (singleFlight.getCollapsedCalls() < expected && System.nanoTime() < deadline) {
+         Thread.sleep(1);
+      }
+   }
+
+   private static void await(final CountDownLatch latch) {
+      try {
+         latch.await();
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
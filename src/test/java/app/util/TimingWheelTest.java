@@ -0,0 +1,155 @@
+package app.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+   private TimingWheel timingWheel;
+
+   @Before
+   public void setup() {
+      timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "timing-wheel-test");
+   }
+
+   @After
+   public void teardown() {
+      timingWheel.stop();
+   }
+
+   @Test
+   public void testConstructor_RoundsWheelSizeToPowerOfTwo() {
+      // Arrange
+      final TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 100, "timing-wheel-size-test");
+
+      // Assert
+      Assert.assertEquals(128, wheel.getWheelSize());
+
+      wheel.stop();
+   }
+
+   @Test
+   public void testSchedule_RunsTaskAfterDelay() throws InterruptedException {
+      // Arrange
+      final CountDownLatch latch = new CountDownLatch(1);
+      final long start = System.nanoTime();
+
+      // Act
+      final TimingWheel.Timeout timeout = timingWheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+      // Assert
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+      Assert.assertTrue(timeout.isExpired());
+   }
+
+   @Test
+   public void testSchedule_DelayLongerThanOneRotation() throws InterruptedException {
+      // Arrange
+      final CountDownLatch latch = new CountDownLatch(1);
+      final long start = System.nanoTime();
+
+      // Act
+      timingWheel.schedule(latch::countDown, 200, TimeUnit.MILLISECONDS);
+
+      // Assert
+      Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+   }
+
+   @Test
+   public void testCancel_TaskNeverRuns() throws InterruptedException {
+      // Arrange
+      final AtomicInteger runs = new AtomicInteger();
+      final TimingWheel.Timeout timeout = timingWheel.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+
+      // Act
+      final boolean cancelled = timeout.cancel();
+
+      // Assert
+      Thread.sleep(100);
+      Assert.assertTrue(cancelled);
+      Assert.assertTrue(timeout.isCancelled());
+      Assert.assertFalse(timeout.cancel());
+      Assert.assertEquals(0, runs.get());
+   }
+
+   @Test
+   public void testSchedule_FailingTaskDoesNotStopWheel() throws InterruptedException {
+      // Arrange
+      final CountDownLatch latch = new CountDownLatch(1);
+      timingWheel.schedule(() -> {
+         throw new IllegalStateException("failure");
+      }, 10, TimeUnit.MILLISECONDS);
+
+      // Act
+      timingWheel.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+
+      // Assert
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void testMetrics_CountsPendingAndExpired() throws InterruptedException {
+      // Arrange
+      final CountDownLatch latch = new CountDownLatch(1);
+      final TimingWheel.Timeout cancelled = timingWheel.schedule(() -> { }, 1, TimeUnit.SECONDS);
+      timingWheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+      // Act
+      final int pending = timingWheel.getPendingTimeouts();
+      cancelled.cancel();
+
+      // Assert
+      Assert.assertEquals(2, pending);
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+      Assert.assertEquals(0, timingWheel.getPendingTimeouts());
+      Assert.assertEquals(1, timingWheel.getExpiredTimeouts());
+   }
+
+   @Test
+   public void testMetrics_LagIncludesSlowTasks() throws InterruptedException {
+      // Arrange
+      final CountDownLatch latch = new CountDownLatch(1);
+      timingWheel.schedule(() -> sleep(50), 10, TimeUnit.MILLISECONDS);
+      timingWheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+      // Act
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+      // Assert
+      Assert.assertTrue(timingWheel.getMaxTickMillis() >= 50);
+      Assert.assertTrue(timingWheel.getMaxLagMillis() >= 30);
+      Assert.assertTrue(timingWheel.getAverageLagMillis() <= timingWheel.getMaxLagMillis());
+      Assert.assertTrue(timingWheel.getAverageTickMillis() <= timingWheel.getMaxTickMillis());
+   }
+
+   @Test
+   public void testSchedule_AfterStop() {
+      // Arrange
+      timingWheel.stop();
+
+      // Act
+      try {
+         timingWheel.schedule(() -> { }, 10, TimeUnit.MILLISECONDS);
+         Assert.fail("Exception not thrown");
+      } catch (IllegalStateException ex) {
+         // Assert
+         Assert.assertEquals("TimingWheel is stopped", ex.getMessage());
+      }
+   }
+
+   private static void sleep(final long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
@@ -0,0 +1,45 @@
+package app.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+   @Test
+   public void testNewVirtualThreadPerTaskExecutor() throws Exception {
+      if (!VirtualThreads.isSupported()) {
+         try {
+            VirtualThreads.newVirtualThreadPerTaskExecutor("test-");
+            Assert.fail("Exception not thrown");
+         } catch (IllegalStateException ex) {
+            Assert.assertFalse(VirtualThreads.isCurrentThreadVirtual());
+         }
+         return;
+      }
+
+      // Arrange
+      final ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor("test-");
+
+      // Act
+      final Future<Boolean> isVirtual = executor.submit(VirtualThreads::isCurrentThreadVirtual);
+
+      // Assert
+      Assert.assertTrue(isVirtual.get(5, TimeUnit.SECONDS));
+      Assert.assertFalse(VirtualThreads.isCurrentThreadVirtual());
+      executor.shutdown();
+   }
+
+   @Test
+   public void testConstructorIsPrivate() throws Exception {
+      final Constructor<VirtualThreads> constructor = VirtualThreads.class.getDeclaredConstructor();
+      Assert.assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+      constructor.setAccessible(true);
+      constructor.newInstance();
+   }
+}